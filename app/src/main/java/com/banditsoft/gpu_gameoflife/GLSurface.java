@@ -5,16 +5,28 @@ import android.graphics.Bitmap;
 import android.graphics.PointF;
 import android.opengl.GLSurfaceView;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Created by ipilter on 22/03/2017.
  */
 
 public class GLSurface extends GLSurfaceView {
-    private PointF mPreviousScreenPoint = new PointF();
+    private final PointF mPreviousScreenPoint = new PointF();
+    // scratch points, a move or scale event must not allocate
+    private final PointF mCurrentScreenPoint = new PointF();
+    private final PointF mCurrentModelPoint = new PointF();
+    private final PointF mPreviousModelPoint = new PointF();
+    private final PointF mFocusPoint = new PointF();
     private GOLEngine mRenderer;
+    private SimulationScheduler mScheduler;
+    private SnapshotPipeline mCheckpoints;
     private ScaleGestureDetector mScaleGestureDetector;
 
     public GLSurface(Context context) {
@@ -36,6 +48,14 @@ public class GLSurface extends GLSurfaceView {
         mScaleGestureDetector.setQuickScaleEnabled(false);
         setRenderer(mRenderer);
         setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+
+        mScheduler = mRenderer.createScheduler();
+        mScheduler.setFrameListener(new Runnable() {
+            public void run() {
+                requestRender();
+            }
+        });
+        mScheduler.start();
     }
 
     @Override
@@ -44,20 +64,19 @@ public class GLSurface extends GLSurfaceView {
 
         switch (event.getAction() & MotionEvent.ACTION_MASK) {
             case MotionEvent.ACTION_MOVE: {
-                PointF currentScreenPoint = new PointF();
                 if(event.getPointerCount() == 1)
                 {
-                    currentScreenPoint.set(event.getX(), event.getY());
+                    mCurrentScreenPoint.set(event.getX(), event.getY());
                 }
                 else
                 {
-                    currentScreenPoint.set((event.getX(0) + event.getX(1)) / 2.0f, (event.getY(0) + event.getY(1)) / 2.0f);
+                    mCurrentScreenPoint.set((event.getX(0) + event.getX(1)) / 2.0f, (event.getY(0) + event.getY(1)) / 2.0f);
                 }
-                PointF currentModelPoint = mRenderer.map(currentScreenPoint);
-                PointF previousModelPoint = mRenderer.map(mPreviousScreenPoint);
-                mRenderer.pan(new PointF(currentModelPoint.x - previousModelPoint.x, currentModelPoint.y - previousModelPoint.y));
+                mRenderer.map(mCurrentScreenPoint.x, mCurrentScreenPoint.y, mCurrentModelPoint);
+                mRenderer.map(mPreviousScreenPoint.x, mPreviousScreenPoint.y, mPreviousModelPoint);
+                mRenderer.pan(mCurrentModelPoint.x - mPreviousModelPoint.x, mCurrentModelPoint.y - mPreviousModelPoint.y);
 
-                mPreviousScreenPoint = currentScreenPoint;
+                mPreviousScreenPoint.set(mCurrentScreenPoint);
                 requestRender();
                 break;
             }
@@ -86,42 +105,102 @@ public class GLSurface extends GLSurfaceView {
         return true;
     }
 
+    /** Runs generations on the simulation thread, zero or less runs as fast as possible. */
+    public void startSimulation(float generationsPerSecond) {
+        mScheduler.setTargetRate(generationsPerSecond);
+        mScheduler.setRunning(true);
+    }
+
+    public void setSimulationRate(float generationsPerSecond) {
+        mScheduler.setTargetRate(generationsPerSecond);
+    }
+
+    public void stopSimulation() {
+        mScheduler.setRunning(false);
+    }
+
+    /**
+     * Checkpoints a generation into the file once every period, replacing the previous one. The
+     * simulation thread only copies the grid, encoding and writing run in the background.
+     */
+    public void startCheckpoints(File file, long period, TimeUnit unit) {
+        if (mCheckpoints == null) {
+            mCheckpoints = new SnapshotPipeline(mScheduler.getGridWidth(), mScheduler.getGridHeight(), SnapshotPipeline.latest(file));
+        }
+        mScheduler.setSnapshotPeriod(mCheckpoints, period, unit);
+    }
+
+    /** Journals every reset, noise injection, rule change and edit into the file until stopJournal(). */
+    public void startJournal(File file) {
+        mScheduler.startJournal(file);
+    }
+
+    public void stopJournal() {
+        mScheduler.stopJournal();
+    }
+
+    /**
+     * Stops the simulation thread and the engine's workers for good, ends the journal and writes the
+     * pending checkpoints.
+     */
+    public void shutdown() {
+        try {
+            mScheduler.stop();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        mRenderer.shutdownEngine();
+        if (mCheckpoints != null) {
+            try {
+                mCheckpoints.close();
+            } catch (IOException ex) {
+                Log.e("GLSurface", "Could not write the last checkpoint", ex);
+            }
+        }
+    }
+
     public void requestSimulation() {
+        requestSimulation(1);
+    }
+
+    /** Runs generations on the GPU, on the GL thread. The next published frame replaces the result. */
+    public void requestSimulation(final int generations) {
         queueEvent(new Runnable() {
             public void run() {
-            mRenderer.simulate();
+                mRenderer.simulate(generations);
             }
         });
         requestRender();
     }
 
     public void requestNoise() {
-        queueEvent(new Runnable() {
-            public void run() {
-                mRenderer.addNoise();
-            }
-        });
-        requestRender();
+        mScheduler.addNoise();
+    }
+
+    /** Paints a cell before the next generation, edits between two generations are applied together. */
+    public void setCell(int x, int y, boolean alive) {
+        mScheduler.setCell(x, y, alive);
+    }
+
+    /** Stamps the pattern with its bottom left corner at (x, y) before the next generation. */
+    public void stamp(Pattern pattern, int x, int y) {
+        mScheduler.stamp(pattern, x, y);
     }
 
     public void setRules(int deadRules, int liveRules)
     {
         mRenderer.setRules(deadRules, liveRules);
+        mScheduler.setRules(deadRules, liveRules);
     }
 
     public void reset() {
-        queueEvent(new Runnable() {
-            public void run() {
-                mRenderer.reset();
-            }
-        });
-        requestRender();
+        mScheduler.reset();
     }
 
     private class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
         @Override
         public boolean onScale(ScaleGestureDetector detector) {
-            mRenderer.scale(detector.getScaleFactor(), mRenderer.map(new PointF(detector.getFocusX(), detector.getFocusY())));
+            mRenderer.scale(detector.getScaleFactor(), mRenderer.map(detector.getFocusX(), detector.getFocusY(), mFocusPoint));
             requestRender();
             return true;
         }
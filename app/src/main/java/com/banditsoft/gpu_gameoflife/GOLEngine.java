@@ -6,24 +6,16 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Color;
 import android.graphics.PointF;
-import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
-import android.opengl.Matrix;
 import android.util.Log;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
-import java.nio.ShortBuffer;
-import java.util.Arrays;
+import java.util.Random;
 import java.util.Vector;
 
-import org.jetbrains.annotations.Nullable;
-
 import javax.microedition.khronos.opengles.GL10;
 import javax.microedition.khronos.egl.EGLConfig;
 
@@ -31,52 +23,21 @@ import javax.microedition.khronos.egl.EGLConfig;
  * Created by ipilter on 22/03/2017.
  */
 
-public class GOLEngine implements GLSurfaceView.Renderer {
-    private static final int COORDS_PER_VERTEX = 3;
-    private static final int COORDS_PER_TEXEL = 2;
-    static final int BYTES_PER_COORDS = 4;
-    static final int BYTES_PER_INDEX = 2;
-    static final int CHANNELS_PER_PIXEL = 3;
+public class GOLEngine implements GLSurfaceView.Renderer, SimulationEngine {
     static final int MAX_TEXTURE_SIZE = 4096 / 16;
-    private final int mVertexStride = COORDS_PER_VERTEX * BYTES_PER_COORDS;
-
-    private int mRendererProgram;
-    private int mSimulatorProgram;
-    private int mFrontTextureId;
-    private int mBackTextureId;
-    private int mFrameBufferId;
-    private int mRenderBufferId;
-    private int mWidth;
-    private int mHeight;
-
-    private float mRatio;
-    private final float[] mProjectionMatrix = new float[16];
-    private final float[] mViewMatrix = new float[16];
-    private final float[] mVPMatrix = new float[16];
-
-    private final float mSquareCoords[] = {
-            -1.0f, -1.0f, 0.0f,
-            1.0f, -1.0f, 0.0f,
-            1.0f, 1.0f, 0.0f,
-            -1.0f, 1.0f, 0.0f};
 
-    private final float mTextureCoords[] = {
-            0.0f, 0.0f,
-            1.0f, 0.0f,
-            1.0f, 1.0f,
-            0.0f, 1.0f};
+    private final GLApi mGL = new AndroidGL();
+    private final ScreenQuad mQuad = new ScreenQuad();
+    private final GpuSimulator mSimulator;
 
-    // initial rules are the standard game of life rules: dead = 8, live = 12
-    private int mDecideData[] = {
-          //0  1  2  3  4  5  6  7  8   // living neighbor count
-            0, 0, 0, 1, 0, 0, 0, 0, 0,  // dead cell new state
-            0, 0, 1, 1, 0, 0, 0, 0, 0}; // live cell new state
-
-    private final short mIndices[] = {0, 1, 3, 3, 1, 2};
+    private final GridRenderer mRenderer;
+    private int mWidth;
+    private int mHeight;
 
-    private final FloatBuffer mVertexBuffer;
-    private final ShortBuffer mIndexBuffer;
-    private final FloatBuffer mTexelBuffer;
+    private final ViewTransform mTransform = new ViewTransform();
+    // the GL thread's copy of the view, gestures change mTransform on the UI thread
+    private final float[] mMatrix = new float[16];
+    private final float[] mMapped = new float[2];
 
     private int mGridWidth;
     private int mGridHeight;
@@ -89,100 +50,25 @@ public class GOLEngine implements GLSurfaceView.Renderer {
     private float mModelSpaceHalfSize = 1.0f;
     private int mWorldScale = 1;
     private int mSeedCount = 1;
+    private final Random mRandom = new Random();
 
-    private String mRendererVertexShader;
-    private String mRendererFragmentShader;
-    private String mSimulatorVertexShader;
-    private String mSimulatorFragmentShader;
-
-    class Pattern {
-        private int mWidth;
-        private int mHeight;
-        private Vector<String> mData;
-        public char[] mStates = new char[] { '.', 'O' };
-
-        int powerOfTwo(int x)
-        {
-            if (x < 0)
-                return 0;
-            --x;
-            x |= x >> 1;
-            x |= x >> 2;
-            x |= x >> 4;
-            x |= x >> 8;
-            x |= x >> 16;
-            return x+1;
-        }
-
-        int max(int a, int b)
-        {
-            return a >= b ? a : b;
-        }
-
-        public Pattern(Vector<String> pattern) {
-            int size = max(powerOfTwo(pattern.size()), powerOfTwo(pattern.get(0).length()));
-
-            mWidth = size;
-            mHeight = size;
-            mData = new Vector<>(mWidth * mHeight);
-
-            int xx = mWidth - pattern.get(0).length();
-            String addition = new String(new char[xx]).replace('\0', mStates[0]);
-            for (String p : pattern)
-            {
-                mData.add(p + addition);
-//                Log.i("Pattern", mData.lastElement());
-            }
-
-            int yy = mHeight - pattern.size();
-            String row = new String(new char[mWidth]).replace('\0', mStates[0]);
-            for (int ny = 0; ny < yy; ++ny)
-            {
-                mData.add(row);
-            }
-            return;
-        }
-
-        public int getWidth() {
-            return mWidth;
-        }
+    private Vector<Pattern> mPatternList;
 
-        public int getHeight() {
-            return mHeight;
-        }
+    private SimulationScheduler mScheduler;
+    private ParallelBitEngine mEngine;
+    // published frames go bit packed into a luminance texture a grid width / 8 texels wide
+    private ByteBuffer mFrameBuffer;
+    private int mFrameTexture;
+    private BitGrid mFrame;
+    // sequence of the frame in the texture, a following frame only needs its changes uploaded
+    private long mFrameSequence = -1;
+    private boolean mShowFrame;
+    private ByteBuffer mSimulatorUpload;
 
-        public boolean isAlive(int x, int y) {
-            return mData.get(y).charAt(x) == mStates[1];
-        }
-    }
-    private Vector<Pattern> mPatternList;
+    private final Histogram mRenderTime = Metrics.getDefault().histogram(Metrics.RENDER_TIME);
 
 
     public GOLEngine(Context context) {
-        setRules(8, 12);
-
-        ByteBuffer bb = ByteBuffer.allocateDirect(mSquareCoords.length * BYTES_PER_COORDS);
-        bb.order(ByteOrder.nativeOrder());
-        mVertexBuffer = bb.asFloatBuffer();
-        mVertexBuffer.put(mSquareCoords);
-        mVertexBuffer.position(0);
-
-        ByteBuffer dlb = ByteBuffer.allocateDirect(mIndices.length * BYTES_PER_INDEX);
-        dlb.order(ByteOrder.nativeOrder());
-        mIndexBuffer = dlb.asShortBuffer();
-        mIndexBuffer.put(mIndices);
-        mIndexBuffer.position(0);
-
-        ByteBuffer tbb = ByteBuffer.allocateDirect(mTextureCoords.length * BYTES_PER_COORDS);
-        tbb.order(ByteOrder.nativeOrder());
-        mTexelBuffer = tbb.asFloatBuffer();
-        mTexelBuffer.put(mTextureCoords);
-        mTexelBuffer.position(0);
-
-        Matrix.setIdentityM(mViewMatrix, 0);
-        Matrix.setIdentityM(mProjectionMatrix, 0);
-        Matrix.setIdentityM(mVPMatrix, 0);
-
         mGridWidth = MAX_TEXTURE_SIZE / mWorldScale;
         mGridHeight = MAX_TEXTURE_SIZE / mWorldScale;
 
@@ -212,108 +98,149 @@ public class GOLEngine implements GLSurfaceView.Renderer {
         mPatternList = new Vector<>();
         try
         {
-            {
-                InputStream iStream = context.getAssets().open("noise.patt");
-
-                BufferedReader r = new BufferedReader(new InputStreamReader(iStream));
-                Vector<String> stringList = new Vector<>();
-                for (String line; (line = r.readLine()) != null; ) {
-                    if(line.isEmpty())
-                        continue;
-                    stringList.add(line);
-                }
+            mPatternList.add(Pattern.read(context.getAssets().open("noise.patt")));
+            setNoise(mPatternList.get(0));
 
-                mPatternList.add(new Pattern(stringList));
-                setNoise(mPatternList.get(0));
-            }
-
-            {
-                InputStream iStream = context.getAssets().open("initialstate.patt");
-
-                BufferedReader r = new BufferedReader(new InputStreamReader(iStream));
-                Vector<String> stringList = new Vector<>();
-                for (String line; (line = r.readLine()) != null; ) {
-                    if(line.isEmpty())
-                        continue;
-                    stringList.add(line);
-                }
-
-                mPatternList.add(new Pattern(stringList));
-                setInitialState(mPatternList.get(1));
-            }
+            mPatternList.add(Pattern.read(context.getAssets().open("initialstate.patt")));
+            setInitialState(mPatternList.get(1));
         }
         catch (IOException ex) {
         }
 
-        mRendererVertexShader = loadShader(context.getAssets(), "renderer.vsh");
-        mRendererFragmentShader = loadShader(context.getAssets(), "renderer.fsh");
-        mSimulatorVertexShader = loadShader(context.getAssets(), "simulator.vsh");
-        mSimulatorFragmentShader = loadShader(context.getAssets(), "simulator.fsh");
+        mRenderer = new GridRenderer(mGL, mQuad, loadShader(context.getAssets(), "renderer.vsh"),
+                loadShader(context.getAssets(), "renderer.fsh"), loadShader(context.getAssets(), "renderer_packed.fsh"));
+        mSimulator = new GpuSimulator(mGL, mQuad, loadShader(context.getAssets(), "simulator.vsh"), loadShader(context.getAssets(), "simulator.fsh"));
     }
 
     public void onSurfaceCreated(GL10 unused, EGLConfig config) {
-        GLES20.glClearColor(0.1f, 0.1f, 0.1f, 1.0f);
-        GLES20.glDisable(GLES20.GL_DEPTH_TEST);
+        mGL.glClearColor(0.1f, 0.1f, 0.1f, 1.0f);
+        mGL.glDisable(GLApi.GL_DEPTH_TEST);
+        // patterns keep their real width now, rows of RGB texels are not 4 byte aligned
+        mGL.glPixelStorei(GLApi.GL_UNPACK_ALIGNMENT, 1);
 
-        mFrontTextureId = createTexture(mGridWidth, mGridHeight, mInitialState);
-        mBackTextureId = createTexture(mGridWidth, mGridHeight, null);
-
-        mRendererProgram = createShaderProgram(mRendererVertexShader, mRendererFragmentShader);
-        mSimulatorProgram = createShaderProgram(mSimulatorVertexShader, mSimulatorFragmentShader);
-
-        mFrameBufferId = createFrameBuffer();
-        mRenderBufferId = createRenderBuffer();
+        mSimulator.create(mGridWidth, mGridHeight, mInitialState);
+        mRenderer.create();
+        mFrameTexture = GLResources.createTexture(mGL, mGridWidth / CellPacking.CELLS_PER_BYTE, mGridHeight, GLApi.GL_LUMINANCE, null);
+        mFrameSequence = -1;
+        mShowFrame = false;
 
         checkGLError("onSurfaceCreated");
     }
 
     public void onDrawFrame(GL10 unused)
     {
-        render();
+        long start = System.nanoTime();
+        uploadFrame();
+        mRenderer.draw(mShowFrame ? mFrameTexture : mSimulator.getFrontTexture(), mShowFrame, mGridWidth, mTransform.getMatrix(mMatrix));
+        mRenderTime.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Creates the CPU engine and scheduler that simulate off the GL thread, seeded with the same
+     * patterns. Once created, every drawn frame shows the newest generation it published.
+     */
+    public SimulationScheduler createScheduler()
+    {
+        mEngine = new ParallelBitEngine(mGridWidth, mGridHeight);
+        if (mPatternList.size() > 1) {
+            mEngine.setNoise(mPatternList.get(0));
+            mEngine.setInitialState(mPatternList.get(1));
+        }
+        mFrameBuffer = CellPacking.allocate(CellPacking.bitsSize(mGridWidth, mGridHeight));
+        mScheduler = new SimulationScheduler(mEngine);
+        return mScheduler;
+    }
+
+    /** Stops the worker threads of the CPU engine, call once its scheduler has stopped. */
+    public void shutdownEngine()
+    {
+        if (mEngine != null) {
+            mEngine.shutdown();
+        }
+    }
+
+    private void uploadFrame()
+    {
+        if (mScheduler == null) {
+            return;
+        }
+        SimulationScheduler.Frame frame = mScheduler.acquireFrame();
+        if (frame == null) {
+            return;
+        }
+        mFrame = frame.getGrid();
+        DirtyRegion changed = frame.getChanged();
+        mGL.glBindTexture(GLApi.GL_TEXTURE_2D, mFrameTexture);
+        if (frame.getSequence() == mFrameSequence + 1 && changed.getArea() < (long) mGridWidth * mGridHeight / 2) {
+            // edits between generations, whole words of the changed rectangles are enough
+            int texelsPerWord = BitGrid.WORD_BITS / CellPacking.CELLS_PER_BYTE;
+            for (int i = 0; i < changed.getCount(); ++i) {
+                int word = changed.getX(i) / BitGrid.WORD_BITS;
+                int words = (changed.getX(i) + changed.getWidth(i) + BitGrid.WORD_BITS - 1) / BitGrid.WORD_BITS - word;
+                CellPacking.packBits(mFrame, word, changed.getY(i), words, changed.getHeight(i), mFrameBuffer);
+                mGL.glTexSubImage2D(GLApi.GL_TEXTURE_2D, 0, word * texelsPerWord, changed.getY(i), words * texelsPerWord, changed.getHeight(i), GLApi.GL_LUMINANCE, GLApi.GL_UNSIGNED_BYTE, mFrameBuffer);
+            }
+        } else {
+            CellPacking.packBits(mFrame, mFrameBuffer);
+            mGL.glTexSubImage2D(GLApi.GL_TEXTURE_2D, 0, 0, 0, mGridWidth / CellPacking.CELLS_PER_BYTE, mGridHeight, GLApi.GL_LUMINANCE, GLApi.GL_UNSIGNED_BYTE, mFrameBuffer);
+        }
+        mGL.glBindTexture(GLApi.GL_TEXTURE_2D, 0);
+        mFrameSequence = frame.getSequence();
+        mShowFrame = true;
+    }
+
+    /**
+     * The simulator textures are render targets and have to stay RGB, so the GPU only continues from
+     * a shown frame once it is asked to simulate, not on every frame.
+     */
+    private void uploadShownFrame()
+    {
+        if (!mShowFrame) {
+            return;
+        }
+        if (mSimulatorUpload == null) {
+            mSimulatorUpload = CellPacking.allocate(CellPacking.rgbSize(mGridWidth, mGridHeight));
+        }
+        CellPacking.packRgb(mFrame, mSimulatorUpload);
+        mGL.glBindTexture(GLApi.GL_TEXTURE_2D, mSimulator.getFrontTexture());
+        mGL.glTexSubImage2D(GLApi.GL_TEXTURE_2D, 0, 0, 0, mGridWidth, mGridHeight, GLApi.GL_RGB, GLApi.GL_UNSIGNED_BYTE, mSimulatorUpload);
+        mGL.glBindTexture(GLApi.GL_TEXTURE_2D, 0);
+        mShowFrame = false;
     }
 
     public void onSurfaceChanged(GL10 unused, int width, int height)
     {
         mWidth  = width;
         mHeight =  height;
-        mRatio = (float) mWidth / mHeight;
 
-        GLES20.glViewport(0, 0, mWidth, mHeight);
-        Matrix.orthoM(mProjectionMatrix, 0, -mModelSpaceHalfSize * mRatio, mModelSpaceHalfSize * mRatio, -mModelSpaceHalfSize, mModelSpaceHalfSize, -1, 1);
+        mGL.glViewport(0, 0, mWidth, mHeight);
+        mTransform.setViewport(mWidth, mHeight, mModelSpaceHalfSize);
 
-        updateModelViewProjection();
         checkGLError("onSurfaceChanged");
     }
 
-    public PointF map(PointF screenSpacePoint)
+    /** Maps a screen point to model space into result, which is returned for convenience. */
+    public PointF map(float screenX, float screenY, PointF result)
     {
-        float[] normalizedScreenSpacePoint = new float[4];
-        normalizedScreenSpacePoint[0] = 2.0f * screenSpacePoint.x / mWidth - 1.0f;
-        normalizedScreenSpacePoint[1] = -2.0f * screenSpacePoint.y / mHeight + 1.0f;
-        normalizedScreenSpacePoint[3] = 1.0f;
-
-        float[] mvpInv = new float[16];
-        Matrix.invertM(mvpInv, 0, mVPMatrix, 0);
-
-        float modelSpacePoint[] = new float[4];
-        Matrix.multiplyMV(modelSpacePoint, 0, mvpInv, 0, normalizedScreenSpacePoint, 0);
-        return new PointF(modelSpacePoint[0], modelSpacePoint[1]);
+        mTransform.map(screenX, screenY, mMapped);
+        result.set(mMapped[0], mMapped[1]);
+        return result;
     }
 
-    public void pan(PointF delta) {
-        Matrix.translateM(mViewMatrix, 0, delta.x, delta.y, 0.0f);
-        updateModelViewProjection();
+    public void pan(float dx, float dy) {
+        mTransform.pan(dx, dy);
     }
 
     public void scale(float scale, PointF focusPoint) {
-        Matrix.translateM(mViewMatrix, 0, mViewMatrix, 0, focusPoint.x, focusPoint.y, 0.0f);
-        Matrix.scaleM(mViewMatrix, 0, mViewMatrix, 0, scale, scale, 1.0f);
-        Matrix.translateM(mViewMatrix, 0, mViewMatrix, 0, -focusPoint.x, -focusPoint.y, 0.0f);
-        updateModelViewProjection();
+        mTransform.scale(scale, focusPoint.x, focusPoint.y);
     }
 
+    /** The shown CPU frame if there is one, that needs no readback, otherwise reads the simulator texture. */
     public State getState()
     {
+        if (mShowFrame) {
+            return mFrame.toState();
+        }
         State state = new State();
         state.width = mGridWidth;
         state.height = mGridHeight;
@@ -331,23 +258,12 @@ public class GOLEngine implements GLSurfaceView.Renderer {
 
     public void setRules(int deadRule, int liveRule)
     {
-        int bitCount = 9; // 0, 1 .. 8 living neighbour
-        int currentState = 0;
-        int currentRule = deadRule;
-        for(int ruleIdx = 0; ruleIdx < 2; ++ruleIdx) {
-            for (int bitIdx = 0; bitIdx < bitCount; ++bitIdx) {
-                mDecideData[currentState * bitCount + bitIdx] = (currentRule >> bitIdx) & 1;
-            }
-            currentRule = liveRule;
-            ++currentState;
-        }
+        mSimulator.setRules(deadRule, liveRule);
     }
 
     public void setInitialState(Bitmap bitmap)
     {
-        int size = mGridWidth * mGridHeight * CHANNELS_PER_PIXEL;
-        byte initialData[] = new byte[size];
-        Arrays.fill( initialData, (byte)0 );
+        ByteBuffer initialState = CellPacking.allocate(CellPacking.rgbSize(mGridWidth, mGridHeight));
 
         int wX = bitmap.getWidth();
         int wY = bitmap.getHeight();
@@ -357,164 +273,98 @@ public class GOLEngine implements GLSurfaceView.Renderer {
             for (int y = 0; y < wY; ++y) {
                 if(Color.red(bitmap.getPixel(x, wY - 1 - y)) == 255)
                 {
-                    int offset = (sX + x) * CHANNELS_PER_PIXEL + (sY + y) * mGridWidth * CHANNELS_PER_PIXEL;
-                    for(int i = 0; i < CHANNELS_PER_PIXEL; ++i)
-                    {
-                        initialData[offset + i] = (byte)255;
-                    }
+                    setAlive(initialState, sX + x + (sY + y) * mGridWidth);
                 }
             }
         }
-
-        mInitialState = ByteBuffer.allocateDirect(size);
-        mInitialState.order(ByteOrder.nativeOrder());
-        mInitialState.put(initialData);
-        mInitialState.position(0);
+        mInitialState = initialState;
     }
 
     public void reset()
     {
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mFrontTextureId);
-        GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, mGridWidth, mGridHeight, GLES20.GL_RGB, GLES20.GL_UNSIGNED_BYTE, mInitialState);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+        mShowFrame = false;
+        mGL.glBindTexture(GLApi.GL_TEXTURE_2D, mSimulator.getFrontTexture());
+        mGL.glTexSubImage2D(GLApi.GL_TEXTURE_2D, 0, 0, 0, mGridWidth, mGridHeight, GLApi.GL_RGB, GLApi.GL_UNSIGNED_BYTE, mInitialState);
+        mGL.glBindTexture(GLApi.GL_TEXTURE_2D, 0);
+    }
+
+    /** Seeds the generator addNoise() places its stamps with, so runs with the same seed match. */
+    public void setNoiseSeed(long seed)
+    {
+        mRandom.setSeed(seed);
     }
 
     public void addNoise()
     {
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mFrontTextureId);
+        uploadShownFrame();
+        mGL.glBindTexture(GLApi.GL_TEXTURE_2D, mSimulator.getFrontTexture());
         for (int c = 0; c < mSeedCount; ++c)
         {
-            int x = (int)(Math.random() * mGridWidth - mNoiseWidth);
-            int y = (int)(Math.random() * mGridHeight - mNoiseHeight);
-            GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, x, y, mNoiseWidth, mNoiseHeight, GLES20.GL_RGB, GLES20.GL_UNSIGNED_BYTE, mNoiseBuffer);
+            // stamps stay inside the texture, glTexSubImage2D does not wrap
+            int x = mRandom.nextInt(Math.max(1, mGridWidth - mNoiseWidth + 1));
+            int y = mRandom.nextInt(Math.max(1, mGridHeight - mNoiseHeight + 1));
+            mGL.glTexSubImage2D(GLApi.GL_TEXTURE_2D, 0, x, y, mNoiseWidth, mNoiseHeight, GLApi.GL_RGB, GLApi.GL_UNSIGNED_BYTE, mNoiseBuffer);
         }
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+        mGL.glBindTexture(GLApi.GL_TEXTURE_2D, 0);
     }
 
     public void simulate()
     {
-        swapTextures();
-
-        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFrameBufferId);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mBackTextureId);
-        GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, mRenderBufferId);
-
-        GLES20.glRenderbufferStorage(GLES20.GL_RENDERBUFFER, GLES20.GL_DEPTH_COMPONENT16, mGridWidth, mGridHeight);
-        GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0, GLES20.GL_TEXTURE_2D, mFrontTextureId, 0);
-        GLES20.glFramebufferRenderbuffer(GLES20.GL_FRAMEBUFFER, GLES20.GL_DEPTH_ATTACHMENT, GLES20.GL_RENDERBUFFER, mRenderBufferId);
-        checkFramebufferStatus();
-
-        GLES20.glViewport(0, 0, mGridWidth, mGridHeight);
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
-        GLES20.glUseProgram(mSimulatorProgram);
-
-        int positionHandle = GLES20.glGetAttribLocation(mSimulatorProgram, "aPosition");
-        GLES20.glEnableVertexAttribArray(positionHandle);
-        GLES20.glVertexAttribPointer(positionHandle, COORDS_PER_VERTEX, GLES20.GL_FLOAT, false, mVertexStride, mVertexBuffer);
-
-        int textureSamplerHandle = GLES20.glGetUniformLocation(mSimulatorProgram, "uTexture");
-        GLES20.glUniform1i(textureSamplerHandle, 0);
-
-        int scaleHandle = GLES20.glGetUniformLocation(mSimulatorProgram, "uScale");
-        GLES20.glUniform2f(scaleHandle, mGridWidth, mGridHeight);
-
-        int decideDataHandle = GLES20.glGetUniformLocation(mSimulatorProgram, "uDecideData");
-        GLES20.glUniform1iv(decideDataHandle, mDecideData.length, mDecideData, 0);
-
-        GLES20.glDrawElements(GLES20.GL_TRIANGLES, mIndices.length, GLES20.GL_UNSIGNED_SHORT, mIndexBuffer);
+        simulate(1);
+    }
 
-        GLES20.glDisableVertexAttribArray(positionHandle);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
-        GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, 0);
-        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
-        GLES20.glViewport(0, 0, mWidth, mHeight);
+    /** Runs the given number of generations in one go, without a round trip per generation. */
+    public void simulate(int generations)
+    {
+        uploadShownFrame();
+        mSimulator.simulate(generations);
+        mGL.glViewport(0, 0, mWidth, mHeight);
     }
 
     public void setInitialState(Pattern pattern) {
-        int size = mGridWidth * mGridHeight * CHANNELS_PER_PIXEL;
-        byte initialData[] = new byte[size];
-        Arrays.fill(initialData, (byte) 0);
+        ByteBuffer initialState = CellPacking.allocate(CellPacking.rgbSize(mGridWidth, mGridHeight));
 
         int wX = pattern.getWidth();
         int wY = pattern.getHeight();
         int sX = (mGridWidth / 2) - (wX / 2);
         int sY = (mGridHeight / 2) - (wY / 2);
-        for (int x = 0; x < wX; ++x) {
-            for (int y = 0; y < wY; ++y) {
+        for (int x = Math.max(0, -sX); x < wX && sX + x < mGridWidth; ++x) {
+            for (int y = Math.max(0, -sY); y < wY && sY + y < mGridHeight; ++y) {
                 if (pattern.isAlive(x, pattern.getHeight() - y - 1)) {
-                    int offset = (sX + x) * CHANNELS_PER_PIXEL + (sY + y) * mGridWidth * CHANNELS_PER_PIXEL;
-                    for (int i = 0; i < CHANNELS_PER_PIXEL; ++i) {
-                        initialData[offset + i] = (byte) 255;
-                    }
+                    setAlive(initialState, sX + x + (sY + y) * mGridWidth);
                 }
             }
         }
-        mInitialState = ByteBuffer.allocateDirect(size);
-        mInitialState.order(ByteOrder.nativeOrder());
-        mInitialState.put(initialData);
-        mInitialState.position(0);
+        mInitialState = initialState;
     }
 
     private void setNoise(Pattern pattern) {
         mNoiseWidth = pattern.getWidth();
         mNoiseHeight = pattern.getHeight();
-        int size = mNoiseWidth * mNoiseHeight * CHANNELS_PER_PIXEL;
-        byte noiseData[] = new byte[size];
-        Arrays.fill(noiseData, (byte) 0);
-
+        ByteBuffer noise = CellPacking.allocate(CellPacking.rgbSize(mNoiseWidth, mNoiseHeight));
         for (int y = 0; y < mNoiseHeight; ++y) {
             for (int x = 0; x < mNoiseWidth; ++x) {
                 if (pattern.isAlive(x, mNoiseHeight - 1 - y)) {
-                    int offset = x * CHANNELS_PER_PIXEL + (y * mNoiseWidth * CHANNELS_PER_PIXEL);
-                    for (int i = 0; i < CHANNELS_PER_PIXEL; ++i) {
-                        noiseData[offset + i] = (byte) 255;
-                    }
+                    setAlive(noise, x + y * mNoiseWidth);
                 }
             }
         }
-        mNoiseBuffer = ByteBuffer.allocateDirect(size);
-        mNoiseBuffer.order(ByteOrder.nativeOrder());
-        mNoiseBuffer.put(noiseData);
-        mNoiseBuffer.position(0);
+        mNoiseBuffer = noise;
     }
 
-    private void render()
+    // direct buffers start zeroed, only the alive cells are written
+    private static void setAlive(ByteBuffer cells, int cell)
     {
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
-
-        GLES20.glUseProgram(mRendererProgram);
-
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mFrontTextureId);
-
-        int mvpMatrixHandle = GLES20.glGetUniformLocation(mRendererProgram, "uMVPMatrix");
-        GLES20.glUniformMatrix4fv(mvpMatrixHandle, 1, false, mVPMatrix, 0);
-
-        int texelHandle = GLES20.glGetAttribLocation(mRendererProgram, "aTexel");
-        GLES20.glEnableVertexAttribArray ( texelHandle );
-        GLES20.glVertexAttribPointer(texelHandle, COORDS_PER_TEXEL, GLES20.GL_FLOAT, false, 0, mTexelBuffer);
-
-        int positionHandle = GLES20.glGetAttribLocation(mRendererProgram, "aPosition");
-        GLES20.glEnableVertexAttribArray(positionHandle);
-        GLES20.glVertexAttribPointer(positionHandle, COORDS_PER_VERTEX, GLES20.GL_FLOAT, false, mVertexStride, mVertexBuffer);
-
-        int textureSamplerHandle = GLES20.glGetUniformLocation(mRendererProgram, "uTexture");
-        GLES20.glUniform1i(textureSamplerHandle, 0);
-
-        GLES20.glDrawElements(GLES20.GL_TRIANGLES, mIndices.length, GLES20.GL_UNSIGNED_SHORT, mIndexBuffer);
-
-        GLES20.glDisableVertexAttribArray(positionHandle);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+        for (int i = 0; i < CellPacking.RGB_BYTES_PER_CELL; ++i) {
+            cells.put(cell * CellPacking.RGB_BYTES_PER_CELL + i, (byte) 255);
+        }
     }
 
     private ByteBuffer getGridState()
     {
-        int size = mGridWidth * mGridHeight * CHANNELS_PER_PIXEL;
-        ByteBuffer pixelBuffer = ByteBuffer.allocateDirect(size);
-        pixelBuffer.order(ByteOrder.nativeOrder());
-
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mFrontTextureId);
-        GLES20.glReadPixels(0, 0, mGridWidth, mGridHeight, GLES20.GL_RGB, GLES20.GL_UNSIGNED_BYTE, pixelBuffer);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+        uploadShownFrame();
+        ByteBuffer pixelBuffer = CellPacking.allocate(CellPacking.rgbSize(mGridWidth, mGridHeight));
+        mSimulator.readFront(GLApi.GL_RGB, pixelBuffer);
 
         pixelBuffer.position(0);
         checkGLError("getCurrentState");
@@ -525,98 +375,21 @@ public class GOLEngine implements GLSurfaceView.Renderer {
     {
         mNoiseWidth = bitmap.getWidth();
         mNoiseHeight = bitmap.getHeight();
-        int size = mNoiseWidth * mNoiseHeight * CHANNELS_PER_PIXEL;
-        byte noiseData[] = new byte[size];
-        Arrays.fill( noiseData, (byte)0 );
-
+        ByteBuffer noise = CellPacking.allocate(CellPacking.rgbSize(mNoiseWidth, mNoiseHeight));
         for (int x = 0; x < mNoiseWidth; ++x) {
             for (int y = 0; y < mNoiseHeight; ++y) {
                 if(Color.red(bitmap.getPixel(x, mNoiseHeight - 1 - y)) == 255)
                 {
-                    int offset = x * CHANNELS_PER_PIXEL + y * mNoiseWidth * CHANNELS_PER_PIXEL;
-                    for(int i = 0; i < CHANNELS_PER_PIXEL; ++i)
-                    {
-                        noiseData[offset + i] = (byte)255;
-                    }
-
+                    setAlive(noise, x + y * mNoiseWidth);
                 }
             }
         }
-
-        mNoiseBuffer = ByteBuffer.allocateDirect(size);
-        mNoiseBuffer.order(ByteOrder.nativeOrder());
-        mNoiseBuffer.put(noiseData);
-        mNoiseBuffer.position(0);
-    }
-
-    private void updateModelViewProjection()
-    {
-        Matrix.multiplyMM(mVPMatrix, 0, mProjectionMatrix, 0, mViewMatrix, 0);
+        mNoiseBuffer = noise;
     }
 
-    private void swapTextures()
-    {
-        int temp = mFrontTextureId;
-        mFrontTextureId = mBackTextureId;
-        mBackTextureId = temp;
-    }
-
-    private static int createFrameBuffer()
-    {
-        int[] ids = new int[1];
-        GLES20.glGenFramebuffers(1, ids, 0);
-        checkGLError("createFrameBuffer");
-        return ids[0];
-    }
-
-    private static int createRenderBuffer()
-    {
-        int[] ids = new int[1];
-        GLES20.glGenRenderbuffers(1, ids, 0);
-        checkGLError("createRenderBuffer");
-        return ids[0];
-    }
-
-    private static int createTexture(int width, int height, @Nullable ByteBuffer buffer)
-    {
-        int[] textureIds = new int[1];
-        GLES20.glGenTextures(1, textureIds, 0);
-
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureIds[0]);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_REPEAT);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_REPEAT);
-        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGB, width, height, 0, GLES20.GL_RGB, GLES20.GL_UNSIGNED_BYTE, buffer);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
-
-        checkGLError("createTexture");
-        return textureIds[0];
-    }
-
-    private static int createShaderProgram(String vertexShader, String fragmentShader)
-    {
-        int programId = GLES20.glCreateProgram();
-        GLES20.glAttachShader(programId, createShader(GLES20.GL_VERTEX_SHADER, vertexShader));
-        GLES20.glAttachShader(programId, createShader(GLES20.GL_FRAGMENT_SHADER, fragmentShader));
-        GLES20.glLinkProgram(programId);
-        checkShaderLinkStatus(programId);
-        checkGLError("createShaderProgram");
-        return programId;
-    }
-
-    private static int createShader(int type, String shader){
-        int shaderId = GLES20.glCreateShader(type);
-        GLES20.glShaderSource(shaderId, shader);
-        GLES20.glCompileShader(shaderId);
-        checkShaderCompileStatus(shaderId);
-        checkGLError("loadShader");
-        return shaderId;
-    }
-
-    private static void checkGLError(String function) {
-        int error = GLES20.glGetError();
-        if (error != GLES20.GL_NO_ERROR) {
+    private void checkGLError(String function) {
+        int error = mGL.glGetError();
+        if (error != GLApi.GL_NO_ERROR) {
             Log.e("GOLEngine", "OpenGL Error 0x" + Integer.toHexString(error) + " in function " + function);
         }
     }
@@ -637,58 +410,4 @@ public class GOLEngine implements GLSurfaceView.Renderer {
         }
         return codeBuilder.toString();
     }
-
-    private static boolean checkIfContextSupportsExtension(String extension)
-    {
-        String extensions = " " + GLES20.glGetString(GLES20.GL_EXTENSIONS) + " ";
-        return extensions.indexOf(" " + extension + " ") >= 0;
-    }
-
-    private static void checkShaderCompileStatus(int shaderId)
-    {
-        int[] status = new int[1];
-        GLES20.glGetShaderiv(shaderId, GLES20.GL_COMPILE_STATUS, status, 0);
-        checkGLError("checkShaderCompileStatus");
-        if(status[0] == GLES20.GL_FALSE)
-        {
-            String shaderInfo = GLES20.glGetShaderInfoLog(shaderId);
-            Log.e("ShaderCompile", "Shader with id " + shaderId + " not compiled. Status: " + status[0] + ", info: " + shaderInfo);
-        }
-    }
-
-    private static void checkShaderLinkStatus(int shaderProgramId)
-    {
-        int[] status = new int[1];
-        GLES20.glGetProgramiv(shaderProgramId, GLES20.GL_LINK_STATUS, status, 0);
-        checkGLError("checkShaderLinkStatus");
-        if (status[0] <= 0) {
-            Log.d("ShaderLink","Shader program with id " + shaderProgramId + " not linked. Status: " + status[0]);
-        }
-    }
-
-    private static void checkFramebufferStatus()
-    {
-        int status = GLES20.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
-        if(status != GLES20.GL_FRAMEBUFFER_COMPLETE)
-        {
-            String statusMsg;
-            switch (status) {
-                case GLES20.GL_FRAMEBUFFER_INCOMPLETE_ATTACHMENT:
-                    statusMsg = "ATTACHMENT: Not all framebuffer attachment points are framebuffer attachment complete.";
-                    break;
-                case GLES20.GL_FRAMEBUFFER_INCOMPLETE_DIMENSIONS:
-                    statusMsg = "DIMENSIONS: Not all attached images have the same width and height";
-                    break;
-                case GLES20.GL_FRAMEBUFFER_INCOMPLETE_MISSING_ATTACHMENT:
-                    statusMsg = "MISSING_ATTACHMENT: No images are attached to the framebuffer.";
-                    break;
-                case GLES20.GL_FRAMEBUFFER_UNSUPPORTED:
-                    statusMsg = "UNSUPPORTED: The combination of internal formats of the attached images violates an implementation-dependent set of restrictions.";
-                    break;
-                default:
-                    statusMsg = "Unknown error";
-            }
-            Log.e("FramebufferStatus", "is not complete. status: 0x" + Integer.toHexString(status) + " - " + statusMsg);
-        }
-    }
 }
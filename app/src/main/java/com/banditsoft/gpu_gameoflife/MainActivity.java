@@ -2,12 +2,21 @@ package com.banditsoft.gpu_gameoflife;
 
 import android.app.Activity;
 import android.os.Bundle;
-import android.os.Handler;
+import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.SeekBar;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
 public class MainActivity extends Activity {
     private GLSurface mGLSurface;
     private EditText mDeadRuleEditText;
@@ -15,18 +24,14 @@ public class MainActivity extends Activity {
     private Button mStartStopButton;
 
     private long mPeriod = 100;
-    private int mPeriodMinimum = 50;
     private int mPeriodMaximum = 1000;
     private boolean mIsTimerRunning = false;
 
-    public Handler mSimulationHandler = new Handler();
-    private Runnable mRequestSimulationRunnable = new Runnable() {
-        @Override
-        public void run() {
-            mGLSurface.requestSimulation();
-            mSimulationHandler.postDelayed(mRequestSimulationRunnable, mPeriod);
-        }
-    };
+    private static final long METRICS_PERIOD_SECONDS = 10;
+    private static final long CHECKPOINT_PERIOD_SECONDS = 60;
+    private static final int KEPT_JOURNALS = 5;
+    private FileWriter mMetricsWriter;
+    private MetricsReporter mMetricsReporter;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -49,12 +54,12 @@ public class MainActivity extends Activity {
                 new View.OnClickListener() {
                     public void onClick(View v) {
                         if(mIsTimerRunning) {
-                            mSimulationHandler.removeCallbacks(mRequestSimulationRunnable);
+                            mGLSurface.stopSimulation();
                             mStartStopButton.setText("Start");
                             mIsTimerRunning = false;
                         } else {
                             mGLSurface.setRules(Integer.parseInt(mDeadRuleEditText.getText().toString()), Integer.parseInt(mLiveRuleEditText.getText().toString()));
-                            mSimulationHandler.postDelayed(mRequestSimulationRunnable, mPeriod);
+                            mGLSurface.startSimulation(getRate());
                             mStartStopButton.setText("Stop");
                             mIsTimerRunning = true;
                         }
@@ -73,6 +78,64 @@ public class MainActivity extends Activity {
                         mGLSurface.requestNoise();
                     }
                 });
+
+        mGLSurface.startCheckpoints(new File(getFilesDir(), "checkpoint.gols"), CHECKPOINT_PERIOD_SECONDS, TimeUnit.SECONDS);
+        mGLSurface.startJournal(newJournal());
+
+        // metrics.jsonl grows for as long as the app runs, only debug builds profile themselves
+        if (BuildConfig.DEBUG) {
+            try {
+                mMetricsWriter = new FileWriter(new File(getFilesDir(), "metrics.jsonl"), true);
+                mMetricsReporter = new MetricsReporter(Metrics.getDefault(), mMetricsWriter);
+                mMetricsReporter.start(METRICS_PERIOD_SECONDS, TimeUnit.SECONDS);
+            } catch (IOException ex) {
+                Log.e("MainActivity", "Could not open the metrics file", ex);
+            }
+        }
+    }
+
+    /**
+     * A new file for this session's journal, so a relaunch or a rotation never overwrites the session
+     * before it. Only the newest KEPT_JOURNALS sessions are kept.
+     */
+    private File newJournal()
+    {
+        File directory = new File(getFilesDir(), "journals");
+        directory.mkdirs();
+        String[] names = directory.list();
+        if (names != null && names.length >= KEPT_JOURNALS) {
+            // the names sort by time
+            Arrays.sort(names);
+            for (int i = 0; i <= names.length - KEPT_JOURNALS; ++i) {
+                new File(directory, names[i]).delete();
+            }
+        }
+        String time = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS", Locale.US).format(new Date());
+        return new File(directory, "session-" + time + ".golj");
+    }
+
+    /** Generations per second for the slider period, a zero period runs as fast as possible. */
+    private float getRate()
+    {
+        return mPeriod > 0 ? 1000.0f / mPeriod : 0.0f;
+    }
+
+    @Override
+    protected void onDestroy()
+    {
+        super.onDestroy();
+        if (mMetricsReporter != null) {
+            try {
+                mMetricsReporter.close();
+                mMetricsWriter.close();
+            } catch (IOException ex) {
+                Log.e("MainActivity", "Could not write the last metrics", ex);
+            }
+        }
+        if(mGLSurface == null) {
+            return;
+        }
+        mGLSurface.shutdown();
     }
 
     @Override
@@ -99,11 +162,8 @@ public class MainActivity extends Activity {
             new SeekBar.OnSeekBarChangeListener() {
                 @Override
                 public void onProgressChanged(SeekBar seekBar, int progress, boolean b) {
-                    if (progress < mPeriodMinimum) {
-                        mPeriod = mPeriodMinimum;
-                        return;
-                    }
-                    mPeriod = seekBar.getProgress();
+                    mPeriod = progress;
+                    mGLSurface.setSimulationRate(getRate());
                 }
 
                 @Override
@@ -0,0 +1,41 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** HashLife from the app's initial pattern, one generation at a time and in 1024 generation jumps. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HashLifeBenchmark {
+    @Param({"256", "1024", "4096", "16384"})
+    public int size;
+
+    private HashLifeEngine mEngine;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        mEngine = new HashLifeEngine(size, size);
+        mEngine.setInitialState(Seeds.pattern(Seeds.INITIAL_STATE));
+    }
+
+    @Benchmark
+    public void simulate() {
+        mEngine.simulate();
+    }
+
+    @Benchmark
+    public void advance1024() {
+        mEngine.advance(1024);
+    }
+}
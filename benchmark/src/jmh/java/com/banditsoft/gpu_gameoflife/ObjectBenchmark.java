@@ -0,0 +1,50 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Splitting and naming the ash of the reference soup after it has mostly settled. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ObjectBenchmark {
+    @Param({"256", "1024"})
+    public int size;
+
+    private BitGrid mAsh;
+    private ObjectAnalyzer mAnalyzer;
+    private final ObjectAnalyzer.Listener mListener = new ObjectAnalyzer.Listener() {
+        public void onObject(ObjectClassifier.Classification classification, int x, int y, int width, int height, int population) {
+            mPopulation += population;
+        }
+    };
+    private long mPopulation;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BitEngine engine = new BitEngine(size, size);
+        engine.setActiveTracking(true);
+        Seeds.soup(engine.getGrid());
+        engine.invalidate();
+        for (int i = 0; i < 3000; ++i) {
+            engine.simulate();
+        }
+        mAsh = engine.getGrid();
+        mAnalyzer = new ObjectAnalyzer(Rule.parse("B3/S23"));
+        mAnalyzer.analyze(mAsh, mListener);
+    }
+
+    @Benchmark
+    public long analyze() {
+        return mAnalyzer.analyze(mAsh, mListener);
+    }
+}
@@ -0,0 +1,58 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** Parsing the reference seeds and stamping them into a fresh grid, plus addNoise. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatternBenchmark {
+    @Param({"256", "1024", "4096", "16384"})
+    public int size;
+
+    @Param({Seeds.INITIAL_STATE, Seeds.NOISE})
+    public String seed;
+
+    private byte[] mBytes;
+    private Pattern mPattern;
+    private BitEngine mEngine;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mBytes = Seeds.load(seed);
+        mPattern = Pattern.read(new ByteArrayInputStream(mBytes));
+        mEngine = new BitEngine(size, size);
+        mEngine.setNoise(Seeds.pattern(Seeds.NOISE));
+        // the same stamp positions in every run and fork
+        mEngine.setNoiseSeed(Seeds.NOISE_SEED);
+    }
+
+    @Benchmark
+    public Pattern parse() throws IOException {
+        return Pattern.read(new ByteArrayInputStream(mBytes));
+    }
+
+    @Benchmark
+    public BitEngine setInitialState() {
+        mEngine.setInitialState(mPattern);
+        return mEngine;
+    }
+
+    @Benchmark
+    public BitEngine addNoise() {
+        mEngine.addNoise();
+        return mEngine;
+    }
+}
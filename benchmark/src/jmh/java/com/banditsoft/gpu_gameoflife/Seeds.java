@@ -0,0 +1,49 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/** Reference seeds shared by the benchmarks, so runs on different machines start from the same cells. */
+final class Seeds {
+    static final String INITIAL_STATE = "initialstate.patt";
+    static final String NOISE = "noise.patt";
+    static final long SOUP_SEED = 20181122L;
+    static final long NOISE_SEED = 20170322L;
+
+    private Seeds() {
+    }
+
+    static byte[] load(String name) throws IOException {
+        InputStream stream = Seeds.class.getClassLoader().getResourceAsStream(name);
+        if (stream == null) {
+            throw new IOException("Missing benchmark seed " + name);
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = stream.read(buffer)) > 0) {
+                bytes.write(buffer, 0, count);
+            }
+            return bytes.toByteArray();
+        } finally {
+            stream.close();
+        }
+    }
+
+    static Pattern pattern(String name) throws IOException {
+        return Pattern.read(new ByteArrayInputStream(load(name)));
+    }
+
+    /** Fills the grid with a fixed soup of roughly 1/4 density. */
+    static void soup(BitGrid grid) {
+        Random random = new Random(SOUP_SEED);
+        long[] words = grid.getWords();
+        for (int i = 0; i < words.length; ++i) {
+            words[i] = random.nextLong() & random.nextLong();
+        }
+    }
+}
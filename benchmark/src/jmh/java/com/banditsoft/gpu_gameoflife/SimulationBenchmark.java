@@ -0,0 +1,61 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generations per second of the CPU engines. The cells counter reports cells per second.
+ *
+ * "soup" starts from a fixed random fill, "initialstate" from the app's initial pattern, which is
+ * where active tile tracking pays off. HashLifeBenchmark covers the quadtree engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SimulationBenchmark {
+    @Param({"256", "1024", "4096", "16384"})
+    public int size;
+
+    @Param({"bit", "parallel", "active"})
+    public String engine;
+
+    @Param({"soup", "initialstate"})
+    public String seed;
+
+    private BitEngine mEngine;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Cells {
+        public long cells;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mEngine = engine.equals("bit") ? new BitEngine(size, size) : new ParallelBitEngine(size, size);
+        mEngine.setActiveTracking(engine.equals("active"));
+        if (seed.equals("soup")) {
+            Seeds.soup(mEngine.getGrid());
+            mEngine.invalidate();
+        } else {
+            mEngine.setInitialState(Seeds.pattern(Seeds.INITIAL_STATE));
+        }
+    }
+
+    @Benchmark
+    public void simulate(Cells cells) {
+        mEngine.simulate();
+        cells.cells += (long) size * size;
+    }
+}
@@ -0,0 +1,64 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/** State through Java serialization, the path onSaveInstanceState takes. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StateBenchmark {
+    @Param({"256", "1024", "4096", "16384"})
+    public int size;
+
+    @Param({"soup", "initialstate"})
+    public String seed;
+
+    private com.banditsoft.gpu_gameoflife.State mState;
+    private byte[] mSerialized;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BitEngine engine = new BitEngine(size, size);
+        if (seed.equals("soup")) {
+            Seeds.soup(engine.getGrid());
+        } else {
+            engine.setInitialState(Seeds.pattern(Seeds.INITIAL_STATE));
+        }
+        mState = engine.getState();
+        mSerialized = serialize();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(mState);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(mSerialized));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Command line entry point running one simulation job without a device:
+ *
+ * gol-batch --pattern FILE --generations N --output DIR [--rule RULE] [--size WxH]
+ *           [--engine auto|bit|parallel|hashlife|sparse|ltl] [--snapshot-every N] [--stats-every N]
+ *           [--stop-on-cycle] [--census]
+ *
+ * The pattern is centered in the grid. With --stop-on-cycle the run ends as soon as the world repeats
+ * an earlier generation, static or oscillating, which the bit engines see from their step hashes.
+ * Snapshots go to DIR/generation-N.gols, one JSON line per stats interval to DIR/stats.jsonl and
+ * DIR/metrics.jsonl. --census adds the number of objects and their counts by name to every stats
+ * line.
+ */
+public class BatchRunner {
+    static final String USAGE = "usage: gol-batch --pattern FILE --generations N --output DIR [--rule RULE] [--size WxH]\n"
+            + "                 [--engine auto|bit|parallel|hashlife|sparse|ltl] [--snapshot-every N] [--stats-every N]\n"
+            + "                 [--stop-on-cycle] [--census]";
+
+    private File mPattern;
+    private String mRule;
+    private int mWidth = 1024;
+    private int mHeight = 1024;
+    private long mGenerations = -1;
+    private File mOutput;
+    private String mEngine = "auto";
+    private long mSnapshotEvery;
+    private long mStatsEvery = 1000;
+    private boolean mStopOnCycle;
+    private CycleDetector mCycleDetector;
+    private boolean mCensus;
+    private ObjectAnalyzer mAnalyzer;
+    private final Census mObjects = new Census();
+    private SnapshotPipeline mSnapshots;
+    private PrintStream mLog = System.out;
+
+    public static void main(String[] args) {
+        try {
+            parse(args).run();
+        } catch (IllegalArgumentException ex) {
+            System.err.println("gol-batch: " + ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException ex) {
+            System.err.println("gol-batch: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    static BatchRunner parse(String[] args) {
+        BatchRunner runner = new BatchRunner();
+        for (int i = 0; i < args.length; ++i) {
+            String option = args[i];
+            if (option.equals("--stop-on-cycle")) {
+                runner.mStopOnCycle = true;
+                continue;
+            }
+            if (option.equals("--census")) {
+                runner.mCensus = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--pattern":
+                    runner.mPattern = new File(value);
+                    break;
+                case "--rule":
+                    runner.mRule = value;
+                    break;
+                case "--size": {
+                    int x = value.indexOf('x');
+                    if (x < 0) {
+                        throw new IllegalArgumentException("Size must be WxH, got " + value);
+                    }
+                    runner.mWidth = number(value.substring(0, x), option);
+                    runner.mHeight = number(value.substring(x + 1), option);
+                    break;
+                }
+                case "--generations":
+                    runner.mGenerations = longNumber(value, option);
+                    break;
+                case "--output":
+                    runner.mOutput = new File(value);
+                    break;
+                case "--engine":
+                    runner.mEngine = value;
+                    break;
+                case "--snapshot-every":
+                    runner.mSnapshotEvery = longNumber(value, option);
+                    break;
+                case "--stats-every":
+                    runner.mStatsEvery = longNumber(value, option);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (runner.mPattern == null || runner.mGenerations < 0 || runner.mOutput == null) {
+            throw new IllegalArgumentException("--pattern, --generations and --output are required");
+        }
+        if (runner.mWidth <= 0 || runner.mHeight <= 0) {
+            throw new IllegalArgumentException("Grid size must be positive");
+        }
+        if (runner.mEngine.equals("bit") || runner.mEngine.equals("parallel")) {
+            runner.checkWholeWords();
+        }
+        return runner;
+    }
+
+    /** The bit engines pack a row into whole words. */
+    private void checkWholeWords() {
+        if (mWidth % BitGrid.WORD_BITS != 0) {
+            throw new IllegalArgumentException("The bit engines need a grid width that is a multiple of " + BitGrid.WORD_BITS);
+        }
+    }
+
+    /** Width of the grids written out, the world width rounded up to whole words of dead cells. */
+    private int getOutputWidth() {
+        return (mWidth + BitGrid.WORD_BITS - 1) / BitGrid.WORD_BITS * BitGrid.WORD_BITS;
+    }
+
+    private static int number(String value, String option) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid number '" + value + "' for " + option);
+        }
+    }
+
+    private static long longNumber(String value, String option) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid number '" + value + "' for " + option);
+        }
+    }
+
+    void setLog(PrintStream log) {
+        mLog = log;
+    }
+
+    public void run() throws IOException {
+        Pattern pattern;
+        InputStream in = new FileInputStream(mPattern);
+        try {
+            pattern = Pattern.read(in);
+        } finally {
+            in.close();
+        }
+        String ruleText = mRule != null ? mRule : pattern.getRule() != null ? pattern.getRule() : "B3/S23";
+        Rule rule = Rule.parse(ruleText);
+        SimulationEngine engine = createEngine(rule, pattern);
+        try {
+            run(engine, rule);
+        } finally {
+            // a parallel engine stops the workers of its pool only when told to
+            if (engine instanceof ParallelBitEngine) {
+                ((ParallelBitEngine) engine).shutdown();
+            }
+        }
+    }
+
+    private void run(SimulationEngine engine, Rule rule) throws IOException {
+        if (mStopOnCycle) {
+            if (!(engine instanceof BitEngine)) {
+                throw new IllegalArgumentException("--stop-on-cycle needs the bit or parallel engine");
+            }
+            mCycleDetector = new CycleDetector();
+            mCycleDetector.update(0, ((BitEngine) engine).getHash());
+        }
+
+        if (mCensus) {
+            mAnalyzer = new ObjectAnalyzer(rule);
+        }
+
+        if (!mOutput.isDirectory() && !mOutput.mkdirs()) {
+            throw new IOException("Cannot create " + mOutput);
+        }
+        Writer stats = new FileWriter(new File(mOutput, "stats.jsonl"));
+        Writer metricsOut = new FileWriter(new File(mOutput, "metrics.jsonl"));
+        // snapshots are encoded and written in the background while the next generations run
+        mSnapshots = new SnapshotPipeline(getOutputWidth(), mHeight, SnapshotPipeline.directory(mOutput));
+        try {
+            Metrics metrics = Metrics.getDefault();
+            MetricsReporter reporter = new MetricsReporter(metrics, metricsOut);
+            Histogram stepTime = metrics.histogram(Metrics.STEP_TIME);
+            long cellsPerGeneration = (long) mWidth * mHeight;
+
+            mLog.println("Running " + rule + " on " + mWidth + "x" + mHeight + " with " + engine.getClass().getSimpleName());
+            long start = System.nanoTime();
+            long generation = 0;
+            writeOutputs(engine, generation, false, start, stats, reporter);
+            boolean cycling = false;
+            while (generation < mGenerations && !cycling) {
+                long next = Math.min(mGenerations, nextEvent(generation));
+                if (engine instanceof HashLifeEngine) {
+                    long stepStart = System.nanoTime();
+                    ((HashLifeEngine) engine).advance(next - generation);
+                    stepTime.record((System.nanoTime() - stepStart) / (next - generation));
+                } else {
+                    for (long g = generation; g < next; ++g) {
+                        long stepStart = System.nanoTime();
+                        engine.simulate();
+                        stepTime.record(System.nanoTime() - stepStart);
+                        if (mCycleDetector != null && mCycleDetector.update(g + 1, ((BitEngine) engine).getHash())) {
+                            next = g + 1;
+                            cycling = true;
+                            mLog.println("Period " + mCycleDetector.getPeriod() + " cycle from generation "
+                                    + mCycleDetector.getCycleStart() + ", stopped at " + next);
+                            break;
+                        }
+                    }
+                }
+                metrics.counter(Metrics.GENERATIONS).addAndGet(next - generation);
+                metrics.counter(Metrics.CELLS).addAndGet((next - generation) * cellsPerGeneration);
+                generation = next;
+                writeOutputs(engine, generation, cycling, start, stats, reporter);
+            }
+        } finally {
+            try {
+                mSnapshots.close();
+            } finally {
+                stats.close();
+                metricsOut.close();
+            }
+        }
+    }
+
+    /** The first generation after the given one where a snapshot or stats line is due. */
+    private long nextEvent(long generation) {
+        long next = Long.MAX_VALUE;
+        if (mSnapshotEvery > 0) {
+            next = Math.min(next, (generation / mSnapshotEvery + 1) * mSnapshotEvery);
+        }
+        if (mStatsEvery > 0) {
+            next = Math.min(next, (generation / mStatsEvery + 1) * mStatsEvery);
+        }
+        return next;
+    }
+
+    private void writeOutputs(SimulationEngine engine, long generation, boolean stopped, long start, Writer stats, MetricsReporter reporter) throws IOException {
+        boolean last = stopped || generation == mGenerations;
+        boolean snapshot = last || (mSnapshotEvery > 0 && generation % mSnapshotEvery == 0);
+        boolean statsDue = last || (mStatsEvery > 0 && generation % mStatsEvery == 0);
+        if (!snapshot && !statsDue) {
+            return;
+        }
+        BitGrid grid = engine instanceof BitEngine ? ((BitEngine) engine).getGrid() : toGrid(engine.getState());
+        if (snapshot) {
+            try {
+                mSnapshots.submit(grid, generation);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the snapshot writer");
+            }
+        }
+        if (statsDue) {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            // the bit engines gather these while stepping, no extra pass over the grid for them
+            GenerationStats generationStats = engine instanceof BitEngine && generation > 0 ? ((BitEngine) engine).getStats() : null;
+            long population = generationStats != null ? generationStats.getPopulation() : grid.population();
+            StringBuilder line = new StringBuilder(String.format(Locale.US, "{\"generation\":%d,\"population\":%d,\"elapsed_ms\":%d,\"generations_per_second\":%.1f",
+                    generation, population, Math.round(seconds * 1000), seconds > 0 ? generation / seconds : 0.0));
+            if (generationStats != null) {
+                line.append(",\"births\":").append(generationStats.getBirths())
+                        .append(",\"deaths\":").append(generationStats.getDeaths());
+                if (!generationStats.isEmpty()) {
+                    line.append(",\"box\":[").append(generationStats.getMinX()).append(',').append(generationStats.getMinY())
+                            .append(',').append(generationStats.getMaxX()).append(',').append(generationStats.getMaxY()).append(']');
+                }
+            }
+            if (mCycleDetector != null && mCycleDetector.isCycling()) {
+                line.append(",\"period\":").append(mCycleDetector.getPeriod());
+            }
+            if (mAnalyzer != null) {
+                appendCensus(grid, line);
+            }
+            line.append('}');
+            stats.write(line.toString());
+            stats.write('\n');
+            stats.flush();
+            reporter.report();
+            mLog.println(line);
+        }
+    }
+
+    /** The state in a grid of the output width, the columns past the state's width stay dead. */
+    private BitGrid toGrid(State state) {
+        if (state.width == getOutputWidth()) {
+            return BitGrid.fromState(state);
+        }
+        BitGrid grid = new BitGrid(getOutputWidth(), state.height);
+        for (int y = 0; y < state.height; ++y) {
+            for (int x = 0; x < state.width; ++x) {
+                if (state.grid.get((y * state.width + x) * BitGrid.CHANNELS_PER_PIXEL) != 0) {
+                    grid.set(x, y, true);
+                }
+            }
+        }
+        return grid;
+    }
+
+    private void appendCensus(BitGrid grid, StringBuilder line) {
+        mObjects.clear();
+        mAnalyzer.analyze(grid, new ObjectAnalyzer.Listener() {
+            public void onObject(ObjectClassifier.Classification classification, int x, int y, int width, int height, int population) {
+                mObjects.add(classification.getName());
+            }
+        });
+        line.append(",\"objects\":").append(mObjects.getObjects()).append(",\"census\":{");
+        boolean first = true;
+        for (String name : mObjects.getNames()) {
+            if (!first) {
+                line.append(',');
+            }
+            first = false;
+            line.append('"').append(name).append("\":").append(mObjects.getCount(name));
+        }
+        line.append('}');
+    }
+
+    /**
+     * "auto" picks the parallel bit engine with active tiles for two state radius 1 rules on widths
+     * of whole words, which is the fastest dense CPU engine, and the Larger than Life engine for
+     * everything else.
+     */
+    private SimulationEngine createEngine(Rule rule, Pattern pattern) {
+        String engine = mEngine;
+        if (engine.equals("auto")) {
+            engine = rule.isOuterTotalistic() && mWidth % BitGrid.WORD_BITS == 0 ? "parallel" : "ltl";
+        }
+        switch (engine) {
+            case "bit":
+            case "parallel": {
+                BitEngine bitEngine = engine.equals("bit") ? new BitEngine(mWidth, mHeight) : new ParallelBitEngine(mWidth, mHeight);
+                bitEngine.setActiveTracking(true);
+                bitEngine.setStatsTracking(true);
+                bitEngine.setRule(rule);
+                bitEngine.setInitialState(pattern);
+                return bitEngine;
+            }
+            case "hashlife": {
+                HashLifeEngine hashLife = new HashLifeEngine(getOutputWidth(), mHeight);
+                hashLife.setRule(rule);
+                hashLife.setInitialState(pattern);
+                return hashLife;
+            }
+            case "sparse": {
+                SparseWorldEngine sparse = new SparseWorldEngine(getOutputWidth(), mHeight);
+                sparse.setRule(rule);
+                sparse.setInitialState(pattern);
+                return sparse;
+            }
+            case "ltl": {
+                LargerThanLifeEngine ltl = new LargerThanLifeEngine(mWidth, mHeight);
+                ltl.setRule(rule);
+                ltl.setInitialState(pattern);
+                return ltl;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown engine " + mEngine);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * Command line entry point running a recorded session again without a device:
+ *
+ * gol-replay --journal FILE [--engine bit|parallel] [--snapshot FILE]
+ *
+ * Every generation of the journal runs as fast as the engine steps, with the resets, noise, rule
+ * changes and cell edits applied where they were recorded. The final generation, population and
+ * hash are printed so two replays, or a replay and the device, can be compared; --snapshot saves
+ * the final generation.
+ */
+public class ReplayRunner {
+    static final String USAGE = "usage: gol-replay --journal FILE [--engine bit|parallel] [--snapshot FILE]";
+
+    private File mJournal;
+    private String mEngine = "parallel";
+    private File mSnapshot;
+    private PrintStream mLog = System.out;
+
+    public static void main(String[] args) {
+        try {
+            parse(args).run();
+        } catch (IllegalArgumentException ex) {
+            System.err.println("gol-replay: " + ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException ex) {
+            System.err.println("gol-replay: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    static ReplayRunner parse(String[] args) {
+        ReplayRunner runner = new ReplayRunner();
+        for (int i = 0; i < args.length; ++i) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--journal":
+                    runner.mJournal = new File(value);
+                    break;
+                case "--engine":
+                    if (!value.equals("bit") && !value.equals("parallel")) {
+                        throw new IllegalArgumentException("Unknown engine " + value);
+                    }
+                    runner.mEngine = value;
+                    break;
+                case "--snapshot":
+                    runner.mSnapshot = new File(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (runner.mJournal == null) {
+            throw new IllegalArgumentException("--journal is required");
+        }
+        return runner;
+    }
+
+    void setLog(PrintStream log) {
+        mLog = log;
+    }
+
+    public void run() throws IOException {
+        Journal.Reader reader = Journal.Reader.open(mJournal);
+        BitEngine engine = null;
+        try {
+            int width = reader.getStart().getWidth();
+            int height = reader.getStart().getHeight();
+            engine = mEngine.equals("bit") ? new BitEngine(width, height) : new ParallelBitEngine(width, height);
+            Journal.prepare(reader, engine);
+
+            long start = System.nanoTime();
+            long generations = Journal.replay(reader, engine);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            mLog.println(String.format(Locale.US, "Replayed %d generations of %dx%d in %.2f s, %.0f generations/s",
+                    generations, width, height, seconds, seconds > 0 ? generations / seconds : 0.0));
+            mLog.println(String.format(Locale.US, "generation %d population %d hash %016x",
+                    generations, engine.getGrid().population(), engine.getHash()));
+            if (mSnapshot != null) {
+                Snapshot.save(mSnapshot, engine.getGrid(), generations);
+            }
+        } finally {
+            if (engine instanceof ParallelBitEngine) {
+                ((ParallelBitEngine) engine).shutdown();
+            }
+            reader.close();
+        }
+    }
+}
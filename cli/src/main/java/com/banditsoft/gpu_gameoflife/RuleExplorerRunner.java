@@ -0,0 +1,222 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Command line entry point sweeping rules over one seed:
+ *
+ * gol-rules [--pattern FILE | --soup-seed N [--soup-size N]] [--size WxH] [--rules RULE,RULE,...]
+ *           [--range FIRST:COUNT] [--generations N] [--explosion-density D] [--threads N] [--output FILE]
+ *
+ * The seed is the pattern centered in the grid, or a random square soup. Without --rules or --range
+ * all RuleExplorer.RULE_COUNT rules are run, numbered deadRule | liveRule << 9. One JSON line per rule
+ * goes to FILE or standard output as the rules finish.
+ */
+public class RuleExplorerRunner {
+    static final String USAGE = "usage: gol-rules [--pattern FILE | --soup-seed N [--soup-size N]] [--size WxH] [--rules RULE,RULE,...]\n"
+            + "                 [--range FIRST:COUNT] [--generations N] [--explosion-density D] [--threads N] [--output FILE]";
+
+    private File mPattern;
+    private long mSoupSeed;
+    private int mSoupSize = SoupSearch.DEFAULT_SOUP_SIZE;
+    private int mWidth = 256;
+    private int mHeight = 256;
+    private List<Rule> mRules;
+    private int mGenerations = RuleExplorer.DEFAULT_GENERATIONS;
+    private double mExplosionDensity = RuleExplorer.DEFAULT_EXPLOSION_DENSITY;
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+    private File mOutput;
+    private PrintStream mLog = System.out;
+
+    public static void main(String[] args) {
+        try {
+            parse(args).run();
+        } catch (IllegalArgumentException ex) {
+            System.err.println("gol-rules: " + ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException | InterruptedException ex) {
+            System.err.println("gol-rules: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    static RuleExplorerRunner parse(String[] args) {
+        RuleExplorerRunner runner = new RuleExplorerRunner();
+        for (int i = 0; i < args.length; ++i) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--pattern":
+                    runner.mPattern = new File(value);
+                    break;
+                case "--soup-seed":
+                    runner.mSoupSeed = number(value, option);
+                    break;
+                case "--soup-size":
+                    runner.mSoupSize = (int) number(value, option);
+                    break;
+                case "--size": {
+                    int x = value.indexOf('x');
+                    if (x < 0) {
+                        throw new IllegalArgumentException("Size must be WxH, got " + value);
+                    }
+                    runner.mWidth = (int) number(value.substring(0, x), option);
+                    runner.mHeight = (int) number(value.substring(x + 1), option);
+                    break;
+                }
+                case "--rules":
+                    runner.mRules = new ArrayList<>();
+                    for (String rule : value.split(",")) {
+                        runner.mRules.add(Rule.parse(rule));
+                    }
+                    break;
+                case "--range": {
+                    int colon = value.indexOf(':');
+                    if (colon < 0) {
+                        throw new IllegalArgumentException("Range must be FIRST:COUNT, got " + value);
+                    }
+                    int first = (int) number(value.substring(0, colon), option);
+                    int count = (int) number(value.substring(colon + 1), option);
+                    if (first < 0 || count < 0 || first + count > RuleExplorer.RULE_COUNT) {
+                        throw new IllegalArgumentException("Range " + value + " is outside the " + RuleExplorer.RULE_COUNT + " rules");
+                    }
+                    runner.mRules = RuleExplorer.range(first, count);
+                    break;
+                }
+                case "--generations":
+                    runner.mGenerations = (int) number(value, option);
+                    break;
+                case "--explosion-density":
+                    try {
+                        runner.mExplosionDensity = Double.parseDouble(value);
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("Invalid number '" + value + "' for " + option);
+                    }
+                    break;
+                case "--threads":
+                    runner.mThreads = (int) number(value, option);
+                    break;
+                case "--output":
+                    runner.mOutput = new File(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (runner.mWidth <= 0 || runner.mHeight <= 0 || runner.mWidth % BitGrid.WORD_BITS != 0) {
+            throw new IllegalArgumentException("Grid width must be a positive multiple of " + BitGrid.WORD_BITS);
+        }
+        if (runner.mRules != null) {
+            for (Rule rule : runner.mRules) {
+                if (!rule.isOuterTotalistic()) {
+                    throw new IllegalArgumentException("Only two state radius 1 rules can be explored, got " + rule);
+                }
+            }
+        }
+        return runner;
+    }
+
+    private static long number(String value, String option) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid number '" + value + "' for " + option);
+        }
+    }
+
+    void setLog(PrintStream log) {
+        mLog = log;
+    }
+
+    public void run() throws IOException, InterruptedException {
+        RuleExplorer explorer = new RuleExplorer(seed());
+        explorer.setGenerations(mGenerations);
+        explorer.setExplosionDensity(mExplosionDensity);
+        explorer.setThreads(mThreads);
+        List<Rule> rules = mRules != null ? mRules : RuleExplorer.range(0, RuleExplorer.RULE_COUNT);
+
+        mLog.println("Exploring " + rules.size() + " rules on " + mWidth + "x" + mHeight + " with " + mThreads + " threads");
+        final Writer out = mOutput != null ? new FileWriter(mOutput) : new OutputStreamWriter(mLog);
+        final long[] outcomes = new long[RuleExplorer.ACTIVE + 1];
+        // the first write error, the remaining results are still counted
+        final IOException[] error = new IOException[1];
+        long start = System.nanoTime();
+        try {
+            explorer.run(rules, new RuleExplorer.Listener() {
+                public void onResult(RuleExplorer.Result result) {
+                    ++outcomes[result.getOutcome()];
+                    if (error[0] != null) {
+                        return;
+                    }
+                    try {
+                        out.write(json(result));
+                        out.write('\n');
+                    } catch (IOException ex) {
+                        error[0] = ex;
+                    }
+                }
+            });
+        } finally {
+            if (mOutput != null) {
+                out.close();
+            } else {
+                out.flush();
+            }
+        }
+        if (error[0] != null) {
+            throw error[0];
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        StringBuilder summary = new StringBuilder(String.format(Locale.US, "%d rules in %.1f s, %.1f rules/s:",
+                rules.size(), seconds, seconds > 0 ? rules.size() / seconds : 0.0));
+        for (int outcome = 0; outcome < outcomes.length; ++outcome) {
+            summary.append(' ').append(RuleExplorer.outcomeName(outcome)).append(' ').append(outcomes[outcome]);
+        }
+        mLog.println(summary);
+    }
+
+    private BitGrid seed() throws IOException {
+        BitEngine engine = new BitEngine(mWidth, mHeight);
+        if (mPattern != null) {
+            InputStream in = new FileInputStream(mPattern);
+            try {
+                engine.setInitialState(Pattern.read(in));
+            } finally {
+                in.close();
+            }
+            return engine.getGrid();
+        }
+        BitGrid grid = engine.getGrid();
+        Random random = new Random(mSoupSeed);
+        int size = Math.min(mSoupSize, Math.min(mWidth, mHeight));
+        for (int y = 0; y < size; ++y) {
+            for (int x = 0; x < size; ++x) {
+                grid.set((mWidth - size) / 2 + x, (mHeight - size) / 2 + y, random.nextBoolean());
+            }
+        }
+        return grid;
+    }
+
+    static String json(RuleExplorer.Result result) {
+        return String.format(Locale.US, "{\"rule\":\"%s\",\"index\":%d,\"outcome\":\"%s\",\"generations\":%d,\"population\":%d,"
+                        + "\"min_population\":%d,\"max_population\":%d,\"growth\":%.3f,\"changes_per_generation\":%.1f,\"period\":%d}",
+                result.getRule(), RuleExplorer.index(result.getRule()), RuleExplorer.outcomeName(result.getOutcome()),
+                result.getGenerations(), result.getPopulation(), result.getMinPopulation(), result.getMaxPopulation(),
+                result.getGrowth(), result.getChangesPerGeneration(), result.getPeriod());
+    }
+}
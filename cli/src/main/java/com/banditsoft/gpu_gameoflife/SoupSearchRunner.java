@@ -0,0 +1,132 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Command line entry point for soup searches:
+ *
+ * gol-soups [--rule RULE] [--seed N] [--soups N] [--first N] [--threads N] [--world N]
+ *           [--soup-size N] [--max-generations N] [--output FILE]
+ *
+ * Searches the soups [first, first + soups) of the seed and writes the census, one "name count" line
+ * per object, to FILE or standard output.
+ */
+public class SoupSearchRunner {
+    static final String USAGE = "usage: gol-soups [--rule RULE] [--seed N] [--soups N] [--first N] [--threads N] [--world N]\n"
+            + "                 [--soup-size N] [--max-generations N] [--output FILE]";
+
+    private String mRule = "B3/S23";
+    private long mSeed;
+    private long mSoups = 1000;
+    private long mFirst;
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+    private int mWorldSize = SoupSearch.DEFAULT_WORLD_SIZE;
+    private int mSoupSize = SoupSearch.DEFAULT_SOUP_SIZE;
+    private int mMaxGenerations = SoupSearch.DEFAULT_MAX_GENERATIONS;
+    private File mOutput;
+    private PrintStream mLog = System.out;
+
+    public static void main(String[] args) {
+        try {
+            parse(args).run();
+        } catch (IllegalArgumentException ex) {
+            System.err.println("gol-soups: " + ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException | InterruptedException ex) {
+            System.err.println("gol-soups: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    static SoupSearchRunner parse(String[] args) {
+        SoupSearchRunner runner = new SoupSearchRunner();
+        for (int i = 0; i < args.length; ++i) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--rule":
+                    runner.mRule = value;
+                    break;
+                case "--seed":
+                    runner.mSeed = number(value, option);
+                    break;
+                case "--soups":
+                    runner.mSoups = number(value, option);
+                    break;
+                case "--first":
+                    runner.mFirst = number(value, option);
+                    break;
+                case "--threads":
+                    runner.mThreads = (int) number(value, option);
+                    break;
+                case "--world":
+                    runner.mWorldSize = (int) number(value, option);
+                    break;
+                case "--soup-size":
+                    runner.mSoupSize = (int) number(value, option);
+                    break;
+                case "--max-generations":
+                    runner.mMaxGenerations = (int) number(value, option);
+                    break;
+                case "--output":
+                    runner.mOutput = new File(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (runner.mSoups < 0 || runner.mThreads <= 0) {
+            throw new IllegalArgumentException("--soups and --threads must be positive");
+        }
+        return runner;
+    }
+
+    private static long number(String value, String option) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid number '" + value + "' for " + option);
+        }
+    }
+
+    void setLog(PrintStream log) {
+        mLog = log;
+    }
+
+    public void run() throws IOException, InterruptedException {
+        Rule rule = Rule.parse(mRule);
+        SoupSearch search = new SoupSearch(rule, mSeed);
+        search.setWorldSize(mWorldSize);
+        search.setSoupSize(mSoupSize);
+        search.setMaxGenerations(mMaxGenerations);
+        search.setThreads(mThreads);
+
+        mLog.println("Searching " + mSoups + " soups of " + rule + " from seed " + mSeed + " on " + mThreads + " threads");
+        long start = System.nanoTime();
+        Census census = search.run(mFirst, mSoups);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        mLog.println(String.format(Locale.US, "%d soups, %d unsettled, %d objects in %.1f s, %.1f soups/s",
+                census.getSoups(), census.getUnsettled(), census.getObjects(), seconds, seconds > 0 ? census.getSoups() / seconds : 0.0));
+
+        Writer out = mOutput != null ? new FileWriter(mOutput) : new OutputStreamWriter(mLog);
+        try {
+            census.write(out);
+        } finally {
+            if (mOutput != null) {
+                out.close();
+            } else {
+                out.flush();
+            }
+        }
+    }
+}
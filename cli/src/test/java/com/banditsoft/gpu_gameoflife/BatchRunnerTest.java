@@ -0,0 +1,128 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BatchRunnerTest {
+    private static File tempDir() throws IOException {
+        File dir = File.createTempFile("batch", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        return dir;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void writesSnapshotsAndStats() throws IOException {
+        File dir = tempDir();
+        try {
+            File pattern = new File(dir, "glider.rle");
+            FileWriter writer = new FileWriter(pattern);
+            writer.write("x = 3, y = 3, rule = B3/S23\nbo$2bo$3o!\n");
+            writer.close();
+            File output = new File(dir, "out");
+
+            for (String engine : new String[] {"auto", "hashlife", "sparse", "ltl"}) {
+                BatchRunner runner = BatchRunner.parse(new String[] {"--pattern", pattern.getPath(), "--generations", "100",
+                        "--output", output.getPath(), "--size", "128x128", "--engine", engine,
+                        "--snapshot-every", "50", "--stats-every", "25"});
+                runner.setLog(new PrintStream(new ByteArrayOutputStream()));
+                runner.run();
+
+                for (long generation : new long[] {0, 50, 100}) {
+                    Snapshot snapshot = Snapshot.load(new File(output, String.format("generation-%012d.gols", generation)));
+                    assertEquals(engine, generation, snapshot.getGeneration());
+                    assertEquals(engine, 5, snapshot.getGrid().population());
+                }
+                assertFalse(new File(output, "generation-000000000025.gols").exists());
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void otherEnginesRunWidthsThatAreNotWholeWords() throws IOException {
+        File dir = tempDir();
+        try {
+            File pattern = new File(dir, "glider.rle");
+            FileWriter writer = new FileWriter(pattern);
+            writer.write("x = 3, y = 3, rule = B3/S23\nbo$2bo$3o!\n");
+            writer.close();
+            File output = new File(dir, "out");
+
+            for (String engine : new String[] {"auto", "hashlife", "sparse", "ltl"}) {
+                BatchRunner runner = BatchRunner.parse(new String[] {"--pattern", pattern.getPath(), "--generations", "8",
+                        "--output", output.getPath(), "--size", "100x80", "--engine", engine});
+                runner.setLog(new PrintStream(new ByteArrayOutputStream()));
+                runner.run();
+
+                Snapshot snapshot = Snapshot.load(new File(output, String.format("generation-%012d.gols", 8)));
+                assertEquals(engine, 128, snapshot.getGrid().getWidth());
+                assertEquals(engine, 5, snapshot.getGrid().population());
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void statsLinesCarryTheCensus() throws IOException {
+        File dir = tempDir();
+        try {
+            File pattern = new File(dir, "debris.rle");
+            FileWriter writer = new FileWriter(pattern);
+            writer.write("x = 13, y = 3, rule = B3/S23\n2o4b3o3bo$2o10bo$12bo!\n");
+            writer.close();
+            File output = new File(dir, "out");
+            BatchRunner runner = BatchRunner.parse(new String[] {"--pattern", pattern.getPath(), "--generations", "2",
+                    "--output", output.getPath(), "--size", "64x64", "--stats-every", "1", "--census"});
+            runner.setLog(new PrintStream(new ByteArrayOutputStream()));
+            runner.run();
+
+            List<String> lines = Files.readAllLines(new File(output, "stats.jsonl").toPath(), StandardCharsets.UTF_8);
+            assertEquals(3, lines.size());
+            for (String line : lines) {
+                assertTrue(line, line.contains("\"objects\":3,\"census\":{\"xp2_7\":2,\"xs4_33\":1}"));
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingOptions() {
+        BatchRunner.parse(new String[] {"--pattern", "glider.rle"});
+    }
+
+    @Test
+    public void acceptsGenerationCountsPastIntRange() {
+        BatchRunner.parse(new String[] {"--pattern", "p", "--generations", "10000000000", "--output", "o",
+                "--snapshot-every", "5000000000", "--stats-every", "3000000000"});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWidthsThatAreNotWholeWords() {
+        BatchRunner.parse(new String[] {"--pattern", "p", "--generations", "1", "--output", "o", "--size", "100x64",
+                "--engine", "parallel"});
+    }
+}
@@ -0,0 +1,53 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import static org.junit.Assert.*;
+
+public class ReplayRunnerTest {
+    @Test
+    public void replaysToTheRecordedGeneration() throws IOException {
+        File journal = File.createTempFile("session", ".golj");
+        File snapshot = File.createTempFile("final", ".gols");
+        try {
+            BitEngine engine = new BitEngine(64, 64);
+            for (int x = 10; x < 13; ++x) {
+                engine.getGrid().set(x, 20, true);
+            }
+            engine.invalidate();
+            Journal.Writer writer = new Journal.Writer(new FileOutputStream(journal), engine, 0);
+            for (int i = 0; i < 7; ++i) {
+                engine.simulate();
+            }
+            engine.setCell(40, 40, true);
+            writer.cell(7, 40, 40, true);
+            engine.simulate();
+            writer.close(8);
+
+            ReplayRunner runner = ReplayRunner.parse(new String[] {"--journal", journal.getPath(), "--engine", "bit",
+                    "--snapshot", snapshot.getPath()});
+            ByteArrayOutputStream log = new ByteArrayOutputStream();
+            runner.setLog(new PrintStream(log));
+            runner.run();
+
+            assertTrue(log.toString(), log.toString().contains(String.format("generation 8 population 3 hash %016x", engine.getHash())));
+            Snapshot result = Snapshot.load(snapshot);
+            assertEquals(8, result.getGeneration());
+            assertArrayEquals(engine.getGrid().getWords(), result.getGrid().getWords());
+        } finally {
+            journal.delete();
+            snapshot.delete();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requiresAJournal() {
+        ReplayRunner.parse(new String[] {"--engine", "bit"});
+    }
+}
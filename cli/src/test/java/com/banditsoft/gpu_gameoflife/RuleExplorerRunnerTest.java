@@ -0,0 +1,51 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RuleExplorerRunnerTest {
+    @Test
+    public void writesOneLinePerRule() throws IOException, InterruptedException {
+        File output = File.createTempFile("rules", ".jsonl");
+        try {
+            RuleExplorerRunner runner = RuleExplorerRunner.parse(new String[] {"--soup-seed", "7", "--size", "64x64",
+                    "--range", "4096:40", "--generations", "100", "--threads", "2", "--output", output.getPath()});
+            ByteArrayOutputStream log = new ByteArrayOutputStream();
+            runner.setLog(new PrintStream(log));
+            runner.run();
+
+            assertTrue(log.toString(), log.toString().contains("40 rules in"));
+            List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+            assertEquals(40, lines.size());
+            for (String line : lines) {
+                assertTrue(line, line.matches("\\{\"rule\":\"[^\"]+\",\"index\":\\d+,\"outcome\":\"[a-z]+\",.*\\}"));
+            }
+        } finally {
+            output.delete();
+        }
+    }
+
+    @Test
+    public void namedRulesAreExplored() throws IOException, InterruptedException {
+        RuleExplorerRunner runner = RuleExplorerRunner.parse(new String[] {"--soup-seed", "1", "--size", "64x64",
+                "--rules", "B3/S23,B/S", "--generations", "50"});
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        runner.setLog(new PrintStream(log));
+        runner.run();
+        assertTrue(log.toString(), log.toString().contains("\"rule\":\"B/S\",\"index\":0,\"outcome\":\"died\""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRangesOutsideTheSpace() {
+        RuleExplorerRunner.parse(new String[] {"--range", "262140:10"});
+    }
+}
@@ -0,0 +1,41 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SoupSearchRunnerTest {
+    @Test
+    public void writesTheCensus() throws IOException, InterruptedException {
+        File output = File.createTempFile("census", ".txt");
+        try {
+            SoupSearchRunner runner = SoupSearchRunner.parse(new String[] {"--seed", "3", "--soups", "20", "--threads", "2",
+                    "--world", "64", "--output", output.getPath()});
+            ByteArrayOutputStream log = new ByteArrayOutputStream();
+            runner.setLog(new PrintStream(log));
+            runner.run();
+
+            assertTrue(log.toString().contains("20 soups"));
+            List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+            assertFalse(lines.isEmpty());
+            for (String line : lines) {
+                assertTrue(line, line.matches("(x[spq]\\d+|zz)_\\S+ \\d+"));
+            }
+        } finally {
+            output.delete();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownOptions() {
+        SoupSearchRunner.parse(new String[] {"--soup", "10"});
+    }
+}
@@ -0,0 +1,162 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.util.Arrays;
+
+/**
+ * Bitmap of the tiles that changed in the last generation.
+ *
+ * A tile is one word (64 cells) wide and TILE_ROWS rows high. Only changed tiles and their eight
+ * neighbours are stepped; any other tile equals its previous generation, which is exactly what the
+ * back grid still holds for it, so skipping it leaves the double buffer correct.
+ */
+final class ActiveTiles {
+    static final int TILE_ROWS = 32;
+
+    private final int mWordsPerRow;
+    private final int mHeight;
+    private final int mTileRows;
+    private boolean[] mChanged;
+    private boolean[] mNextChanged;
+    private final boolean[] mActive;
+    private int mActiveCount;
+
+    /** Population and inclusive box (minX, minY, maxX, maxY) of every tile as of its last step. */
+    private int[] mTilePopulation;
+    private int[] mTileBox;
+    /** Scratch stats per tile row, one each so parallel bands of tile rows never share one. */
+    private GenerationStats[] mTileStats;
+
+    ActiveTiles(int width, int height) {
+        mWordsPerRow = width / BitGrid.WORD_BITS;
+        mHeight = height;
+        mTileRows = (height + TILE_ROWS - 1) / TILE_ROWS;
+        int count = mWordsPerRow * mTileRows;
+        mChanged = new boolean[count];
+        mNextChanged = new boolean[count];
+        mActive = new boolean[count];
+        markAll();
+    }
+
+    int getTileRows() {
+        return mTileRows;
+    }
+
+    int getTileCount() {
+        return mActive.length;
+    }
+
+    /** Fraction of the tiles stepped in the last generation. */
+    float getActiveFraction() {
+        return (float) mActiveCount / mActive.length;
+    }
+
+    void markAll() {
+        Arrays.fill(mChanged, true);
+    }
+
+    /** Marks the tile holding the cell as changed, call it after writing the front grid directly. */
+    void mark(int x, int y) {
+        mChanged[(y / TILE_ROWS) * mWordsPerRow + (x >>> 6)] = true;
+    }
+
+    /** Marks the tiles of the rectangle, which has to lie inside the grid. */
+    void mark(int x, int y, int width, int height) {
+        int lastColumn = (x + width - 1) >>> 6;
+        int lastRow = (y + height - 1) / TILE_ROWS;
+        for (int row = y / TILE_ROWS; row <= lastRow; ++row) {
+            Arrays.fill(mChanged, row * mWordsPerRow + (x >>> 6), row * mWordsPerRow + lastColumn + 1, true);
+        }
+    }
+
+    /** Dilates the changed tiles into the set to step, wrapping around like the grid does. */
+    void prepare() {
+        Arrays.fill(mActive, false);
+        int count = 0;
+        for (int tileY = 0; tileY < mTileRows; ++tileY) {
+            for (int tileX = 0; tileX < mWordsPerRow; ++tileX) {
+                if (!mChanged[tileY * mWordsPerRow + tileX]) {
+                    continue;
+                }
+                for (int dy = -1; dy <= 1; ++dy) {
+                    int y = BitEngine.wrap(tileY + dy, mTileRows);
+                    for (int dx = -1; dx <= 1; ++dx) {
+                        int index = y * mWordsPerRow + BitEngine.wrap(tileX + dx, mWordsPerRow);
+                        if (!mActive[index]) {
+                            mActive[index] = true;
+                            ++count;
+                        }
+                    }
+                }
+            }
+        }
+        mActiveCount = count;
+    }
+
+    /** Steps the active tiles of the tile rows [tileRowFrom, tileRowTo). */
+    void step(long[] src, long[] dst, int tileRowFrom, int tileRowTo, int birth, int survive) {
+        step(src, dst, tileRowFrom, tileRowTo, birth, survive, null);
+    }
+
+    /**
+     * Also adds the births and deaths of the stepped tiles to stats and remembers each stepped tile's
+     * population and box for collect(). Tiles that were not stepped did not change, so their births
+     * and deaths are zero and their population and box are the remembered ones.
+     */
+    void step(long[] src, long[] dst, int tileRowFrom, int tileRowTo, int birth, int survive, GenerationStats stats) {
+        for (int tileY = tileRowFrom; tileY < tileRowTo; ++tileY) {
+            GenerationStats tile = stats != null ? mTileStats[tileY] : null;
+            int rowFrom = tileY * TILE_ROWS;
+            int rowTo = Math.min(rowFrom + TILE_ROWS, mHeight);
+            for (int tileX = 0; tileX < mWordsPerRow; ++tileX) {
+                int index = tileY * mWordsPerRow + tileX;
+                if (!mActive[index]) {
+                    continue;
+                }
+                if (tile != null) {
+                    tile.clear();
+                }
+                mNextChanged[index] = LifeKernel.step(src, dst, mWordsPerRow, mHeight,
+                        rowFrom, rowTo, tileX, tileX + 1, birth, survive, tile) != 0;
+                if (tile != null) {
+                    stats.mBirths += tile.mBirths;
+                    stats.mDeaths += tile.mDeaths;
+                    stats.mHashDelta ^= tile.mHashDelta;
+                    mTilePopulation[index] = (int) tile.mPopulation;
+                    mTileBox[index * 4] = tile.mMinX;
+                    mTileBox[index * 4 + 1] = tile.mMinY;
+                    mTileBox[index * 4 + 2] = tile.mMaxX;
+                    mTileBox[index * 4 + 3] = tile.mMaxY;
+                }
+            }
+        }
+    }
+
+    /** Allocates the per tile statistics, call it before the first step with stats. */
+    void trackStats() {
+        if (mTilePopulation == null) {
+            mTilePopulation = new int[mActive.length];
+            mTileBox = new int[mActive.length * 4];
+            mTileStats = new GenerationStats[mTileRows];
+            for (int i = 0; i < mTileRows; ++i) {
+                mTileStats[i] = new GenerationStats();
+            }
+        }
+    }
+
+    /** Adds the population and box of every tile, stepped or not, to stats. */
+    void collect(GenerationStats stats) {
+        for (int index = 0; index < mTilePopulation.length; ++index) {
+            if (mTilePopulation[index] != 0) {
+                stats.mPopulation += mTilePopulation[index];
+                stats.include(mTileBox[index * 4], mTileBox[index * 4 + 1], mTileBox[index * 4 + 2], mTileBox[index * 4 + 3]);
+            }
+        }
+    }
+
+    void finish() {
+        boolean[] temp = mChanged;
+        mChanged = mNextChanged;
+        mNextChanged = temp;
+        Arrays.fill(mNextChanged, false);
+    }
+}
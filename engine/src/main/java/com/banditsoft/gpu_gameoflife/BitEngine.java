@@ -0,0 +1,316 @@
+package com.banditsoft.gpu_gameoflife;
+
+/**
+ * Headless CPU engine on a bit packed torus, stepping 64 cells per long.
+ *
+ * Mirrors GOLEngine: the initial state is centered like setInitialState does and addNoise stamps
+ * the noise block over the grid, but stamps wrap around the edges instead of being clipped.
+ */
+public class BitEngine implements SimulationEngine {
+    private final int[] mDecideData = RuleTable.create(LifeKernel.CONWAY_BIRTH, LifeKernel.CONWAY_SURVIVE);
+    private int mBirth = LifeKernel.CONWAY_BIRTH;
+    private int mSurvive = LifeKernel.CONWAY_SURVIVE;
+    private int mDeadRule = LifeKernel.CONWAY_BIRTH;
+    private int mLiveRule = LifeKernel.CONWAY_SURVIVE;
+
+    private BitGrid mFront;
+    private BitGrid mBack;
+    private BitGrid mInitialState;
+
+    private final NoiseStamp mNoise = new NoiseStamp();
+    // noise wraps around the torus and wakes the tiles it lands on
+    private final NoiseStamp.Target mNoiseTarget = new NoiseStamp.Target() {
+        public void set(int x, int y, boolean alive) {
+            int cellX = wrap(x, mFront.getWidth());
+            int cellY = wrap(y, mFront.getHeight());
+            mFront.set(cellX, cellY, alive);
+            if (mActiveTiles != null) {
+                mActiveTiles.mark(cellX, cellY);
+            }
+        }
+    };
+
+    private ActiveTiles mActiveTiles;
+    private GenerationStats mStats;
+    private long mHash;
+    private boolean mHashValid;
+
+    public BitEngine(int width, int height) {
+        mFront = new BitGrid(width, height);
+        mBack = new BitGrid(width, height);
+        mInitialState = new BitGrid(width, height);
+    }
+
+    public int getGridWidth() {
+        return mFront.getWidth();
+    }
+
+    public int getGridHeight() {
+        return mFront.getHeight();
+    }
+
+    /** The current generation. It is only valid until the next simulate(), call invalidate() after editing it. */
+    public BitGrid getGrid() {
+        return mFront;
+    }
+
+    /**
+     * Steps only the tiles that changed in the last generation and their neighbours. The result is
+     * the same as a full step; mostly settled worlds just get there faster.
+     */
+    public void setActiveTracking(boolean enabled) {
+        mActiveTiles = enabled ? new ActiveTiles(mFront.getWidth(), mFront.getHeight()) : null;
+    }
+
+    public boolean isActiveTracking() {
+        return mActiveTiles != null;
+    }
+
+    /** Fraction of the tiles stepped in the last generation, 1 when tracking is off. */
+    public float getActiveTileFraction() {
+        return mActiveTiles != null ? mActiveTiles.getActiveFraction() : 1.0f;
+    }
+
+    /**
+     * Gathers population, bounding box, births and deaths while stepping. Costs a few popcounts per
+     * word, so it is off by default.
+     */
+    public void setStatsTracking(boolean enabled) {
+        mStats = enabled ? new GenerationStats() : null;
+        // tiles skipped by the next step need their statistics too
+        invalidate();
+    }
+
+    public boolean isStatsTracking() {
+        return mStats != null;
+    }
+
+    /**
+     * Statistics of the generation the last simulate() produced, births and deaths relative to the
+     * one before. Null when tracking is off. Updated in place by every simulate().
+     */
+    public GenerationStats getStats() {
+        return mStats;
+    }
+
+    /**
+     * GridHash of the current generation. With stats tracking on it is kept up to date from the
+     * changed words of every step and only recomputed after an edit, otherwise every call hashes
+     * the whole grid.
+     */
+    public long getHash() {
+        if (mStats == null) {
+            return GridHash.of(mFront);
+        }
+        if (!mHashValid) {
+            mHash = GridHash.of(mFront);
+            mHashValid = true;
+        }
+        return mHash;
+    }
+
+    /** Tells the engine the current generation was edited from outside. */
+    public void invalidate() {
+        mHashValid = false;
+        if (mActiveTiles != null) {
+            mActiveTiles.markAll();
+        }
+    }
+
+    public void setInitialState(Pattern pattern) {
+        mInitialState.clear();
+        int gridWidth = mInitialState.getWidth();
+        int gridHeight = mInitialState.getHeight();
+        int wX = pattern.getWidth();
+        int wY = pattern.getHeight();
+        int sX = (gridWidth / 2) - (wX / 2);
+        int sY = (gridHeight / 2) - (wY / 2);
+        for (int y = 0; y < wY; ++y) {
+            for (int x = 0; x < wX; ++x) {
+                if (pattern.isAlive(x, wY - y - 1)) {
+                    mInitialState.set(wrap(sX + x, gridWidth), wrap(sY + y, gridHeight), true);
+                }
+            }
+        }
+        mFront.copyFrom(mInitialState);
+        invalidate();
+    }
+
+    public void setNoise(Pattern pattern) {
+        mNoise.setPattern(pattern);
+    }
+
+    /** The pattern addNoise() stamps, null if there is none. */
+    public Pattern getNoise() {
+        return mNoise.getPattern();
+    }
+
+    /** What reset() goes back to. */
+    public BitGrid getInitialState() {
+        return mInitialState;
+    }
+
+    /** Replaces what reset() goes back to with a copy of the grid, the current generation stays. */
+    public void setInitialState(BitGrid grid) {
+        mInitialState.copyFrom(grid);
+    }
+
+    /** Seeds the generator addNoise() places its stamps with, so runs with the same seed match. */
+    @Override
+    public void setNoiseSeed(long seed) {
+        mNoise.setSeed(seed);
+    }
+
+    /** Number of stamps one addNoise() places. */
+    public int getNoiseCount() {
+        return mNoise.getCount();
+    }
+
+    public int getDeadRule() {
+        return mDeadRule;
+    }
+
+    public int getLiveRule() {
+        return mLiveRule;
+    }
+
+    /** Tells the engine the region of the current generation was edited from outside. */
+    public void invalidate(DirtyRegion region) {
+        mHashValid = false;
+        if (mActiveTiles != null) {
+            for (int i = 0; i < region.getCount(); ++i) {
+                mActiveTiles.mark(region.getX(i), region.getY(i), region.getWidth(i), region.getHeight(i));
+            }
+        }
+    }
+
+    /** Sets one cell of the current generation. */
+    public void setCell(int x, int y, boolean alive) {
+        mFront.set(x, y, alive);
+        mHashValid = false;
+        if (mActiveTiles != null) {
+            mActiveTiles.mark(x, y);
+        }
+    }
+
+    /** Writes the pattern rectangle into the current generation like EditBuffer.stamp() does. */
+    public void stamp(Pattern pattern, int x, int y) {
+        EditBuffer.stamp(mFront, pattern, x, y);
+        mHashValid = false;
+        if (mActiveTiles != null) {
+            for (int row = 0; row < pattern.getHeight(); ++row) {
+                for (int column = 0; column < pattern.getWidth(); ++column) {
+                    mActiveTiles.mark(wrap(x + column, mFront.getWidth()), wrap(y + row, mFront.getHeight()));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void simulate() {
+        step(mFront, mBack);
+        if (mStats != null && mHashValid) {
+            mHash ^= mStats.mHashDelta;
+        }
+        BitGrid temp = mFront;
+        mFront = mBack;
+        mBack = temp;
+    }
+
+    @Override
+    public void reset() {
+        mFront.copyFrom(mInitialState);
+        invalidate();
+    }
+
+    @Override
+    public void addNoise() {
+        if (mNoise.getPattern() == null) {
+            return;
+        }
+        mHashValid = false;
+        mNoise.stamp(mFront.getWidth(), mFront.getHeight(), 0, 0, mNoiseTarget);
+    }
+
+    /** Stamps the noise pattern with its bottom left corner at (sX, sY), wrapping around the edges. */
+    public void addNoise(int sX, int sY) {
+        if (mNoise.getPattern() == null) {
+            return;
+        }
+        mHashValid = false;
+        mNoise.stampAt(sX, sY, mNoiseTarget);
+    }
+
+    @Override
+    public void setRules(int deadRule, int liveRule) {
+        mDeadRule = deadRule;
+        mLiveRule = liveRule;
+        RuleTable.fill(mDecideData, deadRule, liveRule);
+        mBirth = RuleTable.mask(mDecideData, 0);
+        mSurvive = RuleTable.mask(mDecideData, 1);
+        invalidate();
+    }
+
+    /** Compiles a two state radius 1 rule to the kernel masks. */
+    public void setRule(Rule rule) {
+        if (!rule.isOuterTotalistic()) {
+            throw new IllegalArgumentException("The bit engines only run two state radius 1 rules: " + rule);
+        }
+        setRules(rule.getDeadRule(), rule.getLiveRule());
+    }
+
+    @Override
+    public State getState() {
+        return mFront.toState();
+    }
+
+    /** Replaces both the initial state and the current generation. */
+    @Override
+    public void setState(State state) {
+        mInitialState = BitGrid.fromState(state);
+        mFront = new BitGrid(state.width, state.height);
+        mBack = new BitGrid(state.width, state.height);
+        mFront.copyFrom(mInitialState);
+        mHashValid = false;
+        if (mActiveTiles != null) {
+            mActiveTiles = new ActiveTiles(state.width, state.height);
+        }
+    }
+
+    void step(BitGrid src, BitGrid dst) {
+        if (mStats != null) {
+            mStats.clear();
+        }
+        if (mActiveTiles != null) {
+            mActiveTiles.prepare();
+            if (mStats != null) {
+                mActiveTiles.trackStats();
+            }
+            mActiveTiles.step(src.getWords(), dst.getWords(), 0, mActiveTiles.getTileRows(), mBirth, mSurvive, mStats);
+            mActiveTiles.finish();
+            if (mStats != null) {
+                mActiveTiles.collect(mStats);
+            }
+            return;
+        }
+        LifeKernel.step(src.getWords(), dst.getWords(), src.getWordsPerRow(), src.getHeight(),
+                0, src.getHeight(), 0, src.getWordsPerRow(), mBirth, mSurvive, mStats);
+    }
+
+    ActiveTiles getActiveTiles() {
+        return mActiveTiles;
+    }
+
+    int getBirth() {
+        return mBirth;
+    }
+
+    int getSurvive() {
+        return mSurvive;
+    }
+
+    static int wrap(int value, int size) {
+        int wrapped = value % size;
+        return wrapped < 0 ? wrapped + size : wrapped;
+    }
+}
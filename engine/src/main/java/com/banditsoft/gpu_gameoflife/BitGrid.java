@@ -0,0 +1,95 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Toroidal grid storing 64 cells per long.
+ *
+ * Rows are stored bottom up like the texture rows, bit i of word w in a row is cell w * 64 + i.
+ */
+public final class BitGrid {
+    public static final int WORD_BITS = 64;
+    public static final int CHANNELS_PER_PIXEL = 3;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mWordsPerRow;
+    private final long[] mWords;
+
+    public BitGrid(int width, int height) {
+        if (width <= 0 || height <= 0 || width % WORD_BITS != 0) {
+            throw new IllegalArgumentException("Grid width must be a positive multiple of " + WORD_BITS + ", got " + width + "x" + height);
+        }
+        mWidth = width;
+        mHeight = height;
+        mWordsPerRow = width / WORD_BITS;
+        mWords = new long[mWordsPerRow * height];
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getWordsPerRow() {
+        return mWordsPerRow;
+    }
+
+    public long[] getWords() {
+        return mWords;
+    }
+
+    public boolean get(int x, int y) {
+        return ((mWords[y * mWordsPerRow + (x >>> 6)] >>> x) & 1L) != 0;
+    }
+
+    public void set(int x, int y, boolean alive) {
+        int index = y * mWordsPerRow + (x >>> 6);
+        if (alive) {
+            mWords[index] |= 1L << x;
+        } else {
+            mWords[index] &= ~(1L << x);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(mWords, 0L);
+    }
+
+    public void copyFrom(BitGrid other) {
+        if (other.mWidth != mWidth || other.mHeight != mHeight) {
+            throw new IllegalArgumentException("Grid size mismatch: " + other.mWidth + "x" + other.mHeight + " into " + mWidth + "x" + mHeight);
+        }
+        System.arraycopy(other.mWords, 0, mWords, 0, mWords.length);
+    }
+
+    public long population() {
+        long population = 0;
+        for (long word : mWords) {
+            population += Long.bitCount(word);
+        }
+        return population;
+    }
+
+    /** Expands the grid into the 3 byte per cell layout the GL engine reads and writes. */
+    public State toState() {
+        ByteBuffer grid = CellPacking.allocate(CellPacking.rgbSize(mWidth, mHeight));
+        CellPacking.packRgb(this, grid);
+
+        State state = new State();
+        state.width = mWidth;
+        state.height = mHeight;
+        state.grid = grid;
+        return state;
+    }
+
+    public static BitGrid fromState(State state) {
+        BitGrid bitGrid = new BitGrid(state.width, state.height);
+        CellPacking.unpackRgb(state.grid, bitGrid);
+        return bitGrid;
+    }
+}
@@ -0,0 +1,177 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Converts a BitGrid to and from the texel layouts the GL side uploads and reads back.
+ *
+ * RGB is the 3 byte per cell layout of State and the simulator textures, LUMINANCE is one byte per
+ * cell and BITS packs 8 cells into every byte, cell x of a row in bit x % 8 of byte x / 8, which is
+ * just the grid words in little endian byte order. Rows are bottom up like the grid. All routines
+ * work 8 cells at a time with one long read or write, start at index 0 of the buffer and leave its
+ * position alone, whatever its byte order is.
+ */
+public final class CellPacking {
+    public static final int RGB_BYTES_PER_CELL = BitGrid.CHANNELS_PER_PIXEL;
+    public static final int CELLS_PER_BYTE = 8;
+
+    // the 8 bytes, 0 or 255, of 8 cells
+    private static final long[] SPREAD = new long[256];
+    // the 24 RGB bytes of 8 cells as three longs
+    private static final long[] SPREAD_RGB = new long[3 * 256];
+
+    static {
+        for (int cells = 0; cells < 256; ++cells) {
+            for (int i = 0; i < CELLS_PER_BYTE; ++i) {
+                if ((cells >>> i & 1) == 0) {
+                    continue;
+                }
+                SPREAD[cells] |= 0xFFL << (8 * i);
+                for (int c = 0; c < RGB_BYTES_PER_CELL; ++c) {
+                    int index = i * RGB_BYTES_PER_CELL + c;
+                    SPREAD_RGB[(index >>> 3) * 256 + cells] |= 0xFFL << (8 * (index & 7));
+                }
+            }
+        }
+    }
+
+    private CellPacking() {
+    }
+
+    public static int bitsSize(int width, int height) {
+        return width / CELLS_PER_BYTE * height;
+    }
+
+    public static int luminanceSize(int width, int height) {
+        return width * height;
+    }
+
+    public static int rgbSize(int width, int height) {
+        return width * height * RGB_BYTES_PER_CELL;
+    }
+
+    /** Allocates a native ordered direct buffer, direct buffers start out zeroed, so all cells are dead. */
+    public static ByteBuffer allocate(int size) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.order(ByteOrder.nativeOrder());
+        return buffer;
+    }
+
+    public static void packBits(BitGrid grid, ByteBuffer out) {
+        long[] words = grid.getWords();
+        boolean swap = out.order() != ByteOrder.LITTLE_ENDIAN;
+        for (int i = 0; i < words.length; ++i) {
+            out.putLong(i << 3, swap ? Long.reverseBytes(words[i]) : words[i]);
+        }
+    }
+
+    /**
+     * Packs the words [word, word + wordCount) of the rows [y, y + height), row after row, for an
+     * upload of just that part of the BITS texture.
+     */
+    public static void packBits(BitGrid grid, int word, int y, int wordCount, int height, ByteBuffer out) {
+        long[] words = grid.getWords();
+        int wordsPerRow = grid.getWordsPerRow();
+        boolean swap = out.order() != ByteOrder.LITTLE_ENDIAN;
+        int index = 0;
+        for (int row = y; row < y + height; ++row) {
+            for (int i = row * wordsPerRow + word; i < row * wordsPerRow + word + wordCount; ++i) {
+                out.putLong(index++ << 3, swap ? Long.reverseBytes(words[i]) : words[i]);
+            }
+        }
+    }
+
+    public static void unpackBits(ByteBuffer in, BitGrid grid) {
+        long[] words = grid.getWords();
+        boolean swap = in.order() != ByteOrder.LITTLE_ENDIAN;
+        for (int i = 0; i < words.length; ++i) {
+            long word = in.getLong(i << 3);
+            words[i] = swap ? Long.reverseBytes(word) : word;
+        }
+    }
+
+    /** Writes 255 for alive and 0 for dead cells. */
+    public static void packLuminance(BitGrid grid, ByteBuffer out) {
+        long[] words = grid.getWords();
+        boolean swap = out.order() != ByteOrder.LITTLE_ENDIAN;
+        int index = 0;
+        for (long word : words) {
+            for (int shift = 0; shift < BitGrid.WORD_BITS; shift += CELLS_PER_BYTE) {
+                long bytes = SPREAD[(int) (word >>> shift) & 0xFF];
+                out.putLong(index, swap ? Long.reverseBytes(bytes) : bytes);
+                index += 8;
+            }
+        }
+    }
+
+    /** Any non zero byte is an alive cell. */
+    public static void unpackLuminance(ByteBuffer in, BitGrid grid) {
+        long[] words = grid.getWords();
+        boolean swap = in.order() != ByteOrder.LITTLE_ENDIAN;
+        int index = 0;
+        for (int i = 0; i < words.length; ++i) {
+            long word = 0;
+            for (int shift = 0; shift < BitGrid.WORD_BITS; shift += CELLS_PER_BYTE) {
+                long bytes = in.getLong(index);
+                word |= gather(swap ? Long.reverseBytes(bytes) : bytes) << shift;
+                index += 8;
+            }
+            words[i] = word;
+        }
+    }
+
+    /** Writes 255 into all three channels of alive cells, 0 for dead ones. */
+    public static void packRgb(BitGrid grid, ByteBuffer out) {
+        long[] words = grid.getWords();
+        boolean swap = out.order() != ByteOrder.LITTLE_ENDIAN;
+        int index = 0;
+        for (long word : words) {
+            for (int shift = 0; shift < BitGrid.WORD_BITS; shift += CELLS_PER_BYTE) {
+                int cells = (int) (word >>> shift) & 0xFF;
+                for (int part = 0; part < RGB_BYTES_PER_CELL; ++part) {
+                    long bytes = SPREAD_RGB[part * 256 + cells];
+                    out.putLong(index, swap ? Long.reverseBytes(bytes) : bytes);
+                    index += 8;
+                }
+            }
+        }
+    }
+
+    /** Reads the first channel of every cell, any non zero value is an alive cell. */
+    public static void unpackRgb(ByteBuffer in, BitGrid grid) {
+        long[] words = grid.getWords();
+        boolean swap = in.order() != ByteOrder.LITTLE_ENDIAN;
+        int index = 0;
+        for (int i = 0; i < words.length; ++i) {
+            long word = 0;
+            // 8 cells are 24 bytes, three longs holding the first channels of cells 0-2, 3-5 and 6-7
+            for (int shift = 0; shift < BitGrid.WORD_BITS; shift += CELLS_PER_BYTE) {
+                long first = in.getLong(index);
+                long second = in.getLong(index + 8);
+                long third = in.getLong(index + 16);
+                if (swap) {
+                    first = Long.reverseBytes(first);
+                    second = Long.reverseBytes(second);
+                    third = Long.reverseBytes(third);
+                }
+                long cells = nonZero(first & 0x00FF0000FF0000FFL) * 0x0040000080000100L >>> 61
+                        | (nonZero(second & 0xFF0000FF0000FF00L) * 0x0000400000800001L >>> 61) << 3
+                        | (nonZero(third & 0x0000FF0000FF0000L) * 0x0000008000010000L >>> 62) << 6;
+                word |= cells << shift;
+                index += 8 * RGB_BYTES_PER_CELL;
+            }
+            words[i] = word;
+        }
+    }
+
+    // the top bit of every non zero byte; the multiplies above move the stride 3 channel bits together
+    private static long nonZero(long bytes) {
+        return (((bytes & 0x7F7F7F7F7F7F7F7FL) + 0x7F7F7F7F7F7F7F7FL) | bytes) & 0x8080808080808080L;
+    }
+
+    // one bit per byte of a little endian long, set for the non zero bytes
+    static long gather(long bytes) {
+        return nonZero(bytes) * 0x0002040810204081L >>> 56;
+    }
+}
@@ -0,0 +1,95 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Object counts by name over a number of soups. Not thread safe, every search thread keeps its own
+ * and they are merged at the end.
+ */
+public class Census {
+    private final Map<String, long[]> mCounts = new HashMap<>();
+    private long mSoups;
+    private long mUnsettled;
+    private long mObjects;
+
+    public void add(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long count) {
+        long[] total = mCounts.get(name);
+        if (total == null) {
+            total = new long[1];
+            mCounts.put(name, total);
+        }
+        total[0] += count;
+        mObjects += count;
+    }
+
+    /** Counts a soup, unsettled ones ran out of generations before repeating. */
+    public void addSoup(boolean settled) {
+        ++mSoups;
+        if (!settled) {
+            ++mUnsettled;
+        }
+    }
+
+    public void merge(Census other) {
+        for (Map.Entry<String, long[]> entry : other.mCounts.entrySet()) {
+            add(entry.getKey(), entry.getValue()[0]);
+        }
+        mSoups += other.mSoups;
+        mUnsettled += other.mUnsettled;
+    }
+
+    public void clear() {
+        mCounts.clear();
+        mSoups = 0;
+        mUnsettled = 0;
+        mObjects = 0;
+    }
+
+    public long getCount(String name) {
+        long[] total = mCounts.get(name);
+        return total != null ? total[0] : 0;
+    }
+
+    public long getSoups() {
+        return mSoups;
+    }
+
+    public long getUnsettled() {
+        return mUnsettled;
+    }
+
+    public long getObjects() {
+        return mObjects;
+    }
+
+    /** Names by descending count, equal counts by name. */
+    public List<String> getNames() {
+        List<String> names = new ArrayList<>(mCounts.keySet());
+        Collections.sort(names, new Comparator<String>() {
+            public int compare(String a, String b) {
+                long countA = mCounts.get(a)[0];
+                long countB = mCounts.get(b)[0];
+                return countA != countB ? (countA > countB ? -1 : 1) : a.compareTo(b);
+            }
+        });
+        return names;
+    }
+
+    /** One "name count" line per object, most common first. */
+    public void write(Writer out) throws IOException {
+        for (String name : getNames()) {
+            out.write(name + " " + getCount(name) + "\n");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from packed chunk coordinates to chunk rows, for SparseWorldEngine.
+ *
+ * Keys are plain longs probed linearly from their GridHash.mix() slot, a null value marks a free
+ * slot, so any long is a valid key and nothing is boxed. Removal shifts the rest of the probe run
+ * back instead of leaving tombstones. The table doubles at half load and is halved again by clear()
+ * when it held only a small part of it, so once a world settles lookups, puts and clears allocate
+ * nothing. Slots are iterated by index, from 0 to getCapacity(), skipping the null values.
+ */
+final class ChunkMap {
+    static final int MIN_CAPACITY = 16;
+
+    private long[] mKeys = new long[MIN_CAPACITY];
+    private long[][] mValues = new long[MIN_CAPACITY][];
+    private int mSize;
+
+    int size() {
+        return mSize;
+    }
+
+    boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    int getCapacity() {
+        return mKeys.length;
+    }
+
+    long keyAt(int slot) {
+        return mKeys[slot];
+    }
+
+    /** The rows in the slot, null for a free one. */
+    long[] valueAt(int slot) {
+        return mValues[slot];
+    }
+
+    long[] get(long key) {
+        int mask = mKeys.length - 1;
+        for (int slot = (int) GridHash.mix(key) & mask; mValues[slot] != null; slot = (slot + 1) & mask) {
+            if (mKeys[slot] == key) {
+                return mValues[slot];
+            }
+        }
+        return null;
+    }
+
+    boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /** Maps the key to rows, which must not be null, and returns what it was mapped to before. */
+    long[] put(long key, long[] rows) {
+        if (2 * (mSize + 1) > mKeys.length) {
+            resize(mKeys.length * 2);
+        }
+        int mask = mKeys.length - 1;
+        int slot = (int) GridHash.mix(key) & mask;
+        for (; mValues[slot] != null; slot = (slot + 1) & mask) {
+            if (mKeys[slot] == key) {
+                long[] previous = mValues[slot];
+                mValues[slot] = rows;
+                return previous;
+            }
+        }
+        mKeys[slot] = key;
+        mValues[slot] = rows;
+        ++mSize;
+        return null;
+    }
+
+    long[] remove(long key) {
+        int mask = mKeys.length - 1;
+        int slot = (int) GridHash.mix(key) & mask;
+        for (; mValues[slot] != null; slot = (slot + 1) & mask) {
+            if (mKeys[slot] == key) {
+                long[] previous = mValues[slot];
+                shiftBack(slot);
+                --mSize;
+                return previous;
+            }
+        }
+        return null;
+    }
+
+    /** Refills the hole left at free by moving back the entries of its probe run that may use it. */
+    private void shiftBack(int free) {
+        int mask = mKeys.length - 1;
+        for (int slot = (free + 1) & mask; mValues[slot] != null; slot = (slot + 1) & mask) {
+            int home = (int) GridHash.mix(mKeys[slot]) & mask;
+            // the entry may move if its home is not in (free, slot], going around the table
+            if (((slot - home) & mask) >= ((slot - free) & mask)) {
+                mKeys[free] = mKeys[slot];
+                mValues[free] = mValues[slot];
+                free = slot;
+            }
+        }
+        mValues[free] = null;
+    }
+
+    void clear() {
+        int capacity = mKeys.length;
+        while (capacity > MIN_CAPACITY && 8 * mSize < capacity) {
+            capacity /= 2;
+        }
+        if (capacity != mKeys.length) {
+            mKeys = new long[capacity];
+            mValues = new long[capacity][];
+        } else if (mSize != 0) {
+            Arrays.fill(mValues, null);
+        }
+        mSize = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] keys = mKeys;
+        long[][] values = mValues;
+        mKeys = new long[capacity];
+        mValues = new long[capacity][];
+        int mask = capacity - 1;
+        for (int i = 0; i < keys.length; ++i) {
+            if (values[i] == null) {
+                continue;
+            }
+            int slot = (int) GridHash.mix(keys[i]) & mask;
+            while (mValues[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            mKeys[slot] = keys[i];
+            mValues[slot] = values[i];
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.util.Arrays;
+
+/**
+ * Spots the generation a run starts repeating itself, from one 64-bit hash per generation.
+ *
+ * The hash to generation table is direct mapped with a fixed number of slots, so memory stays
+ * bounded however long the run is; a new hash simply replaces whatever shared its slot. A cycle of
+ * period p is found within p generations of entering it as long as its hashes are not all evicted,
+ * which for periods well below the table size they are not. Two different grids sharing a 64-bit
+ * hash is possible but negligible in practice.
+ */
+public class CycleDetector {
+    public static final int DEFAULT_SLOTS = 1 << 12;
+
+    private final long[] mHashes;
+    private final long[] mGenerations;
+    private final int mMask;
+    private long mPeriod;
+    private long mCycleStart = -1;
+
+    public CycleDetector() {
+        this(DEFAULT_SLOTS);
+    }
+
+    /** slots is rounded up to a power of two. */
+    public CycleDetector(int slots) {
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        mHashes = new long[size];
+        mGenerations = new long[size];
+        mMask = size - 1;
+        clear();
+    }
+
+    public void clear() {
+        Arrays.fill(mGenerations, -1);
+        mPeriod = 0;
+        mCycleStart = -1;
+    }
+
+    /**
+     * Records the hash of a generation, generations have to increase. Returns true once a hash seen
+     * before comes back, from then on getPeriod() and getCycleStart() describe the cycle.
+     */
+    public boolean update(long generation, long hash) {
+        if (mPeriod != 0) {
+            return true;
+        }
+        int slot = (int) (GridHash.mix(hash) & mMask);
+        if (mGenerations[slot] >= 0 && mHashes[slot] == hash) {
+            mPeriod = generation - mGenerations[slot];
+            mCycleStart = mGenerations[slot];
+            return true;
+        }
+        mHashes[slot] = hash;
+        mGenerations[slot] = generation;
+        return false;
+    }
+
+    public boolean isCycling() {
+        return mPeriod != 0;
+    }
+
+    /** Period of the cycle, 0 before one was found. */
+    public long getPeriod() {
+        return mPeriod;
+    }
+
+    /** True when the world stopped changing. */
+    public boolean isStatic() {
+        return mPeriod == 1;
+    }
+
+    /** The generation the repeated hash was first recorded at, -1 before a cycle was found. */
+    public long getCycleStart() {
+        return mCycleStart;
+    }
+}
@@ -0,0 +1,152 @@
+package com.banditsoft.gpu_gameoflife;
+
+/**
+ * The changed part of a torus grid as a short list of rectangles.
+ *
+ * Rectangles that overlap or touch are merged into their bounding box, so a stroke of painted cells or
+ * a cluster of stamps becomes one rectangle. Rectangles crossing an edge are split at it, so every
+ * stored rectangle lies inside the grid and can be uploaded as is. Past MAX_RECTS a new rectangle is
+ * merged into the one it grows the least. Nothing is allocated after construction.
+ */
+public final class DirtyRegion {
+    public static final int MAX_RECTS = 32;
+
+    private final int mGridWidth;
+    private final int mGridHeight;
+    // left, bottom, right, top of every rectangle, right and top exclusive
+    private final int[] mRects = new int[MAX_RECTS * 4];
+    private int mCount;
+
+    public DirtyRegion(int gridWidth, int gridHeight) {
+        mGridWidth = gridWidth;
+        mGridHeight = gridHeight;
+    }
+
+    public int getGridWidth() {
+        return mGridWidth;
+    }
+
+    public int getGridHeight() {
+        return mGridHeight;
+    }
+
+    /** Adds the rectangle with its bottom left corner at (x, y), wrapping around the edges. */
+    public void add(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        width = Math.min(width, mGridWidth);
+        height = Math.min(height, mGridHeight);
+        x = (x % mGridWidth + mGridWidth) % mGridWidth;
+        y = (y % mGridHeight + mGridHeight) % mGridHeight;
+        int right = Math.min(x + width, mGridWidth);
+        int top = Math.min(y + height, mGridHeight);
+        int wrappedRight = x + width - mGridWidth;
+        int wrappedTop = y + height - mGridHeight;
+        addRect(x, y, right, top);
+        if (wrappedRight > 0) {
+            addRect(0, y, wrappedRight, top);
+        }
+        if (wrappedTop > 0) {
+            addRect(x, 0, right, wrappedTop);
+            if (wrappedRight > 0) {
+                addRect(0, 0, wrappedRight, wrappedTop);
+            }
+        }
+    }
+
+    public void add(DirtyRegion region) {
+        for (int i = 0; i < region.mCount * 4; i += 4) {
+            addRect(region.mRects[i], region.mRects[i + 1], region.mRects[i + 2], region.mRects[i + 3]);
+        }
+    }
+
+    /** Marks the whole grid. */
+    public void addAll() {
+        mCount = 0;
+        addRect(0, 0, mGridWidth, mGridHeight);
+    }
+
+    public void clear() {
+        mCount = 0;
+    }
+
+    public boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public int getX(int rect) {
+        return mRects[rect * 4];
+    }
+
+    public int getY(int rect) {
+        return mRects[rect * 4 + 1];
+    }
+
+    public int getWidth(int rect) {
+        return mRects[rect * 4 + 2] - mRects[rect * 4];
+    }
+
+    public int getHeight(int rect) {
+        return mRects[rect * 4 + 3] - mRects[rect * 4 + 1];
+    }
+
+    /** Cells covered, the rectangles never overlap. */
+    public long getArea() {
+        long area = 0;
+        for (int i = 0; i < mCount; ++i) {
+            area += (long) getWidth(i) * getHeight(i);
+        }
+        return area;
+    }
+
+    private void addRect(int left, int bottom, int right, int top) {
+        while (true) {
+            int merge = -1;
+            for (int i = 0; i < mCount * 4; i += 4) {
+                if (left <= mRects[i + 2] && mRects[i] <= right && bottom <= mRects[i + 3] && mRects[i + 1] <= top) {
+                    merge = i;
+                    break;
+                }
+            }
+            if (merge < 0 && mCount == MAX_RECTS) {
+                merge = cheapestMerge(left, bottom, right, top);
+            }
+            if (merge < 0) {
+                break;
+            }
+            left = Math.min(left, mRects[merge]);
+            bottom = Math.min(bottom, mRects[merge + 1]);
+            right = Math.max(right, mRects[merge + 2]);
+            top = Math.max(top, mRects[merge + 3]);
+            // the merged box may now touch rectangles it did not before, so look again
+            --mCount;
+            System.arraycopy(mRects, mCount * 4, mRects, merge, 4);
+        }
+        int i = mCount++ * 4;
+        mRects[i] = left;
+        mRects[i + 1] = bottom;
+        mRects[i + 2] = right;
+        mRects[i + 3] = top;
+    }
+
+    /** The rectangle whose bounding box with the given one adds the fewest cells. */
+    private int cheapestMerge(int left, int bottom, int right, int top) {
+        int best = 0;
+        long bestGrowth = Long.MAX_VALUE;
+        for (int i = 0; i < mCount * 4; i += 4) {
+            long union = (long) (Math.max(right, mRects[i + 2]) - Math.min(left, mRects[i]))
+                    * (Math.max(top, mRects[i + 3]) - Math.min(bottom, mRects[i + 1]));
+            long growth = union - (long) (mRects[i + 2] - mRects[i]) * (mRects[i + 3] - mRects[i + 1]);
+            if (growth < bestGrowth) {
+                best = i;
+                bestGrowth = growth;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,126 @@
+package com.banditsoft.gpu_gameoflife;
+
+/**
+ * Cell paints and pattern stamps collected to be applied to an engine in one go, in the order they were
+ * made, with the DirtyRegion they cover.
+ *
+ * A stamp writes the whole pattern rectangle, dead cells included, like the noise stamps do, with its
+ * bottom left corner at the given cell and wrapping around the edges. The buffer only grows, so once it
+ * has seen its busiest batch collecting and applying edits allocates nothing. Not thread safe.
+ */
+public final class EditBuffer {
+    public static final int CELL = 0;
+    public static final int STAMP = 1;
+
+    private final DirtyRegion mDirty;
+    // type, x, y and alive for a cell or the pattern index for a stamp, per edit
+    private int[] mEdits = new int[4 * 64];
+    private Pattern[] mPatterns = new Pattern[16];
+    private int mCount;
+    private int mPatternCount;
+
+    public EditBuffer(int gridWidth, int gridHeight) {
+        mDirty = new DirtyRegion(gridWidth, gridHeight);
+    }
+
+    public void setCell(int x, int y, boolean alive) {
+        add(CELL, x, y, alive ? 1 : 0);
+        mDirty.add(x, y, 1, 1);
+    }
+
+    public void stamp(Pattern pattern, int x, int y) {
+        if (mPatternCount == mPatterns.length) {
+            Pattern[] patterns = new Pattern[mPatterns.length * 2];
+            System.arraycopy(mPatterns, 0, patterns, 0, mPatternCount);
+            mPatterns = patterns;
+        }
+        mPatterns[mPatternCount] = pattern;
+        add(STAMP, x, y, mPatternCount++);
+        mDirty.add(x, y, pattern.getWidth(), pattern.getHeight());
+    }
+
+    private void add(int type, int x, int y, int argument) {
+        if (mCount * 4 == mEdits.length) {
+            int[] edits = new int[mEdits.length * 2];
+            System.arraycopy(mEdits, 0, edits, 0, mCount * 4);
+            mEdits = edits;
+        }
+        int i = mCount++ * 4;
+        mEdits[i] = type;
+        mEdits[i + 1] = x;
+        mEdits[i + 2] = y;
+        mEdits[i + 3] = argument;
+    }
+
+    public boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    /** Number of edits. */
+    public int size() {
+        return mCount;
+    }
+
+    /** One of CELL or STAMP. */
+    public int getType(int edit) {
+        return mEdits[edit * 4];
+    }
+
+    public int getX(int edit) {
+        return mEdits[edit * 4 + 1];
+    }
+
+    public int getY(int edit) {
+        return mEdits[edit * 4 + 2];
+    }
+
+    public boolean isAlive(int edit) {
+        return mEdits[edit * 4 + 3] != 0;
+    }
+
+    public Pattern getPattern(int edit) {
+        return mPatterns[mEdits[edit * 4 + 3]];
+    }
+
+    /** Everything the edits write. */
+    public DirtyRegion getDirtyRegion() {
+        return mDirty;
+    }
+
+    /** Writes every edit into the engine's current generation and invalidates only what they cover. */
+    public void applyTo(BitEngine engine) {
+        BitGrid grid = engine.getGrid();
+        for (int i = 0; i < mCount * 4; i += 4) {
+            if (mEdits[i] == CELL) {
+                grid.set(BitEngine.wrap(mEdits[i + 1], grid.getWidth()), BitEngine.wrap(mEdits[i + 2], grid.getHeight()), mEdits[i + 3] != 0);
+            } else {
+                stamp(grid, mPatterns[mEdits[i + 3]], mEdits[i + 1], mEdits[i + 2]);
+            }
+        }
+        engine.invalidate(mDirty);
+    }
+
+    public void clear() {
+        mCount = 0;
+        // the patterns are not ours to keep alive
+        for (int i = 0; i < mPatternCount; ++i) {
+            mPatterns[i] = null;
+        }
+        mPatternCount = 0;
+        mDirty.clear();
+    }
+
+    /** Writes the pattern rectangle with its bottom left corner at (x, y), wrapping around the edges. */
+    static void stamp(BitGrid grid, Pattern pattern, int x, int y) {
+        int gridWidth = grid.getWidth();
+        int gridHeight = grid.getHeight();
+        int width = pattern.getWidth();
+        int height = pattern.getHeight();
+        for (int row = 0; row < height; ++row) {
+            int cellY = BitEngine.wrap(y + row, gridHeight);
+            for (int column = 0; column < width; ++column) {
+                grid.set(BitEngine.wrap(x + column, gridWidth), cellY, pattern.isAlive(column, height - 1 - row));
+            }
+        }
+    }
+}
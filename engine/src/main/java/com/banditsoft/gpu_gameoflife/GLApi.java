@@ -0,0 +1,119 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.nio.Buffer;
+
+/**
+ * The GLES 2.0 calls the engine makes, so the GL code can run against a stand-in without a GPU.
+ * Constants have the GLES20 values.
+ */
+public interface GLApi {
+    int GL_NO_ERROR = 0;
+    int GL_FALSE = 0;
+    int GL_TRIANGLES = 0x0004;
+    int GL_COLOR_BUFFER_BIT = 0x4000;
+    int GL_TEXTURE_2D = 0x0DE1;
+    int GL_UNSIGNED_BYTE = 0x1401;
+    int GL_UNSIGNED_SHORT = 0x1403;
+    int GL_FLOAT = 0x1406;
+    int GL_ALPHA = 0x1906;
+    int GL_RGB = 0x1907;
+    int GL_RGBA = 0x1908;
+    int GL_LUMINANCE = 0x1909;
+    int GL_NEAREST = 0x2600;
+    int GL_TEXTURE_MAG_FILTER = 0x2800;
+    int GL_TEXTURE_MIN_FILTER = 0x2801;
+    int GL_TEXTURE_WRAP_S = 0x2802;
+    int GL_TEXTURE_WRAP_T = 0x2803;
+    int GL_REPEAT = 0x2901;
+    int GL_DEPTH_TEST = 0x0B71;
+    int GL_EXTENSIONS = 0x1F03;
+    int GL_UNPACK_ALIGNMENT = 0x0CF5;
+    int GL_PACK_ALIGNMENT = 0x0D05;
+    int GL_FRAGMENT_SHADER = 0x8B30;
+    int GL_VERTEX_SHADER = 0x8B31;
+    int GL_COMPILE_STATUS = 0x8B81;
+    int GL_LINK_STATUS = 0x8B82;
+    int GL_FRAMEBUFFER = 0x8D40;
+    int GL_COLOR_ATTACHMENT0 = 0x8CE0;
+    int GL_FRAMEBUFFER_COMPLETE = 0x8CD5;
+    int GL_FRAMEBUFFER_INCOMPLETE_ATTACHMENT = 0x8CD6;
+    int GL_FRAMEBUFFER_INCOMPLETE_MISSING_ATTACHMENT = 0x8CD7;
+    int GL_FRAMEBUFFER_INCOMPLETE_DIMENSIONS = 0x8CD9;
+    int GL_FRAMEBUFFER_UNSUPPORTED = 0x8CDD;
+
+    int glGetError();
+
+    String glGetString(int name);
+
+    void glClearColor(float red, float green, float blue, float alpha);
+
+    void glDisable(int cap);
+
+    void glViewport(int x, int y, int width, int height);
+
+    void glClear(int mask);
+
+    void glGenTextures(int n, int[] textures, int offset);
+
+    void glBindTexture(int target, int texture);
+
+    void glTexParameteri(int target, int pname, int param);
+
+    void glPixelStorei(int pname, int param);
+
+    void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels);
+
+    void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, Buffer pixels);
+
+    void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels);
+
+    void glGenFramebuffers(int n, int[] framebuffers, int offset);
+
+    void glBindFramebuffer(int target, int framebuffer);
+
+    void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level);
+
+    int glCheckFramebufferStatus(int target);
+
+    int glCreateShader(int type);
+
+    void glShaderSource(int shader, String string);
+
+    void glCompileShader(int shader);
+
+    void glGetShaderiv(int shader, int pname, int[] params, int offset);
+
+    String glGetShaderInfoLog(int shader);
+
+    int glCreateProgram();
+
+    void glAttachShader(int program, int shader);
+
+    void glLinkProgram(int program);
+
+    void glGetProgramiv(int program, int pname, int[] params, int offset);
+
+    void glUseProgram(int program);
+
+    int glGetAttribLocation(int program, String name);
+
+    int glGetUniformLocation(int program, String name);
+
+    void glEnableVertexAttribArray(int index);
+
+    void glDisableVertexAttribArray(int index);
+
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr);
+
+    void glUniform1i(int location, int x);
+
+    void glUniform1f(int location, float x);
+
+    void glUniform2f(int location, float x, float y);
+
+    void glUniform1iv(int location, int count, int[] v, int offset);
+
+    void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+
+    void glDrawElements(int mode, int count, int type, Buffer indices);
+}
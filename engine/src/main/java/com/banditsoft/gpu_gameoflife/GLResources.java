@@ -0,0 +1,120 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Logger;
+
+/**
+ * Creation and status checks of GL objects.
+ */
+public final class GLResources {
+    private static final Logger LOG = Logger.getLogger("GOLEngine");
+
+    private GLResources() {
+    }
+
+    public static int createFrameBuffer(GLApi gl)
+    {
+        int[] ids = new int[1];
+        gl.glGenFramebuffers(1, ids, 0);
+        checkGLError(gl, "createFrameBuffer");
+        return ids[0];
+    }
+
+    public static int createTexture(GLApi gl, int width, int height, ByteBuffer buffer)
+    {
+        return createTexture(gl, width, height, GLApi.GL_RGB, buffer);
+    }
+
+    /** format is both the internal and the upload format, GL_RGB for textures that are rendered into. */
+    public static int createTexture(GLApi gl, int width, int height, int format, ByteBuffer buffer)
+    {
+        int[] textureIds = new int[1];
+        gl.glGenTextures(1, textureIds, 0);
+
+        gl.glBindTexture(GLApi.GL_TEXTURE_2D, textureIds[0]);
+        gl.glTexParameteri(GLApi.GL_TEXTURE_2D, GLApi.GL_TEXTURE_MIN_FILTER, GLApi.GL_NEAREST);
+        gl.glTexParameteri(GLApi.GL_TEXTURE_2D, GLApi.GL_TEXTURE_MAG_FILTER, GLApi.GL_NEAREST);
+        gl.glTexParameteri(GLApi.GL_TEXTURE_2D, GLApi.GL_TEXTURE_WRAP_S, GLApi.GL_REPEAT);
+        gl.glTexParameteri(GLApi.GL_TEXTURE_2D, GLApi.GL_TEXTURE_WRAP_T, GLApi.GL_REPEAT);
+        gl.glTexImage2D(GLApi.GL_TEXTURE_2D, 0, format, width, height, 0, format, GLApi.GL_UNSIGNED_BYTE, buffer);
+        gl.glBindTexture(GLApi.GL_TEXTURE_2D, 0);
+
+        checkGLError(gl, "createTexture");
+        return textureIds[0];
+    }
+
+    public static int createShaderProgram(GLApi gl, String vertexShader, String fragmentShader)
+    {
+        int programId = gl.glCreateProgram();
+        gl.glAttachShader(programId, createShader(gl, GLApi.GL_VERTEX_SHADER, vertexShader));
+        gl.glAttachShader(programId, createShader(gl, GLApi.GL_FRAGMENT_SHADER, fragmentShader));
+        gl.glLinkProgram(programId);
+        checkShaderLinkStatus(gl, programId);
+        checkGLError(gl, "createShaderProgram");
+        return programId;
+    }
+
+    private static int createShader(GLApi gl, int type, String shader){
+        int shaderId = gl.glCreateShader(type);
+        gl.glShaderSource(shaderId, shader);
+        gl.glCompileShader(shaderId);
+        checkShaderCompileStatus(gl, shaderId);
+        checkGLError(gl, "loadShader");
+        return shaderId;
+    }
+
+    public static void checkGLError(GLApi gl, String function) {
+        int error = gl.glGetError();
+        if (error != GLApi.GL_NO_ERROR) {
+            LOG.severe("OpenGL Error 0x" + Integer.toHexString(error) + " in function " + function);
+        }
+    }
+
+    private static void checkShaderCompileStatus(GLApi gl, int shaderId)
+    {
+        int[] status = new int[1];
+        gl.glGetShaderiv(shaderId, GLApi.GL_COMPILE_STATUS, status, 0);
+        checkGLError(gl, "checkShaderCompileStatus");
+        if(status[0] == GLApi.GL_FALSE)
+        {
+            String shaderInfo = gl.glGetShaderInfoLog(shaderId);
+            LOG.severe("Shader with id " + shaderId + " not compiled. Status: " + status[0] + ", info: " + shaderInfo);
+        }
+    }
+
+    private static void checkShaderLinkStatus(GLApi gl, int shaderProgramId)
+    {
+        int[] status = new int[1];
+        gl.glGetProgramiv(shaderProgramId, GLApi.GL_LINK_STATUS, status, 0);
+        checkGLError(gl, "checkShaderLinkStatus");
+        if (status[0] <= 0) {
+            LOG.fine("Shader program with id " + shaderProgramId + " not linked. Status: " + status[0]);
+        }
+    }
+
+    public static void checkFramebufferStatus(GLApi gl)
+    {
+        int status = gl.glCheckFramebufferStatus(GLApi.GL_FRAMEBUFFER);
+        if(status != GLApi.GL_FRAMEBUFFER_COMPLETE)
+        {
+            String statusMsg;
+            switch (status) {
+                case GLApi.GL_FRAMEBUFFER_INCOMPLETE_ATTACHMENT:
+                    statusMsg = "ATTACHMENT: Not all framebuffer attachment points are framebuffer attachment complete.";
+                    break;
+                case GLApi.GL_FRAMEBUFFER_INCOMPLETE_DIMENSIONS:
+                    statusMsg = "DIMENSIONS: Not all attached images have the same width and height";
+                    break;
+                case GLApi.GL_FRAMEBUFFER_INCOMPLETE_MISSING_ATTACHMENT:
+                    statusMsg = "MISSING_ATTACHMENT: No images are attached to the framebuffer.";
+                    break;
+                case GLApi.GL_FRAMEBUFFER_UNSUPPORTED:
+                    statusMsg = "UNSUPPORTED: The combination of internal formats of the attached images violates an implementation-dependent set of restrictions.";
+                    break;
+                default:
+                    statusMsg = "Unknown error";
+            }
+            LOG.severe("Framebuffer is not complete. status: 0x" + Integer.toHexString(status) + " - " + statusMsg);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Memory mapped history of generations.
+ *
+ * Every keyframeInterval-th record is a keyframe, the others hold the XOR of a generation and the one
+ * archived before it. Both are stored as the nonzero words of the (XORed) grid, each preceded by the
+ * varint count of zero words skipped. seek() decodes forward from the nearest keyframe, so any archived
+ * generation costs at most one keyframe and keyframeInterval - 1 deltas, all read straight from the mapping.
+ *
+ * The file is mapped in chunks of chunkSize bytes and a record never crosses a chunk boundary.
+ * Not thread safe.
+ */
+public class GenerationArchive implements Closeable {
+    static final int MAGIC = 0x474F4C41; // "GOLA"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_HEADER_SIZE = 13;
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int END_OFFSET = 24;
+    private static final byte RECORD_PADDING = 0;
+    private static final byte RECORD_KEYFRAME = 1;
+    private static final byte RECORD_DELTA = 2;
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mKeyframeInterval;
+    private final int mChunkSize;
+    private final List<MappedByteBuffer> mChunks = new ArrayList<>();
+    private long mEnd;
+
+    private long[] mGenerations = new long[1024];
+    private long[] mOffsets = new long[1024];
+    private int mCount;
+
+    private final long[] mPrevious;
+    private final long[] mScratch;
+
+    private GenerationArchive(RandomAccessFile file, int width, int height, int keyframeInterval, int chunkSize) {
+        mFile = file;
+        mChannel = file.getChannel();
+        mWidth = width;
+        mHeight = height;
+        mKeyframeInterval = keyframeInterval;
+        mChunkSize = chunkSize;
+        mPrevious = new long[(width / BitGrid.WORD_BITS) * height];
+        mScratch = new long[mPrevious.length];
+    }
+
+    public static GenerationArchive create(File file, int width, int height, int keyframeInterval) throws IOException {
+        return create(file, width, height, keyframeInterval, DEFAULT_CHUNK_SIZE);
+    }
+
+    public static GenerationArchive create(File file, int width, int height, int keyframeInterval, int chunkSize) throws IOException {
+        new BitGrid(width, height); // validates the size
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Keyframe interval must be positive, got " + keyframeInterval);
+        }
+        long maxRecord = RECORD_HEADER_SIZE + (long) (width / BitGrid.WORD_BITS) * height * 9;
+        if (chunkSize < HEADER_SIZE + maxRecord) {
+            throw new IllegalArgumentException("Chunk size " + chunkSize + " cannot hold a " + width + "x" + height + " keyframe");
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        GenerationArchive archive = new GenerationArchive(raf, width, height, keyframeInterval, chunkSize);
+        MappedByteBuffer header = archive.chunk(0);
+        header.putInt(0, MAGIC);
+        header.putShort(4, VERSION);
+        header.putInt(8, width);
+        header.putInt(12, height);
+        header.putInt(16, keyframeInterval);
+        header.putInt(20, chunkSize);
+        archive.setEnd(HEADER_SIZE);
+        return archive;
+    }
+
+    /** Opens an archive for reading and further appends, rebuilding the index from the record headers. */
+    public static GenerationArchive open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        MappedByteBuffer header = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC) {
+            raf.close();
+            throw new IOException("Not a generation archive");
+        }
+        if (header.getShort(4) != VERSION) {
+            raf.close();
+            throw new IOException("Unsupported archive version " + header.getShort(4));
+        }
+        GenerationArchive archive = new GenerationArchive(raf, header.getInt(8), header.getInt(12), header.getInt(16), header.getInt(20));
+        archive.mEnd = header.getLong(END_OFFSET);
+        archive.scan();
+        return archive;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    public long getFirstGeneration() {
+        return mCount == 0 ? -1 : mGenerations[0];
+    }
+
+    public long getLastGeneration() {
+        return mCount == 0 ? -1 : mGenerations[mCount - 1];
+    }
+
+    /** Bytes used by the records so far. */
+    public long getLength() {
+        return mEnd;
+    }
+
+    /** Appends a generation, generations have to increase but may skip. */
+    public void append(long generation, BitGrid grid) throws IOException {
+        if (grid.getWidth() != mWidth || grid.getHeight() != mHeight) {
+            throw new IllegalArgumentException("Grid is " + grid.getWidth() + "x" + grid.getHeight() + ", archive is " + mWidth + "x" + mHeight);
+        }
+        if (mCount > 0 && generation <= mGenerations[mCount - 1]) {
+            throw new IllegalArgumentException("Generation " + generation + " is not after " + mGenerations[mCount - 1]);
+        }
+        long[] words = grid.getWords();
+        boolean keyframe = mCount % mKeyframeInterval == 0;
+        if (keyframe) {
+            Arrays.fill(mPrevious, 0L);
+        }
+
+        long maxRecord = RECORD_HEADER_SIZE + (long) words.length * 9;
+        long offset = mEnd;
+        if (chunkRemaining(offset) < maxRecord) {
+            if (chunkRemaining(offset) >= RECORD_HEADER_SIZE) {
+                chunk(offset).put((int) (offset % mChunkSize) + 8, RECORD_PADDING);
+            }
+            offset = (offset / mChunkSize + 1) * mChunkSize;
+        }
+        MappedByteBuffer chunk = chunk(offset);
+        int position = (int) (offset % mChunkSize);
+        int payload = position + RECORD_HEADER_SIZE;
+        int skip = 0;
+        for (int i = 0; i < words.length; ++i) {
+            long delta = words[i] ^ mPrevious[i];
+            if (delta == 0) {
+                ++skip;
+                continue;
+            }
+            payload = putVarint(chunk, payload, skip);
+            chunk.putLong(payload, delta);
+            payload += 8;
+            skip = 0;
+        }
+        chunk.putLong(position, generation);
+        chunk.put(position + 8, keyframe ? RECORD_KEYFRAME : RECORD_DELTA);
+        chunk.putInt(position + 9, payload - position - RECORD_HEADER_SIZE);
+
+        System.arraycopy(words, 0, mPrevious, 0, words.length);
+        index(generation, offset);
+        setEnd(offset + (payload - position));
+    }
+
+    /**
+     * Restores the latest archived generation at or before the given one.
+     *
+     * @return null if nothing that old is archived
+     */
+    public Snapshot seek(long generation) throws IOException {
+        int record = find(generation);
+        if (record < 0) {
+            return null;
+        }
+        BitGrid grid = new BitGrid(mWidth, mHeight);
+        decode(record, grid.getWords());
+        return new Snapshot(grid, mGenerations[record]);
+    }
+
+    /** Seeks to the generation and drops everything archived after it, so appends continue from there. */
+    public Snapshot rewind(long generation) throws IOException {
+        Snapshot snapshot = seek(generation);
+        int record = snapshot == null ? -1 : find(generation);
+        long end = record < 0 ? HEADER_SIZE : mOffsets[record] + RECORD_HEADER_SIZE + chunk(mOffsets[record]).getInt((int) (mOffsets[record] % mChunkSize) + 9);
+        mCount = record + 1;
+        if (snapshot != null) {
+            System.arraycopy(snapshot.getGrid().getWords(), 0, mPrevious, 0, mPrevious.length);
+        }
+        setEnd(end);
+        return snapshot;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (MappedByteBuffer chunk : mChunks) {
+            if (chunk != null) {
+                chunk.force();
+            }
+        }
+        mChunks.clear();
+        mChannel.truncate(mEnd);
+        mChannel.close();
+        mFile.close();
+    }
+
+    private void decode(int record, long[] words) throws IOException {
+        int keyframe = record - record % mKeyframeInterval;
+        Arrays.fill(words, 0L);
+        for (int i = keyframe; i <= record; ++i) {
+            apply(mOffsets[i], words);
+        }
+    }
+
+    private void apply(long offset, long[] words) throws IOException {
+        MappedByteBuffer chunk = chunk(offset);
+        int position = (int) (offset % mChunkSize);
+        int end = position + RECORD_HEADER_SIZE + chunk.getInt(position + 9);
+        int payload = position + RECORD_HEADER_SIZE;
+        int index = 0;
+        while (payload < end) {
+            int skip = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = chunk.get(payload++);
+                skip |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            index += skip;
+            words[index++] ^= chunk.getLong(payload);
+            payload += 8;
+        }
+    }
+
+    private int find(long generation) {
+        int low = 0;
+        int high = mCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (mGenerations[middle] <= generation) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    private void index(long generation, long offset) {
+        if (mCount == mGenerations.length) {
+            mGenerations = Arrays.copyOf(mGenerations, mCount * 2);
+            mOffsets = Arrays.copyOf(mOffsets, mCount * 2);
+        }
+        mGenerations[mCount] = generation;
+        mOffsets[mCount] = offset;
+        ++mCount;
+    }
+
+    private void scan() throws IOException {
+        long offset = HEADER_SIZE;
+        while (offset < mEnd) {
+            if (chunkRemaining(offset) < RECORD_HEADER_SIZE || chunk(offset).get((int) (offset % mChunkSize) + 8) == RECORD_PADDING) {
+                offset = (offset / mChunkSize + 1) * mChunkSize;
+                continue;
+            }
+            MappedByteBuffer chunk = chunk(offset);
+            int position = (int) (offset % mChunkSize);
+            index(chunk.getLong(position), offset);
+            offset += RECORD_HEADER_SIZE + chunk.getInt(position + 9);
+        }
+        if (mCount > 0) {
+            decode(mCount - 1, mPrevious);
+        }
+    }
+
+    private long chunkRemaining(long offset) {
+        return mChunkSize - offset % mChunkSize;
+    }
+
+    private MappedByteBuffer chunk(long offset) throws IOException {
+        int index = (int) (offset / mChunkSize);
+        while (mChunks.size() <= index) {
+            mChunks.add(null);
+        }
+        MappedByteBuffer chunk = mChunks.get(index);
+        if (chunk == null) {
+            chunk = mChannel.map(FileChannel.MapMode.READ_WRITE, (long) index * mChunkSize, mChunkSize);
+            mChunks.set(index, chunk);
+        }
+        return chunk;
+    }
+
+    private void setEnd(long end) throws IOException {
+        mEnd = end;
+        chunk(0).putLong(END_OFFSET, end);
+    }
+
+    private static int putVarint(MappedByteBuffer chunk, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            chunk.put(position++, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        chunk.put(position++, (byte) value);
+        return position;
+    }
+}
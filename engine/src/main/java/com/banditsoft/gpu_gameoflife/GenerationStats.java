@@ -0,0 +1,95 @@
+package com.banditsoft.gpu_gameoflife;
+
+/**
+ * Population, live cell bounding box, births and deaths of one generation, gathered while it was
+ * stepped instead of in a separate pass over the grid.
+ */
+public final class GenerationStats {
+    long mPopulation;
+    long mBirths;
+    long mDeaths;
+    int mMinX;
+    int mMinY;
+    int mMaxX;
+    int mMaxY;
+    /** GridHash terms of the changed words, XORed into the previous generation's hash gives this one's. */
+    long mHashDelta;
+
+    public GenerationStats() {
+        clear();
+    }
+
+    void clear() {
+        mPopulation = 0;
+        mBirths = 0;
+        mDeaths = 0;
+        mHashDelta = 0;
+        mMinX = Integer.MAX_VALUE;
+        mMinY = Integer.MAX_VALUE;
+        mMaxX = Integer.MIN_VALUE;
+        mMaxY = Integer.MIN_VALUE;
+    }
+
+    /** Adds the counts of a disjoint part of the grid and grows the box around its box. */
+    void add(GenerationStats other) {
+        mPopulation += other.mPopulation;
+        mBirths += other.mBirths;
+        mDeaths += other.mDeaths;
+        mHashDelta ^= other.mHashDelta;
+        include(other.mMinX, other.mMinY, other.mMaxX, other.mMaxY);
+    }
+
+    void include(int minX, int minY, int maxX, int maxY) {
+        if (minX > maxX) {
+            return;
+        }
+        mMinX = Math.min(mMinX, minX);
+        mMinY = Math.min(mMinY, minY);
+        mMaxX = Math.max(mMaxX, maxX);
+        mMaxY = Math.max(mMaxY, maxY);
+    }
+
+    public long getPopulation() {
+        return mPopulation;
+    }
+
+    public long getBirths() {
+        return mBirths;
+    }
+
+    public long getDeaths() {
+        return mDeaths;
+    }
+
+    /** Cells that differ from the previous generation. */
+    public long getChangedCells() {
+        return mBirths + mDeaths;
+    }
+
+    public boolean isEmpty() {
+        return mPopulation == 0;
+    }
+
+    /** Bounding box of the live cells, inclusive. Meaningless when isEmpty(). */
+    public int getMinX() {
+        return mMinX;
+    }
+
+    public int getMinY() {
+        return mMinY;
+    }
+
+    public int getMaxX() {
+        return mMaxX;
+    }
+
+    public int getMaxY() {
+        return mMaxY;
+    }
+
+    @Override
+    public String toString() {
+        return "population " + mPopulation + ", births " + mBirths + ", deaths " + mDeaths
+                + (isEmpty() ? "" : ", box (" + mMinX + ", " + mMinY + ") - (" + mMaxX + ", " + mMaxY + ")");
+    }
+}
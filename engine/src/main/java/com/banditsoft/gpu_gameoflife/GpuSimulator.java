@@ -0,0 +1,120 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Ping-pongs the simulator shader between two textures.
+ *
+ * Each texture is attached to its own framebuffer once at creation, and the program handles and the
+ * uniforms that never change are set up front, so one generation costs a framebuffer bind, a texture
+ * bind and a draw. Must be used from the GL thread, except setRules.
+ */
+public class GpuSimulator {
+    private final GLApi mGL;
+    private final ScreenQuad mQuad;
+    private final String mVertexShader;
+    private final String mFragmentShader;
+
+    private int mProgram;
+    private int mPositionHandle;
+    private int mDecideDataHandle;
+
+    private final int[] mTextureIds = new int[2];
+    private final int[] mFrameBufferIds = new int[2];
+    private int mFront;
+    private int mGridWidth;
+    private int mGridHeight;
+
+    private final int[] mDecideData = RuleTable.create(LifeKernel.CONWAY_BIRTH, LifeKernel.CONWAY_SURVIVE);
+    private volatile boolean mRulesChanged = true;
+
+    public GpuSimulator(GLApi gl, ScreenQuad quad, String vertexShader, String fragmentShader) {
+        mGL = gl;
+        mQuad = quad;
+        mVertexShader = vertexShader;
+        mFragmentShader = fragmentShader;
+    }
+
+    /** Creates the textures, framebuffers and the program, the front texture starts from initialState. */
+    public void create(int gridWidth, int gridHeight, ByteBuffer initialState) {
+        mGridWidth = gridWidth;
+        mGridHeight = gridHeight;
+        mFront = 0;
+        mTextureIds[0] = GLResources.createTexture(mGL, gridWidth, gridHeight, initialState);
+        mTextureIds[1] = GLResources.createTexture(mGL, gridWidth, gridHeight, null);
+
+        for (int i = 0; i < 2; ++i) {
+            mFrameBufferIds[i] = GLResources.createFrameBuffer(mGL);
+            mGL.glBindFramebuffer(GLApi.GL_FRAMEBUFFER, mFrameBufferIds[i]);
+            mGL.glFramebufferTexture2D(GLApi.GL_FRAMEBUFFER, GLApi.GL_COLOR_ATTACHMENT0, GLApi.GL_TEXTURE_2D, mTextureIds[i], 0);
+            GLResources.checkFramebufferStatus(mGL);
+        }
+        mGL.glBindFramebuffer(GLApi.GL_FRAMEBUFFER, 0);
+
+        mProgram = GLResources.createShaderProgram(mGL, mVertexShader, mFragmentShader);
+        mPositionHandle = mGL.glGetAttribLocation(mProgram, "aPosition");
+        mDecideDataHandle = mGL.glGetUniformLocation(mProgram, "uDecideData");
+
+        mGL.glUseProgram(mProgram);
+        mGL.glUniform1i(mGL.glGetUniformLocation(mProgram, "uTexture"), 0);
+        mGL.glUniform2f(mGL.glGetUniformLocation(mProgram, "uScale"), gridWidth, gridHeight);
+        mRulesChanged = true;
+
+        GLResources.checkGLError(mGL, "GpuSimulator.create");
+    }
+
+    public void setRules(int deadRule, int liveRule) {
+        RuleTable.fill(mDecideData, deadRule, liveRule);
+        mRulesChanged = true;
+    }
+
+    /** Uploads the decide data of a two state radius 1 rule. */
+    public void setRule(Rule rule) {
+        int[] decideData = rule.toDecideData();
+        System.arraycopy(decideData, 0, mDecideData, 0, decideData.length);
+        mRulesChanged = true;
+    }
+
+    /** Runs the given number of generations. Leaves the viewport at the grid size. */
+    public void simulate(int generations) {
+        mGL.glViewport(0, 0, mGridWidth, mGridHeight);
+        mGL.glUseProgram(mProgram);
+        mGL.glEnableVertexAttribArray(mPositionHandle);
+        mGL.glVertexAttribPointer(mPositionHandle, ScreenQuad.COORDS_PER_VERTEX, GLApi.GL_FLOAT, false, ScreenQuad.VERTEX_STRIDE, mQuad.mVertexBuffer);
+        if (mRulesChanged) {
+            mRulesChanged = false;
+            mGL.glUniform1iv(mDecideDataHandle, mDecideData.length, mDecideData, 0);
+        }
+
+        for (int generation = 0; generation < generations; ++generation) {
+            int back = 1 - mFront;
+            mGL.glBindFramebuffer(GLApi.GL_FRAMEBUFFER, mFrameBufferIds[back]);
+            mGL.glBindTexture(GLApi.GL_TEXTURE_2D, mTextureIds[mFront]);
+            mGL.glDrawElements(GLApi.GL_TRIANGLES, ScreenQuad.INDEX_COUNT, GLApi.GL_UNSIGNED_SHORT, mQuad.mIndexBuffer);
+            mFront = back;
+        }
+
+        mGL.glDisableVertexAttribArray(mPositionHandle);
+        mGL.glBindTexture(GLApi.GL_TEXTURE_2D, 0);
+        mGL.glBindFramebuffer(GLApi.GL_FRAMEBUFFER, 0);
+    }
+
+    /** Reads the current generation through its framebuffer. */
+    public void readFront(int format, ByteBuffer pixels) {
+        mGL.glBindFramebuffer(GLApi.GL_FRAMEBUFFER, mFrameBufferIds[mFront]);
+        mGL.glReadPixels(0, 0, mGridWidth, mGridHeight, format, GLApi.GL_UNSIGNED_BYTE, pixels);
+        mGL.glBindFramebuffer(GLApi.GL_FRAMEBUFFER, 0);
+    }
+
+    public int getFrontTexture() {
+        return mTextureIds[mFront];
+    }
+
+    public int getGridWidth() {
+        return mGridWidth;
+    }
+
+    public int getGridHeight() {
+        return mGridHeight;
+    }
+}
@@ -0,0 +1,33 @@
+package com.banditsoft.gpu_gameoflife;
+
+/**
+ * 64-bit hash of a bit packed grid: the XOR over all words of a mix of the word and its index.
+ *
+ * Because it is an XOR of per-word terms, a step can update it from the words it changed alone:
+ * hash ^= word(i, old) ^ word(i, new).
+ */
+public final class GridHash {
+    private GridHash() {
+    }
+
+    /** SplitMix64 finalizer. */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** The term word index i with value word contributes to the hash. */
+    public static long word(int index, long word) {
+        return mix(word ^ mix(index + 0x9E3779B97F4A7C15L));
+    }
+
+    public static long of(BitGrid grid) {
+        long[] words = grid.getWords();
+        long hash = 0;
+        for (int i = 0; i < words.length; ++i) {
+            hash ^= word(i, words[i]);
+        }
+        return hash;
+    }
+}
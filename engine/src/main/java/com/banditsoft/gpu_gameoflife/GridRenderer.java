@@ -0,0 +1,78 @@
+package com.banditsoft.gpu_gameoflife;
+
+/**
+ * Draws a grid texture onto the screen quad, either an RGB simulator texture or a bit packed
+ * luminance frame (see CellPacking).
+ *
+ * Both programs are linked and their attribute and uniform locations looked up once in create, so
+ * a frame is a handful of GL calls with no string lookups and no allocation. Must be used from the
+ * GL thread.
+ */
+public class GridRenderer {
+    private final GLApi mGL;
+    private final ScreenQuad mQuad;
+    private final String mVertexShader;
+    private final String mFragmentShader;
+    private final String mPackedFragmentShader;
+
+    private final Program mProgram = new Program();
+    private final Program mPackedProgram = new Program();
+
+    private static final class Program {
+        int mId;
+        int mMvpMatrixHandle;
+        int mTexelHandle;
+        int mPositionHandle;
+        int mTextureHandle;
+        int mGridWidthHandle;
+    }
+
+    public GridRenderer(GLApi gl, ScreenQuad quad, String vertexShader, String fragmentShader, String packedFragmentShader) {
+        mGL = gl;
+        mQuad = quad;
+        mVertexShader = vertexShader;
+        mFragmentShader = fragmentShader;
+        mPackedFragmentShader = packedFragmentShader;
+    }
+
+    public void create() {
+        link(mProgram, mFragmentShader);
+        link(mPackedProgram, mPackedFragmentShader);
+        GLResources.checkGLError(mGL, "GridRenderer.create");
+    }
+
+    private void link(Program program, String fragmentShader) {
+        program.mId = GLResources.createShaderProgram(mGL, mVertexShader, fragmentShader);
+        program.mMvpMatrixHandle = mGL.glGetUniformLocation(program.mId, "uMVPMatrix");
+        program.mTexelHandle = mGL.glGetAttribLocation(program.mId, "aTexel");
+        program.mPositionHandle = mGL.glGetAttribLocation(program.mId, "aPosition");
+        program.mTextureHandle = mGL.glGetUniformLocation(program.mId, "uTexture");
+        program.mGridWidthHandle = mGL.glGetUniformLocation(program.mId, "uGridWidth");
+    }
+
+    /** Clears the screen and draws the texture, packed tells it holds bit packed cells of a grid this wide. */
+    public void draw(int texture, boolean packed, int gridWidth, float[] mvpMatrix) {
+        Program program = packed ? mPackedProgram : mProgram;
+        mGL.glClear(GLApi.GL_COLOR_BUFFER_BIT);
+        mGL.glUseProgram(program.mId);
+        mGL.glBindTexture(GLApi.GL_TEXTURE_2D, texture);
+
+        if (packed) {
+            mGL.glUniform1f(program.mGridWidthHandle, gridWidth);
+        }
+        mGL.glUniformMatrix4fv(program.mMvpMatrixHandle, 1, false, mvpMatrix, 0);
+
+        mGL.glEnableVertexAttribArray(program.mTexelHandle);
+        mGL.glVertexAttribPointer(program.mTexelHandle, ScreenQuad.COORDS_PER_TEXEL, GLApi.GL_FLOAT, false, 0, mQuad.mTexelBuffer);
+
+        mGL.glEnableVertexAttribArray(program.mPositionHandle);
+        mGL.glVertexAttribPointer(program.mPositionHandle, ScreenQuad.COORDS_PER_VERTEX, GLApi.GL_FLOAT, false, ScreenQuad.VERTEX_STRIDE, mQuad.mVertexBuffer);
+
+        mGL.glUniform1i(program.mTextureHandle, 0);
+
+        mGL.glDrawElements(GLApi.GL_TRIANGLES, ScreenQuad.INDEX_COUNT, GLApi.GL_UNSIGNED_SHORT, mQuad.mIndexBuffer);
+
+        mGL.glDisableVertexAttribArray(program.mPositionHandle);
+        mGL.glBindTexture(GLApi.GL_TEXTURE_2D, 0);
+    }
+}
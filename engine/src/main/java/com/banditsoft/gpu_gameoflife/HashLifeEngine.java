@@ -0,0 +1,476 @@
+package com.banditsoft.gpu_gameoflife;
+
+
+/**
+ * HashLife engine: the world is a quadtree of canonical nodes and each node memoizes its future,
+ * so regular patterns reach generation 10^9 in a few dozen doublings.
+ *
+ * Unlike the other engines the plane is unbounded, the width x height window only tells which part
+ * of it getState/setState exchange; cell (0, 0) of the window sits at (-width / 2, -height / 2).
+ * Canonical nodes live in a hash table that is garbage collected from the root whenever it grows
+ * past the memory limit. The limit is checked between steps, a single huge step may overshoot it.
+ */
+public class HashLifeEngine implements SimulationEngine {
+    /** Rough heap cost of a node with its hash table slot. */
+    static final int NODE_BYTES = 64;
+    static final long DEFAULT_MEMORY_LIMIT = 64L * 1024 * 1024;
+    private static final int MAX_LEVEL = 62;
+
+    static final class Node {
+        final int mLevel;
+        final Node mNw;
+        final Node mNe;
+        final Node mSw;
+        final Node mSe;
+        final long mPopulation;
+        final int mHash;
+        Node mNext;
+        Node mResult;
+        boolean mMarked;
+
+        Node(int level, Node nw, Node ne, Node sw, Node se, long population, int hash) {
+            mLevel = level;
+            mNw = nw;
+            mNe = ne;
+            mSw = sw;
+            mSe = se;
+            mPopulation = population;
+            mHash = hash;
+        }
+    }
+
+    static final Node DEAD = new Node(0, null, null, null, null, 0, 0x2545F491);
+    static final Node ALIVE = new Node(0, null, null, null, null, 1, 0x9E3779B9);
+
+    private Node[] mTable = new Node[1 << 16];
+    private int mNodeCount;
+    private long mMemoryLimit = DEFAULT_MEMORY_LIMIT;
+    private final Node[] mEmpty = new Node[MAX_LEVEL + 1];
+    private int mResultStep = -1;
+
+    private byte[] mLookup = Rule.fromMasks(LifeKernel.CONWAY_BIRTH, LifeKernel.CONWAY_SURVIVE).toLookupTable();
+
+    private final int mWidth;
+    private final int mHeight;
+    private Node mRoot;
+    private Node mInitialState;
+    private long mGeneration;
+
+    private final NoiseStamp mNoise = new NoiseStamp();
+    private final NoiseStamp.Target mNoiseTarget = new NoiseStamp.Target() {
+        public void set(int x, int y, boolean alive) {
+            mRoot = setCell(mRoot, x, y, alive);
+        }
+    };
+
+    public HashLifeEngine(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mEmpty[0] = DEAD;
+        mRoot = empty(windowLevel());
+        mInitialState = mRoot;
+    }
+
+    public void setMemoryLimit(long bytes) {
+        mMemoryLimit = bytes;
+    }
+
+    public long getMemoryLimit() {
+        return mMemoryLimit;
+    }
+
+    public int getNodeCount() {
+        return mNodeCount;
+    }
+
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    public long getPopulation() {
+        return mRoot.mPopulation;
+    }
+
+    public void setInitialState(Pattern pattern) {
+        int wX = pattern.getWidth();
+        int wY = pattern.getHeight();
+        int sX = (mWidth / 2) - (wX / 2);
+        int sY = (mHeight / 2) - (wY / 2);
+        Node root = empty(windowLevel());
+        for (int y = 0; y < wY; ++y) {
+            for (int x = 0; x < wX; ++x) {
+                if (pattern.isAlive(x, wY - y - 1)) {
+                    root = setCell(root, sX + x - mWidth / 2, sY + y - mHeight / 2, true);
+                }
+            }
+        }
+        mInitialState = root;
+        mRoot = root;
+        mGeneration = 0;
+    }
+
+    public void setNoise(Pattern pattern) {
+        mNoise.setPattern(pattern);
+    }
+
+    @Override
+    public void setNoiseSeed(long seed) {
+        mNoise.setSeed(seed);
+    }
+
+    @Override
+    public void simulate() {
+        advance(1);
+    }
+
+    /** Moves the world the given number of generations ahead, one power of two step per set bit. */
+    public void advance(long generations) {
+        if (generations < 0) {
+            throw new IllegalArgumentException("Cannot advance " + generations + " generations");
+        }
+        for (int step = 0; generations != 0; ++step, generations >>>= 1) {
+            if ((generations & 1) == 0) {
+                continue;
+            }
+            if ((long) mNodeCount * NODE_BYTES > mMemoryLimit) {
+                collect();
+            }
+            if (step != mResultStep) {
+                clearResults();
+                mResultStep = step;
+            }
+            while (mRoot.mLevel < step + 3 || innerPopulation(mRoot) != mRoot.mPopulation) {
+                mRoot = expand(mRoot);
+            }
+            mRoot = advance(mRoot, step);
+            mGeneration += 1L << step;
+        }
+    }
+
+    @Override
+    public void reset() {
+        mRoot = mInitialState;
+        mGeneration = 0;
+    }
+
+    @Override
+    public void addNoise() {
+        // stamps land in the window, which is centered on the origin
+        mNoise.stamp(mWidth, mHeight, -mWidth / 2, -mHeight / 2, mNoiseTarget);
+    }
+
+    @Override
+    public void setRules(int deadRule, int liveRule) {
+        setRule(Rule.fromMasks(deadRule, liveRule));
+    }
+
+    /** Runs any two state radius 1 rule without B0 through the base case lookup table. */
+    public void setRule(Rule rule) {
+        if (!rule.isOuterTotalistic()) {
+            throw new IllegalArgumentException("HashLife only runs two state radius 1 rules: " + rule);
+        }
+        if (rule.isBorn(0)) {
+            throw new IllegalArgumentException("HashLife cannot run rules where dead cells with no neighbours are born");
+        }
+        mLookup = rule.toLookupTable();
+        clearResults();
+    }
+
+    @Override
+    public State getState() {
+        BitGrid grid = new BitGrid(mWidth, mHeight);
+        int half = 1 << (mRoot.mLevel - 1);
+        render(mRoot, -half + mWidth / 2, -half + mHeight / 2, grid);
+        return grid.toState();
+    }
+
+    /** Replaces both the initial state and the current generation with the window contents. */
+    @Override
+    public void setState(State state) {
+        if (state.width != mWidth || state.height != mHeight) {
+            throw new IllegalArgumentException("State is " + state.width + "x" + state.height + ", window is " + mWidth + "x" + mHeight);
+        }
+        BitGrid grid = BitGrid.fromState(state);
+        int level = windowLevel();
+        int half = 1 << (level - 1);
+        mInitialState = build(grid, level, mWidth / 2 - half, mHeight / 2 - half);
+        mRoot = mInitialState;
+        mGeneration = 0;
+    }
+
+    private int windowLevel() {
+        int level = 1;
+        while ((1 << (level - 1)) < Math.max(mWidth, mHeight)) {
+            ++level;
+        }
+        return level;
+    }
+
+    private Node build(BitGrid grid, int level, int x0, int y0) {
+        int size = 1 << level;
+        if (x0 >= mWidth || y0 >= mHeight || x0 + size <= 0 || y0 + size <= 0) {
+            return empty(level);
+        }
+        if (level == 0) {
+            return grid.get(x0, y0) ? ALIVE : DEAD;
+        }
+        int half = size >> 1;
+        return join(build(grid, level - 1, x0, y0 + half), build(grid, level - 1, x0 + half, y0 + half),
+                build(grid, level - 1, x0, y0), build(grid, level - 1, x0 + half, y0));
+    }
+
+    private void render(Node node, int x0, int y0, BitGrid grid) {
+        int size = 1 << node.mLevel;
+        if (node.mPopulation == 0 || x0 >= mWidth || y0 >= mHeight || x0 + size <= 0 || y0 + size <= 0) {
+            return;
+        }
+        if (node.mLevel == 0) {
+            grid.set(x0, y0, true);
+            return;
+        }
+        int half = size >> 1;
+        render(node.mSw, x0, y0, grid);
+        render(node.mSe, x0 + half, y0, grid);
+        render(node.mNw, x0, y0 + half, grid);
+        render(node.mNe, x0 + half, y0 + half, grid);
+    }
+
+    /** Sets the cell at (x, y) of the plane, growing the root until it covers the cell. */
+    private Node setCell(Node root, int x, int y, boolean alive) {
+        while (true) {
+            long half = 1L << (root.mLevel - 1);
+            if (x >= -half && x < half && y >= -half && y < half) {
+                break;
+            }
+            root = expand(root);
+        }
+        long half = 1L << (root.mLevel - 1);
+        return put(root, x + half, y + half, alive);
+    }
+
+    private Node put(Node node, long x, long y, boolean alive) {
+        if (node.mLevel == 0) {
+            return alive ? ALIVE : DEAD;
+        }
+        long half = 1L << (node.mLevel - 1);
+        if (y < half) {
+            if (x < half) {
+                return join(node.mNw, node.mNe, put(node.mSw, x, y, alive), node.mSe);
+            }
+            return join(node.mNw, node.mNe, node.mSw, put(node.mSe, x - half, y, alive));
+        }
+        if (x < half) {
+            return join(put(node.mNw, x, y - half, alive), node.mNe, node.mSw, node.mSe);
+        }
+        return join(node.mNw, put(node.mNe, x - half, y - half, alive), node.mSw, node.mSe);
+    }
+
+    /** Center of the node advanced 2^step generations, step <= level - 2. */
+    private Node advance(Node node, int step) {
+        if (node.mPopulation == 0) {
+            return empty(node.mLevel - 1);
+        }
+        if (node.mResult != null) {
+            return node.mResult;
+        }
+        Node result;
+        if (node.mLevel == 2) {
+            result = baseStep(node);
+        } else {
+            Node n00 = node.mNw;
+            Node n01 = join(node.mNw.mNe, node.mNe.mNw, node.mNw.mSe, node.mNe.mSw);
+            Node n02 = node.mNe;
+            Node n10 = join(node.mNw.mSw, node.mNw.mSe, node.mSw.mNw, node.mSw.mNe);
+            Node n11 = center(node);
+            Node n12 = join(node.mNe.mSw, node.mNe.mSe, node.mSe.mNw, node.mSe.mNe);
+            Node n20 = node.mSw;
+            Node n21 = join(node.mSw.mNe, node.mSe.mNw, node.mSw.mSe, node.mSe.mSw);
+            Node n22 = node.mSe;
+
+            int innerStep;
+            if (step == node.mLevel - 2) {
+                // full speed: two half steps
+                innerStep = step - 1;
+                n00 = advance(n00, innerStep);
+                n01 = advance(n01, innerStep);
+                n02 = advance(n02, innerStep);
+                n10 = advance(n10, innerStep);
+                n11 = advance(n11, innerStep);
+                n12 = advance(n12, innerStep);
+                n20 = advance(n20, innerStep);
+                n21 = advance(n21, innerStep);
+                n22 = advance(n22, innerStep);
+            } else {
+                innerStep = step;
+                n00 = center(n00);
+                n01 = center(n01);
+                n02 = center(n02);
+                n10 = center(n10);
+                n11 = center(n11);
+                n12 = center(n12);
+                n20 = center(n20);
+                n21 = center(n21);
+                n22 = center(n22);
+            }
+            result = join(advance(join(n00, n01, n10, n11), innerStep),
+                    advance(join(n01, n02, n11, n12), innerStep),
+                    advance(join(n10, n11, n20, n21), innerStep),
+                    advance(join(n11, n12, n21, n22), innerStep));
+        }
+        node.mResult = result;
+        return result;
+    }
+
+    /** One generation of the 2x2 center of a 4x4 node. */
+    private Node baseStep(Node node) {
+        int cells = 0;
+        cells |= quad(node.mSw) << 0;
+        cells |= quad(node.mSe) << 2;
+        cells |= quad(node.mNw) << 8;
+        cells |= quad(node.mNe) << 10;
+        return join(cell(cells, 1, 2) ? ALIVE : DEAD, cell(cells, 2, 2) ? ALIVE : DEAD,
+                cell(cells, 1, 1) ? ALIVE : DEAD, cell(cells, 2, 1) ? ALIVE : DEAD);
+    }
+
+    /** Cells of a 2x2 node in bits 0, 1 (bottom row) and 4, 5 (top row) of a 4x4 bit board. */
+    private static int quad(Node node) {
+        return (node.mSw == ALIVE ? 1 : 0) | (node.mSe == ALIVE ? 2 : 0)
+                | (node.mNw == ALIVE ? 16 : 0) | (node.mNe == ALIVE ? 32 : 0);
+    }
+
+    /** Looks up the 3x3 neighbourhood around (x, y), rows of three bits from the bottom up. */
+    private boolean cell(int cells, int x, int y) {
+        int index = ((cells >> ((y - 1) * 4 + x - 1)) & 7)
+                | (((cells >> (y * 4 + x - 1)) & 7) << 3)
+                | (((cells >> ((y + 1) * 4 + x - 1)) & 7) << 6);
+        return mLookup[index] != 0;
+    }
+
+    private Node center(Node node) {
+        return join(node.mNw.mSe, node.mNe.mSw, node.mSw.mNe, node.mSe.mNw);
+    }
+
+    private long innerPopulation(Node node) {
+        if (node.mLevel < 3) {
+            return -1;
+        }
+        return node.mNw.mSe.mSe.mPopulation + node.mNe.mSw.mSw.mPopulation
+                + node.mSw.mNe.mNe.mPopulation + node.mSe.mNw.mNw.mPopulation;
+    }
+
+    /** Doubles the node around its center. */
+    private Node expand(Node node) {
+        if (node.mLevel >= MAX_LEVEL) {
+            throw new IllegalStateException("Pattern grew past the largest representable universe");
+        }
+        Node border = empty(node.mLevel - 1);
+        return join(join(border, border, border, node.mNw), join(border, border, node.mNe, border),
+                join(border, node.mSw, border, border), join(node.mSe, border, border, border));
+    }
+
+    private Node empty(int level) {
+        Node node = mEmpty[level];
+        if (node == null) {
+            Node child = empty(level - 1);
+            node = join(child, child, child, child);
+            mEmpty[level] = node;
+        }
+        return node;
+    }
+
+    /** Returns the canonical node with the given children. */
+    Node join(Node nw, Node ne, Node sw, Node se) {
+        int hash = nw.mHash * 0x01000193 + ne.mHash;
+        hash = hash * 0x01000193 + sw.mHash;
+        hash = hash * 0x01000193 + se.mHash;
+        hash ^= hash >>> 16;
+        int slot = hash & (mTable.length - 1);
+        for (Node node = mTable[slot]; node != null; node = node.mNext) {
+            if (node.mNw == nw && node.mNe == ne && node.mSw == sw && node.mSe == se) {
+                return node;
+            }
+        }
+        Node node = new Node(nw.mLevel + 1, nw, ne, sw, se,
+                nw.mPopulation + ne.mPopulation + sw.mPopulation + se.mPopulation, hash);
+        node.mNext = mTable[slot];
+        mTable[slot] = node;
+        if (++mNodeCount > mTable.length - (mTable.length >> 2)) {
+            rehash(mTable.length << 1);
+        }
+        return node;
+    }
+
+    private void rehash(int capacity) {
+        Node[] table = new Node[capacity];
+        for (Node head : mTable) {
+            for (Node node = head; node != null; ) {
+                Node next = node.mNext;
+                int slot = node.mHash & (capacity - 1);
+                node.mNext = table[slot];
+                table[slot] = node;
+                node = next;
+            }
+        }
+        mTable = table;
+    }
+
+    private void clearResults() {
+        for (Node head : mTable) {
+            for (Node node = head; node != null; node = node.mNext) {
+                node.mResult = null;
+            }
+        }
+    }
+
+    /**
+     * Drops every node not reachable from the current or the initial state. Memoized results that
+     * point at dropped nodes are forgotten so nothing outside the table is handed out again.
+     */
+    void collect() {
+        mark(mRoot);
+        mark(mInitialState);
+        for (Node node : mEmpty) {
+            if (node != null) {
+                mark(node);
+            }
+        }
+        int count = 0;
+        for (int slot = 0; slot < mTable.length; ++slot) {
+            Node kept = null;
+            for (Node node = mTable[slot]; node != null; ) {
+                Node next = node.mNext;
+                if (node.mMarked) {
+                    node.mNext = kept;
+                    kept = node;
+                    ++count;
+                }
+                node = next;
+            }
+            mTable[slot] = kept;
+        }
+        for (Node head : mTable) {
+            for (Node node = head; node != null; node = node.mNext) {
+                if (node.mResult != null && !node.mResult.mMarked) {
+                    node.mResult = null;
+                }
+            }
+        }
+        for (Node head : mTable) {
+            for (Node node = head; node != null; node = node.mNext) {
+                node.mMarked = false;
+            }
+        }
+        mNodeCount = count;
+    }
+
+    private static void mark(Node node) {
+        if (node.mLevel == 0 || node.mMarked) {
+            return;
+        }
+        node.mMarked = true;
+        mark(node.mNw);
+        mark(node.mNe);
+        mark(node.mSw);
+        mark(node.mSe);
+    }
+}
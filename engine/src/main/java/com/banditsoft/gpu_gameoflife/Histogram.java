@@ -0,0 +1,122 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of non-negative longs, safe to record into from any thread.
+ *
+ * Every power of two is split into 8 buckets, so a reported percentile is within 12.5% of the
+ * recorded value. Recording is a handful of atomic increments and never allocates.
+ */
+public final class Histogram {
+    static final int SUB_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    /** Counts and percentiles of the values recorded since the last reset. */
+    public static final class Summary {
+        private final long mCount;
+        private final long mSum;
+        private final long mMax;
+        private final long[] mCounts;
+
+        Summary(long count, long sum, long max, long[] counts) {
+            mCount = count;
+            mSum = sum;
+            mMax = max;
+            mCounts = counts;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getSum() {
+            return mSum;
+        }
+
+        public long getMax() {
+            return mMax;
+        }
+
+        public double getMean() {
+            return mCount == 0 ? 0 : (double) mSum / mCount;
+        }
+
+        /** Lower bound of the bucket holding the given quantile, 0 when nothing was recorded. */
+        public long getPercentile(double quantile) {
+            long rank = (long) Math.ceil(quantile * mCount);
+            long seen = 0;
+            for (int i = 0; i < mCounts.length; ++i) {
+                seen += mCounts[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(lowerBound(i), mMax);
+                }
+            }
+            return 0;
+        }
+    }
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + (int) ((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BITS);
+    }
+
+    /** Records a value, negative values count as zero. */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mCounts.incrementAndGet(index(value));
+        mCount.incrementAndGet();
+        mSum.addAndGet(value);
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) {
+            max = mMax.get();
+        }
+    }
+
+    public Summary summarize() {
+        return summarize(false);
+    }
+
+    /**
+     * With reset the recorded values are drained, so consecutive summaries cover consecutive
+     * intervals. Values recorded concurrently land in one interval or the next.
+     */
+    public Summary summarize(boolean reset) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts[i] = reset ? mCounts.getAndSet(i, 0) : mCounts.get(i);
+            count += counts[i];
+        }
+        long sum = reset ? mSum.getAndSet(0) : mSum.get();
+        long max = reset ? mMax.getAndSet(0) : mMax.get();
+        if (reset) {
+            mCount.addAndGet(-count);
+        }
+        return new Summary(count, sum, max, counts);
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+}
@@ -0,0 +1,406 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+
+/**
+ * Append-only binary log of everything done to a simulation from outside, enough to run it again
+ * bit for bit.
+ *
+ * The header (magic, version, rule masks, then the current generation and the reset state as
+ * embedded Snapshots, then the noise pattern) captures the engine when recording starts. Every record
+ * after it is a type byte, the generations stepped since the previous record as an unsigned varint
+ * and its arguments as varints, so a rule change or a cell edit takes a handful of bytes; a stamp
+ * carries its pattern. Noise records carry the generator seed of the injection and the position of
+ * the stamp, and the replay uses the position. The END record written by close() holds the last
+ * generation; a journal cut off by a crash replays up to its last complete record.
+ */
+public final class Journal {
+    public static final int MAGIC = 0x474F4C4A; // "GOLJ"
+    public static final short VERSION = 1;
+
+    public static final int RULES = 1;
+    public static final int RESET = 2;
+    public static final int NOISE = 3;
+    public static final int CELL = 4;
+    public static final int END = 5;
+    public static final int STAMP = 6;
+
+    private Journal() {
+    }
+
+    /** Records into a stream. Generations are counted by the caller from any start, but must not go back. */
+    public static final class Writer implements Closeable, Flushable {
+        private final DataOutputStream mOut;
+        private final long mStart;
+        private long mLast;
+        private boolean mClosed;
+
+        /** Writes the header from the engine's current generation, which is generation 0 of the journal. */
+        public Writer(OutputStream out, BitEngine engine, long generation) throws IOException {
+            mOut = new DataOutputStream(new BufferedOutputStream(out, Snapshot.BUFFER_SIZE));
+            mStart = generation;
+            mLast = generation;
+            mOut.writeInt(MAGIC);
+            mOut.writeShort(VERSION);
+            mOut.writeShort(engine.getDeadRule());
+            mOut.writeShort(engine.getLiveRule());
+            Snapshot.write(Channels.newChannel(mOut), engine.getGrid(), 0);
+            Snapshot.write(Channels.newChannel(mOut), engine.getInitialState(), 0);
+            Pattern noise = engine.getNoise();
+            mOut.writeBoolean(noise != null);
+            if (noise != null) {
+                mOut.writeInt(noise.getWidth());
+                mOut.writeInt(noise.getHeight());
+                for (long word : noise.getWords()) {
+                    mOut.writeLong(word);
+                }
+            }
+        }
+
+        public static Writer create(File file, BitEngine engine, long generation) throws IOException {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                return new Writer(out, engine, generation);
+            } catch (IOException ex) {
+                out.close();
+                throw ex;
+            }
+        }
+
+        public void rules(long generation, int deadRule, int liveRule) throws IOException {
+            record(RULES, generation);
+            writeVarint(deadRule);
+            writeVarint(liveRule);
+        }
+
+        public void reset(long generation) throws IOException {
+            record(RESET, generation);
+        }
+
+        public void noise(long generation, long seed, int x, int y) throws IOException {
+            record(NOISE, generation);
+            mOut.writeLong(seed);
+            writeVarint(x);
+            writeVarint(y);
+        }
+
+        public void cell(long generation, int x, int y, boolean alive) throws IOException {
+            record(CELL, generation);
+            writeVarint(x);
+            writeVarint(y);
+            mOut.writeBoolean(alive);
+        }
+
+        public void stamp(long generation, int x, int y, Pattern pattern) throws IOException {
+            record(STAMP, generation);
+            writeVarint(x);
+            writeVarint(y);
+            writeVarint(pattern.getWidth());
+            writeVarint(pattern.getHeight());
+            for (long word : pattern.getWords()) {
+                mOut.writeLong(word);
+            }
+        }
+
+        /** Writes the records so far through to the stream. */
+        @Override
+        public void flush() throws IOException {
+            mOut.flush();
+        }
+
+        /** Ends the journal at the given generation and closes the stream. */
+        public void close(long generation) throws IOException {
+            if (mClosed) {
+                return;
+            }
+            try {
+                record(END, generation);
+            } finally {
+                close();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            mClosed = true;
+            mOut.close();
+        }
+
+        private void record(int type, long generation) throws IOException {
+            if (mClosed) {
+                throw new IOException("Journal is closed");
+            }
+            if (generation < mLast) {
+                throw new IllegalArgumentException("Journal generations went back from " + mLast + " to " + generation);
+            }
+            mOut.writeByte(type);
+            writeVarint(generation - mLast);
+            mLast = generation;
+        }
+
+        private void writeVarint(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                mOut.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            mOut.writeByte((int) value);
+        }
+
+        /** Generation the journal started at, as the caller counts them. */
+        public long getStart() {
+            return mStart;
+        }
+    }
+
+    /** Reads a journal one record at a time, the fields of the current record are valid until next(). */
+    public static final class Reader implements Closeable {
+        private final DataInputStream mIn;
+        private final int mDeadRule;
+        private final int mLiveRule;
+        private final BitGrid mStart;
+        private final BitGrid mInitialState;
+        private final Pattern mNoise;
+
+        private int mType;
+        private long mGeneration;
+        private int mX;
+        private int mY;
+        private long mSeed;
+        private boolean mAlive;
+        private Pattern mPattern;
+
+        public Reader(InputStream in) throws IOException {
+            mIn = new DataInputStream(new BufferedInputStream(in, Snapshot.BUFFER_SIZE));
+            if (mIn.readInt() != MAGIC) {
+                throw new IOException("Not a journal");
+            }
+            short version = mIn.readShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported journal version " + version);
+            }
+            mDeadRule = mIn.readUnsignedShort();
+            mLiveRule = mIn.readUnsignedShort();
+            mStart = Snapshot.read(Channels.newChannel(mIn)).getGrid();
+            mInitialState = Snapshot.read(Channels.newChannel(mIn)).getGrid();
+            if (mIn.readBoolean()) {
+                int width = mIn.readInt();
+                int height = mIn.readInt();
+                mNoise = new Pattern(width, height, null);
+                long[] words = mNoise.getWords();
+                for (int i = 0; i < words.length; ++i) {
+                    words[i] = mIn.readLong();
+                }
+            } else {
+                mNoise = null;
+            }
+        }
+
+        public static Reader open(File file) throws IOException {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                return new Reader(in);
+            } catch (IOException ex) {
+                in.close();
+                throw ex;
+            }
+        }
+
+        public int getDeadRule() {
+            return mDeadRule;
+        }
+
+        public int getLiveRule() {
+            return mLiveRule;
+        }
+
+        /** The generation recording started at. */
+        public BitGrid getStart() {
+            return mStart;
+        }
+
+        /** What a reset goes back to. */
+        public BitGrid getInitialState() {
+            return mInitialState;
+        }
+
+        /** The noise pattern, null if the engine had none. */
+        public Pattern getNoise() {
+            return mNoise;
+        }
+
+        /**
+         * Moves to the next record, false at the end of the journal. A record cut off by the end of
+         * the file ends the journal like a missing END record does.
+         */
+        public boolean next() throws IOException {
+            if (mType == END) {
+                return false;
+            }
+            try {
+                int type = mIn.read();
+                if (type < 0) {
+                    mType = END;
+                    return false;
+                }
+                long generation = mGeneration + readVarint();
+                switch (type) {
+                    case RULES:
+                        mX = (int) readVarint();
+                        mY = (int) readVarint();
+                        break;
+                    case RESET:
+                    case END:
+                        break;
+                    case NOISE:
+                        mSeed = mIn.readLong();
+                        mX = (int) readVarint();
+                        mY = (int) readVarint();
+                        break;
+                    case CELL:
+                        mX = (int) readVarint();
+                        mY = (int) readVarint();
+                        mAlive = mIn.readBoolean();
+                        break;
+                    case STAMP: {
+                        mX = (int) readVarint();
+                        mY = (int) readVarint();
+                        int width = (int) readVarint();
+                        int height = (int) readVarint();
+                        mPattern = new Pattern(width, height, null);
+                        long[] words = mPattern.getWords();
+                        for (int i = 0; i < words.length; ++i) {
+                            words[i] = mIn.readLong();
+                        }
+                        break;
+                    }
+                    default:
+                        throw new IOException("Unknown journal record " + type);
+                }
+                mType = type;
+                mGeneration = generation;
+                return type != END;
+            } catch (EOFException ex) {
+                mType = END;
+                return false;
+            }
+        }
+
+        /** One of RULES, RESET, NOISE, CELL or STAMP, or END once next() returned false. */
+        public int getType() {
+            return mType;
+        }
+
+        /** Generations since the start of the journal; after the end, the last generation recorded. */
+        public long getGeneration() {
+            return mGeneration;
+        }
+
+        /** Dead rule mask of a RULES record, x of a NOISE, CELL or STAMP record. */
+        public int getX() {
+            return mX;
+        }
+
+        /** Live rule mask of a RULES record, y of a NOISE, CELL or STAMP record. */
+        public int getY() {
+            return mY;
+        }
+
+        public long getSeed() {
+            return mSeed;
+        }
+
+        public boolean isAlive() {
+            return mAlive;
+        }
+
+        /** The pattern of a STAMP record. */
+        public Pattern getPattern() {
+            return mPattern;
+        }
+
+        @Override
+        public void close() throws IOException {
+            mIn.close();
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = mIn.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in journal");
+        }
+    }
+
+    /**
+     * Sets the engine up as the journal started, the engine must have the journal's grid size. Its
+     * rule, current generation, reset state and noise pattern are replaced.
+     */
+    public static void prepare(Reader reader, BitEngine engine) {
+        BitGrid start = reader.getStart();
+        if (engine.getGridWidth() != start.getWidth() || engine.getGridHeight() != start.getHeight()) {
+            throw new IllegalArgumentException("Journal is " + start.getWidth() + "x" + start.getHeight() + ", engine is "
+                    + engine.getGridWidth() + "x" + engine.getGridHeight());
+        }
+        engine.setRules(reader.getDeadRule(), reader.getLiveRule());
+        if (reader.getNoise() != null) {
+            engine.setNoise(reader.getNoise());
+        }
+        engine.setInitialState(reader.getInitialState());
+        engine.getGrid().copyFrom(start);
+        engine.invalidate();
+    }
+
+    /**
+     * Runs the rest of the journal on the engine as fast as it steps, applying every record at the
+     * generation it was made at, and returns the generations run. prepare() the engine first.
+     */
+    public static long replay(Reader reader, BitEngine engine) throws IOException {
+        long generation = reader.getGeneration();
+        while (reader.next()) {
+            for (; generation < reader.getGeneration(); ++generation) {
+                engine.simulate();
+            }
+            switch (reader.getType()) {
+                case RULES:
+                    engine.setRules(reader.getX(), reader.getY());
+                    break;
+                case RESET:
+                    engine.reset();
+                    break;
+                case NOISE:
+                    engine.addNoise(reader.getX(), reader.getY());
+                    break;
+                case CELL:
+                    engine.setCell(reader.getX(), reader.getY(), reader.isAlive());
+                    break;
+                case STAMP:
+                    engine.stamp(reader.getPattern(), reader.getX(), reader.getY());
+                    break;
+                default:
+                    break;
+            }
+        }
+        for (; generation < reader.getGeneration(); ++generation) {
+            engine.simulate();
+        }
+        return generation;
+    }
+}
@@ -0,0 +1,219 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * CPU engine for any Rule, including Generations and Larger than Life, on a byte per cell torus.
+ *
+ * Each generation builds a summed area table of the living cells, so a neighbour count of any
+ * radius costs four table reads. Rows are stored bottom up like BitGrid.
+ */
+public class LargerThanLifeEngine implements SimulationEngine {
+    private Rule mRule = Rule.fromMasks(LifeKernel.CONWAY_BIRTH, LifeKernel.CONWAY_SURVIVE);
+
+    private final int mWidth;
+    private final int mHeight;
+    private byte[] mFront;
+    private byte[] mBack;
+    private final byte[] mInitialState;
+    private final int[] mSums;
+
+    private final NoiseStamp mNoise = new NoiseStamp();
+    private final NoiseStamp.Target mNoiseTarget = new NoiseStamp.Target() {
+        public void set(int x, int y, boolean alive) {
+            mFront[BitEngine.wrap(x, mWidth) + BitEngine.wrap(y, mHeight) * mWidth] = (byte) (alive ? 1 : 0);
+        }
+    };
+
+    public LargerThanLifeEngine(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mFront = new byte[width * height];
+        mBack = new byte[width * height];
+        mInitialState = new byte[width * height];
+        mSums = new int[(width + 1) * (height + 1)];
+    }
+
+    public int getGridWidth() {
+        return mWidth;
+    }
+
+    public int getGridHeight() {
+        return mHeight;
+    }
+
+    /** State of the cell at (x, y): 0 dead, 1 alive, 2 and up dying. */
+    public int getCell(int x, int y) {
+        return mFront[x + y * mWidth] & 0xFF;
+    }
+
+    public void setCell(int x, int y, int state) {
+        mFront[x + y * mWidth] = (byte) state;
+    }
+
+    public Rule getRule() {
+        return mRule;
+    }
+
+    public void setRule(Rule rule) {
+        int side = 2 * rule.getRadius() + 1;
+        if (side > mWidth || side > mHeight) {
+            throw new IllegalArgumentException("Neighbourhood of " + rule + " is larger than the grid");
+        }
+        mRule = rule;
+    }
+
+    public void setInitialState(Pattern pattern) {
+        Arrays.fill(mInitialState, (byte) 0);
+        int wX = pattern.getWidth();
+        int wY = pattern.getHeight();
+        int sX = (mWidth / 2) - (wX / 2);
+        int sY = (mHeight / 2) - (wY / 2);
+        for (int y = 0; y < wY; ++y) {
+            for (int x = 0; x < wX; ++x) {
+                if (pattern.isAlive(x, wY - y - 1)) {
+                    mInitialState[BitEngine.wrap(sX + x, mWidth) + BitEngine.wrap(sY + y, mHeight) * mWidth] = 1;
+                }
+            }
+        }
+        System.arraycopy(mInitialState, 0, mFront, 0, mFront.length);
+    }
+
+    public void setNoise(Pattern pattern) {
+        mNoise.setPattern(pattern);
+    }
+
+    @Override
+    public void setNoiseSeed(long seed) {
+        mNoise.setSeed(seed);
+    }
+
+    @Override
+    public void simulate() {
+        sum(mFront);
+        int radius = mRule.getRadius();
+        int states = mRule.getStates();
+        boolean middle = mRule.countsMiddle();
+        for (int y = 0; y < mHeight; ++y) {
+            boolean innerRow = y - radius >= 0 && y + radius < mHeight;
+            for (int x = 0; x < mWidth; ++x) {
+                int index = x + y * mWidth;
+                int state = mFront[index] & 0xFF;
+                if (state > 1) {
+                    mBack[index] = (byte) (state + 1 < states ? state + 1 : 0);
+                    continue;
+                }
+                int count = innerRow && x - radius >= 0 && x + radius < mWidth
+                        ? rect(x - radius, y - radius, x + radius + 1, y + radius + 1)
+                        : wrappedCount(x, y, radius);
+                if (!middle) {
+                    count -= state;
+                }
+                if (state == 1) {
+                    mBack[index] = (byte) (mRule.survives(count) ? 1 : states > 2 ? 2 : 0);
+                } else {
+                    mBack[index] = (byte) (mRule.isBorn(count) ? 1 : 0);
+                }
+            }
+        }
+        byte[] temp = mFront;
+        mFront = mBack;
+        mBack = temp;
+    }
+
+    /** Fills the summed area table: entry (x, y) holds the living cells below and left of it. */
+    private void sum(byte[] cells) {
+        int stride = mWidth + 1;
+        for (int y = 0; y < mHeight; ++y) {
+            int row = 0;
+            int above = (y + 1) * stride;
+            int below = y * stride;
+            for (int x = 0; x < mWidth; ++x) {
+                row += cells[x + y * mWidth] == 1 ? 1 : 0;
+                mSums[above + x + 1] = mSums[below + x + 1] + row;
+            }
+        }
+    }
+
+    /** Living cells in [x0, x1) x [y0, y1). */
+    private int rect(int x0, int y0, int x1, int y1) {
+        int stride = mWidth + 1;
+        return mSums[y1 * stride + x1] - mSums[y0 * stride + x1] - mSums[y1 * stride + x0] + mSums[y0 * stride + x0];
+    }
+
+    /** Neighbourhood count near an edge, split into at most four rectangles. */
+    private int wrappedCount(int x, int y, int radius) {
+        int x0 = x - radius;
+        int x1 = x + radius + 1;
+        int y0 = y - radius;
+        int y1 = y + radius + 1;
+        int count = 0;
+        if (y0 < 0) {
+            count += wrappedRow(x0, x1, y0 + mHeight, mHeight);
+            y0 = 0;
+        } else if (y1 > mHeight) {
+            count += wrappedRow(x0, x1, 0, y1 - mHeight);
+            y1 = mHeight;
+        }
+        return count + wrappedRow(x0, x1, y0, y1);
+    }
+
+    private int wrappedRow(int x0, int x1, int y0, int y1) {
+        if (x0 < 0) {
+            return rect(x0 + mWidth, y0, mWidth, y1) + rect(0, y0, x1, y1);
+        } else if (x1 > mWidth) {
+            return rect(x0, y0, mWidth, y1) + rect(0, y0, x1 - mWidth, y1);
+        }
+        return rect(x0, y0, x1, y1);
+    }
+
+    @Override
+    public void reset() {
+        System.arraycopy(mInitialState, 0, mFront, 0, mFront.length);
+    }
+
+    @Override
+    public void addNoise() {
+        mNoise.stamp(mWidth, mHeight, 0, 0, mNoiseTarget);
+    }
+
+    @Override
+    public void setRules(int deadRule, int liveRule) {
+        setRule(Rule.fromMasks(deadRule, liveRule));
+    }
+
+    /** Living cells become white, dead and dying cells black. */
+    @Override
+    public State getState() {
+        ByteBuffer grid = ByteBuffer.allocateDirect(mWidth * mHeight * BitGrid.CHANNELS_PER_PIXEL);
+        grid.order(ByteOrder.nativeOrder());
+        for (int i = 0; i < mFront.length; ++i) {
+            byte value = mFront[i] == 1 ? (byte) 255 : 0;
+            for (int c = 0; c < BitGrid.CHANNELS_PER_PIXEL; ++c) {
+                grid.put(value);
+            }
+        }
+        grid.position(0);
+
+        State state = new State();
+        state.width = mWidth;
+        state.height = mHeight;
+        state.grid = grid;
+        return state;
+    }
+
+    /** Replaces both the initial state and the current generation. Sizes must match. */
+    @Override
+    public void setState(State state) {
+        if (state.width != mWidth || state.height != mHeight) {
+            throw new IllegalArgumentException("State is " + state.width + "x" + state.height
+                    + ", engine is " + mWidth + "x" + mHeight);
+        }
+        for (int i = 0; i < mInitialState.length; ++i) {
+            mInitialState[i] = (byte) (state.grid.get(i * BitGrid.CHANNELS_PER_PIXEL) != 0 ? 1 : 0);
+        }
+        System.arraycopy(mInitialState, 0, mFront, 0, mFront.length);
+    }
+}
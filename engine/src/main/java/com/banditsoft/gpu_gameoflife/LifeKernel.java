@@ -0,0 +1,156 @@
+package com.banditsoft.gpu_gameoflife;
+
+/**
+ * SWAR stepping of bit packed rows.
+ *
+ * The eight neighbours of 64 cells are summed at once with bit-sliced full adders into a
+ * 4 bit count (bit0 .. bit3), then the birth/survival masks pick the new state.
+ */
+final class LifeKernel {
+    static final int CONWAY_BIRTH = 8;
+    static final int CONWAY_SURVIVE = 12;
+
+    private LifeKernel() {
+    }
+
+    /**
+     * Steps the rows [rowFrom, rowTo) and words [wordFrom, wordTo) of src into dst, wrapping around
+     * the edges like GL_REPEAT does for the simulator texture.
+     *
+     * @return the OR of every changed bit, zero if the region did not change
+     */
+    static long step(long[] src, long[] dst, int wordsPerRow, int height,
+                     int rowFrom, int rowTo, int wordFrom, int wordTo, int birth, int survive) {
+        return step(src, dst, wordsPerRow, height, rowFrom, rowTo, wordFrom, wordTo, birth, survive, null);
+    }
+
+    /**
+     * Same as above, also adding the population, box, births, deaths and GridHash delta of the region
+     * to stats if not null.
+     */
+    static long step(long[] src, long[] dst, int wordsPerRow, int height,
+                     int rowFrom, int rowTo, int wordFrom, int wordTo, int birth, int survive, GenerationStats stats) {
+        boolean conway = birth == CONWAY_BIRTH && survive == CONWAY_SURVIVE;
+        long changed = 0;
+        long population = 0;
+        long births = 0;
+        long deaths = 0;
+        long hashDelta = 0;
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int y = rowFrom; y < rowTo; ++y) {
+            int down = (y == 0 ? height - 1 : y - 1) * wordsPerRow;
+            int row = y * wordsPerRow;
+            int up = (y == height - 1 ? 0 : y + 1) * wordsPerRow;
+            for (int w = wordFrom; w < wordTo; ++w) {
+                int west = w == 0 ? wordsPerRow - 1 : w - 1;
+                int east = w == wordsPerRow - 1 ? 0 : w + 1;
+
+                long a = src[down + w];
+                long aw = (a << 1) | (src[down + west] >>> 63);
+                long ae = (a >>> 1) | (src[down + east] << 63);
+                long b = src[row + w];
+                long bw = (b << 1) | (src[row + west] >>> 63);
+                long be = (b >>> 1) | (src[row + east] << 63);
+                long c = src[up + w];
+                long cw = (c << 1) | (src[up + west] >>> 63);
+                long ce = (c >>> 1) | (src[up + east] << 63);
+
+                long next = conway
+                        ? conway(b, aw, a, ae, bw, be, cw, c, ce)
+                        : decide(b, aw, a, ae, bw, be, cw, c, ce, birth, survive);
+                changed |= next ^ b;
+                dst[row + w] = next;
+                if (stats != null && (next | b) != 0) {
+                    if (next != b) {
+                        births += Long.bitCount(next & ~b);
+                        deaths += Long.bitCount(b & ~next);
+                        hashDelta ^= GridHash.word(row + w, b) ^ GridHash.word(row + w, next);
+                    }
+                    if (next != 0) {
+                        population += Long.bitCount(next);
+                        minX = Math.min(minX, w * BitGrid.WORD_BITS + Long.numberOfTrailingZeros(next));
+                        maxX = Math.max(maxX, w * BitGrid.WORD_BITS + 63 - Long.numberOfLeadingZeros(next));
+                        minY = Math.min(minY, y);
+                        maxY = y;
+                    }
+                }
+            }
+        }
+        if (stats != null) {
+            stats.mPopulation += population;
+            stats.mBirths += births;
+            stats.mDeaths += deaths;
+            stats.mHashDelta ^= hashDelta;
+            stats.include(minX, minY, maxX, maxY);
+        }
+        return changed;
+    }
+
+    static long conway(long alive, long x0, long x1, long x2, long x3, long x4, long x5, long x6, long x7) {
+        long s1 = x0 ^ x1 ^ x2;
+        long c1 = (x0 & x1) | (x2 & (x0 ^ x1));
+        long s2 = x5 ^ x6 ^ x7;
+        long c2 = (x5 & x6) | (x7 & (x5 ^ x6));
+        long s3 = x3 ^ x4;
+        long c3 = x3 & x4;
+
+        long t = s1 ^ s2;
+        long bit0 = t ^ s3;
+        long c4 = (s1 & s2) | (s3 & t);
+
+        long u = c1 ^ c2;
+        long sU = u ^ c3;
+        long cU = (c1 & c2) | (c3 & u);
+        long bit1 = sU ^ c4;
+        long cV = sU & c4;
+        long high = cU | cV; // bit2 or bit3, the count is 4 or more
+
+        return bit1 & ~high & (bit0 | alive);
+    }
+
+    static long decide(long alive, long x0, long x1, long x2, long x3, long x4, long x5, long x6, long x7,
+                       int birth, int survive) {
+        long s1 = x0 ^ x1 ^ x2;
+        long c1 = (x0 & x1) | (x2 & (x0 ^ x1));
+        long s2 = x5 ^ x6 ^ x7;
+        long c2 = (x5 & x6) | (x7 & (x5 ^ x6));
+        long s3 = x3 ^ x4;
+        long c3 = x3 & x4;
+
+        long t = s1 ^ s2;
+        long bit0 = t ^ s3;
+        long c4 = (s1 & s2) | (s3 & t);
+
+        long u = c1 ^ c2;
+        long sU = u ^ c3;
+        long cU = (c1 & c2) | (c3 & u);
+        long bit1 = sU ^ c4;
+        long cV = sU & c4;
+        long bit2 = cU ^ cV;
+        long bit3 = cU & cV;
+
+        return select(alive, bit0, bit1, bit2, bit3, birth, survive);
+    }
+
+    /** Picks the next state from the bit-sliced neighbour count. */
+    static long select(long alive, long bit0, long bit1, long bit2, long bit3, int birth, int survive) {
+        long next = 0;
+        for (int n = 0; n < RuleTable.NEIGHBOUR_STATES; ++n) {
+            boolean born = ((birth >> n) & 1) != 0;
+            boolean survives = ((survive >> n) & 1) != 0;
+            if (!born && !survives) {
+                continue;
+            }
+            long count = ((n & 1) != 0 ? bit0 : ~bit0)
+                    & ((n & 2) != 0 ? bit1 : ~bit1)
+                    & ((n & 4) != 0 ? bit2 : ~bit2)
+                    & ((n & 8) != 0 ? bit3 : ~bit3);
+            long from = (born ? ~alive : 0L) | (survives ? alive : 0L);
+            next |= count & from;
+        }
+        return next;
+    }
+}
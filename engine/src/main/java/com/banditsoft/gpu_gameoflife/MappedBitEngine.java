@@ -0,0 +1,316 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Bit packed torus whose cells live in a memory mapped file instead of the Java heap.
+ *
+ * The file holds the initial state and two generation planes. simulate() streams the front plane
+ * through a heap scratch buffer in blocks of a few rows, writes the block's next generation to the
+ * back plane and then flips which plane is the front, so there is no per-step copy. Only the scratch
+ * buffers, a few hundred kilobytes even for 65536x65536, live on the heap; the page cache decides how
+ * much of the world is resident.
+ *
+ * Each plane is mapped in segments of whole rows of at most segmentSize bytes, because one mapping
+ * cannot exceed 2GB. Words are little endian. Not thread safe.
+ */
+public class MappedBitEngine implements SimulationEngine, Closeable {
+    static final int MAGIC = 0x474F4C4D; // "GOLM"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 4096;
+    static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    /** Rows stepped per block, three rows of 65536 cells are 24KB. */
+    static final int BLOCK_ROWS = 32;
+    private static final int FRONT_OFFSET = 16;
+    private static final int GENERATION_OFFSET = 24;
+    private static final int INITIAL = 0;
+
+    private int mBirth = LifeKernel.CONWAY_BIRTH;
+    private int mSurvive = LifeKernel.CONWAY_SURVIVE;
+
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mHeader;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mWordsPerRow;
+    private final int mRowsPerSegment;
+    private final LongBuffer[][] mPlanes = new LongBuffer[3][];
+    private final List<MappedByteBuffer> mMappings = new ArrayList<>();
+    private int mFront;
+    private long mGeneration;
+
+    private final long[] mSource;
+    private final long[] mTarget;
+
+    private final NoiseStamp mNoise = new NoiseStamp();
+    private final NoiseStamp.Target mNoiseTarget = new NoiseStamp.Target() {
+        public void set(int x, int y, boolean alive) {
+            MappedBitEngine.this.set(BitEngine.wrap(x, mWidth), BitEngine.wrap(y, mHeight), alive);
+        }
+    };
+
+    private MappedBitEngine(RandomAccessFile file, int width, int height, int segmentSize) throws IOException {
+        mFile = file;
+        mWidth = width;
+        mHeight = height;
+        mWordsPerRow = width / BitGrid.WORD_BITS;
+        long rowBytes = (long) mWordsPerRow * 8;
+        mRowsPerSegment = (int) Math.max(1, Math.min(height, segmentSize / rowBytes));
+        if (rowBytes * mRowsPerSegment > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Rows of " + width + " cells do not fit a mapping");
+        }
+
+        FileChannel channel = file.getChannel();
+        mHeader = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        long planeBytes = rowBytes * height;
+        int segments = (height + mRowsPerSegment - 1) / mRowsPerSegment;
+        for (int plane = 0; plane < mPlanes.length; ++plane) {
+            mPlanes[plane] = new LongBuffer[segments];
+            for (int segment = 0; segment < segments; ++segment) {
+                int rows = Math.min(mRowsPerSegment, height - segment * mRowsPerSegment);
+                long offset = HEADER_SIZE + plane * planeBytes + segment * mRowsPerSegment * rowBytes;
+                MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, offset, rows * rowBytes);
+                mMappings.add(mapping);
+                mPlanes[plane][segment] = mapping.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            }
+        }
+
+        int blockRows = Math.min(BLOCK_ROWS, height);
+        mSource = new long[(blockRows + 2) * mWordsPerRow];
+        mTarget = new long[(blockRows + 2) * mWordsPerRow];
+    }
+
+    public static MappedBitEngine create(File file, int width, int height) throws IOException {
+        return create(file, width, height, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /** Creates an empty world, replacing whatever the file held. */
+    public static MappedBitEngine create(File file, int width, int height, int segmentSize) throws IOException {
+        if (width <= 0 || height <= 0 || width % BitGrid.WORD_BITS != 0) {
+            throw new IllegalArgumentException("Grid width must be a positive multiple of " + BitGrid.WORD_BITS + ", got " + width + "x" + height);
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        raf.setLength(HEADER_SIZE + 3L * (width / BitGrid.WORD_BITS) * 8 * height);
+        MappedBitEngine engine = new MappedBitEngine(raf, width, height, segmentSize);
+        engine.mHeader.putInt(0, MAGIC);
+        engine.mHeader.putShort(4, VERSION);
+        engine.mHeader.putInt(8, width);
+        engine.mHeader.putInt(12, height);
+        engine.mFront = 1;
+        engine.writeHeader();
+        return engine;
+    }
+
+    /** Reopens a world at the generation it was closed at. */
+    public static MappedBitEngine open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        MappedByteBuffer header = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC) {
+            raf.close();
+            throw new IOException("Not a mapped grid");
+        }
+        if (header.getShort(4) != VERSION) {
+            raf.close();
+            throw new IOException("Unsupported mapped grid version " + header.getShort(4));
+        }
+        MappedBitEngine engine = new MappedBitEngine(raf, header.getInt(8), header.getInt(12), DEFAULT_SEGMENT_SIZE);
+        engine.mFront = header.getInt(FRONT_OFFSET);
+        engine.mGeneration = header.getLong(GENERATION_OFFSET);
+        return engine;
+    }
+
+    private void writeHeader() {
+        mHeader.putInt(FRONT_OFFSET, mFront);
+        mHeader.putLong(GENERATION_OFFSET, mGeneration);
+    }
+
+    public int getGridWidth() {
+        return mWidth;
+    }
+
+    public int getGridHeight() {
+        return mHeight;
+    }
+
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    public int getWordsPerRow() {
+        return mWordsPerRow;
+    }
+
+    /** Copies row y of the current generation into words[offset .. offset + wordsPerRow). */
+    public void readRow(int y, long[] words, int offset) {
+        readRow(mFront, y, words, offset);
+    }
+
+    /** Replaces row y of the current generation. */
+    public void writeRow(int y, long[] words, int offset) {
+        writeRow(mFront, y, words, offset);
+    }
+
+    private void readRow(int plane, int y, long[] words, int offset) {
+        LongBuffer segment = mPlanes[plane][y / mRowsPerSegment];
+        segment.position((y % mRowsPerSegment) * mWordsPerRow);
+        segment.get(words, offset, mWordsPerRow);
+    }
+
+    private void writeRow(int plane, int y, long[] words, int offset) {
+        LongBuffer segment = mPlanes[plane][y / mRowsPerSegment];
+        segment.position((y % mRowsPerSegment) * mWordsPerRow);
+        segment.put(words, offset, mWordsPerRow);
+    }
+
+    private int index(int x, int y) {
+        return (y % mRowsPerSegment) * mWordsPerRow + x / BitGrid.WORD_BITS;
+    }
+
+    public boolean get(int x, int y) {
+        long word = mPlanes[mFront][y / mRowsPerSegment].get(index(x, y));
+        return ((word >>> (x % BitGrid.WORD_BITS)) & 1) != 0;
+    }
+
+    public void set(int x, int y, boolean alive) {
+        set(mFront, x, y, alive);
+    }
+
+    private void set(int plane, int x, int y, boolean alive) {
+        LongBuffer segment = mPlanes[plane][y / mRowsPerSegment];
+        int index = index(x, y);
+        long bit = 1L << (x % BitGrid.WORD_BITS);
+        segment.put(index, alive ? segment.get(index) | bit : segment.get(index) & ~bit);
+    }
+
+    public long population() {
+        long population = 0;
+        for (int y = 0; y < mHeight; ++y) {
+            readRow(y, mSource, 0);
+            for (int w = 0; w < mWordsPerRow; ++w) {
+                population += Long.bitCount(mSource[w]);
+            }
+        }
+        return population;
+    }
+
+    public void setInitialState(Pattern pattern) {
+        clear(INITIAL);
+        int wX = pattern.getWidth();
+        int wY = pattern.getHeight();
+        int sX = (mWidth / 2) - (wX / 2);
+        int sY = (mHeight / 2) - (wY / 2);
+        for (int y = 0; y < wY; ++y) {
+            for (int x = 0; x < wX; ++x) {
+                if (pattern.isAlive(x, wY - y - 1)) {
+                    set(INITIAL, BitEngine.wrap(sX + x, mWidth), BitEngine.wrap(sY + y, mHeight), true);
+                }
+            }
+        }
+        reset();
+    }
+
+    public void setNoise(Pattern pattern) {
+        mNoise.setPattern(pattern);
+    }
+
+    @Override
+    public void setNoiseSeed(long seed) {
+        mNoise.setSeed(seed);
+    }
+
+    private void clear(int plane) {
+        Arrays.fill(mSource, 0);
+        for (int y = 0; y < mHeight; ++y) {
+            writeRow(plane, y, mSource, 0);
+        }
+    }
+
+    @Override
+    public void simulate() {
+        int back = 3 - mFront;
+        int blockRows = mSource.length / mWordsPerRow - 2;
+        for (int from = 0; from < mHeight; from += blockRows) {
+            int rows = Math.min(blockRows, mHeight - from);
+            // rows from - 1 .. from + rows, the halo rows wrapping around the torus
+            for (int r = 0; r < rows + 2; ++r) {
+                readRow(mFront, BitEngine.wrap(from - 1 + r, mHeight), mSource, r * mWordsPerRow);
+            }
+            LifeKernel.step(mSource, mTarget, mWordsPerRow, rows + 2, 1, rows + 1, 0, mWordsPerRow, mBirth, mSurvive);
+            for (int r = 0; r < rows; ++r) {
+                writeRow(back, from + r, mTarget, (r + 1) * mWordsPerRow);
+            }
+        }
+        mFront = back;
+        ++mGeneration;
+        writeHeader();
+    }
+
+    @Override
+    public void reset() {
+        for (int y = 0; y < mHeight; ++y) {
+            readRow(INITIAL, y, mSource, 0);
+            writeRow(mFront, y, mSource, 0);
+        }
+        mGeneration = 0;
+        writeHeader();
+    }
+
+    @Override
+    public void addNoise() {
+        mNoise.stamp(mWidth, mHeight, 0, 0, mNoiseTarget);
+    }
+
+    @Override
+    public void setRules(int deadRule, int liveRule) {
+        Rule rule = Rule.fromMasks(deadRule, liveRule);
+        mBirth = rule.getDeadRule();
+        mSurvive = rule.getLiveRule();
+    }
+
+    /** Only for grids whose RGB State fits a single buffer, use readRow for anything larger. */
+    @Override
+    public State getState() {
+        BitGrid grid = new BitGrid(mWidth, mHeight);
+        for (int y = 0; y < mHeight; ++y) {
+            readRow(y, grid.getWords(), y * mWordsPerRow);
+        }
+        return grid.toState();
+    }
+
+    /** Replaces both the initial state and the current generation. Sizes must match. */
+    @Override
+    public void setState(State state) {
+        if (state.width != mWidth || state.height != mHeight) {
+            throw new IllegalArgumentException("State is " + state.width + "x" + state.height
+                    + ", engine is " + mWidth + "x" + mHeight);
+        }
+        BitGrid grid = BitGrid.fromState(state);
+        for (int y = 0; y < mHeight; ++y) {
+            writeRow(INITIAL, y, grid.getWords(), y * mWordsPerRow);
+        }
+        reset();
+    }
+
+    /** Flushes the planes and the header to the file. */
+    @Override
+    public void close() throws IOException {
+        writeHeader();
+        mHeader.force();
+        for (MappedByteBuffer mapping : mMappings) {
+            mapping.force();
+        }
+        mFile.close();
+    }
+}
@@ -0,0 +1,71 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named histograms and counters. The engine records into getDefault() unless told otherwise,
+ * MetricsReporter turns them into periodic JSON lines.
+ */
+public final class Metrics {
+    /** Nanoseconds per simulated generation. */
+    public static final String STEP_TIME = "step_ns";
+    /** Nanoseconds per drawn frame, texture upload included. */
+    public static final String RENDER_TIME = "render_ns";
+    /** Nanoseconds per snapshot written. */
+    public static final String SNAPSHOT_TIME = "snapshot_ns";
+    /** Nanoseconds the simulation thread spends copying a generation into the snapshot pipeline. */
+    public static final String CAPTURE_TIME = "snapshot_capture_ns";
+    /** Commands waiting for the simulation thread, sampled when one is posted. */
+    public static final String QUEUE_DEPTH = "queue_depth";
+    public static final String GENERATIONS = "generations";
+    public static final String CELLS = "cells";
+    /** Snapshots skipped because the pipeline was saturated. */
+    public static final String SNAPSHOTS_DROPPED = "snapshots_dropped";
+
+    private static final Metrics DEFAULT = new Metrics();
+
+    private final ConcurrentMap<String, Histogram> mHistograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> mCounters = new ConcurrentHashMap<>();
+
+    public static Metrics getDefault() {
+        return DEFAULT;
+    }
+
+    public Histogram histogram(String name) {
+        Histogram histogram = mHistograms.get(name);
+        if (histogram == null) {
+            Histogram created = new Histogram();
+            histogram = mHistograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    public AtomicLong counter(String name) {
+        AtomicLong counter = mCounters.get(name);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = mCounters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /** Histograms by name, in name order. */
+    public Map<String, Histogram> getHistograms() {
+        return new TreeMap<>(mHistograms);
+    }
+
+    /** Counters by name, in name order. */
+    public Map<String, AtomicLong> getCounters() {
+        return new TreeMap<>(mCounters);
+    }
+}
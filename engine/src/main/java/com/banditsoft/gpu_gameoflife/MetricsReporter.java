@@ -0,0 +1,109 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes one JSON line per interval with every counter's total and rate and every histogram's
+ * count, mean, p50, p90, p99 and max over the interval:
+ *
+ * {"time_ms":..,"interval_ms":..,"counters":{"generations":{"total":..,"per_second":..}},
+ *  "histograms":{"step_ns":{"count":..,"mean":..,"p50":..,"p90":..,"p99":..,"max":..}}}
+ *
+ * Histograms are drained by every report, so there should be one reporter per Metrics.
+ */
+public class MetricsReporter implements Closeable {
+    private static final Logger LOG = Logger.getLogger("GOLEngine");
+
+    private final Metrics mMetrics;
+    private final Writer mOut;
+    private final Map<String, Long> mLastCounts = new HashMap<>();
+    private long mLastTime = System.nanoTime();
+    private ScheduledExecutorService mExecutor;
+
+    public MetricsReporter(Metrics metrics, Writer out) {
+        mMetrics = metrics;
+        mOut = out;
+    }
+
+    public synchronized void start(long period, TimeUnit unit) {
+        if (mExecutor != null) {
+            return;
+        }
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "MetricsReporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                try {
+                    report();
+                } catch (IOException ex) {
+                    LOG.log(Level.WARNING, "Could not write metrics", ex);
+                }
+            }
+        }, period, period, unit);
+    }
+
+    /** Writes a line covering the time since the previous one. */
+    public synchronized void report() throws IOException {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-9, (now - mLastTime) / 1e9);
+        mLastTime = now;
+
+        StringBuilder line = new StringBuilder(256);
+        line.append("{\"time_ms\":").append(System.currentTimeMillis());
+        line.append(",\"interval_ms\":").append(Math.round(seconds * 1000));
+        line.append(",\"counters\":{");
+        boolean first = true;
+        for (Map.Entry<String, AtomicLong> entry : mMetrics.getCounters().entrySet()) {
+            long total = entry.getValue().get();
+            Long last = mLastCounts.put(entry.getKey(), total);
+            double rate = (total - (last != null ? last : 0)) / seconds;
+            line.append(first ? "" : ",").append('"').append(entry.getKey()).append("\":{\"total\":").append(total)
+                    .append(",\"per_second\":").append(String.format(Locale.US, "%.1f", rate)).append('}');
+            first = false;
+        }
+        line.append("},\"histograms\":{");
+        first = true;
+        for (Map.Entry<String, Histogram> entry : mMetrics.getHistograms().entrySet()) {
+            Histogram.Summary summary = entry.getValue().summarize(true);
+            line.append(first ? "" : ",").append('"').append(entry.getKey()).append("\":{\"count\":").append(summary.getCount())
+                    .append(",\"mean\":").append(String.format(Locale.US, "%.1f", summary.getMean()))
+                    .append(",\"p50\":").append(summary.getPercentile(0.5))
+                    .append(",\"p90\":").append(summary.getPercentile(0.9))
+                    .append(",\"p99\":").append(summary.getPercentile(0.99))
+                    .append(",\"max\":").append(summary.getMax()).append('}');
+            first = false;
+        }
+        line.append("}}\n");
+        mOut.write(line.toString());
+        mOut.flush();
+    }
+
+    /** Stops the periodic reports and writes a last one. Does not close the writer. */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (mExecutor != null) {
+                mExecutor.shutdown();
+                mExecutor = null;
+            }
+        }
+        report();
+    }
+}
@@ -0,0 +1,81 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.util.Random;
+
+/**
+ * The noise pattern of a CPU engine and the seedable generator that places its stamps.
+ *
+ * The pattern is kept as one flag per cell, rows bottom up like the grids, so stamping reads no
+ * Pattern bits. Every engine draws the x and then the y of each stamp from the generator, so
+ * engines seeded alike stamp alike. Cells reach the engine through a Target, which wraps or offsets
+ * them the way its world needs.
+ */
+public final class NoiseStamp {
+    /** Writes one cell of a stamp into an engine. */
+    public interface Target {
+        void set(int x, int y, boolean alive);
+    }
+
+    private final Random mRandom = new Random();
+    private int mCount = 1;
+    private Pattern mPattern;
+    private int mWidth;
+    private int mHeight;
+    private boolean[] mCells;
+
+    public void setPattern(Pattern pattern) {
+        int width = pattern.getWidth();
+        int height = pattern.getHeight();
+        boolean[] cells = new boolean[width * height];
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                cells[x + y * width] = pattern.isAlive(x, height - 1 - y);
+            }
+        }
+        mWidth = width;
+        mHeight = height;
+        mCells = cells;
+        mPattern = pattern;
+    }
+
+    /** The pattern that is stamped, null if there is none. */
+    public Pattern getPattern() {
+        return mPattern;
+    }
+
+    public void setSeed(long seed) {
+        mRandom.setSeed(seed);
+    }
+
+    /** Number of stamps one stamp() places. */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Places getCount() stamps with their bottom left corners drawn from [0, width) x [0, height) and
+     * moved by (originX, originY). Does nothing without a pattern.
+     */
+    public void stamp(int width, int height, int originX, int originY, Target target) {
+        if (mCells == null) {
+            return;
+        }
+        for (int c = 0; c < mCount; ++c) {
+            int x = mRandom.nextInt(width) + originX;
+            int y = mRandom.nextInt(height) + originY;
+            stampAt(x, y, target);
+        }
+    }
+
+    /** Writes the whole pattern rectangle with its bottom left corner at (x, y), dead cells included. */
+    public void stampAt(int x, int y, Target target) {
+        if (mCells == null) {
+            return;
+        }
+        for (int row = 0; row < mHeight; ++row) {
+            for (int column = 0; column < mWidth; ++column) {
+                target.set(x + column, y + row, mCells[column + row * mWidth]);
+            }
+        }
+    }
+}
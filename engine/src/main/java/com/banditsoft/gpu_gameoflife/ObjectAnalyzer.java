@@ -0,0 +1,397 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.util.Arrays;
+
+/**
+ * Splits a generation into objects and names them, cheap enough to run every generation.
+ *
+ * Cells belong to the same object when they are within CONNECT_DISTANCE of each other, wrapping
+ * around the torus. Every row is cut into segments, runs of cells with gaps of less than the
+ * distance, read a word at a time from the packed rows. Segments that touch within the distance in
+ * nearby rows are joined in a union-find that also remembers by how many grid sizes each segment is
+ * shifted against its root, so objects crossing the edges come out whole and objects that wrap all
+ * the way around the torus are recognised as LARGE instead of looping.
+ *
+ * Objects are named by an ObjectClassifier behind a bounded cache keyed by ObjectClassifier.key(). A
+ * classified periodic object fills the cache with the keys of all of its phases, so blocks, blinkers
+ * and gliders are found in O(1) in any phase, orientation and position. Objects that do not repeat
+ * are cached as seen, they cost the most to classify. The cache is simply cleared when it fills up.
+ * Buffers grow to the busiest generation seen and are then reused; an instance is not thread safe.
+ */
+public class ObjectAnalyzer {
+    public static final int CONNECT_DISTANCE = 2;
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+    /** Objects wider than a word or wrapping around the torus, which are not classified. */
+    public static final ObjectClassifier.Classification LARGE =
+            new ObjectClassifier.Classification("zz_LARGE", ObjectClassifier.UNKNOWN, 0, 0, 0);
+
+    /** Receives the objects of a generation in row order of their first segment. */
+    public interface Listener {
+        /** (x, y) is the bottom left corner of the bounding box, which may reach across the grid edges. */
+        void onObject(ObjectClassifier.Classification classification, int x, int y, int width, int height, int population);
+    }
+
+    private final ObjectClassifier mClassifier;
+
+    // segments in row order: first and last live cell, row, population
+    private int mSegments;
+    private int[] mStart = new int[256];
+    private int[] mEnd = new int[256];
+    private int[] mRow = new int[256];
+    private int[] mPopulation = new int[256];
+    private int[] mRowFirst = new int[1];
+
+    // union-find with the shift of every segment against its parent in grid widths and heights
+    private int[] mParent = new int[256];
+    private int[] mShiftX = new int[256];
+    private int[] mShiftY = new int[256];
+    private boolean[] mWrapping = new boolean[256];
+    private int mFoundX;
+    private int mFoundY;
+
+    // per root: bounding box in unwrapped coordinates and population, then objects in order
+    private int[] mMinX = new int[256];
+    private int[] mMaxX = new int[256];
+    private int[] mMinY = new int[256];
+    private int[] mMaxY = new int[256];
+    private int[] mObjectPopulation = new int[256];
+    private int[] mObject = new int[256];
+    private int[] mObjectRoot = new int[256];
+    private int[] mOrder = new int[256];
+    private int[] mObjectFirst = new int[257];
+    private long[] mObjectRows = new long[1];
+
+    private final long[] mCacheKeys;
+    private final ObjectClassifier.Classification[] mCacheValues;
+    private final int mCacheLimit;
+    private int mCacheCount;
+    private long mHits;
+    private long mMisses;
+
+    public ObjectAnalyzer(Rule rule) {
+        this(rule, DEFAULT_CACHE_SIZE);
+    }
+
+    /** Keeps at most cacheSize object phases. */
+    public ObjectAnalyzer(Rule rule, int cacheSize) {
+        mClassifier = new ObjectClassifier(rule);
+        int capacity = Integer.highestOneBit(Math.max(16, cacheSize) * 2 - 1) * 2;
+        mCacheKeys = new long[capacity];
+        mCacheValues = new ObjectClassifier.Classification[capacity];
+        mCacheLimit = Math.max(1, cacheSize);
+    }
+
+    /** Lookups answered from the cache since this analyzer was created. */
+    public long getCacheHits() {
+        return mHits;
+    }
+
+    /** Lookups that had to run the classifier. */
+    public long getCacheMisses() {
+        return mMisses;
+    }
+
+    /** Reports every object of the grid to the listener and returns how many there were. */
+    public int analyze(BitGrid grid, Listener listener) {
+        findSegments(grid);
+        joinSegments(grid);
+        int objects = measureObjects(grid);
+        for (int object = 0; object < objects; ++object) {
+            int root = mObjectRoot[object];
+            int width = mMaxX[root] - mMinX[root] + 1;
+            int height = mMaxY[root] - mMinY[root] + 1;
+            ObjectClassifier.Classification classification;
+            if (mWrapping[root] || width > BitGrid.WORD_BITS || height > grid.getHeight()) {
+                classification = LARGE;
+            } else {
+                collectRows(grid, object, root, height);
+                classification = classify(height);
+            }
+            int x = (mMinX[root] % grid.getWidth() + grid.getWidth()) % grid.getWidth();
+            int y = (mMinY[root] % grid.getHeight() + grid.getHeight()) % grid.getHeight();
+            listener.onObject(classification, x, y, width, height, mObjectPopulation[root]);
+        }
+        return objects;
+    }
+
+    private ObjectClassifier.Classification classify(int height) {
+        if (height > BitGrid.WORD_BITS) {
+            ++mMisses;
+            return mClassifier.classify(mObjectRows, height);
+        }
+        long key = mClassifier.key(mObjectRows, 0, height);
+        int mask = mCacheKeys.length - 1;
+        int slot = (int) GridHash.mix(key) & mask;
+        while (mCacheKeys[slot] != 0) {
+            if (mCacheKeys[slot] == key) {
+                ++mHits;
+                return mCacheValues[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        ++mMisses;
+        ObjectClassifier.Classification classification = mClassifier.classify(mObjectRows, height);
+        // unknown objects are cached under the phase they were seen in, they are the expensive ones
+        int phases = Math.max(1, mClassifier.getPhaseCount());
+        if (mCacheCount + phases > mCacheLimit) {
+            Arrays.fill(mCacheKeys, 0);
+            Arrays.fill(mCacheValues, null);
+            mCacheCount = 0;
+        }
+        if (mClassifier.getPhaseCount() == 0) {
+            put(key, classification);
+        }
+        for (int phase = 0; phase < mClassifier.getPhaseCount() && mCacheCount < mCacheLimit; ++phase) {
+            put(mClassifier.getPhaseKey(phase), classification);
+        }
+        return classification;
+    }
+
+    private void put(long key, ObjectClassifier.Classification classification) {
+        int mask = mCacheKeys.length - 1;
+        int slot = (int) GridHash.mix(key) & mask;
+        while (mCacheKeys[slot] != 0) {
+            if (mCacheKeys[slot] == key) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        mCacheKeys[slot] = key;
+        mCacheValues[slot] = classification;
+        ++mCacheCount;
+    }
+
+    /** Cuts every row into segments of cells with gaps of less than CONNECT_DISTANCE. */
+    private void findSegments(BitGrid grid) {
+        int height = grid.getHeight();
+        int wordsPerRow = grid.getWordsPerRow();
+        long[] words = grid.getWords();
+        if (mRowFirst.length < height + 1) {
+            mRowFirst = new int[height + 1];
+        }
+        mSegments = 0;
+        for (int y = 0; y < height; ++y) {
+            mRowFirst[y] = mSegments;
+            int offset = y * wordsPerRow;
+            int current = -1;
+            for (int w = 0; w < wordsPerRow; ++w) {
+                long bits = words[offset + w];
+                while (bits != 0) {
+                    int low = Long.numberOfTrailingZeros(bits);
+                    int length = Long.numberOfTrailingZeros(~(bits >>> low));
+                    if (low + length > BitGrid.WORD_BITS) {
+                        length = BitGrid.WORD_BITS - low;
+                    }
+                    bits &= length == BitGrid.WORD_BITS ? 0 : ~(((1L << length) - 1) << low);
+                    int start = w * BitGrid.WORD_BITS + low;
+                    if (current >= 0 && start - mEnd[current] <= CONNECT_DISTANCE) {
+                        mEnd[current] = start + length - 1;
+                        mPopulation[current] += length;
+                    } else {
+                        current = addSegment(start, start + length - 1, y, length);
+                    }
+                }
+            }
+        }
+        mRowFirst[height] = mSegments;
+    }
+
+    private int addSegment(int start, int end, int row, int population) {
+        if (mSegments == mStart.length) {
+            int capacity = mSegments * 2;
+            mStart = Arrays.copyOf(mStart, capacity);
+            mEnd = Arrays.copyOf(mEnd, capacity);
+            mRow = Arrays.copyOf(mRow, capacity);
+            mPopulation = Arrays.copyOf(mPopulation, capacity);
+            mParent = new int[capacity];
+            mShiftX = new int[capacity];
+            mShiftY = new int[capacity];
+            mWrapping = new boolean[capacity];
+            mMinX = new int[capacity];
+            mMaxX = new int[capacity];
+            mMinY = new int[capacity];
+            mMaxY = new int[capacity];
+            mObjectPopulation = new int[capacity];
+            mObject = new int[capacity];
+            mObjectRoot = new int[capacity];
+            mOrder = new int[capacity];
+            mObjectFirst = new int[capacity + 1];
+        }
+        int segment = mSegments++;
+        mStart[segment] = start;
+        mEnd[segment] = end;
+        mRow[segment] = row;
+        mPopulation[segment] = population;
+        return segment;
+    }
+
+    /** Joins the segments of every row with those of the same and the next CONNECT_DISTANCE rows. */
+    private void joinSegments(BitGrid grid) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        for (int i = 0; i < mSegments; ++i) {
+            mParent[i] = i;
+            mShiftX[i] = 0;
+            mShiftY[i] = 0;
+            mWrapping[i] = false;
+        }
+        for (int y = 0; y < height; ++y) {
+            int first = mRowFirst[y];
+            int end = mRowFirst[y + 1];
+            if (first == end) {
+                continue;
+            }
+            // the row with itself, across the left and right edge
+            if (mStart[first] + width - mEnd[end - 1] <= CONNECT_DISTANCE) {
+                union(first, end - 1, -1, 0);
+            }
+            for (int dy = 1; dy <= CONNECT_DISTANCE; ++dy) {
+                int other = y + dy;
+                int wrapY = 0;
+                if (other >= height) {
+                    other -= height;
+                    wrapY = 1;
+                }
+                int otherFirst = mRowFirst[other];
+                int otherEnd = mRowFirst[other + 1];
+                if (otherFirst == otherEnd) {
+                    continue;
+                }
+                int low = otherFirst;
+                for (int a = first; a < end; ++a) {
+                    while (low < otherEnd && mEnd[low] < mStart[a] - CONNECT_DISTANCE) {
+                        ++low;
+                    }
+                    for (int b = low; b < otherEnd && mStart[b] <= mEnd[a] + CONNECT_DISTANCE; ++b) {
+                        union(a, b, 0, wrapY);
+                    }
+                }
+                if (mStart[first] + width - mEnd[otherEnd - 1] <= CONNECT_DISTANCE) {
+                    union(first, otherEnd - 1, -1, wrapY);
+                }
+                if (mStart[otherFirst] + width - mEnd[end - 1] <= CONNECT_DISTANCE) {
+                    union(end - 1, otherFirst, 1, wrapY);
+                }
+            }
+        }
+    }
+
+    /** Finds the root of a segment, leaving its shift against the root in mFoundX and mFoundY. */
+    private int find(int segment) {
+        int root = segment;
+        int shiftX = 0;
+        int shiftY = 0;
+        while (mParent[root] != root) {
+            shiftX += mShiftX[root];
+            shiftY += mShiftY[root];
+            root = mParent[root];
+        }
+        mFoundX = shiftX;
+        mFoundY = shiftY;
+        // point the whole path at the root
+        int node = segment;
+        while (mParent[node] != root && node != root) {
+            int next = mParent[node];
+            int nodeX = mShiftX[node];
+            int nodeY = mShiftY[node];
+            mParent[node] = root;
+            mShiftX[node] = shiftX;
+            mShiftY[node] = shiftY;
+            shiftX -= nodeX;
+            shiftY -= nodeY;
+            node = next;
+        }
+        return root;
+    }
+
+    /** Joins segment b, moved by (shiftX, shiftY) grid sizes, to segment a. */
+    private void union(int a, int b, int shiftX, int shiftY) {
+        int rootA = find(a);
+        int ax = mFoundX + shiftX;
+        int ay = mFoundY + shiftY;
+        int rootB = find(b);
+        if (rootA == rootB) {
+            if (mFoundX != ax || mFoundY != ay) {
+                mWrapping[rootA] = true;
+            }
+            return;
+        }
+        mParent[rootB] = rootA;
+        mShiftX[rootB] = ax - mFoundX;
+        mShiftY[rootB] = ay - mFoundY;
+        mWrapping[rootA] |= mWrapping[rootB];
+    }
+
+    /** Numbers the objects, sorts the segments by object and takes every object's bounding box. */
+    private int measureObjects(BitGrid grid) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        int objects = 0;
+        Arrays.fill(mObject, 0, mSegments, -1);
+        for (int i = 0; i < mSegments; ++i) {
+            int root = find(i);
+            int x0 = mStart[i] + mFoundX * width;
+            int x1 = mEnd[i] + mFoundX * width;
+            int y = mRow[i] + mFoundY * height;
+            if (mObject[root] < 0) {
+                mObjectRoot[objects] = root;
+                mObject[root] = objects++;
+                mMinX[root] = x0;
+                mMaxX[root] = x1;
+                mMinY[root] = y;
+                mMaxY[root] = y;
+                mObjectPopulation[root] = mPopulation[i];
+            } else {
+                mMinX[root] = Math.min(mMinX[root], x0);
+                mMaxX[root] = Math.max(mMaxX[root], x1);
+                mMinY[root] = Math.min(mMinY[root], y);
+                mMaxY[root] = Math.max(mMaxY[root], y);
+                mObjectPopulation[root] += mPopulation[i];
+            }
+            mObject[i] = mObject[root];
+        }
+        Arrays.fill(mObjectFirst, 0, objects + 1, 0);
+        for (int i = 0; i < mSegments; ++i) {
+            ++mObjectFirst[mObject[i] + 1];
+        }
+        for (int object = 0; object < objects; ++object) {
+            mObjectFirst[object + 1] += mObjectFirst[object];
+        }
+        for (int i = 0; i < mSegments; ++i) {
+            mOrder[mObjectFirst[mObject[i]]++] = i;
+        }
+        for (int object = objects; object > 0; --object) {
+            mObjectFirst[object] = mObjectFirst[object - 1];
+        }
+        mObjectFirst[0] = 0;
+        return objects;
+    }
+
+    /** Copies the cells of an object into mObjectRows, bit x of row y is the cell at (minX + x, minY + y). */
+    private void collectRows(BitGrid grid, int object, int root, int height) {
+        if (mObjectRows.length < height) {
+            mObjectRows = new long[grid.getHeight()];
+        }
+        Arrays.fill(mObjectRows, 0, height, 0);
+        long[] words = grid.getWords();
+        int wordsPerRow = grid.getWordsPerRow();
+        for (int i = mObjectFirst[object]; i < mObjectFirst[object + 1]; ++i) {
+            int segment = mOrder[i];
+            find(segment);
+            int start = mStart[segment];
+            int length = mEnd[segment] - start + 1;
+            int offset = mRow[segment] * wordsPerRow + (start >>> 6);
+            int bit = start & (BitGrid.WORD_BITS - 1);
+            long bits = words[offset] >>> bit;
+            if (bit + length > BitGrid.WORD_BITS) {
+                bits |= words[offset + 1] << (BitGrid.WORD_BITS - bit);
+            }
+            if (length < BitGrid.WORD_BITS) {
+                bits &= (1L << length) - 1;
+            }
+            int x = start + mFoundX * grid.getWidth() - mMinX[root];
+            int y = mRow[segment] + mFoundY * grid.getHeight() - mMinY[root];
+            mObjectRows[y] |= bits << x;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.banditsoft.gpu_gameoflife;
+
+/**
+ * Names a single object by running it on its own until it repeats.
+ *
+ * Names follow the apgcode convention: xs<population>_ for still lifes, xp<period>_ for oscillators
+ * and xq<period>_ for spaceships, followed by the extended Wechsler code of the phase and orientation
+ * with the shortest, then alphabetically first, code, so an object gets the same name whatever
+ * phase, orientation or position it is found in. A block is xs4_33, a blinker xp2_7 and a glider
+ * xq4_153. Objects that do not repeat within the maximum period or outgrow MAX_SIZE are named zz_
+ * followed by the code of the phase they were given in.
+ *
+ * Objects are given as rows of their bounding box, bit x of rows[y] is the cell (x, y). They run in
+ * a window of one word per row that is shifted back to the origin after every generation, so a
+ * spaceship never leaves it. Instances keep their scratch rows and are not thread safe.
+ *
+ * key() is a cheap 64-bit stand-in for the code of one phase, the smallest over the 8 orientations:
+ * objects up to 8 by 8 cells, most of the ash of a soup, are packed into the key itself and turned
+ * with a few bit operations, larger ones are hashed. classify() leaves the keys of all phases of a
+ * periodic object behind, so a cache can recognise it in any phase without running it again.
+ */
+public class ObjectClassifier {
+    public static final int MAX_SIZE = 60;
+    public static final int DEFAULT_MAX_PERIOD = 64;
+
+    public static final int STILL_LIFE = 0;
+    public static final int OSCILLATOR = 1;
+    public static final int SPACESHIP = 2;
+    public static final int UNKNOWN = 3;
+
+    private static final String DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz";
+    private static final int STRIP_HEIGHT = 5;
+
+    /** What an object turned out to be. */
+    public static final class Classification {
+        private final String mName;
+        private final int mKind;
+        private final int mPeriod;
+        private final int mDx;
+        private final int mDy;
+
+        Classification(String name, int kind, int period, int dx, int dy) {
+            mName = name;
+            mKind = kind;
+            mPeriod = period;
+            mDx = dx;
+            mDy = dy;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        /** One of STILL_LIFE, OSCILLATOR, SPACESHIP or UNKNOWN. */
+        public int getKind() {
+            return mKind;
+        }
+
+        /** Generations until the object repeats, 0 for unknown ones. */
+        public int getPeriod() {
+            return mPeriod;
+        }
+
+        /** How far a spaceship moves per period. */
+        public int getDx() {
+            return mDx;
+        }
+
+        public int getDy() {
+            return mDy;
+        }
+
+        @Override
+        public String toString() {
+            return mName;
+        }
+    }
+
+    private final int mBirth;
+    private final int mSurvive;
+    private final int mMaxPeriod;
+
+    // the window, one spare row below and above and one spare bit left and right of the object
+    private final long[] mRows = new long[MAX_SIZE + 4];
+    private final long[] mNext = new long[MAX_SIZE + 4];
+    private final long[] mStart = new long[MAX_SIZE + 4];
+    private int mHeight;
+    private int mStartHeight;
+    private int mDx;
+    private int mDy;
+    private final StringBuilder mCode = new StringBuilder();
+    private final long[] mTransposed = new long[BitGrid.WORD_BITS];
+    private final long[] mPhaseKeys;
+    private int mPhases;
+
+    public ObjectClassifier(Rule rule) {
+        this(rule, DEFAULT_MAX_PERIOD);
+    }
+
+    public ObjectClassifier(Rule rule, int maxPeriod) {
+        if (!rule.isOuterTotalistic() || rule.isBorn(0)) {
+            throw new IllegalArgumentException("Objects can only be classified for two state radius 1 rules without B0, got " + rule);
+        }
+        mBirth = rule.getDeadRule();
+        mSurvive = rule.getLiveRule();
+        mMaxPeriod = maxPeriod;
+        mPhaseKeys = new long[maxPeriod];
+    }
+
+    /** Classifies the object in the first height rows, which must not be empty. */
+    public Classification classify(long[] rows, int height) {
+        mPhases = 0;
+        if (height > MAX_SIZE || width(rows, 0, height) > MAX_SIZE) {
+            return new Classification("zz_" + code(rows, 0, height), UNKNOWN, 0, 0, 0);
+        }
+        load(rows, height);
+        System.arraycopy(mRows, 0, mStart, 0, mHeight);
+        mStartHeight = mHeight;
+        int period = 0;
+        for (int generation = 1; generation <= mMaxPeriod; ++generation) {
+            if (!step()) {
+                break;
+            }
+            if (mHeight == mStartHeight && equalRows(mRows, mStart, mHeight)) {
+                period = generation;
+                break;
+            }
+        }
+        if (period == 0) {
+            return new Classification("zz_" + code(rows, 0, height), UNKNOWN, 0, 0, 0);
+        }
+        int dx = mDx;
+        int dy = mDy;
+
+        // the name comes from the best code over every phase
+        load(rows, height);
+        String best = code(mRows, 1, mHeight - 2);
+        mPhaseKeys[0] = key(mRows, 1, mHeight - 2);
+        long population = 0;
+        for (int y = 0; y < mHeight; ++y) {
+            population += Long.bitCount(mRows[y]);
+        }
+        for (int generation = 1; generation < period; ++generation) {
+            step();
+            best = better(best, code(mRows, 1, mHeight - 2));
+            mPhaseKeys[generation] = key(mRows, 1, mHeight - 2);
+        }
+        mPhases = period;
+        if (dx != 0 || dy != 0) {
+            return new Classification("xq" + period + "_" + best, SPACESHIP, period, dx, dy);
+        }
+        if (period == 1) {
+            return new Classification("xs" + population + "_" + best, STILL_LIFE, 1, 0, 0);
+        }
+        return new Classification("xp" + period + "_" + best, OSCILLATOR, period, 0, 0);
+    }
+
+    /** Number of phase keys the last classify() left, 0 unless the object was periodic. */
+    int getPhaseCount() {
+        return mPhases;
+    }
+
+    long getPhaseKey(int phase) {
+        return mPhaseKeys[phase];
+    }
+
+    /**
+     * Orientation and position independent key of the rows [from, from + height), which must not be
+     * empty and at most 64 rows high. Never 0.
+     */
+    long key(long[] rows, int from, int height) {
+        long columns = or(rows, from, from + height);
+        int shift = Long.numberOfTrailingZeros(columns);
+        int width = BitGrid.WORD_BITS - Long.numberOfLeadingZeros(columns) - shift;
+        if (width <= 8 && height <= 8) {
+            return boardKey(rows, from, height, width, shift);
+        }
+        long[] transposed = mTransposed;
+        for (int x = 0; x < width; ++x) {
+            transposed[x] = 0;
+        }
+        for (int y = 0; y < height; ++y) {
+            long row = rows[from + y] >>> shift;
+            while (row != 0) {
+                transposed[Long.numberOfTrailingZeros(row)] |= 1L << y;
+                row &= row - 1;
+            }
+        }
+        long key = Math.min(flipKey(rows, from, height, width, shift), flipKey(transposed, 0, width, height, 0));
+        return key != 0 ? key : 1;
+    }
+
+    // the object as an 8 by 8 board, bit 8y + x is the cell (x, y)
+    private static long boardKey(long[] rows, int from, int height, int width, int shift) {
+        long board = 0;
+        for (int y = 0; y < height; ++y) {
+            board |= (rows[from + y] >>> shift) << (8 * y);
+        }
+        // swaps x and y
+        long transposed = board;
+        long t = 0x0F0F0F0F00000000L & (transposed ^ (transposed << 28));
+        transposed ^= t ^ (t >>> 28);
+        t = 0x3333000033330000L & (transposed ^ (transposed << 14));
+        transposed ^= t ^ (t >>> 14);
+        t = 0x5500550055005500L & (transposed ^ (transposed << 7));
+        transposed ^= t ^ (t >>> 7);
+        return Math.min(flipBoard(board, width, height), flipBoard(transposed, height, width));
+    }
+
+    private static long flipBoard(long board, int width, int height) {
+        long mirrored = Long.reverseBytes(Long.reverse(board)) >>> (8 - width);
+        long flipped = Long.reverseBytes(board) >>> (8 * (8 - height));
+        long both = Long.reverseBytes(mirrored) >>> (8 * (8 - height));
+        return Math.min(Math.min(board, mirrored), Math.min(flipped, both));
+    }
+
+    // the smallest hash over the rows as given, mirrored, upside down and both
+    private static long flipKey(long[] rows, int from, int height, int width, int shift) {
+        long seed = GridHash.mix(((long) width << 32) | height);
+        long up = seed;
+        long upMirrored = seed;
+        long down = seed;
+        long downMirrored = seed;
+        int mirror = BitGrid.WORD_BITS - width;
+        for (int y = 0; y < height; ++y) {
+            long row = rows[from + y] >>> shift;
+            long flipped = rows[from + height - 1 - y] >>> shift;
+            up = GridHash.mix(up ^ row);
+            upMirrored = GridHash.mix(upMirrored ^ (Long.reverse(row) >>> mirror));
+            down = GridHash.mix(down ^ flipped);
+            downMirrored = GridHash.mix(downMirrored ^ (Long.reverse(flipped) >>> mirror));
+        }
+        return Math.min(Math.min(up, upMirrored), Math.min(down, downMirrored));
+    }
+
+    private void load(long[] rows, int height) {
+        mHeight = height + 2;
+        mRows[0] = 0;
+        int shift = Long.numberOfTrailingZeros(or(rows, 0, height));
+        for (int y = 0; y < height; ++y) {
+            mRows[y + 1] = (rows[y] >>> shift) << 1;
+        }
+        mRows[height + 1] = 0;
+        mDx = 0;
+        mDy = 0;
+    }
+
+    /** Runs one generation and moves the object back to the origin, false if it died or outgrew the window. */
+    private boolean step() {
+        for (int y = 0; y < mHeight; ++y) {
+            long below = y > 0 ? mRows[y - 1] : 0;
+            long row = mRows[y];
+            long above = y + 1 < mHeight ? mRows[y + 1] : 0;
+            mNext[y] = LifeKernel.decide(row, below << 1, below, below >>> 1, row << 1, row >>> 1, above << 1, above, above >>> 1,
+                    mBirth, mSurvive);
+        }
+        int first = 0;
+        while (first < mHeight && mNext[first] == 0) {
+            ++first;
+        }
+        if (first == mHeight) {
+            return false;
+        }
+        int last = mHeight - 1;
+        while (mNext[last] == 0) {
+            --last;
+        }
+        int height = last - first + 1;
+        long columns = or(mNext, first, last + 1);
+        int shift = Long.numberOfTrailingZeros(columns);
+        if (height > MAX_SIZE || BitGrid.WORD_BITS - Long.numberOfLeadingZeros(columns) - shift > MAX_SIZE) {
+            return false;
+        }
+        mRows[0] = 0;
+        for (int y = 0; y < height; ++y) {
+            mRows[y + 1] = (mNext[first + y] >>> shift) << 1;
+        }
+        mRows[height + 1] = 0;
+        mHeight = height + 2;
+        mDx += shift - 1;
+        mDy += first - 1;
+        return true;
+    }
+
+    private static long or(long[] rows, int from, int to) {
+        long columns = 0;
+        for (int y = from; y < to; ++y) {
+            columns |= rows[y];
+        }
+        return columns;
+    }
+
+    private static int width(long[] rows, int from, int to) {
+        long columns = or(rows, from, to);
+        return BitGrid.WORD_BITS - Long.numberOfLeadingZeros(columns) - Long.numberOfTrailingZeros(columns);
+    }
+
+    private static boolean equalRows(long[] a, long[] b, int height) {
+        for (int y = 0; y < height; ++y) {
+            if (a[y] != b[y]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String better(String a, String b) {
+        if (a.length() != b.length()) {
+            return a.length() < b.length() ? a : b;
+        }
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    /** The best extended Wechsler code over the 8 orientations of the rows [from, from + height). */
+    String code(long[] rows, int from, int height) {
+        long columns = or(rows, from, from + height);
+        int shift = Long.numberOfTrailingZeros(columns);
+        int width = BitGrid.WORD_BITS - Long.numberOfLeadingZeros(columns) - shift;
+        String best = null;
+        for (int orientation = 0; orientation < 8; ++orientation) {
+            String code = code(rows, from, shift, width, height, orientation);
+            best = best == null ? code : better(best, code);
+        }
+        return best;
+    }
+
+    private String code(long[] rows, int from, int shift, int width, int height, int orientation) {
+        boolean swap = (orientation & 4) != 0;
+        boolean flipX = (orientation & 1) != 0;
+        boolean flipY = (orientation & 2) != 0;
+        int codeWidth = swap ? height : width;
+        int codeHeight = swap ? width : height;
+        StringBuilder code = mCode;
+        code.setLength(0);
+        for (int strip = 0; strip < codeHeight; strip += STRIP_HEIGHT) {
+            if (strip > 0) {
+                code.append('z');
+            }
+            int zeros = 0;
+            for (int x = 0; x < codeWidth; ++x) {
+                int value = 0;
+                for (int i = 0; i < STRIP_HEIGHT && strip + i < codeHeight; ++i) {
+                    int a = swap ? strip + i : x;
+                    int b = swap ? x : strip + i;
+                    if (flipX) {
+                        a = width - 1 - a;
+                    }
+                    if (flipY) {
+                        b = height - 1 - b;
+                    }
+                    value |= (int) ((rows[from + b] >>> (shift + a)) & 1L) << i;
+                }
+                if (value == 0) {
+                    ++zeros;
+                    continue;
+                }
+                appendZeros(code, zeros);
+                zeros = 0;
+                code.append(DIGITS.charAt(value));
+            }
+        }
+        return code.toString();
+    }
+
+    // 0, w and x for one to three empty columns, y and a digit for 4 to 39
+    private static void appendZeros(StringBuilder code, int zeros) {
+        while (zeros > 0) {
+            if (zeros >= 4) {
+                int run = Math.min(zeros, 39);
+                code.append('y').append(DIGITS.charAt(run - 4));
+                zeros -= run;
+            } else {
+                code.append(zeros == 3 ? 'x' : zeros == 2 ? 'w' : '0');
+                zeros = 0;
+            }
+        }
+    }
+}
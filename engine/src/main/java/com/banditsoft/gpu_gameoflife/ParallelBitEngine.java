@@ -0,0 +1,161 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * BitEngine stepping row bands of the torus on a ForkJoinPool.
+ *
+ * Every band reads the one row halo above and below it from the front grid and writes only its
+ * own rows of the back grid, so no band waits for another and the result is bit identical to the
+ * single threaded step. Rows wrap around like GL_REPEAT, the words of a row wrap in LifeKernel.
+ */
+public class ParallelBitEngine extends BitEngine {
+    /** Bands below this many words are stepped in the calling thread, forking costs more than it saves. */
+    static final int MIN_BAND_WORDS = 4096;
+
+    private final ForkJoinPool mPool;
+    private final boolean mOwnsPool;
+
+    /** Steps on a pool of its own, which shutdown() stops. */
+    public ParallelBitEngine(int width, int height) {
+        this(width, height, new ForkJoinPool(), true);
+    }
+
+    /** Steps on a shared pool, which is left running by shutdown(). */
+    public ParallelBitEngine(int width, int height, ForkJoinPool pool) {
+        this(width, height, pool, false);
+    }
+
+    private ParallelBitEngine(int width, int height, ForkJoinPool pool, boolean ownsPool) {
+        super(width, height);
+        mPool = pool;
+        mOwnsPool = ownsPool;
+    }
+
+    /** Stops the worker threads of the engine's own pool, the engine cannot step afterwards. */
+    public void shutdown() {
+        if (mOwnsPool) {
+            mPool.shutdown();
+        }
+    }
+
+    public int getParallelism() {
+        return mPool.getParallelism();
+    }
+
+    @Override
+    void step(BitGrid src, BitGrid dst) {
+        int wordsPerRow = src.getWordsPerRow();
+        int minRows = Math.max(1, MIN_BAND_WORDS / wordsPerRow);
+        ActiveTiles activeTiles = getActiveTiles();
+        GenerationStats stats = getStats();
+        if (stats != null) {
+            stats.clear();
+        }
+        if (activeTiles != null) {
+            activeTiles.prepare();
+            if (stats != null) {
+                activeTiles.trackStats();
+            }
+            int minTileRows = Math.max(1, minRows / ActiveTiles.TILE_ROWS);
+            TileBand band = new TileBand(activeTiles, src, dst, 0, activeTiles.getTileRows(), minTileRows, getBirth(), getSurvive(), stats != null);
+            mPool.invoke(band);
+            activeTiles.finish();
+            if (stats != null) {
+                stats.add(band.mStats);
+                activeTiles.collect(stats);
+            }
+            return;
+        }
+        Band band = new Band(src, dst, 0, src.getHeight(), minRows, getBirth(), getSurvive(), stats != null);
+        mPool.invoke(band);
+        if (stats != null) {
+            stats.add(band.mStats);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Band extends RecursiveAction {
+        private final BitGrid mSrc;
+        private final BitGrid mDst;
+        private final int mRowFrom;
+        private final int mRowTo;
+        private final int mMinRows;
+        private final int mBirth;
+        private final int mSurvive;
+        final GenerationStats mStats;
+
+        Band(BitGrid src, BitGrid dst, int rowFrom, int rowTo, int minRows, int birth, int survive, boolean stats) {
+            mSrc = src;
+            mDst = dst;
+            mRowFrom = rowFrom;
+            mRowTo = rowTo;
+            mMinRows = minRows;
+            mBirth = birth;
+            mSurvive = survive;
+            mStats = stats ? new GenerationStats() : null;
+        }
+
+        @Override
+        protected void compute() {
+            int rows = mRowTo - mRowFrom;
+            if (rows <= mMinRows) {
+                LifeKernel.step(mSrc.getWords(), mDst.getWords(), mSrc.getWordsPerRow(), mSrc.getHeight(),
+                        mRowFrom, mRowTo, 0, mSrc.getWordsPerRow(), mBirth, mSurvive, mStats);
+                return;
+            }
+            int middle = mRowFrom + rows / 2;
+            Band low = new Band(mSrc, mDst, mRowFrom, middle, mMinRows, mBirth, mSurvive, mStats != null);
+            Band high = new Band(mSrc, mDst, middle, mRowTo, mMinRows, mBirth, mSurvive, mStats != null);
+            invokeAll(low, high);
+            if (mStats != null) {
+                mStats.add(low.mStats);
+                mStats.add(high.mStats);
+            }
+        }
+    }
+
+    /** Same split as Band, over whole tile rows so every tile is stepped and flagged by one task. */
+    @SuppressWarnings("serial")
+    private static final class TileBand extends RecursiveAction {
+        private final ActiveTiles mActiveTiles;
+        private final BitGrid mSrc;
+        private final BitGrid mDst;
+        private final int mTileRowFrom;
+        private final int mTileRowTo;
+        private final int mMinTileRows;
+        private final int mBirth;
+        private final int mSurvive;
+        final GenerationStats mStats;
+
+        TileBand(ActiveTiles activeTiles, BitGrid src, BitGrid dst, int tileRowFrom, int tileRowTo, int minTileRows, int birth, int survive, boolean stats) {
+            mActiveTiles = activeTiles;
+            mSrc = src;
+            mDst = dst;
+            mTileRowFrom = tileRowFrom;
+            mTileRowTo = tileRowTo;
+            mMinTileRows = minTileRows;
+            mBirth = birth;
+            mSurvive = survive;
+            mStats = stats ? new GenerationStats() : null;
+        }
+
+        @Override
+        protected void compute() {
+            int tileRows = mTileRowTo - mTileRowFrom;
+            if (tileRows <= mMinTileRows) {
+                mActiveTiles.step(mSrc.getWords(), mDst.getWords(), mTileRowFrom, mTileRowTo, mBirth, mSurvive, mStats);
+                return;
+            }
+            int middle = mTileRowFrom + tileRows / 2;
+            TileBand low = new TileBand(mActiveTiles, mSrc, mDst, mTileRowFrom, middle, mMinTileRows, mBirth, mSurvive, mStats != null);
+            TileBand high = new TileBand(mActiveTiles, mSrc, mDst, middle, mTileRowTo, mMinTileRows, mBirth, mSurvive, mStats != null);
+            invokeAll(low, high);
+            if (mStats != null) {
+                mStats.add(low.mStats);
+                mStats.add(high.mStats);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * Bit packed pattern cropped to its bounding box as the file gave it.
+ *
+ * Row 0 is the first row of the file, the top of the pattern; the engines flip it to bottom up.
+ */
+public class Pattern {
+    private final int mWidth;
+    private final int mHeight;
+    private final int mWordsPerRow;
+    private final long[] mWords;
+    private final String mRule;
+
+    public Pattern(int width, int height, String rule) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Invalid pattern size " + width + "x" + height);
+        }
+        mWidth = width;
+        mHeight = height;
+        mWordsPerRow = (width + BitGrid.WORD_BITS - 1) / BitGrid.WORD_BITS;
+        mWords = new long[mWordsPerRow * height];
+        mRule = rule;
+    }
+
+    /** Reads a pattern in any of the formats PatternReader understands. */
+    public static Pattern read(InputStream iStream) throws IOException {
+        return PatternReader.read(new InputStreamReader(iStream, Charset.forName("US-ASCII")));
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getWordsPerRow() {
+        return mWordsPerRow;
+    }
+
+    public long[] getWords() {
+        return mWords;
+    }
+
+    /** The rule the file declares, or null. */
+    public String getRule() {
+        return mRule;
+    }
+
+    public boolean isAlive(int x, int y) {
+        return ((mWords[y * mWordsPerRow + (x >>> 6)] >>> x) & 1L) != 0;
+    }
+
+    public void set(int x, int y) {
+        mWords[y * mWordsPerRow + (x >>> 6)] |= 1L << x;
+    }
+
+    /** Sets the cells [x, x + count) of row y. */
+    public void setRun(int x, int y, int count) {
+        long row = (long) y * mWordsPerRow * BitGrid.WORD_BITS;
+        Snapshot.setRange(mWords, row + x, row + x + count);
+    }
+
+    public long population() {
+        long population = 0;
+        for (long word : mWords) {
+            population += Long.bitCount(word);
+        }
+        return population;
+    }
+}
@@ -0,0 +1,387 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming reader of pattern files into a bit packed Pattern.
+ *
+ * Understands RLE (with its x/y/rule header), Life 1.06, Macrocell and plain text ('.' or 'b' dead,
+ * anything else alive, '!' comment lines, which covers the .patt assets). The format is told apart by
+ * the first lines. RLE and Macrocell are written straight into the packed bitmap; Life 1.06 and plain
+ * text need their extent first and keep only the live cells or packed rows until then.
+ */
+public final class PatternReader {
+    private PatternReader() {
+    }
+
+    public static Pattern read(Reader reader) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        String raw;
+        String line;
+        boolean life106 = false;
+        String rule = null;
+        while ((raw = in.readLine()) != null) {
+            line = raw.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith("[M2]")) {
+                return readMacrocell(in);
+            }
+            if (line.startsWith("#Life 1.06")) {
+                life106 = true;
+                continue;
+            }
+            if (line.startsWith("#Life")) {
+                throw new IOException("Unsupported pattern format " + line);
+            }
+            if (line.startsWith("#R") && !life106) {
+                rule = line.substring(2).trim();
+                continue;
+            }
+            if (line.startsWith("#") || line.startsWith("!")) {
+                continue;
+            }
+            if (life106) {
+                return readLife106(line, in);
+            }
+            if (line.startsWith("x ") || line.startsWith("x=")) {
+                return readRle(line, in);
+            }
+            // leading blanks of plain text rows are dead cells
+            return readPlainText(raw, in, rule);
+        }
+        return new Pattern(0, 0, rule);
+    }
+
+    private static Pattern readRle(String header, BufferedReader in) throws IOException {
+        int width = -1;
+        int height = -1;
+        String rule = null;
+        for (String field : header.split(",")) {
+            int equals = field.indexOf('=');
+            if (equals < 0) {
+                throw new IOException("Malformed RLE header " + header);
+            }
+            String key = field.substring(0, equals).trim();
+            String value = field.substring(equals + 1).trim();
+            if (key.equals("x")) {
+                width = parseSize(value, header);
+            } else if (key.equals("y")) {
+                height = parseSize(value, header);
+            } else if (key.equals("rule")) {
+                rule = value;
+            }
+        }
+        if (width < 0 || height < 0) {
+            throw new IOException("RLE header without size " + header);
+        }
+
+        Pattern pattern = new Pattern(width, height, rule);
+        int x = 0;
+        int y = 0;
+        int count = 0;
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c >= '0' && c <= '9') {
+                count = count * 10 + (c - '0');
+                continue;
+            }
+            int run = count == 0 ? 1 : count;
+            count = 0;
+            if (c == '!') {
+                break;
+            } else if (c == '$') {
+                y += run;
+                x = 0;
+            } else if (c == 'b' || c == '.') {
+                x += run;
+            } else if (Character.isLetter(c)) {
+                if (x + run > width || y >= height) {
+                    throw new IOException("RLE cells outside the " + width + "x" + height + " header size");
+                }
+                pattern.setRun(x, y, run);
+                x += run;
+            } else if (c == '#') {
+                in.readLine();
+            } else if (!Character.isWhitespace(c)) {
+                throw new IOException("Unexpected '" + (char) c + "' in RLE data");
+            }
+        }
+        return pattern;
+    }
+
+    private static int parseSize(String value, String header) throws IOException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new IOException("Malformed RLE header " + header);
+        }
+    }
+
+    private static Pattern readLife106(String line, BufferedReader in) throws IOException {
+        int[] cells = new int[256];
+        int count = 0;
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (; line != null; line = in.readLine()) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] coordinates = line.split("\\s+");
+            if (coordinates.length != 2) {
+                throw new IOException("Malformed Life 1.06 line " + line);
+            }
+            int x;
+            int y;
+            try {
+                x = Integer.parseInt(coordinates[0]);
+                y = Integer.parseInt(coordinates[1]);
+            } catch (NumberFormatException ex) {
+                throw new IOException("Malformed Life 1.06 line " + line);
+            }
+            if (count + 2 > cells.length) {
+                cells = Arrays.copyOf(cells, cells.length * 2);
+            }
+            cells[count++] = x;
+            cells[count++] = y;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        if (count == 0) {
+            return new Pattern(0, 0, null);
+        }
+        Pattern pattern = new Pattern(maxX - minX + 1, maxY - minY + 1, null);
+        for (int i = 0; i < count; i += 2) {
+            pattern.set(cells[i] - minX, cells[i + 1] - minY);
+        }
+        return pattern;
+    }
+
+    private static Pattern readPlainText(String line, BufferedReader in, String rule) throws IOException {
+        List<long[]> rows = new ArrayList<>();
+        int width = 0;
+        for (; line != null; line = in.readLine()) {
+            if (line.startsWith("!")) {
+                continue;
+            }
+            int length = line.length();
+            while (length > 0 && Character.isWhitespace(line.charAt(length - 1))) {
+                --length;
+            }
+            if (length == 0) {
+                continue;
+            }
+            long[] row = new long[(length + BitGrid.WORD_BITS - 1) / BitGrid.WORD_BITS];
+            for (int x = 0; x < length; ++x) {
+                char c = line.charAt(x);
+                if (c != '.' && c != 'b' && !Character.isWhitespace(c)) {
+                    row[x >>> 6] |= 1L << x;
+                }
+            }
+            rows.add(row);
+            width = Math.max(width, length);
+        }
+        Pattern pattern = new Pattern(width, rows.size(), rule);
+        long[] words = pattern.getWords();
+        for (int y = 0; y < rows.size(); ++y) {
+            long[] row = rows.get(y);
+            System.arraycopy(row, 0, words, y * pattern.getWordsPerRow(), row.length);
+        }
+        return pattern;
+    }
+
+    /**
+     * Macrocell nodes are numbered from 1 in file order, 0 is the empty node. Leaves are 8x8 cell
+     * lines of '.', '*' and '$' or level 1 nodes of four cell states; every other node lists its
+     * nw, ne, sw, se children. The last node is the root.
+     */
+    private static Pattern readMacrocell(BufferedReader in) throws IOException {
+        Macrocell tree = new Macrocell();
+        String rule = null;
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith("#R")) {
+                rule = line.substring(2).trim();
+            } else if (line.startsWith("#")) {
+                continue;
+            } else if (line.charAt(0) == '.' || line.charAt(0) == '*' || line.charAt(0) == '$') {
+                tree.addLeaf(line);
+            } else {
+                tree.addNode(line);
+            }
+        }
+        if (tree.mCount <= 1) {
+            return new Pattern(0, 0, rule);
+        }
+        int root = tree.mCount - 1;
+        long[] box = tree.bounds(root);
+        if (box == null) {
+            return new Pattern(0, 0, rule);
+        }
+        long width = box[2] - box[0] + 1;
+        long height = box[3] - box[1] + 1;
+        if (width > Integer.MAX_VALUE - BitGrid.WORD_BITS || height > Integer.MAX_VALUE
+                || (width + BitGrid.WORD_BITS - 1) / BitGrid.WORD_BITS * height > Integer.MAX_VALUE) {
+            throw new IOException("Macrocell pattern of " + width + "x" + height + " is too large to unpack");
+        }
+        Pattern pattern = new Pattern((int) width, (int) height, rule);
+        tree.render(root, -box[0], -box[1], pattern);
+        return pattern;
+    }
+
+    private static final class Macrocell {
+        int[] mLevels = new int[1024];
+        int[] mChildren = new int[4 * 1024];
+        long[] mLeaves = new long[1024];
+        long[][] mBounds = new long[1024][];
+        int mCount = 1; // node 0 is the empty node
+
+        private void grow() {
+            if (mCount == mLevels.length) {
+                mLevels = Arrays.copyOf(mLevels, mCount * 2);
+                mChildren = Arrays.copyOf(mChildren, mCount * 8);
+                mLeaves = Arrays.copyOf(mLeaves, mCount * 2);
+                mBounds = Arrays.copyOf(mBounds, mCount * 2);
+            }
+        }
+
+        void addLeaf(String line) throws IOException {
+            grow();
+            long bits = 0;
+            int x = 0;
+            int y = 0;
+            for (int i = 0; i < line.length(); ++i) {
+                char c = line.charAt(i);
+                if (c == '$') {
+                    ++y;
+                    x = 0;
+                } else if (c == '.' || c == '*') {
+                    if (x >= 8 || y >= 8) {
+                        throw new IOException("Macrocell leaf larger than 8x8: " + line);
+                    }
+                    if (c == '*') {
+                        bits |= 1L << (y * 8 + x);
+                    }
+                    ++x;
+                } else {
+                    throw new IOException("Unexpected '" + c + "' in macrocell leaf");
+                }
+            }
+            mLevels[mCount] = 3;
+            mLeaves[mCount] = bits;
+            ++mCount;
+        }
+
+        void addNode(String line) throws IOException {
+            grow();
+            String[] fields = line.split("\\s+");
+            if (fields.length != 5) {
+                throw new IOException("Malformed macrocell node " + line);
+            }
+            try {
+                int level = Integer.parseInt(fields[0]);
+                if (level < 1 || level > 62) {
+                    throw new IOException("Macrocell node level out of range " + line);
+                }
+                mLevels[mCount] = level;
+                if (level == 1) {
+                    // four cell states, any live state counts as alive
+                    long bits = 0;
+                    bits |= Integer.parseInt(fields[1]) != 0 ? 1L : 0L;
+                    bits |= Integer.parseInt(fields[2]) != 0 ? 2L : 0L;
+                    bits |= Integer.parseInt(fields[3]) != 0 ? 1L << 8 : 0L;
+                    bits |= Integer.parseInt(fields[4]) != 0 ? 2L << 8 : 0L;
+                    mLeaves[mCount] = bits;
+                } else {
+                    for (int i = 0; i < 4; ++i) {
+                        int child = Integer.parseInt(fields[i + 1]);
+                        if (child < 0 || child >= mCount || (child != 0 && mLevels[child] != level - 1)) {
+                            throw new IOException("Macrocell node refers to an invalid child " + line);
+                        }
+                        mChildren[mCount * 4 + i] = child;
+                    }
+                }
+            } catch (NumberFormatException ex) {
+                throw new IOException("Malformed macrocell node " + line);
+            }
+            ++mCount;
+        }
+
+        private boolean isLeaf(int node) {
+            return mLevels[node] == 1 || (mLevels[node] == 3 && mChildren[node * 4] == 0 && mChildren[node * 4 + 1] == 0
+                    && mChildren[node * 4 + 2] == 0 && mChildren[node * 4 + 3] == 0);
+        }
+
+        /** Live cell bounding box {minX, minY, maxX, maxY} relative to the node's top left, null if empty. */
+        long[] bounds(int node) {
+            if (node == 0) {
+                return null;
+            }
+            if (mBounds[node] != null) {
+                return mBounds[node][0] > mBounds[node][2] ? null : mBounds[node];
+            }
+            long[] box = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE};
+            if (isLeaf(node)) {
+                long bits = mLeaves[node];
+                while (bits != 0) {
+                    int bit = Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    include(box, bit & 7, bit >>> 3, bit & 7, bit >>> 3);
+                }
+            } else {
+                long half = 1L << (mLevels[node] - 1);
+                for (int i = 0; i < 4; ++i) {
+                    long[] child = bounds(mChildren[node * 4 + i]);
+                    if (child != null) {
+                        long dx = (i & 1) * half;
+                        long dy = (i >> 1) * half;
+                        include(box, child[0] + dx, child[1] + dy, child[2] + dx, child[3] + dy);
+                    }
+                }
+            }
+            mBounds[node] = box;
+            return box[0] > box[2] ? null : box;
+        }
+
+        private static void include(long[] box, long minX, long minY, long maxX, long maxY) {
+            box[0] = Math.min(box[0], minX);
+            box[1] = Math.min(box[1], minY);
+            box[2] = Math.max(box[2], maxX);
+            box[3] = Math.max(box[3], maxY);
+        }
+
+        void render(int node, long x0, long y0, Pattern pattern) {
+            if (bounds(node) == null) {
+                return;
+            }
+            if (isLeaf(node)) {
+                long bits = mLeaves[node];
+                while (bits != 0) {
+                    int bit = Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    pattern.set((int) (x0 + (bit & 7)), (int) (y0 + (bit >>> 3)));
+                }
+                return;
+            }
+            long half = 1L << (mLevels[node] - 1);
+            for (int i = 0; i < 4; ++i) {
+                render(mChildren[node * 4 + i], x0 + (i & 1) * half, y0 + (i >> 1) * half, pattern);
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.util.Locale;
+
+/**
+ * Outer totalistic rule over a Moore neighbourhood of radius r, with C states.
+ *
+ * Parses B/S strings ("B3/S23", legacy "23/3"), Generations ("B2/S/C3", legacy "345/2/4") and
+ * Larger than Life ("R5,C0,M1,S34..58,B34..45,NM"). Only state 1 counts as a living neighbour,
+ * states 2 .. C-1 are dying cells that count down to 0. The compiled forms are the masks the bit
+ * engines and the simulator shader take, and a 512 entry neighbourhood lookup table.
+ */
+public final class Rule {
+    public static final int MAX_STATES = 256;
+    public static final int MAX_RADIUS = 500;
+
+    private final int mRadius;
+    private final int mStates;
+    private final boolean mMiddle;
+    private final boolean[] mBirth;
+    private final boolean[] mSurvive;
+
+    private Rule(int radius, int states, boolean middle, boolean[] birth, boolean[] survive) {
+        mRadius = radius;
+        mStates = states;
+        mMiddle = middle;
+        mBirth = birth;
+        mSurvive = survive;
+    }
+
+    /** The rule setRules(deadRule, liveRule) describes. */
+    public static Rule fromMasks(int deadRule, int liveRule) {
+        boolean[] birth = new boolean[RuleTable.NEIGHBOUR_STATES];
+        boolean[] survive = new boolean[RuleTable.NEIGHBOUR_STATES];
+        for (int n = 0; n < RuleTable.NEIGHBOUR_STATES; ++n) {
+            birth[n] = ((deadRule >> n) & 1) != 0;
+            survive[n] = ((liveRule >> n) & 1) != 0;
+        }
+        return new Rule(1, 2, false, birth, survive);
+    }
+
+    public static Rule parse(String rule) {
+        String text = rule.trim().toUpperCase(Locale.US).replace(" ", "");
+        if (text.length() > 1 && text.charAt(0) == 'R' && Character.isDigit(text.charAt(1))) {
+            return parseLargerThanLife(text, rule);
+        }
+        boolean[] birth = new boolean[RuleTable.NEIGHBOUR_STATES];
+        boolean[] survive = new boolean[RuleTable.NEIGHBOUR_STATES];
+        int states = 2;
+        String[] parts = text.split("/", -1);
+        if (text.indexOf('B') >= 0 || text.indexOf('S') >= 0) {
+            for (String part : parts) {
+                if (part.isEmpty()) {
+                    throw new IllegalArgumentException("Empty field in rule " + rule);
+                }
+                char kind = part.charAt(0);
+                String value = part.substring(1);
+                if (kind == 'B') {
+                    digits(value, birth, rule);
+                } else if (kind == 'S') {
+                    digits(value, survive, rule);
+                } else if (kind == 'C' || kind == 'G') {
+                    states = states(value, rule);
+                } else {
+                    throw new IllegalArgumentException("Unknown field '" + part + "' in rule " + rule);
+                }
+            }
+        } else if (parts.length == 2 || parts.length == 3) {
+            // legacy S/B and S/B/C order
+            digits(parts[0], survive, rule);
+            digits(parts[1], birth, rule);
+            if (parts.length == 3) {
+                states = states(parts[2], rule);
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown rule " + rule);
+        }
+        return new Rule(1, states, false, birth, survive);
+    }
+
+    private static Rule parseLargerThanLife(String text, String rule) {
+        int radius = -1;
+        int states = 2;
+        boolean middle = true;
+        int[] birth = null;
+        int[] survive = null;
+        for (String field : text.split(",")) {
+            if (field.isEmpty()) {
+                throw new IllegalArgumentException("Empty field in rule " + rule);
+            }
+            String value = field.substring(1);
+            switch (field.charAt(0)) {
+                case 'R':
+                    radius = number(value, rule);
+                    break;
+                case 'C':
+                    states = Math.max(2, number(value, rule));
+                    break;
+                case 'M':
+                    middle = number(value, rule) != 0;
+                    break;
+                case 'S':
+                    survive = range(value, rule);
+                    break;
+                case 'B':
+                    birth = range(value, rule);
+                    break;
+                case 'N':
+                    if (!value.equals("M")) {
+                        throw new IllegalArgumentException("Only the Moore neighbourhood (NM) is supported: " + rule);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown field '" + field + "' in rule " + rule);
+            }
+        }
+        if (radius < 1 || radius > MAX_RADIUS || birth == null || survive == null) {
+            throw new IllegalArgumentException("Larger than Life rule needs R1.." + MAX_RADIUS + ", S and B: " + rule);
+        }
+        if (states > MAX_STATES) {
+            throw new IllegalArgumentException("Too many states in rule " + rule);
+        }
+        int side = 2 * radius + 1;
+        int counts = side * side + 1;
+        return new Rule(radius, states, middle, fill(birth, counts), fill(survive, counts));
+    }
+
+    private static void digits(String value, boolean[] counts, String rule) {
+        for (int i = 0; i < value.length(); ++i) {
+            int n = value.charAt(i) - '0';
+            if (n < 0 || n >= counts.length) {
+                throw new IllegalArgumentException("Invalid neighbour count '" + value.charAt(i) + "' in rule " + rule);
+            }
+            counts[n] = true;
+        }
+    }
+
+    private static int states(String value, String rule) {
+        int states = number(value, rule);
+        if (states < 2 || states > MAX_STATES) {
+            throw new IllegalArgumentException("State count out of range in rule " + rule);
+        }
+        return states;
+    }
+
+    private static int number(String value, String rule) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid number '" + value + "' in rule " + rule);
+        }
+    }
+
+    private static int[] range(String value, String rule) {
+        int dots = value.indexOf("..");
+        if (dots < 0) {
+            int n = number(value, rule);
+            return new int[] {n, n};
+        }
+        return new int[] {number(value.substring(0, dots), rule), number(value.substring(dots + 2), rule)};
+    }
+
+    private static boolean[] fill(int[] range, int counts) {
+        boolean[] result = new boolean[counts];
+        for (int n = Math.max(0, range[0]); n <= range[1] && n < counts; ++n) {
+            result[n] = true;
+        }
+        return result;
+    }
+
+    public int getRadius() {
+        return mRadius;
+    }
+
+    public int getStates() {
+        return mStates;
+    }
+
+    /** Whether the cell itself is part of its neighbour count. */
+    public boolean countsMiddle() {
+        return mMiddle;
+    }
+
+    /** Largest neighbour count the rule can see. */
+    public int getMaxCount() {
+        return mBirth.length - 1;
+    }
+
+    public boolean isBorn(int count) {
+        return mBirth[count];
+    }
+
+    public boolean survives(int count) {
+        return mSurvive[count];
+    }
+
+    /** True for two state rules over the 8 Moore neighbours, which every engine can run. */
+    public boolean isOuterTotalistic() {
+        return mRadius == 1 && mStates == 2 && !mMiddle;
+    }
+
+    /** The dead rule mask of setRules(deadRule, liveRule). */
+    public int getDeadRule() {
+        return mask(mBirth);
+    }
+
+    /** The live rule mask of setRules(deadRule, liveRule). */
+    public int getLiveRule() {
+        return mask(mSurvive);
+    }
+
+    private int mask(boolean[] counts) {
+        requireOuterTotalistic();
+        int mask = 0;
+        for (int n = 0; n < RuleTable.NEIGHBOUR_STATES; ++n) {
+            if (counts[n]) {
+                mask |= 1 << n;
+            }
+        }
+        return mask;
+    }
+
+    public int[] toDecideData() {
+        return RuleTable.create(getDeadRule(), getLiveRule());
+    }
+
+    /**
+     * Next state of the center cell for every 3x3 neighbourhood. Bit 3 * dy + dx of the index is the
+     * cell at (dx, dy), so bit 4 is the center.
+     */
+    public byte[] toLookupTable() {
+        requireOuterTotalistic();
+        byte[] table = new byte[512];
+        for (int index = 0; index < table.length; ++index) {
+            int count = Integer.bitCount(index & ~0x10);
+            boolean alive = (index & 0x10) != 0;
+            table[index] = (byte) ((alive ? mSurvive[count] : mBirth[count]) ? 1 : 0);
+        }
+        return table;
+    }
+
+    private void requireOuterTotalistic() {
+        if (!isOuterTotalistic()) {
+            throw new IllegalStateException(this + " is not a two state radius 1 rule");
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        if (mRadius == 1 && !mMiddle) {
+            builder.append('B');
+            appendDigits(builder, mBirth);
+            builder.append("/S");
+            appendDigits(builder, mSurvive);
+            if (mStates > 2) {
+                builder.append("/C").append(mStates);
+            }
+            return builder.toString();
+        }
+        builder.append('R').append(mRadius).append(",C").append(mStates > 2 ? mStates : 0)
+                .append(",M").append(mMiddle ? 1 : 0);
+        builder.append(",S");
+        appendRange(builder, mSurvive);
+        builder.append(",B");
+        appendRange(builder, mBirth);
+        return builder.append(",NM").toString();
+    }
+
+    private static void appendDigits(StringBuilder builder, boolean[] counts) {
+        for (int n = 0; n < counts.length; ++n) {
+            if (counts[n]) {
+                builder.append(n);
+            }
+        }
+    }
+
+    /** Larger than Life ranges are contiguous by construction. */
+    private static void appendRange(StringBuilder builder, boolean[] counts) {
+        int first = -1;
+        int last = -1;
+        for (int n = 0; n < counts.length; ++n) {
+            if (counts[n]) {
+                if (first < 0) {
+                    first = n;
+                }
+                last = n;
+            }
+        }
+        if (first < 0) {
+            // an empty range that parses back as empty
+            builder.append("1..0");
+            return;
+        }
+        builder.append(first).append("..").append(last);
+    }
+}
@@ -0,0 +1,304 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many two state radius 1 rules from the same seed on all cores and measures how each behaves.
+ *
+ * setRules(deadRule, liveRule) takes two 9 bit masks, so there are RULE_COUNT rules; index() and
+ * rule() number them as deadRule | liveRule << 9 so the whole space can be swept by ranges. The seed
+ * is copied once and then only read. Every thread runs its rules one after the other in its own bit
+ * engine, one bit per cell, reset from the seed for every rule.
+ *
+ * A rule stops early once it is uninteresting: it died, settled into a still or periodic world, or
+ * exploded past the explosion density. Rules still changing after the generation limit are ACTIVE.
+ */
+public class RuleExplorer {
+    public static final int RULE_COUNT = 1 << 18;
+    public static final int DEFAULT_GENERATIONS = 2000;
+    public static final double DEFAULT_EXPLOSION_DENSITY = 0.45;
+
+    public static final int DIED = 0;
+    public static final int STATIC = 1;
+    public static final int OSCILLATING = 2;
+    public static final int EXPLODED = 3;
+    public static final int ACTIVE = 4;
+
+    private static final String[] OUTCOMES = {"died", "static", "oscillating", "exploded", "active"};
+
+    /** What one rule did with the seed. */
+    public static final class Result {
+        private final Rule mRule;
+        private final int mOutcome;
+        private final long mGenerations;
+        private final long mInitialPopulation;
+        private final long mPopulation;
+        private final long mMinPopulation;
+        private final long mMaxPopulation;
+        private final long mChanges;
+        private final long mPeriod;
+        private final long mCycleStart;
+
+        Result(Rule rule, int outcome, long generations, long initialPopulation, long population, long minPopulation,
+                long maxPopulation, long changes, long period, long cycleStart) {
+            mRule = rule;
+            mOutcome = outcome;
+            mGenerations = generations;
+            mInitialPopulation = initialPopulation;
+            mPopulation = population;
+            mMinPopulation = minPopulation;
+            mMaxPopulation = maxPopulation;
+            mChanges = changes;
+            mPeriod = period;
+            mCycleStart = cycleStart;
+        }
+
+        public Rule getRule() {
+            return mRule;
+        }
+
+        /** One of DIED, STATIC, OSCILLATING, EXPLODED or ACTIVE. */
+        public int getOutcome() {
+            return mOutcome;
+        }
+
+        /** Generations run before the rule was stopped. */
+        public long getGenerations() {
+            return mGenerations;
+        }
+
+        public long getInitialPopulation() {
+            return mInitialPopulation;
+        }
+
+        /** Population of the last generation run. */
+        public long getPopulation() {
+            return mPopulation;
+        }
+
+        public long getMinPopulation() {
+            return mMinPopulation;
+        }
+
+        public long getMaxPopulation() {
+            return mMaxPopulation;
+        }
+
+        /** Final over initial population. */
+        public double getGrowth() {
+            return mInitialPopulation > 0 ? (double) mPopulation / mInitialPopulation : 0.0;
+        }
+
+        /** Births plus deaths per generation, 0 once a world stands still. */
+        public double getChangesPerGeneration() {
+            return mGenerations > 0 ? (double) mChanges / mGenerations : 0.0;
+        }
+
+        /** Period of a static (1) or oscillating world, 0 otherwise. */
+        public long getPeriod() {
+            return mPeriod;
+        }
+
+        /** First generation of the cycle, -1 without one. */
+        public long getCycleStart() {
+            return mCycleStart;
+        }
+
+        @Override
+        public String toString() {
+            return mRule + " " + outcomeName(mOutcome);
+        }
+    }
+
+    /** Receives results as rules finish, one at a time but from whichever thread ran the rule. */
+    public interface Listener {
+        void onResult(Result result);
+    }
+
+    private final BitGrid mSeed;
+    private final long mSeedPopulation;
+    private int mGenerations = DEFAULT_GENERATIONS;
+    private double mExplosionDensity = DEFAULT_EXPLOSION_DENSITY;
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+
+    public RuleExplorer(BitGrid seed) {
+        mSeed = new BitGrid(seed.getWidth(), seed.getHeight());
+        mSeed.copyFrom(seed);
+        mSeedPopulation = mSeed.population();
+    }
+
+    /** The rule with the given number, deadRule | liveRule << 9. */
+    public static Rule rule(int index) {
+        if (index < 0 || index >= RULE_COUNT) {
+            throw new IllegalArgumentException("Rule numbers go from 0 to " + (RULE_COUNT - 1) + ", got " + index);
+        }
+        return Rule.fromMasks(index & 0x1FF, index >>> 9);
+    }
+
+    public static int index(Rule rule) {
+        if (!rule.isOuterTotalistic()) {
+            throw new IllegalArgumentException("Only two state radius 1 rules are numbered: " + rule);
+        }
+        return rule.getDeadRule() | rule.getLiveRule() << 9;
+    }
+
+    /** The rules [first, first + count). */
+    public static List<Rule> range(int first, int count) {
+        List<Rule> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            rules.add(rule(first + i));
+        }
+        return rules;
+    }
+
+    public static String outcomeName(int outcome) {
+        return OUTCOMES[outcome];
+    }
+
+    /** Rules still changing after this many generations are ACTIVE. */
+    public void setGenerations(int generations) {
+        mGenerations = generations;
+    }
+
+    /** Live cell fraction from which a rule counts as EXPLODED. */
+    public void setExplosionDensity(double density) {
+        mExplosionDensity = density;
+    }
+
+    public void setThreads(int threads) {
+        mThreads = Math.max(1, threads);
+    }
+
+    /** Explores every rule and returns the results in the order of the rules. */
+    public List<Result> run(List<Rule> rules) throws InterruptedException {
+        Result[] results = new Result[rules.size()];
+        run(rules, null, results);
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    /** Explores every rule, handing each result to the listener as soon as it is known. */
+    public void run(List<Rule> rules, Listener listener) throws InterruptedException {
+        run(rules, listener, null);
+    }
+
+    private void run(final List<Rule> rules, final Listener listener, final Result[] results) throws InterruptedException {
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(mThreads, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "RuleExplorer-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Callable<Void>> workers = new ArrayList<>();
+            for (int i = 0; i < mThreads; ++i) {
+                workers.add(new Callable<Void>() {
+                    public Void call() {
+                        Worker worker = new Worker();
+                        int index;
+                        while ((index = next.getAndIncrement()) < rules.size()) {
+                            Result result = worker.explore(rules.get(index));
+                            if (results != null) {
+                                results[index] = result;
+                            } else {
+                                synchronized (listener) {
+                                    listener.onResult(result);
+                                }
+                            }
+                        }
+                        return null;
+                    }
+                });
+            }
+            for (Future<Void> result : executor.invokeAll(workers)) {
+                result.get();
+            }
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("A rule explorer thread failed", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Explores one rule on the calling thread. */
+    public Result explore(Rule rule) {
+        return new Worker().explore(rule);
+    }
+
+    /** The per thread state, reused for every rule the thread runs. */
+    private final class Worker {
+        final CycleDetector mDetector = new CycleDetector();
+        // active tiles skip empty space, which B0 rules fill, so those run without them
+        BitEngine mTracked;
+        BitEngine mFull;
+
+        Result explore(Rule rule) {
+            BitEngine engine = engine(rule.isBorn(0));
+            engine.setRule(rule);
+            engine.getGrid().copyFrom(mSeed);
+            engine.invalidate();
+            mDetector.clear();
+            mDetector.update(0, engine.getHash());
+
+            GenerationStats stats = engine.getStats();
+            long explosion = (long) (mExplosionDensity * mSeed.getWidth() * mSeed.getHeight());
+            long population = mSeedPopulation;
+            long minPopulation = population;
+            long maxPopulation = population;
+            long changes = 0;
+            int outcome = ACTIVE;
+            int generation = 0;
+            while (generation < mGenerations) {
+                engine.simulate();
+                ++generation;
+                population = stats.getPopulation();
+                minPopulation = Math.min(minPopulation, population);
+                maxPopulation = Math.max(maxPopulation, population);
+                changes += stats.getChangedCells();
+                if (population == 0) {
+                    outcome = DIED;
+                    break;
+                }
+                if (mDetector.update(generation, engine.getHash())) {
+                    outcome = mDetector.isStatic() ? STATIC : OSCILLATING;
+                    break;
+                }
+                if (population >= explosion) {
+                    outcome = EXPLODED;
+                    break;
+                }
+            }
+            boolean cycling = outcome == STATIC || outcome == OSCILLATING;
+            return new Result(rule, outcome, generation, mSeedPopulation, population, minPopulation, maxPopulation, changes,
+                    cycling ? mDetector.getPeriod() : 0, cycling ? mDetector.getCycleStart() : -1);
+        }
+
+        private BitEngine engine(boolean full) {
+            if (full) {
+                if (mFull == null) {
+                    mFull = new BitEngine(mSeed.getWidth(), mSeed.getHeight());
+                    mFull.setStatsTracking(true);
+                }
+                return mFull;
+            }
+            if (mTracked == null) {
+                mTracked = new BitEngine(mSeed.getWidth(), mSeed.getHeight());
+                mTracked.setActiveTracking(true);
+                mTracked.setStatsTracking(true);
+            }
+            return mTracked;
+        }
+    }
+}
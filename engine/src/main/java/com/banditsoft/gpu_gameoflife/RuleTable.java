@@ -0,0 +1,44 @@
+package com.banditsoft.gpu_gameoflife;
+
+/**
+ * Birth/survival decide table shared by the simulator shader and the CPU engines.
+ *
+ * Bit n of the dead rule tells whether a dead cell with n living neighbours is born,
+ * bit n of the live rule whether a living one survives. The standard rules are dead = 8, live = 12.
+ */
+public final class RuleTable {
+    public static final int NEIGHBOUR_STATES = 9; // 0, 1 .. 8 living neighbour
+    public static final int SIZE = 2 * NEIGHBOUR_STATES;
+
+    private RuleTable() {
+    }
+
+    public static int[] create(int deadRule, int liveRule) {
+        int[] decideData = new int[SIZE];
+        fill(decideData, deadRule, liveRule);
+        return decideData;
+    }
+
+    public static void fill(int[] decideData, int deadRule, int liveRule) {
+        int currentState = 0;
+        int currentRule = deadRule;
+        for (int ruleIdx = 0; ruleIdx < 2; ++ruleIdx) {
+            for (int bitIdx = 0; bitIdx < NEIGHBOUR_STATES; ++bitIdx) {
+                decideData[currentState * NEIGHBOUR_STATES + bitIdx] = (currentRule >> bitIdx) & 1;
+            }
+            currentRule = liveRule;
+            ++currentState;
+        }
+    }
+
+    /** Packs one row of the table (0 = dead, 1 = live) back into a 9 bit mask. */
+    public static int mask(int[] decideData, int currentState) {
+        int mask = 0;
+        for (int bitIdx = 0; bitIdx < NEIGHBOUR_STATES; ++bitIdx) {
+            if (decideData[currentState * NEIGHBOUR_STATES + bitIdx] != 0) {
+                mask |= 1 << bitIdx;
+            }
+        }
+        return mask;
+    }
+}
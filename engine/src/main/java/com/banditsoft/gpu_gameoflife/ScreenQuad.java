@@ -0,0 +1,57 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * The full screen quad both shader programs draw, as direct buffers ready for glVertexAttribPointer.
+ */
+public final class ScreenQuad {
+    public static final int COORDS_PER_VERTEX = 3;
+    public static final int COORDS_PER_TEXEL = 2;
+    public static final int BYTES_PER_COORDS = 4;
+    public static final int BYTES_PER_INDEX = 2;
+    public static final int VERTEX_STRIDE = COORDS_PER_VERTEX * BYTES_PER_COORDS;
+
+    private static final float SQUARE_COORDS[] = {
+            -1.0f, -1.0f, 0.0f,
+            1.0f, -1.0f, 0.0f,
+            1.0f, 1.0f, 0.0f,
+            -1.0f, 1.0f, 0.0f};
+
+    private static final float TEXTURE_COORDS[] = {
+            0.0f, 0.0f,
+            1.0f, 0.0f,
+            1.0f, 1.0f,
+            0.0f, 1.0f};
+
+    private static final short INDICES[] = {0, 1, 3, 3, 1, 2};
+
+    public static final int INDEX_COUNT = INDICES.length;
+
+    public final FloatBuffer mVertexBuffer;
+    public final FloatBuffer mTexelBuffer;
+    public final ShortBuffer mIndexBuffer;
+
+    public ScreenQuad() {
+        ByteBuffer bb = ByteBuffer.allocateDirect(SQUARE_COORDS.length * BYTES_PER_COORDS);
+        bb.order(ByteOrder.nativeOrder());
+        mVertexBuffer = bb.asFloatBuffer();
+        mVertexBuffer.put(SQUARE_COORDS);
+        mVertexBuffer.position(0);
+
+        ByteBuffer tbb = ByteBuffer.allocateDirect(TEXTURE_COORDS.length * BYTES_PER_COORDS);
+        tbb.order(ByteOrder.nativeOrder());
+        mTexelBuffer = tbb.asFloatBuffer();
+        mTexelBuffer.put(TEXTURE_COORDS);
+        mTexelBuffer.position(0);
+
+        ByteBuffer dlb = ByteBuffer.allocateDirect(INDICES.length * BYTES_PER_INDEX);
+        dlb.order(ByteOrder.nativeOrder());
+        mIndexBuffer = dlb.asShortBuffer();
+        mIndexBuffer.put(INDICES);
+        mIndexBuffer.position(0);
+    }
+}
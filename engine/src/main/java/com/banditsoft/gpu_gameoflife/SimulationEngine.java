@@ -0,0 +1,23 @@
+package com.banditsoft.gpu_gameoflife;
+
+/**
+ * Common surface of the simulation back ends.
+ *
+ * The GL engine has to be driven from the GL thread, the CPU engines from any one thread at a time.
+ */
+public interface SimulationEngine {
+    void simulate();
+
+    void reset();
+
+    void addNoise();
+
+    /** Seeds the generator addNoise() places its stamps with, so runs with the same seed match. */
+    void setNoiseSeed(long seed);
+
+    void setRules(int deadRule, int liveRule);
+
+    State getState();
+
+    void setState(State state);
+}
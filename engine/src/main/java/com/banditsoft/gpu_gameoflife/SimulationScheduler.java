@@ -0,0 +1,480 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a CPU engine on its own thread, as fast as possible or at a target rate, and publishes every
+ * finished generation through a TripleBuffer.
+ *
+ * The renderer picks up the newest frame whenever it draws, so a slow frame only skips generations
+ * on screen and never holds up the simulation. Everything that touches the engine (reset, noise,
+ * rules, post()) runs on the simulation thread between two generations.
+ *
+ * Cell paints and stamps go into an EditBuffer instead of the command queue and are applied in one
+ * batch before the next generation, after the commands. Every frame carries the region that changed
+ * since the frame published before it, so a renderer that saw that frame only uploads the edits.
+ *
+ * startJournal() records every reset, noise injection, rule change and edit with the generation it
+ * ran before, so Journal.replay() can run the session again. The journal counts every generation the
+ * thread ran, resets included, and noise is placed from a seed drawn per injection.
+ */
+public class SimulationScheduler {
+    private static final Logger LOG = Logger.getLogger("GOLEngine");
+
+    /** A published generation. */
+    public static final class Frame {
+        private final BitGrid mGrid;
+        private final DirtyRegion mChanged;
+        private long mGeneration;
+        private long mSequence;
+
+        Frame(int width, int height) {
+            mGrid = new BitGrid(width, height);
+            mChanged = new DirtyRegion(width, height);
+        }
+
+        public BitGrid getGrid() {
+            return mGrid;
+        }
+
+        public long getGeneration() {
+            return mGeneration;
+        }
+
+        /** Counts published frames, consecutive frames differ by getChanged(). */
+        public long getSequence() {
+            return mSequence;
+        }
+
+        /** What changed since the frame published before this one, the whole grid after a generation. */
+        public DirtyRegion getChanged() {
+            return mChanged;
+        }
+    }
+
+    private final BitEngine mEngine;
+    private final TripleBuffer<Frame> mFrames;
+    private final ConcurrentLinkedQueue<Runnable> mCommands = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mPendingCommands = new AtomicInteger();
+    private final Thread mThread;
+
+    private volatile boolean mRunning;
+    private volatile boolean mStopped;
+    private volatile long mPeriodNanos;
+    private volatile Runnable mFrameListener;
+    private volatile SnapshotPipeline mSnapshots;
+    private volatile long mSnapshotEvery;
+    private volatile long mSnapshotPeriodNanos;
+    private volatile long mLastSnapshot;
+    private long mGeneration;
+    // generations since the thread started, the journal clock a reset does not rewind
+    private long mSteps;
+    private final Random mNoiseSeeds = new Random();
+    private final Random mNoisePlacement = new Random();
+    private Journal.Writer mJournal;
+
+    // edits are collected into the pending buffer on any thread and swapped out by the simulation thread
+    private final Object mEditLock = new Object();
+    private EditBuffer mPendingEdits;
+    private EditBuffer mAppliedEdits;
+    private final DirtyRegion mChanged;
+    private long mSequence;
+
+    private Histogram mStepTime;
+    private Histogram mQueueDepth;
+    private AtomicLong mGenerations;
+    private AtomicLong mCells;
+
+    public SimulationScheduler(BitEngine engine) {
+        mEngine = engine;
+        int width = engine.getGridWidth();
+        int height = engine.getGridHeight();
+        mFrames = new TripleBuffer<>(new Frame(width, height), new Frame(width, height), new Frame(width, height));
+        mPendingEdits = new EditBuffer(width, height);
+        mAppliedEdits = new EditBuffer(width, height);
+        mChanged = new DirtyRegion(width, height);
+        // the first frame is all new to the renderer
+        mChanged.addAll();
+        mThread = new Thread(new Runnable() {
+            public void run() {
+                loop();
+            }
+        }, "Simulation");
+        mThread.setDaemon(true);
+        setMetrics(Metrics.getDefault());
+    }
+
+    /** Where step times, generation and cell counts and the command queue depth go. Call before start(). */
+    public void setMetrics(Metrics metrics) {
+        mStepTime = metrics.histogram(Metrics.STEP_TIME);
+        mQueueDepth = metrics.histogram(Metrics.QUEUE_DEPTH);
+        mGenerations = metrics.counter(Metrics.GENERATIONS);
+        mCells = metrics.counter(Metrics.CELLS);
+    }
+
+    public int getGridWidth() {
+        return mEngine.getGridWidth();
+    }
+
+    public int getGridHeight() {
+        return mEngine.getGridHeight();
+    }
+
+    /** Starts the thread and publishes the current generation. Generations only run after setRunning(true). */
+    public void start() {
+        mThread.start();
+    }
+
+    /** Stops the thread and waits for it to finish its current generation. */
+    public void stop() throws InterruptedException {
+        mStopped = true;
+        LockSupport.unpark(mThread);
+        mThread.join();
+    }
+
+    public void setRunning(boolean running) {
+        mRunning = running;
+        LockSupport.unpark(mThread);
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /** Generations per second, zero or less runs as fast as the engine can. */
+    public void setTargetRate(double generationsPerSecond) {
+        mPeriodNanos = generationsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / generationsPerSecond) : 0;
+        LockSupport.unpark(mThread);
+    }
+
+    /** Called on the simulation thread after every published frame. */
+    public void setFrameListener(Runnable listener) {
+        mFrameListener = listener;
+    }
+
+    /**
+     * Hands every generation that is a multiple of every to the pipeline, null turns checkpoints off.
+     * A saturated pipeline drops checkpoints rather than holding up the simulation.
+     */
+    public void setSnapshots(SnapshotPipeline pipeline, long every) {
+        mSnapshotEvery = every;
+        mSnapshotPeriodNanos = 0;
+        mSnapshots = pipeline;
+    }
+
+    /**
+     * Hands the first generation after every period of wall clock time to the pipeline, so checkpoints
+     * cost the same however fast the simulation runs. Null turns checkpoints off.
+     */
+    public void setSnapshotPeriod(SnapshotPipeline pipeline, long period, TimeUnit unit) {
+        mSnapshotEvery = 0;
+        mLastSnapshot = System.nanoTime();
+        mSnapshotPeriodNanos = unit.toNanos(period);
+        mSnapshots = pipeline;
+    }
+
+    /** Captures the current generation into the pipeline from the simulation thread, waiting for a free buffer. */
+    public void requestSnapshot(final SnapshotPipeline pipeline) {
+        post(new Runnable() {
+            public void run() {
+                try {
+                    pipeline.submit(mEngine.getGrid(), mGeneration);
+                } catch (IOException ex) {
+                    LOG.log(Level.WARNING, "Could not take a snapshot", ex);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    /** Runs the command on the simulation thread before the next generation, then publishes a frame. */
+    public void post(Runnable command) {
+        mQueueDepth.record(mPendingCommands.incrementAndGet());
+        mCommands.add(command);
+        LockSupport.unpark(mThread);
+    }
+
+    public void reset() {
+        post(new Runnable() {
+            public void run() {
+                mEngine.reset();
+                mGeneration = 0;
+                if (mJournal != null) {
+                    try {
+                        mJournal.reset(mSteps);
+                    } catch (IOException ex) {
+                        journalFailed(ex);
+                    }
+                }
+            }
+        });
+    }
+
+    /** Stamps the engine's noise pattern at positions drawn from a fresh seed. */
+    public void addNoise() {
+        post(new Runnable() {
+            public void run() {
+                long seed = mNoiseSeeds.nextLong();
+                mNoisePlacement.setSeed(seed);
+                for (int c = 0; c < mEngine.getNoiseCount(); ++c) {
+                    int x = mNoisePlacement.nextInt(mEngine.getGridWidth());
+                    int y = mNoisePlacement.nextInt(mEngine.getGridHeight());
+                    mEngine.addNoise(x, y);
+                    if (mJournal != null) {
+                        try {
+                            mJournal.noise(mSteps, seed, x, y);
+                        } catch (IOException ex) {
+                            journalFailed(ex);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /** Seeds the generator the noise seeds are drawn from, so the same actions place the same noise. */
+    public void setNoiseSeed(final long seed) {
+        post(new Runnable() {
+            public void run() {
+                mNoiseSeeds.setSeed(seed);
+            }
+        });
+    }
+
+    public void setRules(final int deadRule, final int liveRule) {
+        post(new Runnable() {
+            public void run() {
+                mEngine.setRules(deadRule, liveRule);
+                if (mJournal != null) {
+                    try {
+                        mJournal.rules(mSteps, deadRule, liveRule);
+                    } catch (IOException ex) {
+                        journalFailed(ex);
+                    }
+                }
+            }
+        });
+    }
+
+    /** Paints a cell before the next generation, wrapping around the edges. Safe from any thread. */
+    public void setCell(int x, int y, boolean alive) {
+        synchronized (mEditLock) {
+            mPendingEdits.setCell(x, y, alive);
+        }
+        LockSupport.unpark(mThread);
+    }
+
+    /**
+     * Writes the pattern rectangle with its bottom left corner at (x, y) before the next generation,
+     * wrapping around the edges. The pattern must not change until then. Safe from any thread.
+     */
+    public void stamp(Pattern pattern, int x, int y) {
+        synchronized (mEditLock) {
+            mPendingEdits.stamp(pattern, x, y);
+        }
+        LockSupport.unpark(mThread);
+    }
+
+    /**
+     * Journals the session into the file from the current generation on, replacing a running journal.
+     * Records are written through after every batch of commands and the journal is ended by
+     * stopJournal() or stop().
+     */
+    public void startJournal(final File file) {
+        post(new Runnable() {
+            public void run() {
+                closeJournal();
+                try {
+                    mJournal = Journal.Writer.create(file, mEngine, mSteps);
+                } catch (IOException ex) {
+                    LOG.log(Level.WARNING, "Could not start the journal " + file, ex);
+                }
+            }
+        });
+    }
+
+    public void stopJournal() {
+        post(new Runnable() {
+            public void run() {
+                closeJournal();
+            }
+        });
+    }
+
+    /**
+     * Renderer side: the newest frame published since the last call, or null if there is none. The
+     * returned frame stays untouched until the next call.
+     */
+    public Frame acquireFrame() {
+        return mFrames.acquire() ? mFrames.getFront() : null;
+    }
+
+    private void loop() {
+        publish();
+        long deadline = System.nanoTime();
+        while (!mStopped) {
+            boolean changed = runCommands();
+            changed |= applyEdits();
+            if (mRunning) {
+                long period = mPeriodNanos;
+                long now = System.nanoTime();
+                if (period > 0 && now - deadline < 0) {
+                    if (changed) {
+                        publish();
+                    }
+                    LockSupport.parkNanos(this, deadline - now);
+                    continue;
+                }
+                // a stall is not made up for with a burst of generations
+                deadline = Math.max(deadline + period, now - period);
+                long start = System.nanoTime();
+                mEngine.simulate();
+                mStepTime.record(System.nanoTime() - start);
+                mGenerations.incrementAndGet();
+                mCells.addAndGet((long) mEngine.getGridWidth() * mEngine.getGridHeight());
+                ++mGeneration;
+                ++mSteps;
+                mChanged.addAll();
+                changed = true;
+                SnapshotPipeline snapshots = mSnapshots;
+                if (snapshots != null && isSnapshotDue()) {
+                    snapshots.offer(mEngine.getGrid(), mGeneration);
+                }
+            } else if (!changed) {
+                LockSupport.park(this);
+                deadline = System.nanoTime();
+                continue;
+            }
+            publish();
+        }
+        runCommands();
+        applyEdits();
+        closeJournal();
+    }
+
+    private boolean isSnapshotDue() {
+        long every = mSnapshotEvery;
+        if (every > 0) {
+            return mGeneration % every == 0;
+        }
+        long period = mSnapshotPeriodNanos;
+        if (period <= 0) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (now - mLastSnapshot < period) {
+            return false;
+        }
+        mLastSnapshot = now;
+        return true;
+    }
+
+    private boolean runCommands() {
+        boolean ran = false;
+        Runnable command;
+        while ((command = mCommands.poll()) != null) {
+            mPendingCommands.decrementAndGet();
+            command.run();
+            ran = true;
+        }
+        if (ran) {
+            // commands can change anything
+            mChanged.addAll();
+        }
+        if (ran && mJournal != null) {
+            try {
+                mJournal.flush();
+            } catch (IOException ex) {
+                journalFailed(ex);
+            }
+        }
+        return ran;
+    }
+
+    /** Applies the edits collected since the last batch, returns false if there were none. */
+    private boolean applyEdits() {
+        EditBuffer edits;
+        synchronized (mEditLock) {
+            if (mPendingEdits.isEmpty()) {
+                return false;
+            }
+            edits = mPendingEdits;
+            mPendingEdits = mAppliedEdits;
+        }
+        mAppliedEdits = edits;
+        edits.applyTo(mEngine);
+        mChanged.add(edits.getDirtyRegion());
+        if (mJournal != null) {
+            journal(edits);
+        }
+        edits.clear();
+        return true;
+    }
+
+    private void journal(EditBuffer edits) {
+        int width = mEngine.getGridWidth();
+        int height = mEngine.getGridHeight();
+        try {
+            for (int i = 0; i < edits.size(); ++i) {
+                int x = BitEngine.wrap(edits.getX(i), width);
+                int y = BitEngine.wrap(edits.getY(i), height);
+                if (edits.getType(i) == EditBuffer.CELL) {
+                    mJournal.cell(mSteps, x, y, edits.isAlive(i));
+                } else {
+                    mJournal.stamp(mSteps, x, y, edits.getPattern(i));
+                }
+            }
+            mJournal.flush();
+        } catch (IOException ex) {
+            journalFailed(ex);
+        }
+    }
+
+    private void closeJournal() {
+        if (mJournal == null) {
+            return;
+        }
+        try {
+            mJournal.close(mSteps);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Could not end the journal", ex);
+        }
+        mJournal = null;
+    }
+
+    /** A journal with a hole in it replays wrong, so it ends at the first write error. */
+    private void journalFailed(IOException ex) {
+        LOG.log(Level.WARNING, "Could not write the journal, recording stopped", ex);
+        try {
+            mJournal.close();
+        } catch (IOException closeEx) {
+            // already failing
+        }
+        mJournal = null;
+    }
+
+    private void publish() {
+        Frame frame = mFrames.getBack();
+        frame.mGrid.copyFrom(mEngine.getGrid());
+        frame.mGeneration = mGeneration;
+        frame.mSequence = ++mSequence;
+        frame.mChanged.clear();
+        frame.mChanged.add(mChanged);
+        mChanged.clear();
+        mFrames.publish();
+        Runnable listener = mFrameListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Versioned binary snapshot of a generation.
+ *
+ * A 32 byte big endian header (magic, version, encoding, width, height, generation, payload length)
+ * is followed by either the raw little endian words of the grid, or the alternating dead/alive run
+ * lengths of the row-major cells as unsigned varints, starting with a dead run. The writer picks the
+ * smaller one. Both directions stream through one direct buffer and never build a byte[] of the
+ * grid, and the reader consumes exactly the snapshot bytes, so snapshots can be embedded in other streams.
+ */
+public final class Snapshot {
+    public static final int MAGIC = 0x474F4C53; // "GOLS"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final byte ENCODING_PACKED = 0;
+    public static final byte ENCODING_RUNS = 1;
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BitGrid mGrid;
+    private final long mGeneration;
+
+    public Snapshot(BitGrid grid, long generation) {
+        mGrid = grid;
+        mGeneration = generation;
+    }
+
+    public BitGrid getGrid() {
+        return mGrid;
+    }
+
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    public static void save(File file, BitGrid grid, long generation) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            channel.truncate(0);
+            write(channel, grid, generation);
+            channel.force(false);
+        } finally {
+            raf.close();
+        }
+    }
+
+    public static Snapshot load(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return read(raf.getChannel());
+        } finally {
+            raf.close();
+        }
+    }
+
+    /** Size of the snapshot write() would produce, header included. */
+    public static long size(BitGrid grid) {
+        return HEADER_SIZE + Math.min(packedSize(grid), runsSize(grid));
+    }
+
+    public static void write(WritableByteChannel channel, BitGrid grid, long generation) throws IOException {
+        long start = System.nanoTime();
+        long packedSize = packedSize(grid);
+        long runsSize = runsSize(grid);
+        byte encoding = runsSize < packedSize ? ENCODING_RUNS : ENCODING_PACKED;
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.put(encoding);
+        buffer.put((byte) 0);
+        buffer.putInt(grid.getWidth());
+        buffer.putInt(grid.getHeight());
+        buffer.putLong(generation);
+        buffer.putLong(encoding == ENCODING_RUNS ? runsSize : packedSize);
+
+        if (encoding == ENCODING_RUNS) {
+            writeRuns(channel, buffer, grid);
+        } else {
+            writePacked(channel, buffer, grid);
+        }
+        flush(channel, buffer);
+        Metrics.getDefault().histogram(Metrics.SNAPSHOT_TIME).record(System.nanoTime() - start);
+    }
+
+    public static Snapshot read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.limit(HEADER_SIZE);
+        fill(channel, buffer);
+        buffer.flip();
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a snapshot");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        byte encoding = buffer.get();
+        buffer.get();
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        long generation = buffer.getLong();
+        long payloadSize = buffer.getLong();
+
+        BitGrid grid = new BitGrid(width, height);
+        Input input = new Input(channel, buffer, payloadSize);
+        if (encoding == ENCODING_RUNS) {
+            readRuns(input, grid);
+        } else if (encoding == ENCODING_PACKED) {
+            readPacked(input, grid);
+        } else {
+            throw new IOException("Unknown snapshot encoding " + encoding);
+        }
+        if (input.mRemaining != 0 || buffer.hasRemaining()) {
+            throw new IOException("Snapshot payload has trailing bytes");
+        }
+        return new Snapshot(grid, generation);
+    }
+
+    static long packedSize(BitGrid grid) {
+        return (long) grid.getWords().length * 8;
+    }
+
+    static long runsSize(BitGrid grid) {
+        long size = 0;
+        long run = 0;
+        boolean alive = false;
+        for (long word : grid.getWords()) {
+            int bit = 0;
+            while (bit < BitGrid.WORD_BITS) {
+                long bits = (alive ? ~word : word) >>> bit;
+                if (bits == 0) {
+                    run += BitGrid.WORD_BITS - bit;
+                    break;
+                }
+                int length = Long.numberOfTrailingZeros(bits);
+                run += length;
+                bit += length;
+                size += varintSize(run);
+                run = 0;
+                alive = !alive;
+            }
+        }
+        return size + varintSize(run);
+    }
+
+    private static void writePacked(WritableByteChannel channel, ByteBuffer buffer, BitGrid grid) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        for (long word : grid.getWords()) {
+            if (buffer.remaining() < 8) {
+                flush(channel, buffer);
+            }
+            buffer.putLong(word);
+        }
+        buffer.order(ByteOrder.BIG_ENDIAN);
+    }
+
+    private static void writeRuns(WritableByteChannel channel, ByteBuffer buffer, BitGrid grid) throws IOException {
+        long run = 0;
+        boolean alive = false;
+        for (long word : grid.getWords()) {
+            int bit = 0;
+            while (bit < BitGrid.WORD_BITS) {
+                long bits = (alive ? ~word : word) >>> bit;
+                if (bits == 0) {
+                    run += BitGrid.WORD_BITS - bit;
+                    break;
+                }
+                int length = Long.numberOfTrailingZeros(bits);
+                run += length;
+                bit += length;
+                if (buffer.remaining() < 10) {
+                    flush(channel, buffer);
+                }
+                putVarint(buffer, run);
+                run = 0;
+                alive = !alive;
+            }
+        }
+        if (buffer.remaining() < 10) {
+            flush(channel, buffer);
+        }
+        putVarint(buffer, run);
+    }
+
+    private static void readPacked(Input input, BitGrid grid) throws IOException {
+        long[] words = grid.getWords();
+        for (int i = 0; i < words.length; ++i) {
+            words[i] = input.getLongLittleEndian();
+        }
+    }
+
+    private static void readRuns(Input input, BitGrid grid) throws IOException {
+        long[] words = grid.getWords();
+        long cells = (long) words.length * BitGrid.WORD_BITS;
+        long position = 0;
+        boolean alive = false;
+        while (position < cells) {
+            long run = input.getVarint();
+            if (run > cells - position) {
+                throw new IOException("Run of " + run + " cells overflows the grid");
+            }
+            if (alive) {
+                setRange(words, position, position + run);
+            }
+            position += run;
+            alive = !alive;
+        }
+    }
+
+    /** Sets the cells [from, to) of the row-major bit array. */
+    static void setRange(long[] words, long from, long to) {
+        if (from >= to) {
+            return;
+        }
+        int first = (int) (from >>> 6);
+        int last = (int) ((to - 1) >>> 6);
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - ((to - 1) & 63));
+        if (first == last) {
+            words[first] |= firstMask & lastMask;
+            return;
+        }
+        words[first] |= firstMask;
+        for (int i = first + 1; i < last; ++i) {
+            words[i] = -1L;
+        }
+        words[last] |= lastMask;
+    }
+
+    static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            ++size;
+        }
+        return size;
+    }
+
+    static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static void flush(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void fill(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Snapshot is truncated");
+            }
+        }
+    }
+
+    /** Reads the payload through the buffer, never past its end. */
+    private static final class Input {
+        private final ReadableByteChannel mChannel;
+        private final ByteBuffer mBuffer;
+        private long mRemaining;
+
+        Input(ReadableByteChannel channel, ByteBuffer buffer, long payloadSize) {
+            mChannel = channel;
+            mBuffer = buffer;
+            mRemaining = payloadSize;
+            mBuffer.clear();
+            mBuffer.limit(0);
+        }
+
+        private void require(int bytes) throws IOException {
+            if (mBuffer.remaining() >= bytes) {
+                return;
+            }
+            if (mBuffer.remaining() + mRemaining < bytes) {
+                throw new EOFException("Snapshot payload is truncated");
+            }
+            mBuffer.compact();
+            int chunk = (int) Math.min(mBuffer.remaining(), mRemaining);
+            mBuffer.limit(mBuffer.position() + chunk);
+            fill(mChannel, mBuffer);
+            mRemaining -= chunk;
+            mBuffer.flip();
+        }
+
+        long getLongLittleEndian() throws IOException {
+            require(8);
+            mBuffer.order(ByteOrder.LITTLE_ENDIAN);
+            long value = mBuffer.getLong();
+            mBuffer.order(ByteOrder.BIG_ENDIAN);
+            return value;
+        }
+
+        long getVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                require(1);
+                byte b = mBuffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+    }
+}
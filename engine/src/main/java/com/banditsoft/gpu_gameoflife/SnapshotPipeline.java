@@ -0,0 +1,182 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Takes snapshots off the simulation thread.
+ *
+ * Capturing only copies the grid words into one of a fixed number of buffers, encoding and writing
+ * happen on a background thread, and the buffer goes back to the pool once written. When all
+ * buffers are in flight the pipeline is saturated: submit() waits for one to come back, offer()
+ * drops the snapshot and counts it, so neither memory nor the backlog of a slow disk can grow.
+ */
+public class SnapshotPipeline implements Closeable {
+    /** Receives every captured generation on the background thread. */
+    public interface Sink {
+        void write(Snapshot snapshot) throws IOException;
+    }
+
+    public static final int DEFAULT_BUFFERS = 2;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final Sink mSink;
+    private final BlockingQueue<BitGrid> mFree;
+    private final ExecutorService mExecutor;
+    private final AtomicLong mWritten = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    private volatile IOException mFailure;
+
+    private Histogram mCaptureTime;
+    private AtomicLong mDroppedCounter;
+
+    public SnapshotPipeline(int width, int height, Sink sink) {
+        this(width, height, DEFAULT_BUFFERS, sink);
+    }
+
+    public SnapshotPipeline(int width, int height, int buffers, Sink sink) {
+        if (buffers < 1) {
+            throw new IllegalArgumentException("At least one buffer is needed, got " + buffers);
+        }
+        mWidth = width;
+        mHeight = height;
+        mSink = sink;
+        mFree = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; ++i) {
+            mFree.add(new BitGrid(width, height));
+        }
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Snapshots");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        setMetrics(Metrics.getDefault());
+    }
+
+    /** Writes every snapshot to its own generation-N.gols file in the directory. */
+    public static Sink directory(final File directory) {
+        return new Sink() {
+            public void write(Snapshot snapshot) throws IOException {
+                Snapshot.save(new File(directory, String.format(Locale.US, "generation-%012d.gols", snapshot.getGeneration())),
+                        snapshot.getGrid(), snapshot.getGeneration());
+            }
+        };
+    }
+
+    /** Keeps only the newest snapshot in the file, replaced through a temporary file so a crash never leaves half of one. */
+    public static Sink latest(final File file) {
+        return new Sink() {
+            public void write(Snapshot snapshot) throws IOException {
+                File temporary = new File(file.getPath() + ".tmp");
+                Snapshot.save(temporary, snapshot.getGrid(), snapshot.getGeneration());
+                if (!temporary.renameTo(file)) {
+                    throw new IOException("Could not replace " + file);
+                }
+            }
+        };
+    }
+
+    /** Where the capture stall and the dropped snapshots go. */
+    public void setMetrics(Metrics metrics) {
+        mCaptureTime = metrics.histogram(Metrics.CAPTURE_TIME);
+        mDroppedCounter = metrics.counter(Metrics.SNAPSHOTS_DROPPED);
+    }
+
+    /** Captures the grid, waiting for a free buffer while the pipeline is saturated. */
+    public void submit(BitGrid grid, long generation) throws IOException, InterruptedException {
+        checkFailure();
+        capture(mFree.take(), grid, generation);
+    }
+
+    /** Captures the grid unless the pipeline is saturated, returns false for a dropped snapshot. */
+    public boolean offer(BitGrid grid, long generation) {
+        BitGrid buffer = mFree.poll();
+        if (buffer == null) {
+            mDropped.incrementAndGet();
+            mDroppedCounter.incrementAndGet();
+            return false;
+        }
+        capture(buffer, grid, generation);
+        return true;
+    }
+
+    private void capture(final BitGrid buffer, BitGrid grid, final long generation) {
+        long start = System.nanoTime();
+        buffer.copyFrom(grid);
+        mCaptureTime.record(System.nanoTime() - start);
+        mExecutor.execute(new Runnable() {
+            public void run() {
+                try {
+                    if (mFailure == null) {
+                        mSink.write(new Snapshot(buffer, generation));
+                        mWritten.incrementAndGet();
+                    }
+                } catch (IOException ex) {
+                    mFailure = ex;
+                } finally {
+                    mFree.add(buffer);
+                }
+            }
+        });
+    }
+
+    /** Waits until every captured snapshot is written, and throws the first write failure. */
+    public void flush() throws IOException, InterruptedException {
+        int buffers = mFree.remainingCapacity() + mFree.size();
+        BitGrid[] drained = new BitGrid[buffers];
+        for (int i = 0; i < buffers; ++i) {
+            drained[i] = mFree.take();
+        }
+        for (BitGrid buffer : drained) {
+            mFree.add(buffer);
+        }
+        checkFailure();
+    }
+
+    /** Writes what was captured, then stops the background thread. */
+    public void close() throws IOException {
+        mExecutor.shutdown();
+        try {
+            mExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing snapshots", ex);
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() throws IOException {
+        IOException failure = mFailure;
+        if (failure != null) {
+            throw new IOException("Writing a snapshot failed", failure);
+        }
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public long getWritten() {
+        return mWritten.get();
+    }
+
+    public long getDropped() {
+        return mDropped.get();
+    }
+}
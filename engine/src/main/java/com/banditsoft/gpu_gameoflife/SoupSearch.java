@@ -0,0 +1,163 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs numbered random soups on all cores and takes a census of what they settle into.
+ *
+ * Soup n of a search is a square of random cells in the middle of an otherwise empty torus, drawn
+ * from a generator seeded with the search seed and n only, so any soup can be rerun on its own.
+ * A soup runs until the world repeats an earlier generation, then an ObjectAnalyzer splits it into
+ * objects and names them. Every thread keeps its own engine, analyzer with its classification cache
+ * and census for the whole search.
+ */
+public class SoupSearch {
+    public static final int DEFAULT_WORLD_SIZE = 128;
+    public static final int DEFAULT_SOUP_SIZE = 16;
+    public static final int DEFAULT_MAX_GENERATIONS = 20000;
+    /** Census name of objects too large to be classified. */
+    public static final String LARGE = ObjectAnalyzer.LARGE.getName();
+
+    private final Rule mRule;
+    private final long mSeed;
+    private int mWorldSize = DEFAULT_WORLD_SIZE;
+    private int mSoupSize = DEFAULT_SOUP_SIZE;
+    private int mMaxGenerations = DEFAULT_MAX_GENERATIONS;
+    private int mThreads = Runtime.getRuntime().availableProcessors();
+
+    public SoupSearch(Rule rule, long seed) {
+        if (!rule.isOuterTotalistic() || rule.isBorn(0)) {
+            throw new IllegalArgumentException("Soups can only be searched for two state radius 1 rules without B0, got " + rule);
+        }
+        mRule = rule;
+        mSeed = seed;
+    }
+
+    /** Side of the square torus, a multiple of 64. */
+    public void setWorldSize(int size) {
+        if (size <= 0 || size % BitGrid.WORD_BITS != 0) {
+            throw new IllegalArgumentException("World size must be a positive multiple of " + BitGrid.WORD_BITS + ", got " + size);
+        }
+        mWorldSize = size;
+    }
+
+    public void setSoupSize(int size) {
+        mSoupSize = size;
+    }
+
+    /** Soups still changing after this many generations are counted as unsettled. */
+    public void setMaxGenerations(int generations) {
+        mMaxGenerations = generations;
+    }
+
+    public void setThreads(int threads) {
+        mThreads = Math.max(1, threads);
+    }
+
+    /** Draws soup number index into the middle of the cleared grid. */
+    public void fillSoup(long index, BitGrid grid, Random random) {
+        random.setSeed(GridHash.mix(mSeed ^ GridHash.mix(index)));
+        grid.clear();
+        int size = Math.min(mSoupSize, Math.min(grid.getWidth(), grid.getHeight()));
+        int left = (grid.getWidth() - size) / 2;
+        int bottom = (grid.getHeight() - size) / 2;
+        for (int y = 0; y < size; ++y) {
+            for (int x = 0; x < size; ++x) {
+                if (random.nextBoolean()) {
+                    grid.set(left + x, bottom + y, true);
+                }
+            }
+        }
+    }
+
+    /** Searches the soups [first, first + count) and returns their merged census. */
+    public Census run(long first, long count) throws InterruptedException {
+        final AtomicLong next = new AtomicLong(first);
+        final long end = first + count;
+        final AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(mThreads, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SoupSearch-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Callable<Census>> workers = new ArrayList<>();
+            for (int i = 0; i < mThreads; ++i) {
+                workers.add(new Callable<Census>() {
+                    public Census call() {
+                        Worker worker = new Worker();
+                        long index;
+                        while ((index = next.getAndIncrement()) < end) {
+                            worker.search(index);
+                        }
+                        return worker.mCensus;
+                    }
+                });
+            }
+            Census census = new Census();
+            for (Future<Census> result : executor.invokeAll(workers)) {
+                census.merge(result.get());
+            }
+            return census;
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("A soup search thread failed", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Searches one soup on the calling thread, adding it to the census. */
+    public void search(long index, Census census) {
+        Worker worker = new Worker();
+        worker.search(index);
+        census.merge(worker.mCensus);
+    }
+
+    /** The per thread state, reused for every soup the thread runs. */
+    private final class Worker implements ObjectAnalyzer.Listener {
+        final Census mCensus = new Census();
+        final BitEngine mEngine = new BitEngine(mWorldSize, mWorldSize);
+        final CycleDetector mDetector = new CycleDetector();
+        final ObjectAnalyzer mAnalyzer = new ObjectAnalyzer(mRule);
+        final Random mRandom = new Random();
+
+        Worker() {
+            mEngine.setRule(mRule);
+            mEngine.setActiveTracking(true);
+            mEngine.setStatsTracking(true);
+        }
+
+        void search(long index) {
+            fillSoup(index, mEngine.getGrid(), mRandom);
+            mEngine.invalidate();
+            mDetector.clear();
+            mDetector.update(0, mEngine.getHash());
+            for (int generation = 1; generation <= mMaxGenerations; ++generation) {
+                mEngine.simulate();
+                if (mDetector.update(generation, mEngine.getHash())) {
+                    mCensus.addSoup(true);
+                    mAnalyzer.analyze(mEngine.getGrid(), this);
+                    return;
+                }
+            }
+            mCensus.addSoup(false);
+        }
+
+        @Override
+        public void onObject(ObjectClassifier.Classification classification, int x, int y, int width, int height, int population) {
+            mCensus.add(classification.getName());
+        }
+    }
+}
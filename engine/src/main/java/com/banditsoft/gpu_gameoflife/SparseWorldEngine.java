@@ -0,0 +1,411 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * CPU engine on an unbounded plane, stored as 64x64 bit packed chunks in a ChunkMap keyed by the
+ * packed chunk coordinates.
+ *
+ * Chunks are allocated when a live cell reaches their edge and dropped as soon as they are empty,
+ * so memory follows the live area rather than its bounding box. Dropped chunks are kept for reuse
+ * only up to the live chunk count plus FREE_CHUNK_SLACK, the rest go to the GC. Nothing wraps: a
+ * glider keeps going until it leaves the int range of chunk coordinates. State and the stamp
+ * methods work on a width x height window centered on the origin, like HashLifeEngine.
+ */
+public class SparseWorldEngine implements SimulationEngine {
+    public static final int CHUNK_BITS = 6;
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    /** Dropped chunks kept for reuse beyond the live chunk count. */
+    static final int FREE_CHUNK_SLACK = 64;
+
+    private static final long[] EMPTY = new long[CHUNK_SIZE];
+
+    private int mBirth = LifeKernel.CONWAY_BIRTH;
+    private int mSurvive = LifeKernel.CONWAY_SURVIVE;
+
+    private final int mWidth;
+    private final int mHeight;
+    private ChunkMap mChunks = new ChunkMap();
+    private ChunkMap mNextChunks = new ChunkMap();
+    // the chunks to step, mapped to their current rows or EMPTY
+    private final ChunkMap mCandidates = new ChunkMap();
+    private final ArrayDeque<long[]> mFreeChunks = new ArrayDeque<long[]>();
+    private ChunkMap mInitialState = new ChunkMap();
+    private long mGeneration;
+
+    private final NoiseStamp mNoise = new NoiseStamp();
+    private final NoiseStamp.Target mNoiseTarget = new NoiseStamp.Target() {
+        public void set(int x, int y, boolean alive) {
+            SparseWorldEngine.this.set(x, y, alive);
+        }
+    };
+
+    public SparseWorldEngine(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    static long key(int chunkX, int chunkY) {
+        return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+    }
+
+    static int chunkX(long key) {
+        return (int) (key >> 32);
+    }
+
+    static int chunkY(long key) {
+        return (int) key;
+    }
+
+    public int getChunkCount() {
+        return mChunks.size();
+    }
+
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    int getFreeChunkCount() {
+        return mFreeChunks.size();
+    }
+
+    public long getPopulation() {
+        long population = 0;
+        for (int slot = 0; slot < mChunks.getCapacity(); ++slot) {
+            long[] rows = mChunks.valueAt(slot);
+            if (rows == null) {
+                continue;
+            }
+            for (long row : rows) {
+                population += Long.bitCount(row);
+            }
+        }
+        return population;
+    }
+
+    public boolean get(long x, long y) {
+        long[] rows = mChunks.get(key((int) (x >> CHUNK_BITS), (int) (y >> CHUNK_BITS)));
+        return rows != null && ((rows[(int) (y & (CHUNK_SIZE - 1))] >>> (x & (CHUNK_SIZE - 1))) & 1) != 0;
+    }
+
+    public void set(long x, long y, boolean alive) {
+        set(mChunks, x, y, alive);
+    }
+
+    private void set(ChunkMap chunks, long x, long y, boolean alive) {
+        long key = key((int) (x >> CHUNK_BITS), (int) (y >> CHUNK_BITS));
+        long[] rows = chunks.get(key);
+        if (rows == null) {
+            if (!alive) {
+                return;
+            }
+            rows = allocate();
+            chunks.put(key, rows);
+        }
+        int row = (int) (y & (CHUNK_SIZE - 1));
+        long bit = 1L << (x & (CHUNK_SIZE - 1));
+        rows[row] = alive ? rows[row] | bit : rows[row] & ~bit;
+        if (!alive && isEmpty(rows)) {
+            chunks.remove(key);
+            release(rows);
+        }
+    }
+
+    public void setInitialState(Pattern pattern) {
+        int wX = pattern.getWidth();
+        int wY = pattern.getHeight();
+        int sX = (mWidth / 2) - (wX / 2);
+        int sY = (mHeight / 2) - (wY / 2);
+        clear(mChunks);
+        for (int y = 0; y < wY; ++y) {
+            for (int x = 0; x < wX; ++x) {
+                if (pattern.isAlive(x, wY - y - 1)) {
+                    set(sX + x - mWidth / 2, sY + y - mHeight / 2, true);
+                }
+            }
+        }
+        mInitialState = copy(mChunks);
+        mGeneration = 0;
+    }
+
+    public void setNoise(Pattern pattern) {
+        mNoise.setPattern(pattern);
+    }
+
+    @Override
+    public void setNoiseSeed(long seed) {
+        mNoise.setSeed(seed);
+    }
+
+    @Override
+    public void simulate() {
+        mCandidates.clear();
+        for (int slot = 0; slot < mChunks.getCapacity(); ++slot) {
+            long[] rows = mChunks.valueAt(slot);
+            if (rows != null) {
+                addCandidates(mChunks.keyAt(slot), rows);
+            }
+        }
+
+        boolean conway = mBirth == LifeKernel.CONWAY_BIRTH && mSurvive == LifeKernel.CONWAY_SURVIVE;
+        for (int slot = 0; slot < mCandidates.getCapacity(); ++slot) {
+            long[] rows = mCandidates.valueAt(slot);
+            if (rows == null) {
+                continue;
+            }
+            long key = mCandidates.keyAt(slot);
+            long[] next = mFreeChunks.isEmpty() ? new long[CHUNK_SIZE] : mFreeChunks.pop();
+            if (step(chunkX(key), chunkY(key), rows, next, conway)) {
+                mNextChunks.put(key, next);
+            } else {
+                mFreeChunks.push(next);
+            }
+        }
+
+        clear(mChunks);
+        ChunkMap temp = mChunks;
+        mChunks = mNextChunks;
+        mNextChunks = temp;
+        trimFreeChunks();
+        ++mGeneration;
+    }
+
+    /** The chunk itself, plus every neighbour one of its live edge cells can reach. */
+    private void addCandidates(long key, long[] rows) {
+        int cx = chunkX(key);
+        int cy = chunkY(key);
+        long columns = 0;
+        for (long row : rows) {
+            columns |= row;
+        }
+        boolean west = (columns & 1) != 0;
+        boolean east = (columns >>> (CHUNK_SIZE - 1)) != 0;
+        boolean south = rows[0] != 0;
+        boolean north = rows[CHUNK_SIZE - 1] != 0;
+
+        mCandidates.put(key, rows);
+        if (west) {
+            addCandidate(key(cx - 1, cy));
+        }
+        if (east) {
+            addCandidate(key(cx + 1, cy));
+        }
+        if (south) {
+            addCandidate(key(cx, cy - 1));
+            if ((rows[0] & 1) != 0) {
+                addCandidate(key(cx - 1, cy - 1));
+            }
+            if ((rows[0] >>> (CHUNK_SIZE - 1)) != 0) {
+                addCandidate(key(cx + 1, cy - 1));
+            }
+        }
+        if (north) {
+            addCandidate(key(cx, cy + 1));
+            if ((rows[CHUNK_SIZE - 1] & 1) != 0) {
+                addCandidate(key(cx - 1, cy + 1));
+            }
+            if ((rows[CHUNK_SIZE - 1] >>> (CHUNK_SIZE - 1)) != 0) {
+                addCandidate(key(cx + 1, cy + 1));
+            }
+        }
+    }
+
+    private void addCandidate(long key) {
+        if (!mCandidates.containsKey(key)) {
+            long[] rows = mChunks.get(key);
+            mCandidates.put(key, rows != null ? rows : EMPTY);
+        }
+    }
+
+    /** Steps the chunk with rows c into next. Returns false if the result is empty. */
+    private boolean step(int cx, int cy, long[] c, long[] next, boolean conway) {
+        long[] sw = chunk(cx - 1, cy - 1);
+        long[] s = chunk(cx, cy - 1);
+        long[] se = chunk(cx + 1, cy - 1);
+        long[] w = chunk(cx - 1, cy);
+        long[] e = chunk(cx + 1, cy);
+        long[] nw = chunk(cx - 1, cy + 1);
+        long[] n = chunk(cx, cy + 1);
+        long[] ne = chunk(cx + 1, cy + 1);
+
+        long any = 0;
+        for (int y = 0; y < CHUNK_SIZE; ++y) {
+            long a;
+            long aw;
+            long ae;
+            if (y == 0) {
+                a = s[CHUNK_SIZE - 1];
+                aw = (a << 1) | (sw[CHUNK_SIZE - 1] >>> 63);
+                ae = (a >>> 1) | (se[CHUNK_SIZE - 1] << 63);
+            } else {
+                a = c[y - 1];
+                aw = (a << 1) | (w[y - 1] >>> 63);
+                ae = (a >>> 1) | (e[y - 1] << 63);
+            }
+            long b = c[y];
+            long bw = (b << 1) | (w[y] >>> 63);
+            long be = (b >>> 1) | (e[y] << 63);
+            long u;
+            long uw;
+            long ue;
+            if (y == CHUNK_SIZE - 1) {
+                u = n[0];
+                uw = (u << 1) | (nw[0] >>> 63);
+                ue = (u >>> 1) | (ne[0] << 63);
+            } else {
+                u = c[y + 1];
+                uw = (u << 1) | (w[y + 1] >>> 63);
+                ue = (u >>> 1) | (e[y + 1] << 63);
+            }
+
+            long result = conway
+                    ? LifeKernel.conway(b, aw, a, ae, bw, be, uw, u, ue)
+                    : LifeKernel.decide(b, aw, a, ae, bw, be, uw, u, ue, mBirth, mSurvive);
+            next[y] = result;
+            any |= result;
+        }
+        return any != 0;
+    }
+
+    private long[] chunk(int cx, int cy) {
+        long[] rows = mChunks.get(key(cx, cy));
+        return rows != null ? rows : EMPTY;
+    }
+
+    private long[] allocate() {
+        return mFreeChunks.isEmpty() ? new long[CHUNK_SIZE] : mFreeChunks.pop();
+    }
+
+    /** Keeps an empty chunk for reuse unless enough are kept already. */
+    private void release(long[] rows) {
+        if (mFreeChunks.size() < mChunks.size() + mNextChunks.size() + FREE_CHUNK_SLACK) {
+            mFreeChunks.push(rows);
+        }
+    }
+
+    private void trimFreeChunks() {
+        while (mFreeChunks.size() > mChunks.size() + FREE_CHUNK_SLACK) {
+            mFreeChunks.pop();
+        }
+    }
+
+    /** Returns the chunks of the map to the free list. */
+    private void clear(ChunkMap chunks) {
+        for (int slot = 0; slot < chunks.getCapacity(); ++slot) {
+            long[] rows = chunks.valueAt(slot);
+            if (rows != null) {
+                Arrays.fill(rows, 0);
+                release(rows);
+            }
+        }
+        chunks.clear();
+    }
+
+    private static ChunkMap copy(ChunkMap chunks) {
+        ChunkMap copy = new ChunkMap();
+        for (int slot = 0; slot < chunks.getCapacity(); ++slot) {
+            long[] rows = chunks.valueAt(slot);
+            if (rows != null) {
+                copy.put(chunks.keyAt(slot), rows.clone());
+            }
+        }
+        return copy;
+    }
+
+    private static boolean isEmpty(long[] rows) {
+        for (long row : rows) {
+            if (row != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        clear(mChunks);
+        for (int slot = 0; slot < mInitialState.getCapacity(); ++slot) {
+            long[] initial = mInitialState.valueAt(slot);
+            if (initial != null) {
+                long[] rows = allocate();
+                System.arraycopy(initial, 0, rows, 0, CHUNK_SIZE);
+                mChunks.put(mInitialState.keyAt(slot), rows);
+            }
+        }
+        trimFreeChunks();
+        mGeneration = 0;
+    }
+
+    @Override
+    public void addNoise() {
+        // stamps land in the window, which is centered on the origin
+        mNoise.stamp(mWidth, mHeight, -mWidth / 2, -mHeight / 2, mNoiseTarget);
+    }
+
+    @Override
+    public void setRules(int deadRule, int liveRule) {
+        setRule(Rule.fromMasks(deadRule, liveRule));
+    }
+
+    public void setRule(Rule rule) {
+        if (!rule.isOuterTotalistic()) {
+            throw new IllegalArgumentException("The sparse world only runs two state radius 1 rules: " + rule);
+        }
+        if (rule.isBorn(0)) {
+            throw new IllegalArgumentException("An unbounded world cannot run rules where dead cells with no neighbours are born");
+        }
+        mBirth = rule.getDeadRule();
+        mSurvive = rule.getLiveRule();
+    }
+
+    /** The window around the origin. */
+    @Override
+    public State getState() {
+        BitGrid grid = new BitGrid(mWidth, mHeight);
+        for (int slot = 0; slot < mChunks.getCapacity(); ++slot) {
+            long[] rows = mChunks.valueAt(slot);
+            if (rows == null) {
+                continue;
+            }
+            long x0 = ((long) chunkX(mChunks.keyAt(slot)) << CHUNK_BITS) + mWidth / 2;
+            long y0 = ((long) chunkY(mChunks.keyAt(slot)) << CHUNK_BITS) + mHeight / 2;
+            if (x0 >= mWidth || y0 >= mHeight || x0 + CHUNK_SIZE <= 0 || y0 + CHUNK_SIZE <= 0) {
+                continue;
+            }
+            for (int y = 0; y < CHUNK_SIZE; ++y) {
+                long row = rows[y];
+                while (row != 0) {
+                    int x = Long.numberOfTrailingZeros(row);
+                    row &= row - 1;
+                    long gridX = x0 + x;
+                    long gridY = y0 + y;
+                    if (gridX >= 0 && gridX < mWidth && gridY >= 0 && gridY < mHeight) {
+                        grid.set((int) gridX, (int) gridY, true);
+                    }
+                }
+            }
+        }
+        return grid.toState();
+    }
+
+    /** Replaces the whole world, initial state included, with the window contents. */
+    @Override
+    public void setState(State state) {
+        if (state.width != mWidth || state.height != mHeight) {
+            throw new IllegalArgumentException("State is " + state.width + "x" + state.height + ", window is " + mWidth + "x" + mHeight);
+        }
+        BitGrid grid = BitGrid.fromState(state);
+        clear(mChunks);
+        for (int y = 0; y < mHeight; ++y) {
+            for (int x = 0; x < mWidth; ++x) {
+                if (grid.get(x, y)) {
+                    set(x - mWidth / 2, y - mHeight / 2, true);
+                }
+            }
+        }
+        mInitialState = copy(mChunks);
+        mGeneration = 0;
+    }
+}
@@ -5,30 +5,29 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 
 /**
  * Created by ipilter on 30/03/2017.
  */
 
 public class State implements Serializable {
-    private static final long serialVersionUID = -2833423545634569113L;
+    private static final long serialVersionUID = 4183006392261713468L;
 
     public int width;
     public int height;
     transient public ByteBuffer grid;
 
+    // the grid is serialized as a packed Snapshot, not as 3 bytes per cell
     private void writeObject(ObjectOutputStream out) throws IOException {
         out.defaultWriteObject();
-        out.writeInt(grid.capacity());
-        out.write(grid.array());
+        Snapshot.write(Channels.newChannel(out), BitGrid.fromState(this), 0);
     }
 
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
-        int bufferSize = in.readInt();
-        byte[] buffer = new byte[bufferSize];
-        in.read(buffer, 0, bufferSize);
-        this.grid = ByteBuffer.wrap(buffer, 0, bufferSize);
+        Snapshot snapshot = Snapshot.read(Channels.newChannel(in));
+        this.grid = snapshot.getGrid().toState().grid;
         grid.position(0);
     }
 }
@@ -0,0 +1,51 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock free handoff of the latest value from one producer thread to one consumer thread.
+ *
+ * The producer fills getBack() and publishes it, the consumer acquires the newest published buffer
+ * into getFront(). Neither side ever waits for the other: a producer faster than the consumer
+ * simply overwrites the buffer in the middle, which the consumer then never sees.
+ */
+public final class TripleBuffer<T> {
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;
+
+    private final Object[] mBuffers;
+    /** Index of the middle buffer, with FRESH set when it holds something the consumer has not seen. */
+    private final AtomicInteger mMiddle = new AtomicInteger(1);
+    private int mBack = 0;
+    private int mFront = 2;
+
+    public TripleBuffer(T first, T second, T third) {
+        mBuffers = new Object[] {first, second, third};
+    }
+
+    /** The buffer the producer writes. */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) mBuffers[mBack];
+    }
+
+    /** Hands the back buffer to the consumer and takes the middle one as the new back buffer. */
+    public void publish() {
+        mBack = mMiddle.getAndSet(mBack | FRESH) & INDEX_MASK;
+    }
+
+    /** Moves the newest published buffer to the front. Returns false if nothing new was published. */
+    public boolean acquire() {
+        if ((mMiddle.get() & FRESH) == 0) {
+            return false;
+        }
+        mFront = mMiddle.getAndSet(mFront) & INDEX_MASK;
+        return true;
+    }
+
+    /** The buffer the consumer reads, stable until its next acquire(). */
+    @SuppressWarnings("unchecked")
+    public T getFront() {
+        return (T) mBuffers[mFront];
+    }
+}
@@ -0,0 +1,163 @@
+package com.banditsoft.gpu_gameoflife;
+
+/**
+ * Orthographic projection and pan/zoom view of the rendered grid, as column major 4x4 matrices
+ * like glUniformMatrix4fv takes them.
+ *
+ * The view-projection matrix and its inverse are only recomputed after the viewport, pan or scale
+ * changed, and nothing allocates after construction, so mapping touch points on every move event
+ * stays off the garbage collector. Gestures change the view on the UI thread while the GL thread
+ * draws with it, so every method holds the transform's lock and the matrix is handed out as a copy.
+ */
+public final class ViewTransform {
+    private final float[] mProjection = new float[16];
+    private final float[] mView = new float[16];
+    private final float[] mViewProjection = new float[16];
+    private final float[] mInverse = new float[16];
+    private boolean mDirty = true;
+    private boolean mInverseDirty = true;
+
+    private int mWidth = 1;
+    private int mHeight = 1;
+
+    public ViewTransform() {
+        setIdentity(mProjection);
+        setIdentity(mView);
+    }
+
+    /** Fits the model square of the given half size to the height of a viewport of this size. */
+    public synchronized void setViewport(int width, int height, float modelHalfSize) {
+        mWidth = width;
+        mHeight = height;
+        float ratio = (float) width / height;
+        ortho(mProjection, -modelHalfSize * ratio, modelHalfSize * ratio, -modelHalfSize, modelHalfSize, -1, 1);
+        invalidate();
+    }
+
+    public synchronized void pan(float dx, float dy) {
+        translate(mView, dx, dy);
+        invalidate();
+    }
+
+    /** Scales the view around a point in model space. */
+    public synchronized void scale(float scale, float focusX, float focusY) {
+        translate(mView, focusX, focusY);
+        scale(mView, scale);
+        translate(mView, -focusX, -focusY);
+        invalidate();
+    }
+
+    /** Copies the view-projection matrix into out, which is returned for convenience. */
+    public synchronized float[] getMatrix(float[] out) {
+        System.arraycopy(viewProjection(), 0, out, 0, 16);
+        return out;
+    }
+
+    private float[] viewProjection() {
+        if (mDirty) {
+            multiply(mViewProjection, mProjection, mView);
+            mDirty = false;
+        }
+        return mViewProjection;
+    }
+
+    /**
+     * Maps a screen point, y pointing down, to model space. The result goes into out[0] and out[1],
+     * so callers can keep reusing one array.
+     */
+    public synchronized void map(float screenX, float screenY, float[] out) {
+        if (mInverseDirty) {
+            invert(mInverse, viewProjection());
+            mInverseDirty = false;
+        }
+        float x = 2.0f * screenX / mWidth - 1.0f;
+        float y = -2.0f * screenY / mHeight + 1.0f;
+        out[0] = mInverse[0] * x + mInverse[4] * y + mInverse[12];
+        out[1] = mInverse[1] * x + mInverse[5] * y + mInverse[13];
+    }
+
+    private void invalidate() {
+        mDirty = true;
+        mInverseDirty = true;
+    }
+
+    static void setIdentity(float[] m) {
+        for (int i = 0; i < 16; ++i) {
+            m[i] = i % 5 == 0 ? 1.0f : 0.0f;
+        }
+    }
+
+    static void ortho(float[] m, float left, float right, float bottom, float top, float near, float far) {
+        setIdentity(m);
+        m[0] = 2.0f / (right - left);
+        m[5] = 2.0f / (top - bottom);
+        m[10] = -2.0f / (far - near);
+        m[12] = -(right + left) / (right - left);
+        m[13] = -(top + bottom) / (top - bottom);
+        m[14] = -(far + near) / (far - near);
+    }
+
+    static void translate(float[] m, float x, float y) {
+        for (int i = 0; i < 4; ++i) {
+            m[12 + i] += m[i] * x + m[4 + i] * y;
+        }
+    }
+
+    // scales x and y, z is left alone like the 2D view needs
+    static void scale(float[] m, float scale) {
+        for (int i = 0; i < 8; ++i) {
+            m[i] *= scale;
+        }
+    }
+
+    /** result = lhs * rhs, result must not be one of the operands. */
+    static void multiply(float[] result, float[] lhs, float[] rhs) {
+        for (int column = 0; column < 4; ++column) {
+            for (int row = 0; row < 4; ++row) {
+                float sum = 0;
+                for (int k = 0; k < 4; ++k) {
+                    sum += lhs[k * 4 + row] * rhs[column * 4 + k];
+                }
+                result[column * 4 + row] = sum;
+            }
+        }
+    }
+
+    /** Inverts m into result by cofactors, returns false and leaves result alone for singular matrices. */
+    static boolean invert(float[] result, float[] m) {
+        float a0 = m[0] * m[5] - m[1] * m[4];
+        float a1 = m[0] * m[6] - m[2] * m[4];
+        float a2 = m[0] * m[7] - m[3] * m[4];
+        float a3 = m[1] * m[6] - m[2] * m[5];
+        float a4 = m[1] * m[7] - m[3] * m[5];
+        float a5 = m[2] * m[7] - m[3] * m[6];
+        float b0 = m[8] * m[13] - m[9] * m[12];
+        float b1 = m[8] * m[14] - m[10] * m[12];
+        float b2 = m[8] * m[15] - m[11] * m[12];
+        float b3 = m[9] * m[14] - m[10] * m[13];
+        float b4 = m[9] * m[15] - m[11] * m[13];
+        float b5 = m[10] * m[15] - m[11] * m[14];
+        float determinant = a0 * b5 - a1 * b4 + a2 * b3 + a3 * b2 - a4 * b1 + a5 * b0;
+        if (determinant == 0.0f) {
+            return false;
+        }
+        float inverse = 1.0f / determinant;
+        result[0] = (m[5] * b5 - m[6] * b4 + m[7] * b3) * inverse;
+        result[1] = (-m[1] * b5 + m[2] * b4 - m[3] * b3) * inverse;
+        result[2] = (m[13] * a5 - m[14] * a4 + m[15] * a3) * inverse;
+        result[3] = (-m[9] * a5 + m[10] * a4 - m[11] * a3) * inverse;
+        result[4] = (-m[4] * b5 + m[6] * b2 - m[7] * b1) * inverse;
+        result[5] = (m[0] * b5 - m[2] * b2 + m[3] * b1) * inverse;
+        result[6] = (-m[12] * a5 + m[14] * a2 - m[15] * a1) * inverse;
+        result[7] = (m[8] * a5 - m[10] * a2 + m[11] * a1) * inverse;
+        result[8] = (m[4] * b4 - m[5] * b2 + m[7] * b0) * inverse;
+        result[9] = (-m[0] * b4 + m[1] * b2 - m[3] * b0) * inverse;
+        result[10] = (m[12] * a4 - m[13] * a2 + m[15] * a0) * inverse;
+        result[11] = (-m[8] * a4 + m[9] * a2 - m[11] * a0) * inverse;
+        result[12] = (-m[4] * b3 + m[5] * b1 - m[6] * b0) * inverse;
+        result[13] = (m[0] * b3 - m[1] * b1 + m[2] * b0) * inverse;
+        result[14] = (-m[12] * a3 + m[13] * a1 - m[14] * a0) * inverse;
+        result[15] = (m[8] * a3 - m[9] * a1 + m[10] * a0) * inverse;
+        return true;
+    }
+}
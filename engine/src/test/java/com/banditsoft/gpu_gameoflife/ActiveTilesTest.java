@@ -0,0 +1,58 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ActiveTilesTest {
+    private static void assertTrackingMatchesFullStep(BitEngine tracked) {
+        // a soup in the middle of an empty world, like noise stamped by addNoise
+        BitGrid soup = BitEngineTest.randomGrid(128, 128, 21);
+        BitGrid grid = new BitGrid(512, 500);
+        for (int y = 0; y < 128; ++y) {
+            for (int x = 0; x < 128; ++x) {
+                grid.set(192 + x, 186 + y, soup.get(x, y));
+            }
+        }
+        BitEngine full = new BitEngine(512, 500);
+        full.setState(grid.toState());
+        tracked.setState(grid.toState());
+        tracked.setActiveTracking(true);
+
+        for (int generation = 0; generation < 400; ++generation) {
+            full.simulate();
+            tracked.simulate();
+            assertArrayEquals("generation " + generation, full.getGrid().getWords(), tracked.getGrid().getWords());
+        }
+        assertTrue(tracked.getActiveTileFraction() < 1.0f);
+    }
+
+    @Test
+    public void trackedStepMatchesFullStep() {
+        assertTrackingMatchesFullStep(new BitEngine(512, 500));
+    }
+
+    @Test
+    public void parallelTrackedStepMatchesFullStep() {
+        assertTrackingMatchesFullStep(new ParallelBitEngine(512, 500, new ForkJoinPool(4)));
+    }
+
+    @Test
+    public void emptyWorldGoesIdle() {
+        BitEngine engine = new BitEngine(256, 256);
+        engine.setActiveTracking(true);
+        engine.simulate();
+        engine.simulate();
+        assertEquals(0.0f, engine.getActiveTileFraction(), 0.0f);
+
+        engine.getGrid().set(10, 10, true);
+        engine.getGrid().set(11, 10, true);
+        engine.getGrid().set(12, 10, true);
+        engine.invalidate();
+        engine.simulate();
+        assertEquals(3, engine.getGrid().population());
+        assertTrue(engine.getGrid().get(11, 11));
+    }
+}
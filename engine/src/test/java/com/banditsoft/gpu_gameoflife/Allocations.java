@@ -0,0 +1,43 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+
+/** Counts the bytes the test thread allocates, for the tests of paths that must not allocate. */
+final class Allocations {
+    static final int WARM_UP_RUNS = 20000;
+    static final int MEASURED_RUNS = 1000;
+
+    private Allocations() {
+    }
+
+    static long measure(Runnable code) {
+        return measure(code, WARM_UP_RUNS, MEASURED_RUNS);
+    }
+
+    /**
+     * Runs the code warmUp times, so class initialization and the JIT are done with it, then returns
+     * the bytes allocated by the next runs runs. Skips the test on JVMs that cannot count allocations.
+     */
+    static long measure(Runnable code, int warmUp, int runs) {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+
+        for (int i = 0; i < warmUp; ++i) {
+            code.run();
+        }
+        long thread = Thread.currentThread().getId();
+        // what reading the counter allocates itself
+        long before = allocations.getThreadAllocatedBytes(thread);
+        long overhead = allocations.getThreadAllocatedBytes(thread) - before;
+        before = allocations.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < runs; ++i) {
+            code.run();
+        }
+        return allocations.getThreadAllocatedBytes(thread) - before - overhead;
+    }
+}
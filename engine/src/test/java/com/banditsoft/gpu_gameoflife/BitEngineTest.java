@@ -0,0 +1,111 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BitEngineTest {
+    static BitGrid randomGrid(int width, int height, long seed) {
+        Random random = new Random(seed);
+        BitGrid grid = new BitGrid(width, height);
+        for (int i = 0; i < grid.getWords().length; ++i) {
+            grid.getWords()[i] = random.nextLong() & random.nextLong();
+        }
+        return grid;
+    }
+
+    /** Cell by cell reference step over the decide table, the way simulator.fsh does it. */
+    static BitGrid referenceStep(BitGrid src, int[] decideData) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        BitGrid dst = new BitGrid(width, height);
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                int sum = 0;
+                for (int dy = -1; dy <= 1; ++dy) {
+                    for (int dx = -1; dx <= 1; ++dx) {
+                        if ((dx != 0 || dy != 0) && src.get((x + dx + width) % width, (y + dy + height) % height)) {
+                            ++sum;
+                        }
+                    }
+                }
+                int current = src.get(x, y) ? 1 : 0;
+                dst.set(x, y, decideData[current * RuleTable.NEIGHBOUR_STATES + sum] != 0);
+            }
+        }
+        return dst;
+    }
+
+    @Test
+    public void conwayMatchesReference() {
+        BitGrid grid = randomGrid(128, 96, 1);
+        BitEngine engine = new BitEngine(128, 96);
+        engine.setState(grid.toState());
+
+        int[] decideData = RuleTable.create(8, 12);
+        for (int generation = 0; generation < 20; ++generation) {
+            grid = referenceStep(grid, decideData);
+            engine.simulate();
+            assertArrayEquals("generation " + generation, grid.getWords(), engine.getGrid().getWords());
+        }
+    }
+
+    @Test
+    public void otherRulesMatchReference() {
+        Random random = new Random(7);
+        for (int i = 0; i < 20; ++i) {
+            int deadRule = random.nextInt(512);
+            int liveRule = random.nextInt(512);
+            BitGrid grid = randomGrid(64, 40, i);
+            BitEngine engine = new BitEngine(64, 40);
+            engine.setRules(deadRule, liveRule);
+            engine.setState(grid.toState());
+
+            int[] decideData = RuleTable.create(deadRule, liveRule);
+            for (int generation = 0; generation < 5; ++generation) {
+                grid = referenceStep(grid, decideData);
+                engine.simulate();
+                assertArrayEquals("rule " + deadRule + "/" + liveRule, grid.getWords(), engine.getGrid().getWords());
+            }
+        }
+    }
+
+    @Test
+    public void gliderWrapsAroundTheTorus() {
+        BitGrid grid = new BitGrid(64, 64);
+        // glider heading to +x, -y
+        grid.set(1, 2, true);
+        grid.set(2, 1, true);
+        grid.set(0, 0, true);
+        grid.set(1, 0, true);
+        grid.set(2, 0, true);
+        BitEngine engine = new BitEngine(64, 64);
+        engine.setState(grid.toState());
+
+        for (int generation = 0; generation < 4 * 64; ++generation) {
+            engine.simulate();
+        }
+        assertArrayEquals(grid.getWords(), engine.getGrid().getWords());
+        assertEquals(5, engine.getGrid().population());
+    }
+
+    @Test
+    public void stateRoundTrip() {
+        BitGrid grid = randomGrid(64, 8, 3);
+        State state = grid.toState();
+        assertEquals(64 * 8 * BitGrid.CHANNELS_PER_PIXEL, state.grid.capacity());
+        assertArrayEquals(grid.getWords(), BitGrid.fromState(state).getWords());
+    }
+
+    @Test
+    public void resetRestoresInitialState() {
+        BitGrid grid = randomGrid(64, 64, 5);
+        BitEngine engine = new BitEngine(64, 64);
+        engine.setState(grid.toState());
+        engine.simulate();
+        engine.reset();
+        assertArrayEquals(grid.getWords(), engine.getGrid().getWords());
+    }
+}
@@ -0,0 +1,150 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CellPackingTest {
+    private static BitGrid random(int width, int height, long seed) {
+        Random random = new Random(seed);
+        BitGrid grid = new BitGrid(width, height);
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                grid.set(x, y, random.nextBoolean());
+            }
+        }
+        return grid;
+    }
+
+    private static ByteBuffer buffer(int size, ByteOrder order) {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.order(order);
+        return buffer;
+    }
+
+    @Test
+    public void partialBitsAreTheSameBytesAsTheWholeGrid() {
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            BitGrid grid = random(256, 20, 4);
+            ByteBuffer whole = buffer(CellPacking.bitsSize(256, 20), order);
+            CellPacking.packBits(grid, whole);
+            ByteBuffer part = buffer(CellPacking.bitsSize(256, 20), order);
+            CellPacking.packBits(grid, 1, 5, 2, 9, part);
+            for (int row = 0; row < 9; ++row) {
+                for (int i = 0; i < 16; ++i) {
+                    assertEquals(order + " " + row + "," + i, whole.get((5 + row) * 32 + 8 + i), part.get(row * 16 + i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void bitsAreTheRowsEightCellsPerByte() {
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            BitGrid grid = random(128, 7, 1);
+            ByteBuffer bits = buffer(CellPacking.bitsSize(128, 7), order);
+            CellPacking.packBits(grid, bits);
+            for (int y = 0; y < 7; ++y) {
+                for (int x = 0; x < 128; ++x) {
+                    boolean alive = (bits.get((y * 128 + x) / 8) >>> (x % 8) & 1) != 0;
+                    assertEquals(order + " " + x + "," + y, grid.get(x, y), alive);
+                }
+            }
+            BitGrid unpacked = new BitGrid(128, 7);
+            CellPacking.unpackBits(bits, unpacked);
+            assertArrayEquals(grid.getWords(), unpacked.getWords());
+        }
+    }
+
+    @Test
+    public void luminanceIsOneBytePerCell() {
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            BitGrid grid = random(192, 5, 2);
+            ByteBuffer luminance = buffer(CellPacking.luminanceSize(192, 5), order);
+            CellPacking.packLuminance(grid, luminance);
+            for (int y = 0; y < 5; ++y) {
+                for (int x = 0; x < 192; ++x) {
+                    assertEquals(order + " " + x + "," + y, grid.get(x, y) ? (byte) 255 : 0, luminance.get(y * 192 + x));
+                }
+            }
+            BitGrid unpacked = new BitGrid(192, 5);
+            CellPacking.unpackLuminance(luminance, unpacked);
+            assertArrayEquals(grid.getWords(), unpacked.getWords());
+        }
+    }
+
+    @Test
+    public void anyNonZeroByteIsAlive() {
+        ByteBuffer luminance = buffer(64, ByteOrder.nativeOrder());
+        for (int i = 0; i < 64; ++i) {
+            luminance.put(i, (byte) (i % 3 == 0 ? 0 : i * 37));
+        }
+        BitGrid grid = new BitGrid(64, 1);
+        CellPacking.unpackLuminance(luminance, grid);
+        for (int i = 0; i < 64; ++i) {
+            assertEquals(Integer.toString(i), luminance.get(i) != 0, grid.get(i, 0));
+        }
+        for (int value = 0; value < 256; ++value) {
+            long bytes = (long) value << 24;
+            assertEquals(value == 0 ? 0 : 1 << 3, CellPacking.gather(bytes));
+        }
+    }
+
+    @Test
+    public void rgbMatchesTheStateLayout() {
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            BitGrid grid = random(64, 9, 3);
+            ByteBuffer rgb = buffer(CellPacking.rgbSize(64, 9), order);
+            CellPacking.packRgb(grid, rgb);
+            for (int y = 0; y < 9; ++y) {
+                for (int x = 0; x < 64; ++x) {
+                    for (int c = 0; c < CellPacking.RGB_BYTES_PER_CELL; ++c) {
+                        assertEquals(order + " " + x + "," + y, grid.get(x, y) ? (byte) 255 : 0,
+                                rgb.get((y * 64 + x) * CellPacking.RGB_BYTES_PER_CELL + c));
+                    }
+                }
+            }
+            BitGrid unpacked = new BitGrid(64, 9);
+            CellPacking.unpackRgb(rgb, unpacked);
+            assertArrayEquals(grid.getWords(), unpacked.getWords());
+        }
+    }
+
+    @Test
+    public void rgbUnpackReadsOnlyTheFirstChannel() {
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            Random random = new Random(6);
+            ByteBuffer rgb = buffer(CellPacking.rgbSize(128, 5), order);
+            BitGrid expected = new BitGrid(128, 5);
+            for (int cell = 0; cell < 128 * 5; ++cell) {
+                int value = random.nextBoolean() ? 0 : 1 + random.nextInt(255);
+                rgb.put(cell * 3, (byte) value);
+                rgb.put(cell * 3 + 1, (byte) random.nextInt(256));
+                rgb.put(cell * 3 + 2, (byte) random.nextInt(256));
+                expected.set(cell % 128, cell / 128, value != 0);
+            }
+            BitGrid unpacked = new BitGrid(128, 5);
+            CellPacking.unpackRgb(rgb, unpacked);
+            assertArrayEquals(order.toString(), expected.getWords(), unpacked.getWords());
+        }
+    }
+
+    @Test
+    public void stateRoundTripsThroughTheRgbLayout() {
+        BitGrid grid = random(256, 33, 4);
+        State state = grid.toState();
+        assertEquals(0, state.grid.position());
+        assertEquals(256 * 33 * BitGrid.CHANNELS_PER_PIXEL, state.grid.capacity());
+        assertArrayEquals(grid.getWords(), BitGrid.fromState(state).getWords());
+    }
+
+    @Test
+    public void packedLayoutsAreSmaller() {
+        assertEquals(CellPacking.rgbSize(256, 256), 3 * CellPacking.luminanceSize(256, 256));
+        assertEquals(CellPacking.rgbSize(256, 256), 24 * CellPacking.bitsSize(256, 256));
+    }
+}
@@ -0,0 +1,54 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ChunkMapTest {
+    @Test
+    public void matchesHashMapThroughPutsAndRemoves() {
+        Random random = new Random(3);
+        ChunkMap map = new ChunkMap();
+        HashMap<Long, long[]> reference = new HashMap<Long, long[]>();
+        for (int i = 0; i < 20000; ++i) {
+            // few distinct keys, so removes hit often and probe runs get shifted
+            long key = SparseWorldEngine.key(random.nextInt(40) - 20, random.nextInt(40) - 20);
+            if (random.nextInt(3) == 0) {
+                assertSame(reference.remove(key), map.remove(key));
+            } else {
+                long[] rows = new long[1];
+                assertSame(reference.put(key, rows), map.put(key, rows));
+            }
+            assertEquals(reference.size(), map.size());
+        }
+        for (Map.Entry<Long, long[]> entry : reference.entrySet()) {
+            assertSame(entry.getValue(), map.get(entry.getKey()));
+        }
+        int found = 0;
+        for (int slot = 0; slot < map.getCapacity(); ++slot) {
+            if (map.valueAt(slot) != null) {
+                assertSame(reference.get(map.keyAt(slot)), map.valueAt(slot));
+                ++found;
+            }
+        }
+        assertEquals(reference.size(), found);
+    }
+
+    @Test
+    public void clearShrinksATableThatWasMostlyEmpty() {
+        ChunkMap map = new ChunkMap();
+        for (int i = 0; i < 10000; ++i) {
+            map.put(i, new long[1]);
+        }
+        map.clear();
+        assertTrue(map.isEmpty());
+        map.put(0, new long[1]);
+        map.clear();
+        assertEquals(ChunkMap.MIN_CAPACITY, map.getCapacity());
+        assertNull(map.get(0));
+    }
+}
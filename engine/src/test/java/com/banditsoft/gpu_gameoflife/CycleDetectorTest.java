@@ -0,0 +1,158 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CycleDetectorTest {
+    private static BitGrid soup(int width, int height, int size, long seed) {
+        Random random = new Random(seed);
+        BitGrid grid = new BitGrid(width, height);
+        for (int y = (height - size) / 2; y < (height + size) / 2; ++y) {
+            for (int x = (width - size) / 2; x < (width + size) / 2; ++x) {
+                grid.set(x, y, random.nextInt(3) == 0);
+            }
+        }
+        return grid;
+    }
+
+    private static CycleDetector run(BitEngine engine, int generations) {
+        engine.setStatsTracking(true);
+        CycleDetector detector = new CycleDetector();
+        detector.update(0, engine.getHash());
+        for (int generation = 1; generation <= generations; ++generation) {
+            engine.simulate();
+            if (detector.update(generation, engine.getHash())) {
+                break;
+            }
+        }
+        return detector;
+    }
+
+    private static void checkHash(BitEngine engine, BitGrid grid, int generations) {
+        engine.setState(grid.toState());
+        engine.setStatsTracking(true);
+        for (int generation = 0; generation < generations; ++generation) {
+            engine.simulate();
+            assertEquals(engine.getClass().getSimpleName() + " generation " + generation,
+                    GridHash.of(engine.getGrid()), engine.getHash());
+        }
+    }
+
+    @Test
+    public void blinkerHasPeriodTwo() {
+        BitEngine engine = new BitEngine(64, 64);
+        BitGrid grid = new BitGrid(64, 64);
+        grid.set(30, 30, true);
+        grid.set(31, 30, true);
+        grid.set(32, 30, true);
+        engine.setState(grid.toState());
+        CycleDetector detector = run(engine, 10);
+        assertTrue(detector.isCycling());
+        assertEquals(2, detector.getPeriod());
+        assertEquals(0, detector.getCycleStart());
+        assertFalse(detector.isStatic());
+    }
+
+    @Test
+    public void blockIsStatic() {
+        BitEngine engine = new BitEngine(64, 64);
+        BitGrid grid = new BitGrid(64, 64);
+        grid.set(63, 10, true);
+        grid.set(0, 10, true);
+        grid.set(63, 11, true);
+        grid.set(0, 11, true);
+        engine.setState(grid.toState());
+        CycleDetector detector = run(engine, 10);
+        assertTrue(detector.isStatic());
+        assertEquals(0, detector.getCycleStart());
+    }
+
+    @Test
+    public void gliderOnATorusComesBack() {
+        BitEngine engine = new BitEngine(64, 64);
+        BitGrid grid = new BitGrid(64, 64);
+        grid.set(1, 0, true);
+        grid.set(2, 1, true);
+        grid.set(0, 2, true);
+        grid.set(1, 2, true);
+        grid.set(2, 2, true);
+        engine.setState(grid.toState());
+        // a glider moves one cell diagonally every 4 generations, 64 cells around the torus
+        assertEquals(256, run(engine, 1000).getPeriod());
+    }
+
+    @Test
+    public void soupSettlesDown() {
+        BitEngine engine = new BitEngine(128, 128);
+        engine.setActiveTracking(true);
+        engine.setState(soup(128, 128, 32, 5).toState());
+        CycleDetector detector = run(engine, 5000);
+        assertTrue(detector.isCycling());
+        // replay the run to check the reported cycle really repeats
+        BitEngine replay = new BitEngine(128, 128);
+        replay.setState(soup(128, 128, 32, 5).toState());
+        for (long generation = 0; generation < detector.getCycleStart(); ++generation) {
+            replay.simulate();
+        }
+        BitGrid start = new BitGrid(128, 128);
+        start.copyFrom(replay.getGrid());
+        for (long generation = 0; generation < detector.getPeriod(); ++generation) {
+            replay.simulate();
+            assertEquals(generation == detector.getPeriod() - 1, GridHash.of(start) == GridHash.of(replay.getGrid()));
+        }
+        assertArrayEquals(start.getWords(), replay.getGrid().getWords());
+    }
+
+    @Test
+    public void incrementalHashMatchesFullHash() {
+        checkHash(new BitEngine(256, 200), soup(256, 200, 64, 1), 30);
+        BitEngine active = new BitEngine(512, 500);
+        active.setActiveTracking(true);
+        checkHash(active, soup(512, 500, 128, 2), 30);
+        checkHash(new ParallelBitEngine(1024, 1021), soup(1024, 1021, 300, 3), 5);
+        ParallelBitEngine parallel = new ParallelBitEngine(1024, 1021);
+        parallel.setActiveTracking(true);
+        checkHash(parallel, soup(1024, 1021, 300, 4), 5);
+    }
+
+    @Test
+    public void hashFollowsEdits() {
+        BitEngine engine = new BitEngine(128, 64);
+        engine.setState(soup(128, 64, 40, 6).toState());
+        engine.setStatsTracking(true);
+        engine.simulate();
+        engine.getHash();
+        engine.getGrid().set(5, 5, true);
+        engine.getGrid().set(6, 5, true);
+        engine.getGrid().set(7, 5, true);
+        engine.invalidate();
+        assertEquals(GridHash.of(engine.getGrid()), engine.getHash());
+        engine.simulate();
+        assertEquals(GridHash.of(engine.getGrid()), engine.getHash());
+    }
+
+    @Test
+    public void hashDependsOnPosition() {
+        BitGrid a = new BitGrid(128, 2);
+        BitGrid b = new BitGrid(128, 2);
+        a.set(3, 0, true);
+        b.set(3, 1, true);
+        assertNotEquals(GridHash.of(a), GridHash.of(b));
+        assertEquals(0, GridHash.of(new BitGrid(128, 2)) ^ GridHash.of(new BitGrid(128, 2)));
+    }
+
+    @Test
+    public void evictedHashesAreForgotten() {
+        CycleDetector detector = new CycleDetector(3);
+        for (int generation = 0; generation < 100; ++generation) {
+            assertFalse(detector.update(generation, generation * 31L));
+        }
+        detector.clear();
+        assertFalse(detector.update(0, 7));
+        assertTrue(detector.update(5, 7));
+        assertEquals(5, detector.getPeriod());
+    }
+}
@@ -0,0 +1,89 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DirtyRegionTest {
+    private static String rect(DirtyRegion region, int i) {
+        return region.getX(i) + "," + region.getY(i) + " " + region.getWidth(i) + "x" + region.getHeight(i);
+    }
+
+    @Test
+    public void overlappingAndTouchingRectanglesMerge() {
+        DirtyRegion region = new DirtyRegion(128, 64);
+        region.add(10, 10, 4, 4);
+        region.add(12, 12, 4, 4);
+        region.add(16, 10, 1, 1);
+        region.add(50, 50, 2, 2);
+        assertEquals(2, region.getCount());
+        assertEquals("10,10 7x6", rect(region, 0));
+        assertEquals("50,50 2x2", rect(region, 1));
+        assertEquals(42 + 4, region.getArea());
+
+        // bridging the two merges everything into one box
+        region.add(15, 15, 36, 36);
+        assertEquals(1, region.getCount());
+        assertEquals("10,10 42x42", rect(region, 0));
+    }
+
+    @Test
+    public void rectanglesAcrossTheEdgesAreSplit() {
+        DirtyRegion region = new DirtyRegion(128, 64);
+        region.add(126, -1, 4, 3);
+        assertEquals(4, region.getCount());
+        assertEquals(12, region.getArea());
+        for (int i = 0; i < region.getCount(); ++i) {
+            assertTrue(rect(region, i), region.getX(i) >= 0 && region.getX(i) + region.getWidth(i) <= 128);
+            assertTrue(rect(region, i), region.getY(i) >= 0 && region.getY(i) + region.getHeight(i) <= 64);
+        }
+    }
+
+    @Test
+    public void manyRectanglesStayBoundedAndCovered() {
+        DirtyRegion region = new DirtyRegion(1024, 1024);
+        boolean[] added = new boolean[1024 * 1024];
+        Random random = new Random(5);
+        for (int n = 0; n < 500; ++n) {
+            int x = random.nextInt(1024);
+            int y = random.nextInt(1024);
+            int width = 1 + random.nextInt(8);
+            int height = 1 + random.nextInt(8);
+            region.add(x, y, width, height);
+            for (int dy = 0; dy < height; ++dy) {
+                for (int dx = 0; dx < width; ++dx) {
+                    added[(y + dy) % 1024 * 1024 + (x + dx) % 1024] = true;
+                }
+            }
+        }
+        assertTrue(region.getCount() <= DirtyRegion.MAX_RECTS);
+        boolean[] covered = new boolean[1024 * 1024];
+        long area = 0;
+        for (int i = 0; i < region.getCount(); ++i) {
+            for (int y = region.getY(i); y < region.getY(i) + region.getHeight(i); ++y) {
+                for (int x = region.getX(i); x < region.getX(i) + region.getWidth(i); ++x) {
+                    assertFalse("rectangles overlap", covered[y * 1024 + x]);
+                    covered[y * 1024 + x] = true;
+                    ++area;
+                }
+            }
+        }
+        assertEquals(area, region.getArea());
+        for (int cell = 0; cell < added.length; ++cell) {
+            assertTrue(!added[cell] || covered[cell]);
+        }
+    }
+
+    @Test
+    public void addAllCoversTheGrid() {
+        DirtyRegion region = new DirtyRegion(128, 64);
+        region.add(3, 3, 1, 1);
+        region.addAll();
+        assertEquals(1, region.getCount());
+        assertEquals(128 * 64, region.getArea());
+        region.clear();
+        assertTrue(region.isEmpty());
+    }
+}
@@ -0,0 +1,85 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EditBufferTest {
+    private static Pattern glider() {
+        Pattern pattern = new Pattern(3, 3, null);
+        pattern.set(1, 0);
+        pattern.set(2, 1);
+        pattern.setRun(0, 2, 3);
+        return pattern;
+    }
+
+    @Test
+    public void editsApplyInOrder() {
+        BitEngine engine = new BitEngine(64, 64);
+        engine.getGrid().set(11, 11, true);
+        EditBuffer edits = new EditBuffer(64, 64);
+        edits.setCell(11, 10, true);
+        edits.stamp(glider(), 10, 10);
+        edits.setCell(11, 12, false);
+        edits.applyTo(engine);
+
+        // the stamp clears the painted cell, the last paint clears a stamped one
+        BitGrid grid = engine.getGrid();
+        assertFalse(grid.get(11, 11));
+        assertTrue(grid.get(10, 10));
+        assertTrue(grid.get(11, 10));
+        assertTrue(grid.get(12, 10));
+        assertTrue(grid.get(12, 11));
+        assertFalse(grid.get(11, 12));
+        assertEquals(4, grid.population());
+        assertEquals(1, edits.getDirtyRegion().getCount());
+        assertEquals(9, edits.getDirtyRegion().getArea());
+    }
+
+    @Test
+    public void stampsWrapAroundTheEdges() {
+        BitEngine engine = new BitEngine(64, 64);
+        EditBuffer edits = new EditBuffer(64, 64);
+        edits.stamp(glider(), 63, -1);
+        edits.applyTo(engine);
+
+        BitEngine reference = new BitEngine(64, 64);
+        reference.stamp(glider(), 63, 63);
+        assertArrayEquals(reference.getGrid().getWords(), engine.getGrid().getWords());
+        assertEquals(5, engine.getGrid().population());
+        assertEquals(4, edits.getDirtyRegion().getCount());
+    }
+
+    @Test
+    public void trackedEnginesStepEditedTiles() {
+        BitEngine tracked = new BitEngine(256, 256);
+        tracked.setActiveTracking(true);
+        BitEngine full = new BitEngine(256, 256);
+        for (int i = 0; i < 3; ++i) {
+            tracked.simulate();
+        }
+        EditBuffer edits = new EditBuffer(256, 256);
+        edits.stamp(glider(), 100, 200);
+        edits.stamp(glider(), 250, 30);
+        edits.applyTo(tracked);
+        edits.applyTo(full);
+        for (int i = 0; i < 40; ++i) {
+            tracked.simulate();
+            full.simulate();
+        }
+        assertArrayEquals(full.getGrid().getWords(), tracked.getGrid().getWords());
+        assertEquals(10, tracked.getGrid().population());
+    }
+
+    @Test
+    public void clearedBuffersAreReused() {
+        EditBuffer edits = new EditBuffer(64, 64);
+        for (int i = 0; i < 1000; ++i) {
+            edits.setCell(i % 64, i / 64, true);
+        }
+        assertEquals(1000, edits.size());
+        edits.clear();
+        assertTrue(edits.isEmpty());
+        assertTrue(edits.getDirtyRegion().isEmpty());
+    }
+}
@@ -0,0 +1,75 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GenerationArchiveTest {
+    private static List<long[]> run(BitEngine engine, GenerationArchive archive, long firstGeneration, int generations) throws IOException {
+        List<long[]> history = new ArrayList<>();
+        for (int i = 0; i < generations; ++i) {
+            archive.append(firstGeneration + i, engine.getGrid());
+            history.add(engine.getGrid().getWords().clone());
+            engine.simulate();
+        }
+        return history;
+    }
+
+    @Test
+    public void seekRestoresEveryGeneration() throws IOException {
+        File file = File.createTempFile("archive", ".gola");
+        try {
+            BitEngine engine = new BitEngine(256, 128);
+            engine.setState(BitEngineTest.randomGrid(256, 128, 1).toState());
+            // small chunks so records have to skip to the next one
+            GenerationArchive archive = GenerationArchive.create(file, 256, 128, 8, 16 * 1024);
+            List<long[]> history = run(engine, archive, 0, 60);
+
+            for (int generation = 59; generation >= 0; generation -= 7) {
+                Snapshot snapshot = archive.seek(generation);
+                assertEquals(generation, snapshot.getGeneration());
+                assertArrayEquals(history.get(generation), snapshot.getGrid().getWords());
+            }
+            assertNull(archive.seek(-1));
+            archive.close();
+
+            GenerationArchive reopened = GenerationArchive.open(file);
+            assertEquals(60, reopened.size());
+            assertEquals(59, reopened.getLastGeneration());
+            assertArrayEquals(history.get(33), reopened.seek(33).getGrid().getWords());
+            reopened.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void rewindContinuesFromThePast() throws IOException {
+        File file = File.createTempFile("archive", ".gola");
+        try {
+            BitEngine engine = new BitEngine(128, 64);
+            engine.setState(BitEngineTest.randomGrid(128, 64, 2).toState());
+            GenerationArchive archive = GenerationArchive.create(file, 128, 64, 5, 64 * 1024);
+            List<long[]> history = run(engine, archive, 100, 30);
+
+            Snapshot snapshot = archive.rewind(112);
+            assertEquals(112, snapshot.getGeneration());
+            assertEquals(13, archive.size());
+            assertEquals(112, archive.getLastGeneration());
+
+            engine.setState(snapshot.getGrid().toState());
+            engine.simulate();
+            List<long[]> replay = run(engine, archive, 113, 10);
+            assertArrayEquals(history.get(13), replay.get(0));
+            assertArrayEquals(history.get(22), archive.seek(122).getGrid().getWords());
+            archive.close();
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GenerationStatsTest {
+    private static BitGrid soup(int width, int height, int size, long seed) {
+        Random random = new Random(seed);
+        BitGrid grid = new BitGrid(width, height);
+        for (int y = (height - size) / 2; y < (height + size) / 2; ++y) {
+            for (int x = (width - size) / 2; x < (width + size) / 2; ++x) {
+                grid.set(x, y, random.nextInt(3) == 0);
+            }
+        }
+        return grid;
+    }
+
+    private static void assertStats(String message, BitGrid previous, BitGrid current, GenerationStats stats) {
+        long births = 0;
+        long deaths = 0;
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = -1;
+        int maxY = -1;
+        for (int y = 0; y < current.getHeight(); ++y) {
+            for (int x = 0; x < current.getWidth(); ++x) {
+                boolean was = previous.get(x, y);
+                boolean is = current.get(x, y);
+                births += !was && is ? 1 : 0;
+                deaths += was && !is ? 1 : 0;
+                if (is) {
+                    minX = Math.min(minX, x);
+                    minY = Math.min(minY, y);
+                    maxX = Math.max(maxX, x);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+        assertEquals(message, current.population(), stats.getPopulation());
+        assertEquals(message, births, stats.getBirths());
+        assertEquals(message, deaths, stats.getDeaths());
+        assertEquals(message, minX, stats.getMinX());
+        assertEquals(message, minY, stats.getMinY());
+        assertEquals(message, maxX, stats.getMaxX());
+        assertEquals(message, maxY, stats.getMaxY());
+    }
+
+    private static void check(BitEngine engine, BitGrid grid, int generations) {
+        engine.setState(grid.toState());
+        engine.setStatsTracking(true);
+        BitGrid previous = new BitGrid(grid.getWidth(), grid.getHeight());
+        for (int generation = 0; generation < generations; ++generation) {
+            previous.copyFrom(engine.getGrid());
+            engine.simulate();
+            assertStats(engine.getClass().getSimpleName() + " generation " + generation, previous, engine.getGrid(), engine.getStats());
+        }
+    }
+
+    @Test
+    public void bitEngineStatsMatchTheGrid() {
+        check(new BitEngine(256, 200), soup(256, 200, 64, 1), 30);
+    }
+
+    @Test
+    public void activeTileStatsIncludeSkippedTiles() {
+        BitEngine engine = new BitEngine(512, 500);
+        engine.setActiveTracking(true);
+        check(engine, soup(512, 500, 128, 2), 30);
+    }
+
+    @Test
+    public void parallelBandsMergeTheirStats() {
+        check(new ParallelBitEngine(1024, 1021), soup(1024, 1021, 300, 3), 5);
+        ParallelBitEngine engine = new ParallelBitEngine(1024, 1021);
+        engine.setActiveTracking(true);
+        check(engine, soup(1024, 1021, 300, 4), 5);
+    }
+
+    @Test
+    public void trackedStatsDoNotAllocate() {
+        final BitEngine engine = new BitEngine(256, 256);
+        engine.setActiveTracking(true);
+        engine.setStatsTracking(true);
+        engine.getGrid().copyFrom(soup(256, 256, 64, 5));
+        engine.invalidate();
+
+        assertEquals(0, Allocations.measure(new Runnable() {
+            @Override
+            public void run() {
+                engine.simulate();
+            }
+        }));
+    }
+
+    @Test
+    public void emptyGridHasNoBox() {
+        BitEngine engine = new BitEngine(64, 64);
+        engine.setStatsTracking(true);
+        engine.simulate();
+        assertTrue(engine.getStats().isEmpty());
+        assertEquals(0, engine.getStats().getChangedCells());
+    }
+}
@@ -0,0 +1,59 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GpuSimulatorTest {
+    private static GpuSimulator createSimulator(RecordingGL gl) {
+        GpuSimulator simulator = new GpuSimulator(gl, new ScreenQuad(), "vsh", "fsh");
+        simulator.create(256, 256, null);
+        return simulator;
+    }
+
+    @Test
+    public void generationCostsThreeCalls() {
+        RecordingGL gl = new RecordingGL();
+        GpuSimulator simulator = createSimulator(gl);
+
+        simulator.simulate(1);
+        gl.clear();
+        simulator.simulate(1);
+        int single = gl.mCalls.size();
+        gl.clear();
+        simulator.simulate(101);
+
+        assertEquals(single + 100 * 3, gl.mCalls.size());
+        assertEquals(101, gl.count("glDrawElements"));
+        assertEquals(0, gl.count("glGetUniformLocation"));
+        assertEquals(0, gl.count("glGetAttribLocation"));
+        assertEquals(0, gl.count("glFramebufferTexture2D"));
+        assertEquals(0, gl.count("glClear"));
+    }
+
+    @Test
+    public void rulesAreUploadedOnlyWhenChanged() {
+        RecordingGL gl = new RecordingGL();
+        GpuSimulator simulator = createSimulator(gl);
+
+        simulator.simulate(1);
+        assertEquals(1, gl.count("glUniform1iv"));
+        simulator.simulate(1);
+        assertEquals(1, gl.count("glUniform1iv"));
+        simulator.setRules(72, 12);
+        simulator.simulate(1);
+        assertEquals(2, gl.count("glUniform1iv"));
+    }
+
+    @Test
+    public void texturesPingPong() {
+        RecordingGL gl = new RecordingGL();
+        GpuSimulator simulator = createSimulator(gl);
+
+        int front = simulator.getFrontTexture();
+        simulator.simulate(1);
+        assertNotEquals(front, simulator.getFrontTexture());
+        simulator.simulate(3);
+        assertEquals(front, simulator.getFrontTexture());
+    }
+}
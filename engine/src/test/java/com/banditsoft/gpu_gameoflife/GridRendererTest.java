@@ -0,0 +1,69 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class GridRendererTest {
+    private static GridRenderer createRenderer(RecordingGL gl) {
+        GridRenderer renderer = new GridRenderer(gl, new ScreenQuad(), "", "", "");
+        renderer.create();
+        return renderer;
+    }
+
+    @Test
+    public void locationsAreLookedUpOnce() {
+        RecordingGL gl = new RecordingGL();
+        GridRenderer renderer = createRenderer(gl);
+        float[] matrix = new ViewTransform().getMatrix(new float[16]);
+        gl.clear();
+        renderer.draw(1, false, 256, matrix);
+        renderer.draw(2, true, 256, matrix);
+        assertEquals(0, gl.count("glGetUniformLocation"));
+        assertEquals(0, gl.count("glGetAttribLocation"));
+        assertEquals(2, gl.count("glDrawElements"));
+        assertEquals(1, gl.count("glUniform1f"));
+    }
+
+    // one frame of a pinch zoom: the input mapping of a move and a scale event, the frame upload and the draw
+    private static void frame(RecordingGL gl, GridRenderer renderer, ViewTransform transform, float[] point,
+                              float[] matrix, BitGrid grid, ByteBuffer packed, int frame) {
+        transform.map(100 + frame % 7, 200, point);
+        float x = point[0];
+        float y = point[1];
+        transform.map(101 + frame % 7, 203, point);
+        transform.pan(point[0] - x, point[1] - y);
+        transform.map(160, 240, point);
+        transform.scale(frame % 2 == 0 ? 1.01f : 1 / 1.01f, point[0], point[1]);
+
+        CellPacking.packBits(grid, packed);
+        gl.glTexSubImage2D(GLApi.GL_TEXTURE_2D, 0, 0, 0, grid.getWidth() / CellPacking.CELLS_PER_BYTE, grid.getHeight(),
+                GLApi.GL_LUMINANCE, GLApi.GL_UNSIGNED_BYTE, packed);
+        renderer.draw(1, true, grid.getWidth(), transform.getMatrix(matrix));
+    }
+
+    @Test
+    public void framesDoNotAllocate() {
+        final RecordingGL gl = new RecordingGL();
+        final GridRenderer renderer = createRenderer(gl);
+        gl.mRecording = false;
+        final ViewTransform transform = new ViewTransform();
+        transform.setViewport(320, 480, 1.0f);
+        final float[] point = new float[2];
+        final float[] matrix = new float[16];
+        final BitGrid grid = new BitGrid(256, 256);
+        grid.set(10, 10, true);
+        final ByteBuffer packed = CellPacking.allocate(CellPacking.bitsSize(256, 256));
+
+        assertEquals(0, Allocations.measure(new Runnable() {
+            private int mFrame;
+
+            @Override
+            public void run() {
+                frame(gl, renderer, transform, point, matrix, grid, packed, mFrame++);
+            }
+        }));
+    }
+}
@@ -0,0 +1,102 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HashLifeEngineTest {
+    private static BitGrid soup(int width, int height, int size, long seed) {
+        Random random = new Random(seed);
+        BitGrid grid = new BitGrid(width, height);
+        for (int y = (height - size) / 2; y < (height + size) / 2; ++y) {
+            for (int x = (width - size) / 2; x < (width + size) / 2; ++x) {
+                grid.set(x, y, random.nextBoolean());
+            }
+        }
+        return grid;
+    }
+
+    @Test
+    public void matchesBitEngineStepByStep() {
+        BitGrid grid = soup(256, 256, 32, 1);
+        BitEngine reference = new BitEngine(256, 256);
+        HashLifeEngine engine = new HashLifeEngine(256, 256);
+        reference.setState(grid.toState());
+        engine.setState(grid.toState());
+
+        for (int generation = 0; generation < 60; ++generation) {
+            reference.simulate();
+            engine.simulate();
+        }
+        assertArrayEquals(reference.getGrid().getWords(), BitGrid.fromState(engine.getState()).getWords());
+        assertEquals(60, engine.getGeneration());
+    }
+
+    @Test
+    public void advanceMatchesBitEngine() {
+        BitGrid grid = soup(256, 256, 24, 2);
+        BitEngine reference = new BitEngine(256, 256);
+        HashLifeEngine engine = new HashLifeEngine(256, 256);
+        reference.setRules(8, 12);
+        reference.setState(grid.toState());
+        engine.setState(grid.toState());
+
+        for (int generation = 0; generation < 91; ++generation) {
+            reference.simulate();
+        }
+        engine.advance(91);
+        assertArrayEquals(reference.getGrid().getWords(), BitGrid.fromState(engine.getState()).getWords());
+    }
+
+    @Test
+    public void otherRuleMatchesBitEngine() {
+        BitGrid grid = soup(128, 128, 16, 3);
+        BitEngine reference = new BitEngine(128, 128);
+        HashLifeEngine engine = new HashLifeEngine(128, 128);
+        // HighLife, B36/S23
+        reference.setRules(72, 12);
+        engine.setRules(72, 12);
+        reference.setState(grid.toState());
+        engine.setState(grid.toState());
+
+        for (int generation = 0; generation < 37; ++generation) {
+            reference.simulate();
+        }
+        engine.advance(37);
+        assertArrayEquals(reference.getGrid().getWords(), BitGrid.fromState(engine.getState()).getWords());
+    }
+
+    @Test
+    public void gliderReachesGenerationOneBillion() {
+        BitGrid grid = new BitGrid(64, 64);
+        grid.set(33, 34, true);
+        grid.set(34, 33, true);
+        grid.set(32, 32, true);
+        grid.set(33, 32, true);
+        grid.set(34, 32, true);
+        HashLifeEngine engine = new HashLifeEngine(64, 64);
+        engine.setState(grid.toState());
+
+        engine.advance(1000000000L);
+        assertEquals(1000000000L, engine.getGeneration());
+        assertEquals(5, engine.getPopulation());
+    }
+
+    @Test
+    public void collectionKeepsResultsCorrect() {
+        BitGrid grid = soup(128, 128, 32, 4);
+        BitEngine reference = new BitEngine(128, 128);
+        HashLifeEngine engine = new HashLifeEngine(128, 128);
+        engine.setMemoryLimit(1000 * HashLifeEngine.NODE_BYTES);
+        reference.setState(grid.toState());
+        engine.setState(grid.toState());
+
+        for (int generation = 0; generation < 40; ++generation) {
+            reference.simulate();
+            engine.simulate();
+        }
+        assertArrayEquals(reference.getGrid().getWords(), BitGrid.fromState(engine.getState()).getWords());
+    }
+}
@@ -0,0 +1,191 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class JournalTest {
+    private static Pattern noise() {
+        Pattern pattern = new Pattern(5, 4, null);
+        pattern.set(0, 0);
+        pattern.set(1, 1);
+        pattern.setRun(0, 2, 3);
+        pattern.set(4, 3);
+        return pattern;
+    }
+
+    private static BitEngine engine() {
+        BitEngine engine = new BitEngine(128, 64);
+        engine.setNoise(noise());
+        engine.setState(BitEngineTest.randomGrid(128, 64, 3).toState());
+        return engine;
+    }
+
+    @Test
+    public void recordsReadBack() throws IOException {
+        BitEngine engine = engine();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Journal.Writer writer = new Journal.Writer(out, engine, 1000);
+        writer.rules(1000, 8, 12);
+        writer.noise(1003, -5L, 100, 60);
+        writer.cell(1003, 127, 0, true);
+        writer.reset(1500);
+        writer.close(2000);
+
+        Journal.Reader reader = new Journal.Reader(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(LifeKernel.CONWAY_BIRTH, reader.getDeadRule());
+        assertArrayEquals(engine.getGrid().getWords(), reader.getStart().getWords());
+        assertArrayEquals(engine.getInitialState().getWords(), reader.getInitialState().getWords());
+        assertArrayEquals(noise().getWords(), reader.getNoise().getWords());
+
+        assertTrue(reader.next());
+        assertEquals(Journal.RULES, reader.getType());
+        assertEquals(0, reader.getGeneration());
+        assertEquals(8, reader.getX());
+        assertEquals(12, reader.getY());
+        assertTrue(reader.next());
+        assertEquals(Journal.NOISE, reader.getType());
+        assertEquals(3, reader.getGeneration());
+        assertEquals(-5L, reader.getSeed());
+        assertEquals(100, reader.getX());
+        assertEquals(60, reader.getY());
+        assertTrue(reader.next());
+        assertEquals(Journal.CELL, reader.getType());
+        assertEquals(3, reader.getGeneration());
+        assertEquals(127, reader.getX());
+        assertTrue(reader.isAlive());
+        assertTrue(reader.next());
+        assertEquals(Journal.RESET, reader.getType());
+        assertEquals(500, reader.getGeneration());
+        assertFalse(reader.next());
+        assertEquals(Journal.END, reader.getType());
+        assertEquals(1000, reader.getGeneration());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void replayMatchesTheSession() throws IOException {
+        BitEngine engine = engine();
+        engine.setRules(8, 12);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Journal.Writer writer = new Journal.Writer(out, engine, 0);
+        Random random = new Random(11);
+        long generation = 0;
+        for (int i = 0; i < 200; ++i) {
+            int steps = random.nextInt(5);
+            for (int s = 0; s < steps; ++s) {
+                engine.simulate();
+            }
+            generation += steps;
+            switch (random.nextInt(4)) {
+                case 0:
+                    int deadRule = random.nextInt(4) == 0 ? 0x1FE & random.nextInt(512) : 8;
+                    engine.setRules(deadRule, 12);
+                    writer.rules(generation, deadRule, 12);
+                    break;
+                case 1:
+                    if (random.nextInt(10) == 0) {
+                        engine.reset();
+                        writer.reset(generation);
+                    }
+                    break;
+                case 2: {
+                    int x = random.nextInt(128);
+                    int y = random.nextInt(64);
+                    engine.addNoise(x, y);
+                    writer.noise(generation, 0, x, y);
+                    break;
+                }
+                default: {
+                    int x = random.nextInt(128);
+                    int y = random.nextInt(64);
+                    engine.setCell(x, y, true);
+                    writer.cell(generation, x, y, true);
+                    break;
+                }
+            }
+        }
+        engine.simulate();
+        writer.close(generation + 1);
+
+        Journal.Reader reader = new Journal.Reader(new ByteArrayInputStream(out.toByteArray()));
+        BitEngine replay = new ParallelBitEngine(128, 64);
+        Journal.prepare(reader, replay);
+        assertEquals(generation + 1, Journal.replay(reader, replay));
+        assertArrayEquals(engine.getGrid().getWords(), replay.getGrid().getWords());
+        assertEquals(engine.getHash(), replay.getHash());
+    }
+
+    @Test
+    public void truncatedJournalsEndAtTheLastWholeRecord() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Journal.Writer writer = new Journal.Writer(out, engine(), 0);
+        writer.cell(10, 1, 2, true);
+        writer.flush();
+        int whole = out.size();
+        writer.noise(20, 42L, 3, 4);
+        writer.flush();
+        byte[] cut = Arrays.copyOf(out.toByteArray(), whole + 5);
+
+        Journal.Reader reader = new Journal.Reader(new ByteArrayInputStream(cut));
+        assertTrue(reader.next());
+        assertEquals(Journal.CELL, reader.getType());
+        assertFalse(reader.next());
+        assertEquals(10, reader.getGeneration());
+    }
+
+    @Test
+    public void schedulerSessionsReplayBitForBit() throws IOException, InterruptedException {
+        File file = File.createTempFile("session", ".golj");
+        try {
+            BitEngine engine = engine();
+            SimulationScheduler scheduler = new SimulationScheduler(engine);
+            scheduler.setNoiseSeed(5);
+            scheduler.start();
+            scheduler.setRunning(true);
+            Thread.sleep(5);
+            scheduler.startJournal(file);
+            Random random = new Random(9);
+            for (int i = 0; i < 50; ++i) {
+                switch (random.nextInt(5)) {
+                    case 0:
+                        scheduler.setRules(8, random.nextBoolean() ? 12 : 4);
+                        break;
+                    case 1:
+                        scheduler.reset();
+                        break;
+                    case 2:
+                        scheduler.addNoise();
+                        break;
+                    case 3:
+                        scheduler.stamp(noise(), random.nextInt(128) - 2, random.nextInt(64) - 2);
+                        break;
+                    default:
+                        scheduler.setCell(random.nextInt(128), random.nextInt(64), random.nextBoolean());
+                        break;
+                }
+                Thread.sleep(random.nextInt(3));
+            }
+            scheduler.stop();
+
+            Journal.Reader reader = Journal.Reader.open(file);
+            try {
+                BitEngine replay = new BitEngine(128, 64);
+                Journal.prepare(reader, replay);
+                Journal.replay(reader, replay);
+                assertArrayEquals(engine.getGrid().getWords(), replay.getGrid().getWords());
+            } finally {
+                reader.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
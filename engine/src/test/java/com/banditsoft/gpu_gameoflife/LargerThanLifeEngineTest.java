@@ -0,0 +1,81 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LargerThanLifeEngineTest {
+    @Test
+    public void lifeLikeRulesMatchBitEngine() {
+        BitGrid grid = BitEngineTest.randomGrid(64, 48, 3);
+        BitEngine bitEngine = new BitEngine(64, 48);
+        LargerThanLifeEngine engine = new LargerThanLifeEngine(64, 48);
+        bitEngine.setRule(Rule.parse("B36/S23"));
+        engine.setRule(Rule.parse("B36/S23"));
+        bitEngine.setState(grid.toState());
+        engine.setState(grid.toState());
+
+        for (int generation = 0; generation < 10; ++generation) {
+            bitEngine.simulate();
+            engine.simulate();
+            BitGrid expected = bitEngine.getGrid();
+            for (int y = 0; y < 48; ++y) {
+                for (int x = 0; x < 64; ++x) {
+                    assertEquals("generation " + generation, expected.get(x, y) ? 1 : 0, engine.getCell(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void generationsCellsDieOverSeveralSteps() {
+        LargerThanLifeEngine engine = new LargerThanLifeEngine(16, 16);
+        engine.setRule(Rule.parse("B2/S/C4"));
+        engine.setCell(5, 5, 1);
+
+        engine.simulate();
+        assertEquals(2, engine.getCell(5, 5));
+        engine.simulate();
+        assertEquals(3, engine.getCell(5, 5));
+        engine.simulate();
+        assertEquals(0, engine.getCell(5, 5));
+    }
+
+    @Test
+    public void largeRadiusCountsWrapAroundTheTorus() {
+        int width = 23;
+        int height = 19;
+        Rule rule = Rule.parse("R3,C0,M1,S10..20,B12..16,NM");
+        LargerThanLifeEngine engine = new LargerThanLifeEngine(width, height);
+        engine.setRule(rule);
+        Random random = new Random(11);
+        int[] cells = new int[width * height];
+        for (int i = 0; i < cells.length; ++i) {
+            cells[i] = random.nextInt(3) == 0 ? 1 : 0;
+            engine.setCell(i % width, i / width, cells[i]);
+        }
+
+        for (int generation = 0; generation < 5; ++generation) {
+            int[] next = new int[cells.length];
+            for (int y = 0; y < height; ++y) {
+                for (int x = 0; x < width; ++x) {
+                    int count = 0;
+                    for (int dy = -3; dy <= 3; ++dy) {
+                        for (int dx = -3; dx <= 3; ++dx) {
+                            count += cells[(x + dx + width) % width + (y + dy + height) % height * width];
+                        }
+                    }
+                    boolean alive = cells[x + y * width] == 1;
+                    next[x + y * width] = (alive ? rule.survives(count) : rule.isBorn(count)) ? 1 : 0;
+                }
+            }
+            cells = next;
+            engine.simulate();
+            for (int i = 0; i < cells.length; ++i) {
+                assertEquals("generation " + generation, cells[i], engine.getCell(i % width, i / width));
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class MappedBitEngineTest {
+    @Test
+    public void matchesBitEngineAcrossSegmentsAndBlocks() throws IOException {
+        File file = File.createTempFile("grid", ".golm");
+        try {
+            BitGrid grid = BitEngineTest.randomGrid(192, 101, 6);
+            BitEngine reference = new BitEngine(192, 101);
+            reference.setRules(72, 12);
+            reference.setState(grid.toState());
+            // 10 rows per segment, and 101 rows is no multiple of the block size either
+            MappedBitEngine engine = MappedBitEngine.create(file, 192, 101, 10 * 3 * 8);
+            engine.setRules(72, 12);
+            engine.setState(grid.toState());
+
+            for (int generation = 0; generation < 12; ++generation) {
+                reference.simulate();
+                engine.simulate();
+                assertArrayEquals("generation " + generation, reference.getGrid().getWords(),
+                        BitGrid.fromState(engine.getState()).getWords());
+            }
+            assertEquals(reference.getGrid().population(), engine.population());
+            engine.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void reopensAtTheClosedGeneration() throws IOException {
+        File file = File.createTempFile("grid", ".golm");
+        try {
+            MappedBitEngine engine = MappedBitEngine.create(file, 64, 64);
+            engine.set(9, 10, true);
+            engine.set(10, 10, true);
+            engine.set(11, 10, true);
+            engine.simulate();
+            engine.close();
+
+            MappedBitEngine reopened = MappedBitEngine.open(file);
+            assertEquals(1, reopened.getGeneration());
+            assertEquals(3, reopened.population());
+            assertTrue(reopened.get(10, 9));
+            assertTrue(reopened.get(10, 11));
+            assertFalse(reopened.get(9, 10));
+            reopened.close();
+        } finally {
+            file.delete();
+        }
+    }
+}
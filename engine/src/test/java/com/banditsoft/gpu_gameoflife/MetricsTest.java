@@ -0,0 +1,54 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+    @Test
+    public void bucketsCoverEveryValue() {
+        for (long value : new long[] {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789L, Long.MAX_VALUE}) {
+            int index = Histogram.index(value);
+            assertTrue(index < Histogram.BUCKETS);
+            assertTrue(Histogram.lowerBound(index) <= value);
+            assertTrue(index + 1 == Histogram.BUCKETS || Histogram.lowerBound(index + 1) > value);
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinABucket() {
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 1000; ++value) {
+            histogram.record(value);
+        }
+        Histogram.Summary summary = histogram.summarize(true);
+        assertEquals(1000, summary.getCount());
+        assertEquals(500.5, summary.getMean(), 1e-9);
+        assertEquals(1000, summary.getMax());
+        assertEquals(500, summary.getPercentile(0.5), 500 / 8);
+        assertEquals(990, summary.getPercentile(0.99), 990 / 8);
+        assertEquals(0, histogram.summarize().getCount());
+    }
+
+    @Test
+    public void reporterWritesOneJsonLinePerReport() throws IOException {
+        Metrics metrics = new Metrics();
+        metrics.counter(Metrics.GENERATIONS).addAndGet(10);
+        metrics.histogram(Metrics.STEP_TIME).record(2000);
+        StringWriter out = new StringWriter();
+        MetricsReporter reporter = new MetricsReporter(metrics, out);
+        reporter.report();
+        reporter.report();
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("{\"time_ms\":"));
+        assertTrue(lines[0], lines[0].contains("\"generations\":{\"total\":10,"));
+        assertTrue(lines[0], lines[0].contains("\"step_ns\":{\"count\":1,\"mean\":2000.0,\"p50\":1920,"));
+        assertTrue(lines[1], lines[1].contains("\"step_ns\":{\"count\":0,"));
+        assertTrue(lines[1], lines[1].contains("\"per_second\":0.0"));
+    }
+}
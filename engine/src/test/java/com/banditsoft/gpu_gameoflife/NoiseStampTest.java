@@ -0,0 +1,74 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class NoiseStampTest {
+    @Test
+    public void stampAtWritesTheWholeRectangle() {
+        Pattern pattern = new Pattern(3, 2, null);
+        pattern.set(0, 0);
+        pattern.set(2, 1);
+        NoiseStamp noise = new NoiseStamp();
+        final BitGrid grid = new BitGrid(64, 8);
+        grid.set(11, 6, true);
+        NoiseStamp.Target target = new NoiseStamp.Target() {
+            public void set(int x, int y, boolean alive) {
+                grid.set(x, y, alive);
+            }
+        };
+
+        noise.stampAt(10, 5, target);
+        assertEquals(1, grid.population());
+
+        noise.setPattern(pattern);
+        noise.stampAt(10, 5, target);
+        // rows are bottom up, so the top row of the pattern lands on y + 1, dead cells clear
+        assertTrue(grid.get(10, 6));
+        assertTrue(grid.get(12, 5));
+        assertFalse(grid.get(11, 6));
+        assertEquals(2, grid.population());
+    }
+
+    @Test
+    public void enginesSeededAlikeStampAlike() {
+        Pattern dot = new Pattern(1, 1, null);
+        dot.set(0, 0);
+        SimulationEngine[] engines = {
+                new BitEngine(128, 64),
+                new LargerThanLifeEngine(128, 64),
+                new HashLifeEngine(128, 64),
+                new SparseWorldEngine(128, 64),
+        };
+        ((BitEngine) engines[0]).setNoise(dot);
+        ((LargerThanLifeEngine) engines[1]).setNoise(dot);
+        ((HashLifeEngine) engines[2]).setNoise(dot);
+        ((SparseWorldEngine) engines[3]).setNoise(dot);
+
+        long[] expected = null;
+        for (SimulationEngine engine : engines) {
+            engine.setNoiseSeed(42);
+            for (int i = 0; i < 50; ++i) {
+                engine.addNoise();
+            }
+            long[] words = BitGrid.fromState(engine.getState()).getWords();
+            if (expected == null) {
+                expected = words;
+                assertTrue(BitGrid.fromState(engine.getState()).population() > 40);
+            } else {
+                assertTrue(engine.getClass().getSimpleName(), Arrays.equals(expected, words));
+            }
+        }
+
+        BitEngine other = new BitEngine(128, 64);
+        other.setNoise(dot);
+        other.setNoiseSeed(43);
+        for (int i = 0; i < 50; ++i) {
+            other.addNoise();
+        }
+        assertFalse(Arrays.equals(expected, BitGrid.fromState(other.getState()).getWords()));
+    }
+}
@@ -0,0 +1,212 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ObjectAnalyzerTest {
+    private static final Rule LIFE = Rule.parse("B3/S23");
+
+    /** Remembers every object as "name x y width height population". */
+    private static final class Objects implements ObjectAnalyzer.Listener {
+        final List<String> mObjects = new ArrayList<>();
+
+        public void onObject(ObjectClassifier.Classification classification, int x, int y, int width, int height, int population) {
+            mObjects.add(classification.getName() + " " + x + " " + y + " " + width + " " + height + " " + population);
+        }
+
+        List<String> sorted() {
+            List<String> objects = new ArrayList<>(mObjects);
+            Collections.sort(objects);
+            return objects;
+        }
+    }
+
+    /** Draws a picture with its bottom left corner at (x, y), wrapping around the grid. */
+    private static void stamp(BitGrid grid, int x, int y, String... lines) {
+        long[] rows = ObjectClassifierTest.rows(lines);
+        for (int row = 0; row < rows.length; ++row) {
+            for (int column = 0; column < BitGrid.WORD_BITS; ++column) {
+                if ((rows[row] >>> column & 1) != 0) {
+                    grid.set((x + column) % grid.getWidth(), (y + row) % grid.getHeight(), true);
+                }
+            }
+        }
+    }
+
+    private static List<String> analyze(ObjectAnalyzer analyzer, BitGrid grid) {
+        Objects objects = new Objects();
+        int count = analyzer.analyze(grid, objects);
+        assertEquals(count, objects.mObjects.size());
+        return objects.sorted();
+    }
+
+    @Test
+    public void namesSeparateObjects() {
+        BitGrid grid = new BitGrid(128, 64);
+        stamp(grid, 10, 10, "oo", "oo");
+        stamp(grid, 20, 10, "ooo");
+        stamp(grid, 40, 30, ".o.", "..o", "ooo");
+        stamp(grid, 100, 50, ".oo.", "o..o", ".oo.");
+        assertEquals(java.util.Arrays.asList(
+                "xp2_7 20 10 3 1 3",
+                "xq4_153 40 30 3 3 5",
+                "xs4_33 10 10 2 2 4",
+                "xs6_696 100 50 4 3 6"), analyze(new ObjectAnalyzer(LIFE), grid));
+    }
+
+    @Test
+    public void cellsWithinTwoCellsAreOneObject() {
+        BitGrid grid = new BitGrid(64, 64);
+        stamp(grid, 10, 10, "oo.o", "oo..");
+        stamp(grid, 30, 10, "oo..o", "oo...");
+        stamp(grid, 10, 30, "o", ".", ".", "o");
+        List<String> objects = analyze(new ObjectAnalyzer(LIFE), grid);
+        assertEquals(5, objects.size());
+        assertTrue(objects.get(4), objects.get(4).endsWith(" 10 10 4 2 5"));
+    }
+
+    @Test
+    public void objectsAcrossTheEdgesAreWhole() {
+        BitGrid grid = new BitGrid(64, 64);
+        stamp(grid, 63, 63, "oo", "oo");
+        stamp(grid, 62, 20, ".o.", "..o", "ooo");
+        stamp(grid, 30, 63, "o", "o", "o");
+        assertEquals(java.util.Arrays.asList(
+                "xp2_7 30 63 1 3 3",
+                "xq4_153 62 20 3 3 5",
+                "xs4_33 63 63 2 2 4"), analyze(new ObjectAnalyzer(LIFE), grid));
+    }
+
+    @Test
+    public void objectsAroundTheTorusAreLarge() {
+        BitGrid grid = new BitGrid(64, 64);
+        for (int x = 0; x < 64; x += 2) {
+            grid.set(x, 5, true);
+        }
+        for (int y = 0; y < 64; y += 2) {
+            grid.set(40, y, true);
+        }
+        stamp(grid, 10, 40, "oo", "oo");
+        List<String> objects = analyze(new ObjectAnalyzer(LIFE), grid);
+        assertEquals(2, objects.size());
+        assertTrue(objects.get(1), objects.get(1).startsWith(ObjectAnalyzer.LARGE.getName() + " "));
+    }
+
+    @Test
+    public void matchesAFloodFill() {
+        Random random = new Random(17);
+        ObjectAnalyzer analyzer = new ObjectAnalyzer(LIFE);
+        for (int round = 0; round < 20; ++round) {
+            BitGrid grid = new BitGrid(64 * (1 + round % 3), 40 + round);
+            for (int i = 0; i < grid.getWidth() * grid.getHeight() / 20; ++i) {
+                grid.set(random.nextInt(grid.getWidth()), random.nextInt(grid.getHeight()), true);
+            }
+            final List<Integer> populations = new ArrayList<>();
+            analyzer.analyze(grid, new ObjectAnalyzer.Listener() {
+                public void onObject(ObjectClassifier.Classification classification, int x, int y, int width, int height, int population) {
+                    populations.add(population);
+                }
+            });
+            Collections.sort(populations);
+            assertEquals(floodFill(grid), populations);
+        }
+    }
+
+    private static List<Integer> floodFill(BitGrid grid) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        boolean[] seen = new boolean[width * height];
+        List<Integer> populations = new ArrayList<>();
+        int[] stack = new int[width * height];
+        for (int start = 0; start < width * height; ++start) {
+            if (seen[start] || !grid.get(start % width, start / width)) {
+                continue;
+            }
+            seen[start] = true;
+            stack[0] = start;
+            int top = 1;
+            int population = 0;
+            while (top > 0) {
+                int cell = stack[--top];
+                ++population;
+                for (int dy = -2; dy <= 2; ++dy) {
+                    for (int dx = -2; dx <= 2; ++dx) {
+                        int x = (cell % width + dx + width) % width;
+                        int y = (cell / width + dy + height) % height;
+                        int next = y * width + x;
+                        if (!seen[next] && grid.get(x, y)) {
+                            seen[next] = true;
+                            stack[top++] = next;
+                        }
+                    }
+                }
+            }
+            populations.add(population);
+        }
+        Collections.sort(populations);
+        return populations;
+    }
+
+    @Test
+    public void phasesAndOrientationsComeFromTheCache() {
+        ObjectAnalyzer analyzer = new ObjectAnalyzer(LIFE);
+        BitGrid grid = new BitGrid(64, 64);
+        stamp(grid, 10, 10, ".o.", "..o", "ooo");
+        assertEquals("xq4_153 10 10 3 3 5", analyze(analyzer, grid).get(0));
+        assertEquals(1, analyzer.getCacheMisses());
+
+        grid.clear();
+        stamp(grid, 30, 30, "o.o", ".oo", ".o.");
+        stamp(grid, 5, 50, "ooo", "o..", ".o.");
+        stamp(grid, 50, 5, "o..", ".oo", "oo.");
+        for (String object : analyze(analyzer, grid)) {
+            assertTrue(object, object.startsWith("xq4_153 "));
+        }
+        assertEquals(1, analyzer.getCacheMisses());
+        assertEquals(3, analyzer.getCacheHits());
+    }
+
+    @Test
+    public void boundedCacheStillAnswers() {
+        ObjectAnalyzer analyzer = new ObjectAnalyzer(LIFE, 4);
+        BitGrid grid = new BitGrid(64, 64);
+        stamp(grid, 10, 10, "oo", "oo");
+        stamp(grid, 20, 10, "ooo");
+        stamp(grid, 40, 30, ".o.", "..o", "ooo");
+        List<String> first = analyze(analyzer, grid);
+        assertEquals(first, analyze(analyzer, grid));
+    }
+
+    @Test
+    public void steadyStateDoesNotAllocate() {
+        final BitGrid grid = new BitGrid(256, 256);
+        for (int y = 0; y < 256; y += 8) {
+            for (int x = 0; x < 256; x += 8) {
+                stamp(grid, x, y, (x + y) % 16 == 0 ? new String[] {"oo", "oo"} : new String[] {"ooo"});
+            }
+        }
+        final ObjectAnalyzer analyzer = new ObjectAnalyzer(LIFE);
+        final long[] objects = new long[1];
+        final ObjectAnalyzer.Listener listener = new ObjectAnalyzer.Listener() {
+            public void onObject(ObjectClassifier.Classification classification, int x, int y, int width, int height, int population) {
+                ++objects[0];
+            }
+        };
+
+        // a thousand objects per run, so fewer runs warm it up
+        assertEquals(0, Allocations.measure(new Runnable() {
+            @Override
+            public void run() {
+                analyzer.analyze(grid, listener);
+            }
+        }, 2000, 100));
+        assertEquals(2100 * 32 * 32, objects[0]);
+        assertEquals(2, analyzer.getCacheMisses());
+    }
+}
@@ -0,0 +1,135 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ObjectClassifierTest {
+    /** Rows of a picture, the first line is the top row, 'o' is alive. */
+    static long[] rows(String... lines) {
+        long[] rows = new long[lines.length];
+        for (int i = 0; i < lines.length; ++i) {
+            String line = lines[lines.length - 1 - i];
+            for (int x = 0; x < line.length(); ++x) {
+                if (line.charAt(x) == 'o') {
+                    rows[i] |= 1L << x;
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static ObjectClassifier.Classification classify(String... lines) {
+        return new ObjectClassifier(Rule.parse("B3/S23")).classify(rows(lines), lines.length);
+    }
+
+    @Test
+    public void stillLifes() {
+        assertEquals("xs4_33", classify("oo", "oo").getName());
+        assertEquals("xs6_696", classify(".oo.", "o..o", ".oo.").getName());
+        assertEquals("xs6_696", classify(".o.", "o.o", "o.o", ".o.").getName());
+        assertEquals("xs5_253", classify("oo.", "o.o", ".o.").getName());
+        assertEquals("xs7_2596", classify(".oo.", "o..o", ".o.o", "..o.").getName());
+        assertEquals("xs4_252", classify(".o.", "o.o", ".o.").getName());
+        ObjectClassifier.Classification block = classify("oo", "oo");
+        assertEquals(ObjectClassifier.STILL_LIFE, block.getKind());
+        assertEquals(1, block.getPeriod());
+    }
+
+    @Test
+    public void oscillatorsAreNamedTheSameInEveryPhase() {
+        assertEquals("xp2_7", classify("ooo").getName());
+        assertEquals("xp2_7", classify("o", "o", "o").getName());
+        ObjectClassifier.Classification toad = classify(".ooo", "ooo.");
+        assertEquals("xp2_7e", toad.getName());
+        assertEquals(ObjectClassifier.OSCILLATOR, toad.getKind());
+        assertEquals(2, toad.getPeriod());
+        assertEquals("xp2_7e", classify("..o.", "o..o", "o..o", ".o..").getName());
+        assertEquals("xp15_4r4z4r4", classify("..o....o..", "oo.oooo.oo", "..o....o..").getName());
+    }
+
+    @Test
+    public void spaceshipsMove() {
+        String[][] phases = {
+                {".o.", "..o", "ooo"},
+                {"o.o", ".oo", ".o."},
+                {"..o", "o.o", ".oo"},
+                {"o..", ".oo", "oo."},
+                {"ooo", "o..", ".o."},
+        };
+        for (String[] phase : phases) {
+            ObjectClassifier.Classification glider = classify(phase);
+            assertEquals("xq4_153", glider.getName());
+            assertEquals(ObjectClassifier.SPACESHIP, glider.getKind());
+            assertEquals(4, glider.getPeriod());
+            assertEquals(1, Math.abs(glider.getDx()));
+            assertEquals(1, Math.abs(glider.getDy()));
+        }
+        ObjectClassifier.Classification lwss = classify(".o..o", "o....", "o...o", "oooo.");
+        assertEquals("xq4_6frc", lwss.getName());
+        assertEquals(2, Math.abs(lwss.getDx()));
+        assertEquals(0, lwss.getDy());
+    }
+
+    @Test
+    public void objectsThatDoNotRepeatAreUnknown() {
+        ObjectClassifier.Classification rPentomino = classify(".oo", "oo.", ".o.");
+        assertEquals(ObjectClassifier.UNKNOWN, rPentomino.getKind());
+        assertTrue(rPentomino.getName().startsWith("zz_"));
+        assertEquals(ObjectClassifier.UNKNOWN, classify("o").getKind());
+    }
+
+    /** The picture turned by orientation: bit 0 mirrors, bit 1 turns upside down, bit 2 swaps x and y. */
+    private static String[] orient(String[] lines, int orientation) {
+        int height = lines.length;
+        int width = lines[0].length();
+        boolean swap = (orientation & 4) != 0;
+        String[] result = new String[swap ? width : height];
+        for (int r = 0; r < result.length; ++r) {
+            StringBuilder line = new StringBuilder();
+            for (int c = 0; c < (swap ? height : width); ++c) {
+                int row = swap ? c : r;
+                int column = swap ? r : c;
+                if ((orientation & 1) != 0) {
+                    column = width - 1 - column;
+                }
+                if ((orientation & 2) != 0) {
+                    row = height - 1 - row;
+                }
+                line.append(lines[row].charAt(column));
+            }
+            result[r] = line.toString();
+        }
+        return result;
+    }
+
+    @Test
+    public void keysIgnoreOrientationAndPosition() {
+        ObjectClassifier classifier = new ObjectClassifier(Rule.parse("B3/S23"));
+        String[][] shapes = {
+                {".oo", "oo.", ".o."},
+                {"oooooooo", "o.......", "......oo"},
+                {"ooooooooo", "o........", ".......oo"},
+                {"o........o", ".o........", "..o.......", "...o......", "....o.....", ".....oo..."},
+        };
+        java.util.Set<Long> keys = new java.util.HashSet<>();
+        for (String[] shape : shapes) {
+            long key = classifier.key(rows(shape), 0, shape.length);
+            assertTrue(keys.add(key));
+            for (int orientation = 1; orientation < 8; ++orientation) {
+                String[] turned = orient(shape, orientation);
+                long[] rows = rows(turned);
+                assertEquals(key, classifier.key(rows, 0, turned.length));
+                for (int y = 0; y < rows.length; ++y) {
+                    rows[y] <<= 5;
+                }
+                assertEquals(key, classifier.key(rows, 0, turned.length));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void birthOnZeroIsRejected() {
+        new ObjectClassifier(Rule.parse("B03/S23"));
+    }
+}
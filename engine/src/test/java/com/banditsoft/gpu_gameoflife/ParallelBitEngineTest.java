@@ -0,0 +1,45 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class ParallelBitEngineTest {
+    @Test
+    public void matchesSingleThreadedEngine() {
+        BitGrid grid = BitEngineTest.randomGrid(2048, 1021, 11);
+        BitEngine single = new BitEngine(2048, 1021);
+        ParallelBitEngine parallel = new ParallelBitEngine(2048, 1021, new ForkJoinPool(4));
+        single.setState(grid.toState());
+        parallel.setState(grid.toState());
+
+        for (int generation = 0; generation < 50; ++generation) {
+            single.simulate();
+            parallel.simulate();
+            assertArrayEquals("generation " + generation, single.getGrid().getWords(), parallel.getGrid().getWords());
+        }
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void shutdownStopsItsOwnPool() {
+        ParallelBitEngine engine = new ParallelBitEngine(64, 64);
+        engine.shutdown();
+        engine.simulate();
+    }
+
+    @Test
+    public void shutdownLeavesASharedPoolRunning() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            ParallelBitEngine engine = new ParallelBitEngine(64, 64, pool);
+            engine.shutdown();
+            assertFalse(pool.isShutdown());
+            engine.simulate();
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
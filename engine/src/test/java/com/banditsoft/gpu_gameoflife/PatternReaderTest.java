@@ -0,0 +1,94 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class PatternReaderTest {
+    private static Pattern read(String text) throws IOException {
+        return PatternReader.read(new StringReader(text));
+    }
+
+    private static String rows(Pattern pattern) {
+        StringBuilder builder = new StringBuilder();
+        for (int y = 0; y < pattern.getHeight(); ++y) {
+            for (int x = 0; x < pattern.getWidth(); ++x) {
+                builder.append(pattern.isAlive(x, y) ? 'O' : '.');
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static final String GLIDER = ".O.\n..O\nOOO\n";
+
+    @Test
+    public void readsPlainText() throws IOException {
+        Pattern pattern = read("!Name: Glider\n.O.\n..O\n\nOOO\n");
+        assertEquals(3, pattern.getWidth());
+        assertEquals(3, pattern.getHeight());
+        assertNull(pattern.getRule());
+        assertEquals(GLIDER, rows(pattern));
+    }
+
+    @Test
+    public void keepsLeadingBlanksOfTheFirstPlainTextRow() throws IOException {
+        Pattern pattern = read(" O\nO \n");
+        assertEquals(2, pattern.getWidth());
+        assertEquals(".O\nO.\n", rows(pattern));
+    }
+
+    @Test
+    public void readsRle() throws IOException {
+        Pattern pattern = read("#N Glider\n#C comment\nx = 3, y = 3, rule = B3/S23\nbo$2bo$3o!\n");
+        assertEquals("B3/S23", pattern.getRule());
+        assertEquals(GLIDER, rows(pattern));
+    }
+
+    @Test
+    public void readsWideRleRows() throws IOException {
+        Pattern pattern = read("x = 2000, y = 10\n2000o2$1999bo7$o!");
+        assertEquals(2000, pattern.getWidth());
+        assertEquals(10, pattern.getHeight());
+        assertEquals(2002, pattern.population());
+        assertTrue(pattern.isAlive(1999, 0));
+        assertFalse(pattern.isAlive(0, 1));
+        assertTrue(pattern.isAlive(1999, 2));
+        assertTrue(pattern.isAlive(0, 9));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsRleOutsideItsHeader() throws IOException {
+        read("x = 2, y = 1\n3o!");
+    }
+
+    @Test
+    public void readsLife106() throws IOException {
+        Pattern pattern = read("#Life 1.06\n0 -1\n1 0\n-1 1\n0 1\n1 1\n");
+        assertEquals(GLIDER, rows(pattern));
+    }
+
+    @Test
+    public void readsMacrocell() throws IOException {
+        // glider leaf in the nw corner and a block leaf in the se corner of a level 4 node
+        Pattern pattern = read("[M2] (golly 2.0)\n#R B3/S23\n.*$..*$***$\n$$$$$$......**$......**$\n4 1 0 0 2\n");
+        assertEquals("B3/S23", pattern.getRule());
+        assertEquals(16, pattern.getWidth());
+        assertEquals(16, pattern.getHeight());
+        assertEquals(9, pattern.population());
+        assertTrue(pattern.isAlive(1, 0));
+        assertTrue(pattern.isAlive(0, 2));
+        assertTrue(pattern.isAlive(15, 15));
+        assertTrue(pattern.isAlive(14, 14));
+    }
+
+    @Test
+    public void readsLevelOneMacrocellNodes() throws IOException {
+        Pattern pattern = read("[M2]\n1 0 1 1 1\n1 1 0 0 0\n2 0 1 0 2\n");
+        // ne is .O/OO, se is O./.., cropped to the right half
+        assertEquals(".O\nOO\nO.\n", rows(pattern));
+    }
+}
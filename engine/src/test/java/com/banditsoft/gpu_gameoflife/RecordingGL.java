@@ -0,0 +1,243 @@
+package com.banditsoft.gpu_gameoflife;
+
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GLApi stand-in that records the name of every call and hands out fresh object names. With
+ * recording off it does nothing at all, for measuring the callers alone.
+ */
+class RecordingGL implements GLApi {
+    final List<String> mCalls = new ArrayList<>();
+    boolean mRecording = true;
+    private int mNextName = 1;
+
+    private void record(String call) {
+        if (mRecording) {
+            mCalls.add(call);
+        }
+    }
+
+    int count(String call) {
+        int count = 0;
+        for (String recorded : mCalls) {
+            if (recorded.equals(call)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    void clear() {
+        mCalls.clear();
+    }
+
+    private void gen(int n, int[] names, int offset) {
+        for (int i = 0; i < n; ++i) {
+            names[offset + i] = mNextName++;
+        }
+    }
+
+    @Override
+    public int glGetError() {
+        record("glGetError");
+        return GL_NO_ERROR;
+    }
+
+    @Override
+    public String glGetString(int name) {
+        record("glGetString");
+        return "";
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        record("glClearColor");
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        record("glDisable");
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        record("glViewport");
+    }
+
+    @Override
+    public void glClear(int mask) {
+        record("glClear");
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        record("glGenTextures");
+        gen(n, textures, offset);
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        record("glBindTexture");
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        record("glTexParameteri");
+    }
+
+    @Override
+    public void glPixelStorei(int pname, int param) {
+        record("glPixelStorei");
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+        record("glTexImage2D");
+    }
+
+    @Override
+    public void glTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, Buffer pixels) {
+        record("glTexSubImage2D");
+    }
+
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) {
+        record("glReadPixels");
+    }
+
+    @Override
+    public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        record("glGenFramebuffers");
+        gen(n, framebuffers, offset);
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        record("glBindFramebuffer");
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+        record("glFramebufferTexture2D");
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        record("glCheckFramebufferStatus");
+        return GL_FRAMEBUFFER_COMPLETE;
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        record("glCreateShader");
+        return mNextName++;
+    }
+
+    @Override
+    public void glShaderSource(int shader, String string) {
+        record("glShaderSource");
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        record("glCompileShader");
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        record("glGetShaderiv");
+        params[offset] = 1;
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        record("glGetShaderInfoLog");
+        return "";
+    }
+
+    @Override
+    public int glCreateProgram() {
+        record("glCreateProgram");
+        return mNextName++;
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        record("glAttachShader");
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        record("glLinkProgram");
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        record("glGetProgramiv");
+        params[offset] = 1;
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        record("glUseProgram");
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        record("glGetAttribLocation");
+        return name.hashCode() & 0xF;
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        record("glGetUniformLocation");
+        return name.hashCode() & 0xFF;
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        record("glEnableVertexAttribArray");
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        record("glDisableVertexAttribArray");
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        record("glVertexAttribPointer");
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        record("glUniform1i");
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        record("glUniform1f");
+    }
+
+    @Override
+    public void glUniform2f(int location, float x, float y) {
+        record("glUniform2f");
+    }
+
+    @Override
+    public void glUniform1iv(int location, int count, int[] v, int offset) {
+        record("glUniform1iv");
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        record("glUniformMatrix4fv");
+    }
+
+    @Override
+    public void glDrawElements(int mode, int count, int type, Buffer indices) {
+        record("glDrawElements");
+    }
+}
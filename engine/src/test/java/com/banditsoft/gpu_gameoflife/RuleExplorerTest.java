@@ -0,0 +1,122 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RuleExplorerTest {
+    private static BitGrid soup(int size, long seed) {
+        BitGrid grid = new BitGrid(size, size);
+        Random random = new Random(seed);
+        for (int y = size / 2 - 8; y < size / 2 + 8; ++y) {
+            for (int x = size / 2 - 8; x < size / 2 + 8; ++x) {
+                grid.set(x, y, random.nextBoolean());
+            }
+        }
+        return grid;
+    }
+
+    @Test
+    public void rulesAreNumberedByTheirMasks() {
+        Rule life = Rule.parse("B3/S23");
+        int index = RuleExplorer.index(life);
+        assertEquals(LifeKernel.CONWAY_BIRTH | LifeKernel.CONWAY_SURVIVE << 9, index);
+        assertEquals(life.toString(), RuleExplorer.rule(index).toString());
+        assertEquals(RuleExplorer.RULE_COUNT - 1, RuleExplorer.index(RuleExplorer.rule(RuleExplorer.RULE_COUNT - 1)));
+        assertEquals(10, RuleExplorer.range(100, 10).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNumbersOutsideTheSpace() {
+        RuleExplorer.rule(RuleExplorer.RULE_COUNT);
+    }
+
+    @Test
+    public void uninterestingRulesStopEarly() {
+        BitGrid seed = new BitGrid(64, 64);
+        seed.set(10, 10, true);
+        seed.set(11, 10, true);
+        seed.set(12, 10, true);
+        RuleExplorer explorer = new RuleExplorer(seed);
+
+        RuleExplorer.Result blinker = explorer.explore(Rule.parse("B3/S23"));
+        assertEquals(RuleExplorer.OSCILLATING, blinker.getOutcome());
+        assertEquals(2, blinker.getPeriod());
+        assertEquals(3, blinker.getPopulation());
+        assertEquals(1.0, blinker.getGrowth(), 0.0);
+
+        RuleExplorer.Result died = explorer.explore(Rule.parse("B3/S"));
+        assertEquals(RuleExplorer.DIED, died.getOutcome());
+        assertEquals(2, died.getGenerations());
+
+        RuleExplorer.Result still = explorer.explore(Rule.parse("B/S012345678"));
+        assertEquals(RuleExplorer.STATIC, still.getOutcome());
+        assertEquals(1, still.getPeriod());
+        assertEquals(0.0, still.getChangesPerGeneration(), 0.0);
+
+        RuleExplorer.Result exploded = explorer.explore(Rule.parse("B12345678/S012345678"));
+        assertEquals(RuleExplorer.EXPLODED, exploded.getOutcome());
+        assertTrue(exploded.getMaxPopulation() >= 0.45 * 64 * 64);
+
+        // birth on 0 fills the empty space, which active tiles would miss
+        RuleExplorer.Result everything = explorer.explore(Rule.parse("B012345678/S012345678"));
+        assertEquals(RuleExplorer.EXPLODED, everything.getOutcome());
+        assertEquals(1, everything.getGenerations());
+        assertEquals(64 * 64, everything.getPopulation());
+    }
+
+    @Test
+    public void rulesStillChangingAreActive() {
+        RuleExplorer explorer = new RuleExplorer(soup(64, 3));
+        explorer.setGenerations(20);
+        RuleExplorer.Result result = explorer.explore(Rule.parse("B3/S23"));
+        assertEquals(RuleExplorer.ACTIVE, result.getOutcome());
+        assertEquals(20, result.getGenerations());
+        assertTrue(result.getChangesPerGeneration() > 0);
+        assertEquals(-1, result.getCycleStart());
+    }
+
+    @Test
+    public void concurrentRunsMatchSingleRules() throws InterruptedException {
+        BitGrid seed = soup(64, 11);
+        long[] words = seed.getWords().clone();
+        RuleExplorer explorer = new RuleExplorer(seed);
+        explorer.setGenerations(200);
+        explorer.setThreads(4);
+        List<Rule> rules = new ArrayList<>();
+        Random random = new Random(5);
+        for (int i = 0; i < 64; ++i) {
+            rules.add(RuleExplorer.rule(random.nextInt(RuleExplorer.RULE_COUNT)));
+        }
+        rules.add(Rule.parse("B3/S23"));
+        rules.add(Rule.parse("B36/S23"));
+
+        List<RuleExplorer.Result> results = explorer.run(rules);
+        assertEquals(rules.size(), results.size());
+        final List<RuleExplorer.Result> streamed = new ArrayList<>();
+        explorer.run(rules, new RuleExplorer.Listener() {
+            public void onResult(RuleExplorer.Result result) {
+                streamed.add(result);
+            }
+        });
+        assertEquals(rules.size(), streamed.size());
+
+        RuleExplorer single = new RuleExplorer(seed);
+        single.setGenerations(200);
+        for (int i = 0; i < rules.size(); ++i) {
+            RuleExplorer.Result result = results.get(i);
+            RuleExplorer.Result expected = single.explore(rules.get(i));
+            assertSame(rules.get(i), result.getRule());
+            assertEquals(expected.toString(), result.toString());
+            assertEquals(expected.getGenerations(), result.getGenerations());
+            assertEquals(expected.getPopulation(), result.getPopulation());
+            assertEquals(expected.getMaxPopulation(), result.getMaxPopulation());
+            assertEquals(expected.getPeriod(), result.getPeriod());
+        }
+        assertArrayEquals(words, seed.getWords());
+    }
+}
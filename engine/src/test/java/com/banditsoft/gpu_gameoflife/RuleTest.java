@@ -0,0 +1,61 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RuleTest {
+    @Test
+    public void parsesLifeLikeNotations() {
+        Rule conway = Rule.parse("B3/S23");
+        assertTrue(conway.isOuterTotalistic());
+        assertEquals(LifeKernel.CONWAY_BIRTH, conway.getDeadRule());
+        assertEquals(LifeKernel.CONWAY_SURVIVE, conway.getLiveRule());
+        assertEquals("B3/S23", Rule.parse("23/3").toString());
+        assertEquals("B36/S23", Rule.parse("b36/s23").toString());
+    }
+
+    @Test
+    public void parsesGenerations() {
+        Rule briansBrain = Rule.parse("B2/S/C3");
+        assertEquals(3, briansBrain.getStates());
+        assertFalse(briansBrain.isOuterTotalistic());
+        assertEquals("B2/S/C3", Rule.parse("/2/3").toString());
+        assertEquals("B2/S345/C4", Rule.parse("345/2/4").toString());
+    }
+
+    @Test
+    public void parsesLargerThanLife() {
+        Rule bugs = Rule.parse("R5,C0,M1,S34..58,B34..45,NM");
+        assertEquals(5, bugs.getRadius());
+        assertEquals(2, bugs.getStates());
+        assertTrue(bugs.countsMiddle());
+        assertEquals(121, bugs.getMaxCount());
+        assertTrue(bugs.isBorn(34));
+        assertFalse(bugs.isBorn(46));
+        assertTrue(bugs.survives(58));
+        assertEquals("R5,C0,M1,S34..58,B34..45,NM", bugs.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCountsAboveEight() {
+        Rule.parse("B39/S23");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsVonNeumannNeighbourhoods() {
+        Rule.parse("R2,C0,M0,S2..3,B3..3,NN");
+    }
+
+    @Test
+    public void lookupTableMatchesDecideData() {
+        Rule rule = Rule.parse("B36/S23");
+        byte[] table = rule.toLookupTable();
+        int[] decideData = rule.toDecideData();
+        for (int index = 0; index < table.length; ++index) {
+            int current = (index >> 4) & 1;
+            int sum = Integer.bitCount(index & ~0x10);
+            assertEquals(decideData[current * RuleTable.NEIGHBOUR_STATES + sum], table[index]);
+        }
+    }
+}
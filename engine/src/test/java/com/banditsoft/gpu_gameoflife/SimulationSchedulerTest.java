@@ -0,0 +1,119 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SimulationSchedulerTest {
+    private static SimulationScheduler.Frame waitForFrame(SimulationScheduler scheduler, Semaphore frames) throws InterruptedException {
+        while (true) {
+            assertTrue(frames.tryAcquire(5, TimeUnit.SECONDS));
+            SimulationScheduler.Frame frame = scheduler.acquireFrame();
+            if (frame != null) {
+                return frame;
+            }
+        }
+    }
+
+    @Test
+    public void publishedFramesMatchTheEngine() throws InterruptedException {
+        BitGrid grid = BitEngineTest.randomGrid(128, 64, 8);
+        BitEngine engine = new BitEngine(128, 64);
+        engine.setState(grid.toState());
+        SimulationScheduler scheduler = new SimulationScheduler(engine);
+        final Semaphore frames = new Semaphore(0);
+        scheduler.setFrameListener(new Runnable() {
+            public void run() {
+                frames.release();
+            }
+        });
+        scheduler.start();
+        assertEquals(0, waitForFrame(scheduler, frames).getGeneration());
+
+        scheduler.setRunning(true);
+        SimulationScheduler.Frame frame;
+        do {
+            frame = waitForFrame(scheduler, frames);
+        } while (frame.getGeneration() < 50);
+        scheduler.setRunning(false);
+
+        BitEngine reference = new BitEngine(128, 64);
+        reference.setState(grid.toState());
+        for (long generation = 0; generation < frame.getGeneration(); ++generation) {
+            reference.simulate();
+        }
+        assertArrayEquals(reference.getGrid().getWords(), frame.getGrid().getWords());
+
+        scheduler.reset();
+        do {
+            frame = waitForFrame(scheduler, frames);
+        } while (frame.getGeneration() != 0);
+        assertArrayEquals(grid.getWords(), frame.getGrid().getWords());
+        scheduler.stop();
+    }
+
+    @Test
+    public void targetRateLimitsGenerations() throws InterruptedException {
+        SimulationScheduler scheduler = new SimulationScheduler(new BitEngine(64, 64));
+        scheduler.setTargetRate(100);
+        scheduler.start();
+        long start = System.nanoTime();
+        scheduler.setRunning(true);
+        Thread.sleep(300);
+        scheduler.stop();
+        long elapsed = System.nanoTime() - start;
+        SimulationScheduler.Frame frame = scheduler.acquireFrame();
+
+        // the limiter never runs ahead of the rate, a busy machine may keep it well below it
+        long allowed = elapsed / TimeUnit.MILLISECONDS.toNanos(10);
+        String ran = "ran " + frame.getGeneration() + " generations in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms";
+        assertTrue(ran, frame.getGeneration() <= allowed + 2);
+        assertTrue(ran, frame.getGeneration() >= allowed / 4);
+    }
+
+    @Test
+    public void editsArriveInOneFrameWithTheirRegion() throws InterruptedException {
+        BitEngine engine = new BitEngine(128, 64);
+        SimulationScheduler scheduler = new SimulationScheduler(engine);
+        final Semaphore frames = new Semaphore(0);
+        scheduler.setFrameListener(new Runnable() {
+            public void run() {
+                frames.release();
+            }
+        });
+        Pattern block = new Pattern(2, 2, null);
+        block.setRun(0, 0, 2);
+        block.setRun(0, 1, 2);
+        scheduler.start();
+        SimulationScheduler.Frame first = waitForFrame(scheduler, frames);
+        assertEquals(128 * 64, first.getChanged().getArea());
+        long sequence = first.getSequence();
+
+        for (int i = 0; i < 100; ++i) {
+            scheduler.stamp(block, 10 + i % 10 * 2, 20);
+        }
+        scheduler.setCell(100, 40, true);
+        // edits may take a few batches, the frames between them only carry what the edits covered
+        DirtyRegion changed = new DirtyRegion(128, 64);
+        boolean skipped = false;
+        SimulationScheduler.Frame frame;
+        do {
+            frame = waitForFrame(scheduler, frames);
+            skipped |= frame.getSequence() != sequence + 1;
+            sequence = frame.getSequence();
+            assertTrue(frame.getChanged().getArea() <= 41);
+            changed.add(frame.getChanged());
+        } while (frame.getGrid().population() < 41);
+        scheduler.stop();
+
+        assertEquals(41, frame.getGrid().population());
+        assertEquals(0, frame.getGeneration());
+        if (!skipped) {
+            assertEquals(2, changed.getCount());
+            assertEquals(41, changed.getArea());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SnapshotPipelineTest {
+    /** Keeps copies of what it gets, optionally waiting for a latch before each write. */
+    private static class CollectingSink implements SnapshotPipeline.Sink {
+        final List<Long> mGenerations = Collections.synchronizedList(new ArrayList<Long>());
+        final List<long[]> mWords = Collections.synchronizedList(new ArrayList<long[]>());
+        final CountDownLatch mGate;
+
+        CollectingSink(CountDownLatch gate) {
+            mGate = gate;
+        }
+
+        public void write(Snapshot snapshot) throws IOException {
+            try {
+                if (mGate != null) {
+                    mGate.await(5, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            mGenerations.add(snapshot.getGeneration());
+            mWords.add(snapshot.getGrid().getWords().clone());
+        }
+    }
+
+    @Test
+    public void capturedGridsAreCopies() throws Exception {
+        CollectingSink sink = new CollectingSink(null);
+        SnapshotPipeline pipeline = new SnapshotPipeline(128, 64, sink);
+        BitEngine engine = new BitEngine(128, 64);
+        engine.setState(BitEngineTest.randomGrid(128, 64, 3).toState());
+        List<long[]> expected = new ArrayList<>();
+        for (int generation = 0; generation < 20; ++generation) {
+            pipeline.submit(engine.getGrid(), generation);
+            expected.add(engine.getGrid().getWords().clone());
+            engine.simulate();
+        }
+        pipeline.close();
+        assertEquals(20, pipeline.getWritten());
+        for (int generation = 0; generation < 20; ++generation) {
+            assertEquals(Long.valueOf(generation), sink.mGenerations.get(generation));
+            assertArrayEquals(expected.get(generation), sink.mWords.get(generation));
+        }
+    }
+
+    @Test
+    public void saturatedPipelineDropsOffers() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        CollectingSink sink = new CollectingSink(gate);
+        SnapshotPipeline pipeline = new SnapshotPipeline(64, 64, 2, sink);
+        BitGrid grid = new BitGrid(64, 64);
+        assertTrue(pipeline.offer(grid, 1));
+        assertTrue(pipeline.offer(grid, 2));
+        assertFalse(pipeline.offer(grid, 3));
+        assertEquals(1, pipeline.getDropped());
+        gate.countDown();
+        pipeline.flush();
+        assertTrue(pipeline.offer(grid, 4));
+        pipeline.close();
+        assertEquals(3, pipeline.getWritten());
+        assertEquals(3, sink.mGenerations.size());
+    }
+
+    @Test
+    public void submitWaitsForAFreeBuffer() throws Exception {
+        final CountDownLatch gate = new CountDownLatch(1);
+        CollectingSink sink = new CollectingSink(gate);
+        SnapshotPipeline pipeline = new SnapshotPipeline(64, 64, 1, sink);
+        BitGrid grid = new BitGrid(64, 64);
+        pipeline.submit(grid, 1);
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                gate.countDown();
+            }
+        }).start();
+        long start = System.nanoTime();
+        pipeline.submit(grid, 2);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+        pipeline.close();
+        assertEquals(2, pipeline.getWritten());
+    }
+
+    @Test
+    public void writeFailuresSurface() throws Exception {
+        SnapshotPipeline pipeline = new SnapshotPipeline(64, 64, new SnapshotPipeline.Sink() {
+            public void write(Snapshot snapshot) throws IOException {
+                throw new IOException("disk full");
+            }
+        });
+        pipeline.submit(new BitGrid(64, 64), 1);
+        try {
+            pipeline.flush();
+            fail();
+        } catch (IOException ex) {
+            assertEquals("disk full", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void latestReplacesTheCheckpoint() throws Exception {
+        File file = File.createTempFile("checkpoint", ".gols");
+        try {
+            SnapshotPipeline pipeline = new SnapshotPipeline(64, 64, SnapshotPipeline.latest(file));
+            BitGrid grid = BitEngineTest.randomGrid(64, 64, 4);
+            pipeline.submit(new BitGrid(64, 64), 1);
+            pipeline.submit(grid, 2);
+            pipeline.close();
+            Snapshot snapshot = Snapshot.load(file);
+            assertEquals(2, snapshot.getGeneration());
+            assertArrayEquals(grid.getWords(), snapshot.getGrid().getWords());
+            assertFalse(new File(file.getPath() + ".tmp").exists());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void schedulerCheckpointsWhileRunning() throws Exception {
+        CollectingSink sink = new CollectingSink(null);
+        SnapshotPipeline pipeline = new SnapshotPipeline(64, 64, 4, sink);
+        BitEngine engine = new BitEngine(64, 64);
+        BitGrid grid = BitEngineTest.randomGrid(64, 64, 5);
+        engine.setState(grid.toState());
+        SimulationScheduler scheduler = new SimulationScheduler(engine);
+        scheduler.setSnapshots(pipeline, 10);
+        scheduler.start();
+        scheduler.setRunning(true);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pipeline.getWritten() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        scheduler.stop();
+        pipeline.close();
+        assertTrue(sink.mGenerations.size() >= 3);
+
+        BitEngine reference = new BitEngine(64, 64);
+        reference.setState(grid.toState());
+        long generation = 0;
+        for (int i = 0; i < sink.mGenerations.size(); ++i) {
+            long target = sink.mGenerations.get(i);
+            assertEquals(0, target % 10);
+            for (; generation < target; ++generation) {
+                reference.simulate();
+            }
+            assertArrayEquals(reference.getGrid().getWords(), sink.mWords.get(i));
+        }
+    }
+
+    @Test
+    public void schedulerCheckpointsByWallClockTime() throws Exception {
+        CollectingSink sink = new CollectingSink(null);
+        SnapshotPipeline pipeline = new SnapshotPipeline(64, 64, 4, sink);
+        SimulationScheduler scheduler = new SimulationScheduler(new BitEngine(64, 64));
+        scheduler.setSnapshotPeriod(pipeline, 50, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        scheduler.start();
+        scheduler.setRunning(true);
+        long deadline = start + TimeUnit.SECONDS.toNanos(5);
+        while (pipeline.getWritten() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        scheduler.stop();
+        long elapsed = System.nanoTime() - start;
+        pipeline.close();
+
+        // an unthrottled 64x64 world runs far more than one generation per checkpoint
+        int checkpoints = sink.mGenerations.size();
+        assertTrue(checkpoints >= 3);
+        assertTrue(checkpoints + " checkpoints in " + elapsed + " ns", checkpoints <= elapsed / TimeUnit.MILLISECONDS.toNanos(50) + 1);
+        for (int i = 1; i < checkpoints; ++i) {
+            assertTrue(sink.mGenerations.get(i) > sink.mGenerations.get(i - 1));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.*;
+
+public class SnapshotTest {
+    private static Snapshot roundTrip(BitGrid grid, long generation) throws IOException {
+        File file = File.createTempFile("snapshot", ".gols");
+        try {
+            Snapshot.save(file, grid, generation);
+            assertEquals(Snapshot.size(grid), file.length());
+            return Snapshot.load(file);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void denseGridIsStoredPacked() throws IOException {
+        BitGrid grid = BitEngineTest.randomGrid(256, 100, 1);
+        assertTrue(Snapshot.runsSize(grid) > Snapshot.packedSize(grid));
+
+        Snapshot snapshot = roundTrip(grid, 42);
+        assertEquals(42, snapshot.getGeneration());
+        assertEquals(256, snapshot.getGrid().getWidth());
+        assertEquals(100, snapshot.getGrid().getHeight());
+        assertArrayEquals(grid.getWords(), snapshot.getGrid().getWords());
+    }
+
+    @Test
+    public void sparseGridIsStoredAsRuns() throws IOException {
+        BitGrid grid = new BitGrid(4096, 4096);
+        BitGrid soup = BitEngineTest.randomGrid(256, 256, 2);
+        for (int y = 0; y < 256; ++y) {
+            for (int x = 0; x < 256; ++x) {
+                grid.set(1900 + x, 2000 + y, soup.get(x, y));
+            }
+        }
+        grid.set(0, 0, true);
+        grid.set(4095, 4095, true);
+
+        assertTrue(Snapshot.size(grid) < 64 * 1024);
+        assertArrayEquals(grid.getWords(), roundTrip(grid, 0).getGrid().getWords());
+    }
+
+    @Test
+    public void emptyAndFullGrids() throws IOException {
+        BitGrid grid = new BitGrid(128, 64);
+        assertArrayEquals(grid.getWords(), roundTrip(grid, 0).getGrid().getWords());
+        for (int i = 0; i < grid.getWords().length; ++i) {
+            grid.getWords()[i] = -1L;
+        }
+        assertArrayEquals(grid.getWords(), roundTrip(grid, 0).getGrid().getWords());
+    }
+
+    @Test
+    public void directStateSerializes() throws IOException, ClassNotFoundException {
+        State state = BitEngineTest.randomGrid(64, 32, 3).toState();
+        assertFalse(state.grid.hasArray());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(state);
+        out.writeInt(1234);
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        State copy = (State) in.readObject();
+        assertEquals(1234, in.readInt());
+        assertEquals(state.width, copy.width);
+        assertEquals(state.height, copy.height);
+        assertEquals(state.grid, copy.grid);
+    }
+}
@@ -0,0 +1,73 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SoupSearchTest {
+    @Test
+    public void soupsDependOnlyOnSeedAndIndex() {
+        SoupSearch search = new SoupSearch(Rule.parse("B3/S23"), 42);
+        BitGrid a = new BitGrid(64, 64);
+        BitGrid b = new BitGrid(64, 64);
+        Random random = new Random();
+        search.fillSoup(7, a, random);
+        search.fillSoup(3, b, random);
+        search.fillSoup(7, b, new Random());
+        assertArrayEquals(a.getWords(), b.getWords());
+        assertTrue(a.population() > 0);
+
+        search.fillSoup(8, b, random);
+        assertFalse(java.util.Arrays.equals(a.getWords(), b.getWords()));
+        new SoupSearch(Rule.parse("B3/S23"), 43).fillSoup(7, b, random);
+        assertFalse(java.util.Arrays.equals(a.getWords(), b.getWords()));
+    }
+
+    @Test
+    public void censusDoesNotDependOnTheThreads() throws InterruptedException {
+        SoupSearch search = new SoupSearch(Rule.parse("B3/S23"), 1);
+        search.setThreads(1);
+        Census single = search.run(0, 60);
+        search.setThreads(4);
+        Census parallel = search.run(0, 60);
+
+        assertEquals(60, single.getSoups());
+        assertEquals(single.getSoups(), parallel.getSoups());
+        assertEquals(single.getUnsettled(), parallel.getUnsettled());
+        assertEquals(single.getObjects(), parallel.getObjects());
+        assertEquals(single.getNames(), parallel.getNames());
+        for (String name : single.getNames()) {
+            assertEquals(name, single.getCount(name), parallel.getCount(name));
+        }
+
+        // blocks and blinkers are by far the most common soup debris
+        assertTrue(single.getCount("xs4_33") > 0);
+        assertTrue(single.getCount("xp2_7") > 0);
+        assertEquals("xs4_33", single.getNames().get(0));
+    }
+
+    @Test
+    public void singleSoupsCanBeRerun() throws InterruptedException {
+        SoupSearch search = new SoupSearch(Rule.parse("B3/S23"), 5);
+        search.setThreads(2);
+        Census all = search.run(10, 4);
+        Census one = new Census();
+        for (long index = 10; index < 14; ++index) {
+            search.search(index, one);
+        }
+        assertEquals(all.getNames(), one.getNames());
+        assertEquals(all.getObjects(), one.getObjects());
+    }
+
+    @Test
+    public void emptySoupsAreStatic() throws InterruptedException {
+        SoupSearch search = new SoupSearch(Rule.parse("B3/S23"), 1);
+        search.setSoupSize(0);
+        Census census = search.run(0, 3);
+        assertEquals(3, census.getSoups());
+        assertEquals(0, census.getUnsettled());
+        assertEquals(0, census.getObjects());
+    }
+}
@@ -0,0 +1,89 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SparseWorldEngineTest {
+    @Test
+    public void matchesBitEngineAwayFromTheEdges() {
+        Random random = new Random(4);
+        BitGrid grid = new BitGrid(256, 256);
+        for (int y = 96; y < 160; ++y) {
+            for (int x = 96; x < 160; ++x) {
+                grid.set(x, y, random.nextBoolean());
+            }
+        }
+        BitEngine reference = new BitEngine(256, 256);
+        SparseWorldEngine engine = new SparseWorldEngine(256, 256);
+        reference.setRules(72, 12);
+        engine.setRules(72, 12);
+        reference.setState(grid.toState());
+        engine.setState(grid.toState());
+
+        for (int generation = 0; generation < 40; ++generation) {
+            reference.simulate();
+            engine.simulate();
+            assertArrayEquals("generation " + generation, reference.getGrid().getWords(),
+                    BitGrid.fromState(engine.getState()).getWords());
+        }
+    }
+
+    @Test
+    public void gliderTravelsWithoutWrappingAndFreesChunks() {
+        SparseWorldEngine engine = new SparseWorldEngine(64, 64);
+        // glider heading to +x, -y
+        engine.set(1, 2, true);
+        engine.set(2, 1, true);
+        engine.set(0, 0, true);
+        engine.set(1, 0, true);
+        engine.set(2, 0, true);
+
+        for (int generation = 0; generation < 4 * 1000; ++generation) {
+            engine.simulate();
+        }
+        assertEquals(5, engine.getPopulation());
+        assertTrue(engine.get(1001, -998));
+        assertTrue(engine.get(1000, -1000));
+        assertTrue(engine.getChunkCount() <= 4);
+        assertFalse(engine.get(1, 2));
+    }
+
+    @Test
+    public void freeChunksFollowTheLiveArea() {
+        SparseWorldEngine engine = new SparseWorldEngine(1024, 1024);
+        BitGrid grid = new BitGrid(1024, 1024);
+        for (int y = 0; y < 1024; y += 2) {
+            for (int x = 0; x < 1024; x += 2) {
+                grid.set(x, y, true);
+            }
+        }
+        engine.setState(grid.toState());
+        // every cell has no neighbours, so the whole world dies in one generation
+        engine.simulate();
+        assertEquals(0, engine.getChunkCount());
+        assertTrue(engine.getFreeChunkCount() <= SparseWorldEngine.FREE_CHUNK_SLACK);
+    }
+
+    @Test
+    public void resetRestoresInitialState() {
+        SparseWorldEngine engine = new SparseWorldEngine(64, 64);
+        engine.set(-1, -1, true);
+        engine.set(0, -1, true);
+        engine.set(1, -1, true);
+        engine.setState(engine.getState());
+        engine.simulate();
+        assertTrue(engine.get(0, 0));
+        engine.reset();
+        assertFalse(engine.get(0, 0));
+        assertTrue(engine.get(-1, -1));
+        assertEquals(0, engine.getGeneration());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBirthWithoutNeighbours() {
+        new SparseWorldEngine(64, 64).setRules(9, 12);
+    }
+}
@@ -0,0 +1,59 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TripleBufferTest {
+    @Test
+    public void consumerSeesOnlyTheNewestPublishedBuffer() {
+        TripleBuffer<long[]> buffer = new TripleBuffer<>(new long[1], new long[1], new long[1]);
+        assertFalse(buffer.acquire());
+
+        buffer.getBack()[0] = 1;
+        buffer.publish();
+        buffer.getBack()[0] = 2;
+        buffer.publish();
+        assertTrue(buffer.acquire());
+        assertEquals(2, buffer.getFront()[0]);
+        assertFalse(buffer.acquire());
+
+        buffer.getBack()[0] = 3;
+        buffer.publish();
+        assertEquals(2, buffer.getFront()[0]);
+        assertTrue(buffer.acquire());
+        assertEquals(3, buffer.getFront()[0]);
+    }
+
+    @Test
+    public void framesStayConsistentAcrossThreads() throws InterruptedException {
+        final TripleBuffer<long[]> buffer = new TripleBuffer<>(new long[64], new long[64], new long[64]);
+        final int count = 200000;
+        Thread producer = new Thread(new Runnable() {
+            public void run() {
+                for (int value = 1; value <= count; ++value) {
+                    long[] back = buffer.getBack();
+                    for (int i = 0; i < back.length; ++i) {
+                        back[i] = value;
+                    }
+                    buffer.publish();
+                }
+            }
+        });
+        producer.start();
+
+        long last = 0;
+        while (last < count) {
+            if (!buffer.acquire()) {
+                continue;
+            }
+            long[] front = buffer.getFront();
+            assertTrue(front[0] > last);
+            for (long word : front) {
+                assertEquals(front[0], word);
+            }
+            last = front[0];
+        }
+        producer.join();
+    }
+}
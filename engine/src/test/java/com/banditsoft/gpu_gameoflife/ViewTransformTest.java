@@ -0,0 +1,127 @@
+package com.banditsoft.gpu_gameoflife;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ViewTransformTest {
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void inverseTimesMatrixIsIdentity() {
+        Random random = new Random(1);
+        float[] m = new float[16];
+        float[] inverse = new float[16];
+        float[] product = new float[16];
+        for (int round = 0; round < 100; ++round) {
+            for (int i = 0; i < 16; ++i) {
+                m[i] = random.nextFloat() * 2 - 1;
+            }
+            m[0] += 4;
+            m[5] += 4;
+            m[10] += 4;
+            m[15] += 4;
+            assertTrue(ViewTransform.invert(inverse, m));
+            ViewTransform.multiply(product, m, inverse);
+            for (int i = 0; i < 16; ++i) {
+                assertEquals("round " + round + " element " + i, i % 5 == 0 ? 1.0f : 0.0f, product[i], EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void singularMatricesAreNotInverted() {
+        float[] result = new float[16];
+        assertFalse(ViewTransform.invert(result, new float[16]));
+    }
+
+    @Test
+    public void screenCornersMapToTheProjectedSquare() {
+        ViewTransform transform = new ViewTransform();
+        transform.setViewport(200, 100, 1.0f);
+        float[] point = new float[2];
+        transform.map(0, 0, point);
+        assertEquals(-2.0f, point[0], EPSILON);
+        assertEquals(1.0f, point[1], EPSILON);
+        transform.map(200, 100, point);
+        assertEquals(2.0f, point[0], EPSILON);
+        assertEquals(-1.0f, point[1], EPSILON);
+        transform.map(100, 50, point);
+        assertEquals(0.0f, point[0], EPSILON);
+        assertEquals(0.0f, point[1], EPSILON);
+    }
+
+    @Test
+    public void panAndScaleMoveTheMappedPoints() {
+        ViewTransform transform = new ViewTransform();
+        transform.setViewport(100, 100, 1.0f);
+        float[] point = new float[2];
+
+        transform.pan(0.5f, 0.25f);
+        transform.map(50, 50, point);
+        assertEquals(-0.5f, point[0], EPSILON);
+        assertEquals(-0.25f, point[1], EPSILON);
+
+        // zooming around a point keeps that point where it is on screen
+        transform.map(75, 25, point);
+        float focusX = point[0];
+        float focusY = point[1];
+        transform.scale(2.0f, focusX, focusY);
+        transform.map(75, 25, point);
+        assertEquals(focusX, point[0], EPSILON);
+        assertEquals(focusY, point[1], EPSILON);
+        transform.map(50, 50, point);
+        assertEquals(focusX + (-0.5f - focusX) / 2, point[0], EPSILON);
+    }
+
+    @Test
+    public void matrixProjectsModelPointsBackToScreen() {
+        ViewTransform transform = new ViewTransform();
+        transform.setViewport(320, 480, 1.0f);
+        transform.pan(0.1f, -0.3f);
+        transform.scale(3.0f, 0.2f, 0.2f);
+        float[] point = new float[2];
+        transform.map(100, 300, point);
+        float[] m = transform.getMatrix(new float[16]);
+        float x = m[0] * point[0] + m[4] * point[1] + m[12];
+        float y = m[1] * point[0] + m[5] * point[1] + m[13];
+        assertEquals(2.0f * 100 / 320 - 1, x, EPSILON);
+        assertEquals(-2.0f * 300 / 480 + 1, y, EPSILON);
+    }
+
+    @Test
+    public void drawThreadNeverSeesAHalfAppliedGesture() throws InterruptedException {
+        float[] m = new float[16];
+        for (int round = 0; round < 50; ++round) {
+            final ViewTransform transform = new ViewTransform();
+            final AtomicBoolean stop = new AtomicBoolean();
+            Thread gestures = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    // powers of two scale exactly, so the view only ever holds scale 1 or 2 in x and y alike
+                    while (!stop.get()) {
+                        transform.scale(2.0f, 0.0f, 0.0f);
+                        transform.scale(0.5f, 0.0f, 0.0f);
+                    }
+                }
+            });
+            gestures.start();
+            try {
+                for (int i = 0; i < 20000; ++i) {
+                    transform.getMatrix(m);
+                    assertEquals(m[0], m[5], 0.0f);
+                }
+            } finally {
+                stop.set(true);
+                gestures.join();
+            }
+            // a matrix cached from a view that changed meanwhile would stay on screen
+            transform.getMatrix(m);
+            assertEquals(1.0f, m[0], 0.0f);
+            assertEquals(1.0f, m[5], 0.0f);
+        }
+    }
+}